@@ -315,6 +315,22 @@ public interface Table extends BatchReadable<byte[], Row>, BatchWritable<byte[],
   @Beta
   Scanner scan(Scan scan);
 
+  /**
+   * Returns a {@link Scanner} as specified by a given {@link Scan}, which reads the rows with multiple threads. The
+   * range of the scan is split into up to {@code parallelism} sub-ranges, for example by region, which are read
+   * concurrently. The rows are returned in the same order as by {@link #scan(Scan)}.
+   *
+   * By default, this is the same as {@link #scan(Scan)}.
+   *
+   * @param scan a {@link Scan} instance
+   * @param parallelism maximum number of sub-ranges to read concurrently
+   * @return instance of {@link Scanner}
+   */
+  @Beta
+  default Scanner parallelScan(Scan scan, int parallelism) {
+    return scan(scan);
+  }
+
   /**
    * Returns splits for a range of keys in the table.
    * 
@@ -0,0 +1,474 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.RecordScanner;
+import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.batch.SplitReader;
+import co.cask.cdap.api.data.format.StructuredRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * A read-only {@link Table} backed by an immutable snapshot file, as written by {@link TableSnapshotWriter}.
+ * The file is memory-mapped, hence lookups do not involve any remote calls or transactions. This is meant for
+ * looking up slowly changing data in programs, by localizing an exported snapshot to the program containers.
+ *
+ * A snapshot can be used concurrently by multiple threads. All write operations throw
+ * {@link UnsupportedOperationException}, and scans do not support filters.
+ */
+@Beta
+public final class TableSnapshot implements Table {
+
+  static final int MAGIC = 0x43445453;
+  static final byte VERSION = 1;
+  static final int HEADER_SIZE = Bytes.SIZEOF_INT + 1;
+  // index offset, index entries, row count, magic
+  static final int FOOTER_SIZE = Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT;
+  // number of rows between entries of the index
+  static final int INDEX_INTERVAL = 64;
+
+  private final ByteBuffer buffer;
+  private final int dataEnd;
+  private final byte[][] indexRows;
+  private final int[] indexPositions;
+  private final long rowCount;
+
+  /**
+   * Opens a snapshot file.
+   *
+   * @param file the snapshot file
+   * @return a read-only table of the rows in the snapshot
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public static TableSnapshot open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot file " + file + " of size " + size + " is too large");
+      }
+      if (size < HEADER_SIZE + FOOTER_SIZE) {
+        throw new IOException("File " + file + " is not a table snapshot");
+      }
+      // the mapping remains valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return new TableSnapshot(file, buffer);
+    }
+  }
+
+  private TableSnapshot(File file, ByteBuffer buffer) throws IOException {
+    int footer = buffer.capacity() - FOOTER_SIZE;
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(footer + FOOTER_SIZE - Bytes.SIZEOF_INT) != MAGIC) {
+      throw new IOException("File " + file + " is not a table snapshot");
+    }
+    if (buffer.get(Bytes.SIZEOF_INT) != VERSION) {
+      throw new IOException("Unsupported version " + buffer.get(Bytes.SIZEOF_INT) + " of table snapshot " + file);
+    }
+    this.buffer = buffer;
+    this.dataEnd = (int) buffer.getLong(footer);
+    int indexEntries = buffer.getInt(footer + Bytes.SIZEOF_LONG);
+    this.rowCount = buffer.getLong(footer + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT);
+
+    this.indexRows = new byte[indexEntries][];
+    this.indexPositions = new int[indexEntries];
+    int position = dataEnd;
+    for (int i = 0; i < indexEntries; i++) {
+      indexRows[i] = readBytes(position);
+      position += Bytes.SIZEOF_INT + indexRows[i].length;
+      indexPositions[i] = (int) buffer.getLong(position);
+      position += Bytes.SIZEOF_LONG;
+    }
+  }
+
+  /**
+   * Returns the number of rows in this snapshot.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public Row get(byte[] row) {
+    int position = find(row);
+    if (position < 0) {
+      return new Result(row, Collections.<byte[], byte[]>emptyMap());
+    }
+    return new Result(row, readColumns(position));
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(byte[] row, byte[] column) {
+    int position = find(row);
+    return position < 0 ? null : readColumns(position).get(column);
+  }
+
+  @Override
+  public Row get(byte[] row, byte[][] columns) {
+    int position = find(row);
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    if (position >= 0) {
+      NavigableMap<byte[], byte[]> rowColumns = readColumns(position);
+      for (byte[] column : columns) {
+        byte[] value = rowColumns.get(column);
+        if (value != null) {
+          result.put(column, value);
+        }
+      }
+    }
+    return new Result(row, result);
+  }
+
+  @Override
+  public Row get(byte[] row, byte[] startColumn, byte[] stopColumn, int limit) {
+    int position = find(row);
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    if (position >= 0 && limit > 0) {
+      NavigableMap<byte[], byte[]> columns = readColumns(position);
+      if (startColumn != null) {
+        columns = columns.tailMap(startColumn, true);
+      }
+      if (stopColumn != null) {
+        columns = columns.headMap(stopColumn, false);
+      }
+      for (NavigableMap.Entry<byte[], byte[]> column : columns.entrySet()) {
+        if (result.size() >= limit) {
+          break;
+        }
+        result.put(column.getKey(), column.getValue());
+      }
+    }
+    return new Result(row, result);
+  }
+
+  @Override
+  public Row get(Get get) {
+    List<byte[]> columns = get.getColumns();
+    return columns == null ? get(get.getRow()) : get(get.getRow(), columns.toArray(new byte[columns.size()][]));
+  }
+
+  @Override
+  public List<Row> get(List<Get> gets) {
+    List<Row> rows = new ArrayList<>(gets.size());
+    for (Get get : gets) {
+      rows.add(get(get));
+    }
+    return rows;
+  }
+
+  @Override
+  public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    final int startPosition = startRow == null ? HEADER_SIZE : seek(startRow);
+    final byte[] stop = stopRow;
+    return new Scanner() {
+      private int position = startPosition;
+
+      @Nullable
+      @Override
+      public Row next() {
+        if (position >= dataEnd || (stop != null && compareRow(position, stop) >= 0)) {
+          return null;
+        }
+        byte[] row = readBytes(position);
+        Row result = new Result(row, readColumns(position));
+        position = skipRow(position);
+        return result;
+      }
+
+      @Override
+      public void close() {
+        position = dataEnd;
+      }
+    };
+  }
+
+  @Override
+  public Scanner scan(Scan scan) {
+    if (scan.getFilter() != null) {
+      throw new UnsupportedOperationException("Table snapshots do not support scans with filters");
+    }
+    return scan(scan.getStartRow(), scan.getStopRow());
+  }
+
+  /**
+   * Returns splits at the indexed row keys of this snapshot.
+   */
+  @Override
+  public List<Split> getSplits(int numSplits, @Nullable byte[] start, @Nullable byte[] stop) {
+    List<byte[]> boundaries = new ArrayList<>();
+    for (byte[] indexRow : indexRows) {
+      if ((start == null || Bytes.compareTo(indexRow, start) > 0)
+        && (stop == null || Bytes.compareTo(indexRow, stop) < 0)) {
+        boundaries.add(indexRow);
+      }
+    }
+    if (numSplits > 0 && boundaries.size() >= numSplits) {
+      // pick evenly spaced boundaries
+      List<byte[]> selected = new ArrayList<>(numSplits - 1);
+      for (int i = 1; i < numSplits; i++) {
+        selected.add(boundaries.get(i * (boundaries.size() + 1) / numSplits - 1));
+      }
+      boundaries = selected;
+    }
+
+    List<Split> splits = new ArrayList<>(boundaries.size() + 1);
+    byte[] splitStart = start;
+    for (byte[] boundary : boundaries) {
+      splits.add(new TableSplit(splitStart, boundary));
+      splitStart = boundary;
+    }
+    splits.add(new TableSplit(splitStart, stop));
+    return splits;
+  }
+
+  @Override
+  public List<Split> getSplits() {
+    return getSplits(-1, null, null);
+  }
+
+  @Override
+  public SplitReader<byte[], Row> createSplitReader(Split split) {
+    return new SplitReader<byte[], Row>() {
+      private Scanner scanner;
+      private Row row;
+
+      @Override
+      public void initialize(Split split) {
+        TableSplit tableSplit = (TableSplit) split;
+        scanner = scan(tableSplit.getStart(), tableSplit.getStop());
+      }
+
+      @Override
+      public boolean nextKeyValue() {
+        row = scanner.next();
+        return row != null;
+      }
+
+      @Override
+      public byte[] getCurrentKey() {
+        return row.getRow();
+      }
+
+      @Override
+      public Row getCurrentValue() {
+        return row;
+      }
+
+      @Override
+      public void close() {
+        scanner.close();
+      }
+    };
+  }
+
+  @Override
+  public Type getRecordType() {
+    return StructuredRecord.class;
+  }
+
+  @Override
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split) {
+    throw new UnsupportedOperationException("Table snapshots do not have a schema and are not record scannable");
+  }
+
+  @Override
+  public void put(byte[] row, byte[] column, byte[] value) {
+    throw readOnly();
+  }
+
+  @Override
+  public void put(byte[] row, byte[][] columns, byte[][] values) {
+    throw readOnly();
+  }
+
+  @Override
+  public void put(Put put) {
+    throw readOnly();
+  }
+
+  @Override
+  public void delete(byte[] row) {
+    throw readOnly();
+  }
+
+  @Override
+  public void delete(byte[] row, byte[] column) {
+    throw readOnly();
+  }
+
+  @Override
+  public void delete(byte[] row, byte[][] columns) {
+    throw readOnly();
+  }
+
+  @Override
+  public void delete(Delete delete) {
+    throw readOnly();
+  }
+
+  @Override
+  public long incrementAndGet(byte[] row, byte[] column, long amount) {
+    throw readOnly();
+  }
+
+  @Override
+  public Row incrementAndGet(byte[] row, byte[][] columns, long[] amounts) {
+    throw readOnly();
+  }
+
+  @Override
+  public Row incrementAndGet(Increment increment) {
+    throw readOnly();
+  }
+
+  @Override
+  public void increment(byte[] row, byte[] column, long amount) {
+    throw readOnly();
+  }
+
+  @Override
+  public void increment(byte[] row, byte[][] columns, long[] amounts) {
+    throw readOnly();
+  }
+
+  @Override
+  public void increment(Increment increment) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean compareAndSwap(byte[] key, byte[] keyColumn, byte[] oldValue, byte[] newValue) {
+    throw readOnly();
+  }
+
+  @Override
+  public void write(byte[] key, Put value) {
+    throw readOnly();
+  }
+
+  @Override
+  public void write(StructuredRecord structuredRecord) {
+    throw readOnly();
+  }
+
+  @Override
+  public void close() {
+    // the mapping is released when this snapshot is garbage collected
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("Table snapshots are read-only");
+  }
+
+  /**
+   * Returns the position of the given row, or -1 if the row is not in this snapshot.
+   */
+  private int find(byte[] row) {
+    int position = seek(row);
+    return position < dataEnd && compareRow(position, row) == 0 ? position : -1;
+  }
+
+  /**
+   * Returns the position of the first row that is greater or equal to the given row.
+   */
+  private int seek(byte[] row) {
+    // find the last indexed row that is less or equal to the row, then scan forward from there
+    int low = 0;
+    int high = indexRows.length - 1;
+    int position = HEADER_SIZE;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (Bytes.compareTo(indexRows[mid], row) <= 0) {
+        position = indexPositions[mid];
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    while (position < dataEnd && compareRow(position, row) < 0) {
+      position = skipRow(position);
+    }
+    return position;
+  }
+
+  /**
+   * Compares the key of the row at the given position with the given row.
+   */
+  private int compareRow(int position, byte[] row) {
+    int length = buffer.getInt(position);
+    int offset = position + Bytes.SIZEOF_INT;
+    for (int i = 0; i < length && i < row.length; i++) {
+      int cmp = (buffer.get(offset + i) & 0xff) - (row[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - row.length;
+  }
+
+  /**
+   * Returns the position of the row following the row at the given position.
+   */
+  private int skipRow(int position) {
+    position += Bytes.SIZEOF_INT + buffer.getInt(position);
+    int columns = buffer.getInt(position);
+    position += Bytes.SIZEOF_INT;
+    for (int i = 0; i < columns; i++) {
+      position += Bytes.SIZEOF_INT + buffer.getInt(position);
+      position += Bytes.SIZEOF_INT + buffer.getInt(position);
+    }
+    return position;
+  }
+
+  private NavigableMap<byte[], byte[]> readColumns(int position) {
+    position += Bytes.SIZEOF_INT + buffer.getInt(position);
+    int columns = buffer.getInt(position);
+    position += Bytes.SIZEOF_INT;
+    NavigableMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < columns; i++) {
+      byte[] column = readBytes(position);
+      position += Bytes.SIZEOF_INT + column.length;
+      byte[] value = readBytes(position);
+      position += Bytes.SIZEOF_INT + value.length;
+      result.put(column, value);
+    }
+    return result;
+  }
+
+  private byte[] readBytes(int position) {
+    byte[] bytes = new byte[buffer.getInt(position)];
+    // use a duplicate, so that concurrent reads do not interfere through the buffer position
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(position + Bytes.SIZEOF_INT);
+    duplicate.get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.common.Bytes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes rows of a {@link Table} to an immutable snapshot, which can be opened with
+ * {@link TableSnapshot#open(java.io.File)}. Rows must be written in increasing order, as returned by a scan.
+ * For example, to export a range of a table:
+ *
+ * <pre>
+ *   try (TableSnapshotWriter writer = new TableSnapshotWriter(location.getOutputStream());
+ *        Scanner scanner = table.scan(startRow, stopRow)) {
+ *     writer.write(scanner);
+ *   }
+ * </pre>
+ *
+ * The snapshot file contains a header, the rows, a sparse index of the row keys, and a footer with the location
+ * of the index.
+ */
+@Beta
+public final class TableSnapshotWriter implements Closeable {
+
+  private final DataOutputStream out;
+  private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+  private final DataOutputStream indexOut = new DataOutputStream(index);
+  private long position;
+  private long rowCount;
+  private int indexEntries;
+  private byte[] lastRow;
+  private boolean closed;
+
+  /**
+   * Creates a writer that writes the snapshot to the given stream. The stream is closed when this writer is closed.
+   */
+  public TableSnapshotWriter(OutputStream out) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.out.writeInt(TableSnapshot.MAGIC);
+    this.out.writeByte(TableSnapshot.VERSION);
+    this.position = TableSnapshot.HEADER_SIZE;
+  }
+
+  /**
+   * Writes a row. Rows without columns are skipped.
+   *
+   * @throws IllegalArgumentException if the row is not greater than the previously written row
+   */
+  public void write(Row row) throws IOException {
+    if (row.isEmpty()) {
+      return;
+    }
+    byte[] rowKey = row.getRow();
+    if (lastRow != null && Bytes.compareTo(lastRow, rowKey) >= 0) {
+      throw new IllegalArgumentException("Row " + Bytes.toStringBinary(rowKey) +
+                                           " is not greater than the previous row " + Bytes.toStringBinary(lastRow));
+    }
+    if (rowCount % TableSnapshot.INDEX_INTERVAL == 0) {
+      indexOut.writeInt(rowKey.length);
+      indexOut.write(rowKey);
+      indexOut.writeLong(position);
+      indexEntries++;
+    }
+
+    position += writeBytes(rowKey);
+    out.writeInt(row.getColumns().size());
+    position += Bytes.SIZEOF_INT;
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      position += writeBytes(column.getKey());
+      position += writeBytes(column.getValue());
+    }
+    lastRow = rowKey;
+    rowCount++;
+  }
+
+  /**
+   * Writes all rows returned by the given scanner.
+   *
+   * @return the number of rows written
+   */
+  public long write(Scanner scanner) throws IOException {
+    long startCount = rowCount;
+    Row row;
+    while ((row = scanner.next()) != null) {
+      write(row);
+    }
+    return rowCount - startCount;
+  }
+
+  /**
+   * Writes the index and closes the snapshot.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      index.writeTo(out);
+      out.writeLong(position);
+      out.writeInt(indexEntries);
+      out.writeLong(rowCount);
+      out.writeInt(TableSnapshot.MAGIC);
+    } finally {
+      out.close();
+    }
+  }
+
+  private int writeBytes(byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    return Bytes.SIZEOF_INT + bytes.length;
+  }
+}
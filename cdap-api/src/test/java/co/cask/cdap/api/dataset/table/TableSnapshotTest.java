@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.Split;
+import co.cask.cdap.api.data.batch.SplitReader;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Unit tests for {@link TableSnapshotWriter} and {@link TableSnapshot}.
+ */
+public class TableSnapshotTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static final byte[] COL_A = Bytes.toBytes("a");
+  private static final byte[] COL_B = Bytes.toBytes("b");
+  private static final byte[] COL_C = Bytes.toBytes("c");
+
+  @Test
+  public void testGetAndScan() throws IOException {
+    // enough rows for several index entries; only even rows are written
+    TableSnapshot snapshot = createSnapshot(1000);
+    Assert.assertEquals(500, snapshot.getRowCount());
+
+    Row row = snapshot.get(rowKey(100));
+    Assert.assertEquals(3, row.getColumns().size());
+    Assert.assertEquals(100L, (long) row.getLong(COL_A));
+    Assert.assertEquals("100", row.getString(COL_B));
+    Assert.assertArrayEquals(Bytes.toBytes(200L), snapshot.get(rowKey(100), COL_C));
+
+    // missing rows, before, between and after the written rows
+    Assert.assertTrue(snapshot.get(Bytes.toBytes("a")).isEmpty());
+    Assert.assertTrue(snapshot.get(rowKey(101)).isEmpty());
+    Assert.assertTrue(snapshot.get(rowKey(2000)).isEmpty());
+    Assert.assertNull(snapshot.get(rowKey(101), COL_A));
+
+    Assert.assertEquals(Collections.singleton(COL_B),
+                        snapshot.get(rowKey(0), new byte[][] { COL_B, Bytes.toBytes("x") }).getColumns().keySet());
+    Row range = snapshot.get(rowKey(998), COL_B, null, 10);
+    Assert.assertEquals(2, range.getColumns().size());
+    Assert.assertNull(range.get(COL_A));
+    Assert.assertEquals(1, snapshot.get(new Get(rowKey(2), COL_A)).getColumns().size());
+
+    // scan a range starting at a missing row
+    Scanner scanner = snapshot.scan(rowKey(99), rowKey(300));
+    int expected = 100;
+    Row next;
+    while ((next = scanner.next()) != null) {
+      Assert.assertArrayEquals(rowKey(expected), next.getRow());
+      Assert.assertEquals(expected, (long) next.getLong(COL_A));
+      expected += 2;
+    }
+    scanner.close();
+    Assert.assertEquals(300, expected);
+
+    Assert.assertEquals(500, count(snapshot.scan(null, null)));
+    Assert.assertEquals(0, count(snapshot.scan(rowKey(2000), null)));
+  }
+
+  @Test
+  public void testSplits() throws Exception {
+    TableSnapshot snapshot = createSnapshot(1000);
+    List<Split> splits = snapshot.getSplits();
+    Assert.assertTrue(splits.size() > 1);
+    Assert.assertEquals(500, countSplits(snapshot, splits));
+
+    splits = snapshot.getSplits(3, rowKey(100), rowKey(900));
+    Assert.assertEquals(3, splits.size());
+    Assert.assertEquals(400, countSplits(snapshot, splits));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsortedRows() throws IOException {
+    File file = TEMP_FOLDER.newFile();
+    try (TableSnapshotWriter writer = new TableSnapshotWriter(new FileOutputStream(file))) {
+      writer.write(createRow(2));
+      writer.write(createRow(1));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testInvalidFile() throws IOException {
+    File file = TEMP_FOLDER.newFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[100]);
+    }
+    TableSnapshot.open(file);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testReadOnly() throws IOException {
+    createSnapshot(10).put(rowKey(1), COL_A, COL_A);
+  }
+
+  private TableSnapshot createSnapshot(int numRows) throws IOException {
+    File file = TEMP_FOLDER.newFile();
+    try (TableSnapshotWriter writer = new TableSnapshotWriter(new FileOutputStream(file))) {
+      for (int i = 0; i < numRows; i += 2) {
+        writer.write(createRow(i));
+      }
+    }
+    return TableSnapshot.open(file);
+  }
+
+  private static Row createRow(int i) {
+    Map<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(COL_A, Bytes.toBytes((long) i));
+    columns.put(COL_B, Bytes.toBytes(String.valueOf(i)));
+    columns.put(COL_C, Bytes.toBytes(2L * i));
+    return new Result(rowKey(i), columns);
+  }
+
+  private static byte[] rowKey(int i) {
+    return Bytes.toBytes(String.format("row%05d", i));
+  }
+
+  private static int count(Scanner scanner) {
+    int count = 0;
+    while (scanner.next() != null) {
+      count++;
+    }
+    scanner.close();
+    return count;
+  }
+
+  private static int countSplits(TableSnapshot snapshot, List<Split> splits) throws InterruptedException {
+    int count = 0;
+    for (Split split : splits) {
+      SplitReader<byte[], Row> reader = snapshot.createSplitReader(split);
+      reader.initialize(split);
+      while (reader.nextKeyValue()) {
+        count++;
+      }
+      reader.close();
+    }
+    return count;
+  }
+}
@@ -49,6 +49,7 @@ public abstract class AbstractNotificationSubscriberService extends AbstractMess
   private final String name;
   private final Transactional transactional;
   private final MultiThreadMessagingContext messagingContext;
+  private final MessagingService messagingService;
 
   @Inject
   protected AbstractNotificationSubscriberService(String name, CConfiguration cConf, String topicName,
@@ -69,6 +70,7 @@ public abstract class AbstractNotificationSubscriberService extends AbstractMess
             Constants.Metrics.Tag.CONSUMER, name
           )));
     this.name = name;
+    this.messagingService = messagingService;
     this.messagingContext = new MultiThreadMessagingContext(messagingService);
     this.transactional = Transactions.createTransactionalWithRetry(
       Transactions.createTransactional(new MultiThreadDatasetCache(
@@ -88,6 +90,11 @@ public abstract class AbstractNotificationSubscriberService extends AbstractMess
     return messagingContext;
   }
 
+  @Override
+  protected MessagingService getMessagingService() {
+    return messagingService;
+  }
+
   @Override
   protected Transactional getTransactional() {
     return transactional;
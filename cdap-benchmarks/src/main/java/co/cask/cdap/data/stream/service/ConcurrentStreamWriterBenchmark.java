@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.data.stream.StreamSpecification;
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data.runtime.LocationStreamFileWriterFactory;
+import co.cask.cdap.data.stream.InMemoryStreamCoordinatorClient;
+import co.cask.cdap.data.stream.StreamCoordinatorClient;
+import co.cask.cdap.data2.metadata.lineage.AccessType;
+import co.cask.cdap.data2.transaction.stream.StreamAdmin;
+import co.cask.cdap.data2.transaction.stream.StreamConfig;
+import co.cask.cdap.proto.StreamProperties;
+import co.cask.cdap.proto.ViewSpecification;
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.ProgramRunId;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.cdap.proto.id.StreamViewId;
+import co.cask.cdap.security.impersonation.DefaultImpersonator;
+import co.cask.cdap.security.impersonation.Impersonator;
+import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmarks for {@link ConcurrentStreamWriter} writing to stream files on the local file system, with a single
+ * producer and with concurrent producers whose writes get batched by the writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentStreamWriterBenchmark {
+
+  private static final Map<String, String> HEADERS = ImmutableMap.of("header", "value");
+
+  @Param({ "100", "1024" })
+  private int eventSize;
+
+  @Param({ "1", "100" })
+  private int eventsPerRequest;
+
+  private File baseDir;
+  private StreamCoordinatorClient coordinatorClient;
+  private ConcurrentStreamWriter streamWriter;
+  private StreamId streamId;
+  private List<StreamEventData> events;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    Impersonator impersonator = new DefaultImpersonator(cConf, new UnsupportedUGIProvider());
+
+    streamId = new NamespaceId("benchmark").stream("stream");
+    Location streamLocation = new LocalLocationFactory(baseDir).create(streamId.getEntityName());
+    streamLocation.mkdirs();
+    StreamConfig streamConfig = new StreamConfig(streamId, Long.MAX_VALUE, 10000L, Long.MAX_VALUE,
+                                                 streamLocation, null, 1000);
+
+    coordinatorClient = new InMemoryStreamCoordinatorClient();
+    coordinatorClient.startAndWait();
+    streamWriter = new ConcurrentStreamWriter(coordinatorClient, new BenchmarkStreamAdmin(streamConfig),
+                                              new LocationStreamFileWriterFactory(cConf, impersonator),
+                                              Runtime.getRuntime().availableProcessors(),
+                                              new StreamMetricsCollectorFactory() {
+                                                @Override
+                                                public StreamMetricsCollector createMetricsCollector(StreamId id) {
+                                                  return new StreamMetricsCollector() {
+                                                    @Override
+                                                    public void emitMetrics(long bytesWritten, long eventsWritten) {
+                                                      // No-op
+                                                    }
+                                                  };
+                                                }
+                                              }, impersonator);
+
+    Random random = new Random(0);
+    events = new ArrayList<>(eventsPerRequest);
+    for (int i = 0; i < eventsPerRequest; i++) {
+      byte[] body = new byte[eventSize];
+      random.nextBytes(body);
+      events.add(new StreamEventData(HEADERS, ByteBuffer.wrap(body)));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    streamWriter.close();
+    coordinatorClient.stopAndWait();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public void enqueue() throws Exception {
+    write();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void enqueueConcurrent() throws Exception {
+    write();
+  }
+
+  private void write() throws Exception {
+    if (eventsPerRequest == 1) {
+      streamWriter.enqueue(streamId, HEADERS, events.get(0).getBody().duplicate());
+    } else {
+      streamWriter.enqueue(streamId, events.iterator());
+    }
+  }
+
+  /**
+   * A {@link StreamAdmin} that only provides the {@link StreamConfig} of the stream being benchmarked.
+   */
+  private static final class BenchmarkStreamAdmin implements StreamAdmin {
+
+    private final StreamConfig streamConfig;
+
+    BenchmarkStreamAdmin(StreamConfig streamConfig) {
+      this.streamConfig = streamConfig;
+    }
+
+    @Override
+    public StreamConfig getConfig(StreamId streamId) throws IOException {
+      return streamConfig;
+    }
+
+    @Override
+    public boolean exists(StreamId streamId) throws Exception {
+      return streamConfig.getStreamId().equals(streamId);
+    }
+
+    @Override
+    public void dropAllInNamespace(NamespaceId namespace) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void configureInstances(StreamId streamId, long groupId, int instances) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void configureGroups(StreamId streamId, Map<Long, Integer> groupInfo) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void upgrade() throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<StreamSpecification> listStreams(NamespaceId namespaceId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamProperties getProperties(StreamId streamId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void updateConfig(StreamId streamId, StreamProperties properties) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Nullable
+    @Override
+    public StreamConfig create(StreamId streamId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Nullable
+    @Override
+    public StreamConfig create(StreamId streamId, @Nullable Properties props) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void truncate(StreamId streamId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void drop(StreamId streamId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean createOrUpdateView(StreamViewId viewId, ViewSpecification spec) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteView(StreamViewId viewId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<StreamViewId> listViews(StreamId streamId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ViewSpecification getView(StreamViewId viewId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean viewExists(StreamViewId viewId) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void register(Iterable<? extends EntityId> owners, StreamId streamId) {
+      // No-op
+    }
+
+    @Override
+    public void addAccess(ProgramRunId run, StreamId streamId, AccessType accessType) {
+      // No-op
+    }
+  }
+}
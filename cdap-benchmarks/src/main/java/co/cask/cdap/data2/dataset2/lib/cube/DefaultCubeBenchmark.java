@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link DefaultCube} adding facts and querying aggregated time series, using the same
+ * aggregation layout as the metrics system on top of the in-memory metrics table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DefaultCubeBenchmark {
+
+  private static final String CUBE_NAME = "benchmark";
+  private static final int RESOLUTION = 1;
+  private static final int FACTS_PER_ADD = 100;
+  private static final int DIMENSION_VALUES = 10;
+  private static final int TIME_RANGE = 3600;
+
+  private final List<String> tableNames = new ArrayList<>();
+  private DefaultCube cube;
+  private CubeQuery sumQuery;
+  private CubeQuery groupByQuery;
+  private long timestamp;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Aggregation namespaceAgg = new DefaultAggregation(ImmutableList.of("namespace", "app", "program"),
+                                                      ImmutableList.of("namespace"));
+    Aggregation appAgg = new DefaultAggregation(ImmutableList.of("namespace", "app"),
+                                                ImmutableList.of("namespace", "app"));
+    Map<String, Aggregation> aggregations = ImmutableMap.of("namespace", namespaceAgg, "app", appAgg);
+
+    cube = new DefaultCube(new int[] { RESOLUTION }, new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int rollTime) {
+        String entityTableName = "EntityTable-" + CUBE_NAME;
+        String dataTableName = "DataTable-" + CUBE_NAME + "-" + resolution;
+        InMemoryTableService.create(entityTableName);
+        InMemoryTableService.create(dataTableName);
+        tableNames.add(entityTableName);
+        tableNames.add(dataTableName);
+        return new FactTable(new InMemoryMetricsTable(dataTableName),
+                             new EntityTable(new InMemoryMetricsTable(entityTableName)), resolution, rollTime);
+      }
+    }, aggregations, ImmutableMap.<String, AggregationAlias>of());
+
+    // Pre-populate the cube with one hour of data
+    for (timestamp = 0; timestamp < TIME_RANGE; timestamp++) {
+      cube.add(createFacts(timestamp));
+    }
+
+    sumQuery = CubeQuery.builder()
+      .select().measurement("metric", AggregationFunction.SUM)
+      .from("namespace").resolution(RESOLUTION, TimeUnit.SECONDS)
+      .where().dimensions(ImmutableMap.of("namespace", "ns0")).timeRange(0, TIME_RANGE)
+      .limit(Integer.MAX_VALUE)
+      .build();
+
+    groupByQuery = CubeQuery.builder()
+      .select().measurement("metric", AggregationFunction.SUM)
+      .from("app").resolution(RESOLUTION, TimeUnit.SECONDS)
+      .where().dimensions(ImmutableMap.of("namespace", "ns0")).timeRange(0, TIME_RANGE)
+      .groupBy().dimensions(ImmutableList.of("app"))
+      .limit(Integer.MAX_VALUE)
+      .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    for (String tableName : tableNames) {
+      InMemoryTableService.drop(tableName);
+    }
+  }
+
+  @Benchmark
+  public void add() {
+    cube.add(createFacts(timestamp++));
+  }
+
+  @Benchmark
+  public Collection<TimeSeries> querySum() {
+    return cube.query(sumQuery);
+  }
+
+  @Benchmark
+  public Collection<TimeSeries> queryGroupBy() {
+    return cube.query(groupByQuery);
+  }
+
+  private List<CubeFact> createFacts(long timestamp) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    List<CubeFact> facts = new ArrayList<>(FACTS_PER_ADD);
+    for (int i = 0; i < FACTS_PER_ADD; i++) {
+      facts.add(new CubeFact(timestamp)
+                  .addDimensionValue("namespace", "ns" + random.nextInt(DIMENSION_VALUES))
+                  .addDimensionValue("app", "app" + random.nextInt(DIMENSION_VALUES))
+                  .addDimensionValue("program", "program" + random.nextInt(DIMENSION_VALUES))
+                  .addMeasurement("metric", MeasureType.COUNTER, 1L));
+    }
+    return facts;
+  }
+}
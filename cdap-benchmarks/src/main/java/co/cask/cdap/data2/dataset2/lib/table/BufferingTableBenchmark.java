@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTable;
+import co.cask.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import com.google.common.io.Files;
+import org.apache.tephra.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link BufferingTable} get, put and scan operations, each executed inside a transaction
+ * against the LevelDB or the in-memory table implementation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BufferingTableBenchmark {
+
+  private static final String NAMESPACE = "benchmark";
+  private static final String TABLE_NAME = "table";
+  private static final int TOTAL_ROWS = 100000;
+  private static final int COLUMNS_PER_ROW = 10;
+  private static final byte[][] COLUMNS = new byte[COLUMNS_PER_ROW][];
+
+  static {
+    for (int i = 0; i < COLUMNS_PER_ROW; i++) {
+      COLUMNS[i] = Bytes.toBytes("c" + i);
+    }
+  }
+
+  @Param({ "leveldb", "inmemory" })
+  private String backend;
+
+  @Param({ "100" })
+  private int valueSize;
+
+  @Param({ "1", "1000" })
+  private int operationsPerTx;
+
+  private File baseDir;
+  private LevelDBTableService levelDBTableService;
+  private BufferingTable table;
+  private byte[][] values;
+  private Random random;
+  private long writePointer;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    random = new Random(0);
+    values = new byte[COLUMNS_PER_ROW][];
+    for (int i = 0; i < COLUMNS_PER_ROW; i++) {
+      values[i] = new byte[valueSize];
+      random.nextBytes(values[i]);
+    }
+
+    CConfiguration cConf = CConfiguration.create();
+    if ("leveldb".equals(backend)) {
+      baseDir = Files.createTempDir();
+      cConf.set(Constants.CFG_LOCAL_DATA_DIR, baseDir.getAbsolutePath());
+      levelDBTableService = new LevelDBTableService();
+      levelDBTableService.setConfiguration(cConf);
+
+      DatasetSpecification spec = DatasetSpecification.builder(TABLE_NAME, "table").build();
+      table = new LevelDBTable(DatasetContext.from(NAMESPACE), TABLE_NAME, levelDBTableService, cConf, spec);
+      levelDBTableService.ensureTableExists(table.getTableName());
+    } else {
+      InMemoryTableService.create(TABLE_NAME);
+      table = new InMemoryTable(TABLE_NAME);
+    }
+
+    // Pre-populate the table with rows that the get and scan benchmarks read
+    int rowsPerTx = 1000;
+    for (int i = 0; i < TOTAL_ROWS; i += rowsPerTx) {
+      startTx();
+      for (int j = i; j < i + rowsPerTx; j++) {
+        table.put(getRowKey(j), COLUMNS, values);
+      }
+      commitTx();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    table.close();
+    if (levelDBTableService != null) {
+      levelDBTableService.close();
+      DirUtils.deleteDirectoryContents(baseDir);
+    } else {
+      InMemoryTableService.drop(TABLE_NAME);
+    }
+  }
+
+  @Benchmark
+  public void put() throws Exception {
+    startTx();
+    for (int i = 0; i < operationsPerTx; i++) {
+      table.put(getRowKey(TOTAL_ROWS + random.nextInt(TOTAL_ROWS)), COLUMNS, values);
+    }
+    commitTx();
+  }
+
+  @Benchmark
+  public void get(Blackhole blackhole) throws Exception {
+    startTx();
+    for (int i = 0; i < operationsPerTx; i++) {
+      blackhole.consume(table.get(getRowKey(random.nextInt(TOTAL_ROWS)), COLUMNS));
+    }
+    commitTx();
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws Exception {
+    startTx();
+    int startRow = random.nextInt(TOTAL_ROWS - operationsPerTx);
+    try (Scanner scanner = table.scan(getRowKey(startRow), getRowKey(startRow + operationsPerTx))) {
+      Row row = scanner.next();
+      while (row != null) {
+        blackhole.consume(row);
+        row = scanner.next();
+      }
+    }
+    commitTx();
+  }
+
+  private byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%08d", row));
+  }
+
+  private void startTx() {
+    writePointer++;
+    table.startTx(new Transaction(writePointer - 1, writePointer, new long[0], new long[0],
+                                  Transaction.NO_TX_IN_PROGRESS));
+  }
+
+  private void commitTx() throws Exception {
+    table.commitTx();
+    table.postTxCommit();
+  }
+}
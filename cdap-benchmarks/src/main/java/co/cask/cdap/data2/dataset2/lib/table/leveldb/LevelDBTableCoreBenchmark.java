@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link LevelDBTableCore}, the storage layer used by LevelDB tables in standalone mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBTableCoreBenchmark {
+
+  private static final String TABLE_NAME = "benchmark.table";
+  private static final int TOTAL_ROWS = 100000;
+  private static final int SCAN_ROWS = 100;
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+  private static final byte[] VALUE = new byte[100];
+
+  private File baseDir;
+  private LevelDBTableService service;
+  private LevelDBTableCore core;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, baseDir.getAbsolutePath());
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+    service.ensureTableExists(TABLE_NAME);
+    core = new LevelDBTableCore(TABLE_NAME, service);
+
+    for (int i = 0; i < TOTAL_ROWS; i++) {
+      core.put(getRowKey(i), COLUMN, VALUE, 1L);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    service.close();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public void persist() throws IOException {
+    byte[] row = getRowKey(ThreadLocalRandom.current().nextInt(TOTAL_ROWS));
+    core.persist(Collections.singletonMap(row, Collections.singletonMap(COLUMN, VALUE)), System.currentTimeMillis());
+  }
+
+  @Benchmark
+  public Map<byte[], byte[]> getRow() throws IOException {
+    byte[] row = getRowKey(ThreadLocalRandom.current().nextInt(TOTAL_ROWS));
+    return core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException {
+    int startRow = ThreadLocalRandom.current().nextInt(TOTAL_ROWS - SCAN_ROWS);
+    Scanner scanner = core.scan(getRowKey(startRow), getRowKey(startRow + SCAN_ROWS), null, null, null);
+    try {
+      Row row = scanner.next();
+      while (row != null) {
+        blackhole.consume(row);
+        row = scanner.next();
+      }
+    } finally {
+      scanner.close();
+    }
+  }
+
+  @Benchmark
+  public Map<byte[], Long> increment() throws IOException {
+    return core.increment(getCounterRowKey(), ImmutableMap.of(COLUMN, 1L));
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Map<byte[], Long> incrementConcurrent() throws IOException {
+    return core.increment(getCounterRowKey(), ImmutableMap.of(COLUMN, 1L));
+  }
+
+  private byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%08d", row));
+  }
+
+  /**
+   * Returns a row key for the counter rows, which are disjoint from the rows used by the get and scan benchmarks.
+   */
+  private byte[] getCounterRowKey() {
+    return Bytes.toBytes(String.format("counter%04d", ThreadLocalRandom.current().nextInt(1000)));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.DatumWriter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for encoding a record with the writer generated by {@link ASMDatumWriterFactory}, compared to the
+ * {@link ReflectionDatumWriter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ASMDatumWriterFactoryBenchmark {
+
+  private static final TypeToken<Record> RECORD_TYPE = TypeToken.of(Record.class);
+
+  private DatumWriter<Record> asmWriter;
+  private DatumWriter<Record> reflectionWriter;
+  private ByteArrayOutputStream os;
+  private BinaryEncoder encoder;
+  private Record record;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(RECORD_TYPE.getType());
+    asmWriter = new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(RECORD_TYPE, schema);
+    reflectionWriter = new ReflectionDatumWriter<>(schema);
+    os = new ByteArrayOutputStream(1024);
+    encoder = new BinaryEncoder(os);
+    record = new Record("benchmark", 42, System.currentTimeMillis(),
+                        ImmutableList.of("a", "b", "c", "d"),
+                        ImmutableMap.of("k1", 1L, "k2", 2L, "k3", 3L));
+  }
+
+  @Benchmark
+  public int encodeASM() throws IOException {
+    os.reset();
+    asmWriter.encode(record, encoder);
+    return os.size();
+  }
+
+  @Benchmark
+  public int encodeReflection() throws IOException {
+    os.reset();
+    reflectionWriter.encode(record, encoder);
+    return os.size();
+  }
+
+  /**
+   * Record type being encoded.
+   */
+  public static final class Record {
+    private final String name;
+    private final int count;
+    private final long timestamp;
+    private final List<String> tags;
+    private final Map<String, Long> values;
+
+    public Record(String name, int count, long timestamp, List<String> tags, Map<String, Long> values) {
+      this.name = name;
+      this.count = count;
+      this.timestamp = timestamp;
+      this.tags = tags;
+      this.values = values;
+    }
+  }
+}
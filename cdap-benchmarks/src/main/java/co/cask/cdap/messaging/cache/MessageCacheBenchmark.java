@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.store.MessageFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmarks for {@link MessageCache}, covering the single publisher adding entries, concurrent fetchers scanning
+ * the tail of the cache, and both running at the same time as they do in the messaging service.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageCacheBenchmark {
+
+  private static final int ADD_BATCH_SIZE = 100;
+  private static final int SCAN_LIMIT = 100;
+  private static final long CACHE_HARD_LIMIT = 256L * 1024 * 1024;
+
+  @Param({ "100", "1024" })
+  private int entrySize;
+
+  private MessageCache<Long> cache;
+  private MessageFilter<Long> filter;
+  private AtomicLong nextEntry;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    cache = new MessageCache<>(new Comparator<Long>() {
+      @Override
+      public int compare(Long o1, Long o2) {
+        return Long.compare(o1, o2);
+      }
+    }, new MessageCache.Weigher<Long>() {
+      @Override
+      public int weight(Long entry) {
+        return entrySize;
+      }
+    }, new MessageCache.Limits(CACHE_HARD_LIMIT / 2, CACHE_HARD_LIMIT * 7 / 10, CACHE_HARD_LIMIT),
+                               new NoopMetricsContext());
+    filter = MessageFilter.alwaysAccept();
+    nextEntry = new AtomicLong();
+
+    // Pre-populate the cache so that scans always have entries to return
+    for (int i = 0; i < 1000; i++) {
+      add();
+    }
+  }
+
+  @Benchmark
+  @Group("add")
+  public void addOnly() {
+    add();
+  }
+
+  @Benchmark
+  @Group("scan")
+  @GroupThreads(4)
+  public void scanOnly(Blackhole blackhole) {
+    scan(blackhole);
+  }
+
+  @Benchmark
+  @Group("addAndScan")
+  @GroupThreads(1)
+  public void publisher() {
+    add();
+  }
+
+  @Benchmark
+  @Group("addAndScan")
+  @GroupThreads(4)
+  public void fetcher(Blackhole blackhole) {
+    scan(blackhole);
+  }
+
+  /**
+   * Adds a batch of entries to the cache. It must only be called from a single thread.
+   */
+  private void add() {
+    List<Long> entries = new ArrayList<>(ADD_BATCH_SIZE);
+    long start = nextEntry.get();
+    for (int i = 0; i < ADD_BATCH_SIZE; i++) {
+      entries.add(start + i);
+    }
+    cache.addAll(entries.iterator());
+    nextEntry.set(start + ADD_BATCH_SIZE);
+  }
+
+  /**
+   * Scans the most recent entries from the cache, which is the common access pattern of subscribers.
+   */
+  private void scan(Blackhole blackhole) {
+    long startEntry = Math.max(0L, nextEntry.get() - SCAN_LIMIT * 2);
+    try (MessageCache.Scanner<Long> scanner = cache.scan(startEntry, true, SCAN_LIMIT, filter)) {
+      while (scanner.hasNext()) {
+        blackhole.consume(scanner.next());
+      }
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.common.utils.TimeProvider;
+import co.cask.cdap.messaging.RollbackDetail;
+import co.cask.cdap.messaging.StoreRequest;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.client.StoreRequestBuilder;
+import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link ConcurrentMessageWriter} persisting into the LevelDB message table, both from a single
+ * publisher and from multiple concurrent publishers that get batched together by the writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentMessageWriterBenchmark {
+
+  @Param({ "100", "1024" })
+  private int payloadSize;
+
+  @Param({ "1", "20" })
+  private int payloadsPerRequest;
+
+  private File baseDir;
+  private TopicMetadata metadata;
+  private StoreRequest storeRequest;
+  private ConcurrentMessageWriter writer;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, baseDir.getAbsolutePath());
+
+    TopicId topicId = NamespaceId.SYSTEM.topic("benchmark");
+    metadata = new TopicMetadata(topicId, TopicMetadata.TTL_KEY, Integer.MAX_VALUE, TopicMetadata.GENERATION_KEY, 1);
+
+    Random random = new Random(0);
+    List<byte[]> payloads = new ArrayList<>(payloadsPerRequest);
+    for (int i = 0; i < payloadsPerRequest; i++) {
+      byte[] payload = new byte[payloadSize];
+      random.nextBytes(payload);
+      payloads.add(payload);
+    }
+    storeRequest = StoreRequestBuilder.of(topicId).addPayloads(payloads).build();
+
+    LevelDBTableFactory tableFactory = new LevelDBTableFactory(cConf);
+    writer = new ConcurrentMessageWriter(new MessageTableStoreRequestWriter(
+      tableFactory.createMessageTable(cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME)),
+      TimeProvider.SYSTEM_TIME));
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    writer.close();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public RollbackDetail persist() throws IOException {
+    return writer.persist(storeRequest, metadata);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public RollbackDetail persistConcurrent() throws IOException {
+    return writer.persist(storeRequest, metadata);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.client.StoreRequestBuilder;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.io.Files;
+import org.apache.tephra.TxConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmarks for {@link CoreMessageFetcher} reading messages stored in the LevelDB message table
+ * as well as messages stored transactionally in the payload table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CoreMessageFetcherBenchmark {
+
+  private static final int TOTAL_MESSAGES = 100000;
+  private static final int PUBLISH_BATCH_SIZE = 1000;
+
+  @Param({ "100", "1024" })
+  private int payloadSize;
+
+  @Param({ "100", "1000" })
+  private int fetchLimit;
+
+  private File baseDir;
+  private CoreMessagingService messagingService;
+  private TopicId messageTopic;
+  private TopicId payloadTopic;
+  private byte[] middleMessageId;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, baseDir.getAbsolutePath());
+    // Set max life time to a high value so that the dummy tx write pointers used for publishing are accepted
+    cConf.setLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME, 10000000000L);
+
+    messagingService = new CoreMessagingService(cConf, new LevelDBTableFactory(cConf),
+                                                new NoOpMetricsCollectionService());
+    messageTopic = NamespaceId.SYSTEM.topic("benchmark-message");
+    payloadTopic = NamespaceId.SYSTEM.topic("benchmark-payload");
+    messagingService.createTopic(new TopicMetadata(messageTopic));
+    messagingService.createTopic(new TopicMetadata(payloadTopic));
+
+    Random random = new Random(0);
+    for (int i = 0; i < TOTAL_MESSAGES; i += PUBLISH_BATCH_SIZE) {
+      List<byte[]> payloads = new ArrayList<>(PUBLISH_BATCH_SIZE);
+      for (int j = 0; j < PUBLISH_BATCH_SIZE; j++) {
+        byte[] payload = new byte[payloadSize];
+        random.nextBytes(payload);
+        payloads.add(payload);
+      }
+
+      // Non-transactional publish stores payloads in the message table
+      messagingService.publish(StoreRequestBuilder.of(messageTopic).addPayloads(payloads).build());
+
+      // Transactional publish stores payloads in the payload table and a reference entry in the message table
+      long txWritePointer = i + 1;
+      messagingService.storePayload(StoreRequestBuilder.of(payloadTopic).addPayloads(payloads)
+                                      .setTransaction(txWritePointer).build());
+      messagingService.publish(StoreRequestBuilder.of(payloadTopic).setTransaction(txWritePointer).build());
+    }
+
+    // Locate a message id in the middle of the topic for the offset based fetch
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(messageTopic)
+                                                                  .setLimit(TOTAL_MESSAGES / 2).fetch()) {
+      while (iterator.hasNext()) {
+        middleMessageId = iterator.next().getId();
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws Exception {
+    messagingService.shutDown();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public void fetchMessageTableFromStart(Blackhole blackhole) throws Exception {
+    fetch(messageTopic, null, blackhole);
+  }
+
+  @Benchmark
+  public void fetchMessageTableFromOffset(Blackhole blackhole) throws Exception {
+    fetch(messageTopic, middleMessageId, blackhole);
+  }
+
+  @Benchmark
+  public void fetchPayloadTableFromStart(Blackhole blackhole) throws Exception {
+    fetch(payloadTopic, null, blackhole);
+  }
+
+  private void fetch(TopicId topicId, @Nullable byte[] startOffset, Blackhole blackhole) throws Exception {
+    MessageFetcher fetcher = messagingService.prepareFetch(topicId).setLimit(fetchLimit);
+    if (startOffset != null) {
+      fetcher.setStartMessage(startOffset, false);
+    }
+    try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+      }
+    }
+  }
+}
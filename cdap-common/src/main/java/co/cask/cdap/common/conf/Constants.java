@@ -516,9 +516,11 @@ public final class Constants {
     public static final String TTL = "stream.event.ttl";
     public static final String PARTITION_DURATION = "stream.partition.duration";
     public static final String INDEX_INTERVAL = "stream.index.interval";
+    public static final String FILE_COMPRESSION = "stream.file.compression";
     public static final String FILE_PREFIX = "stream.file.prefix";
     public static final String INSTANCE_FILE_PREFIX = "stream.instance.file.prefix";
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
+    public static final String CONSUMER_PREFETCH_EVENTS = "stream.consumer.prefetch.events";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
@@ -530,6 +532,7 @@ public final class Constants {
     public static final String WORKER_THREADS = "stream.worker.threads";
     public static final String ASYNC_WORKER_THREADS = "stream.async.worker.threads";
     public static final String ASYNC_QUEUE_SIZE = "stream.async.queue.size";
+    public static final String GROUP_COMMIT_WINDOW_MS = "stream.group.commit.window.ms";
 
     // YARN container configurations.
     public static final String CONTAINER_VIRTUAL_CORES = "stream.container.num.cores";
@@ -663,6 +666,9 @@ public final class Constants {
     public static final String METRICS_HBASE_MAX_SCAN_THREADS = "metrics.hbase.max.scan.threads";
     public static final String METRICS_HBASE_TABLE_SPLITS = "metrics.table.splits";
     public static final String METRICS_TABLE_HBASE_SPLIT_POLICY = "metrics.table.hbase.split.policy";
+    public static final String METRICS_TABLE_INCREMENT_COMBINE_MAX_DELAY_MS =
+      "metrics.table.increment.combine.max.delay.ms";
+    public static final String METRICS_TABLE_INCREMENT_COMBINE_MAX_CELLS = "metrics.table.increment.combine.max.cells";
 
     public static final int DEFAULT_TIME_SERIES_TABLE_ROLL_TIME = 3600;
 
@@ -1366,6 +1372,8 @@ public final class Constants {
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_OFFHEAP_SIZE_MB = "messaging.cache.offheap.size.mb";
+    public static final String CACHE_OFFHEAP_TOPICS = "messaging.cache.offheap.topics";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1376,6 +1384,9 @@ public final class Constants {
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
     public static final String SYSTEM_TOPICS = "messaging.system.topics";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
+    public static final String TABLE_BLOCK_ENABLED = "messaging.table.block.enabled";
+    public static final String TABLE_BLOCK_COMPRESSION = "messaging.table.block.compression";
+    public static final String TABLE_BLOCK_MAX_SIZE_BYTES = "messaging.table.block.max.size.bytes";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
@@ -1385,6 +1396,9 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_CONSUME_ZERO_COPY = "messaging.http.server.consume.zero.copy";
+    public static final String HTTP_SERVER_CONSUME_MAX_WAIT_MS = "messaging.http.server.consume.max.wait.ms";
+    public static final String HTTP_SERVER_CONSUME_WAIT_THREADS = "messaging.http.server.consume.wait.threads";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
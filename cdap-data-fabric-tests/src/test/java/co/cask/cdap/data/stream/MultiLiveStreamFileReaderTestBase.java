@@ -185,7 +185,16 @@ public abstract class MultiLiveStreamFileReaderTestBase {
 
   @Test
   public void testOffsets() throws Exception {
-    String streamName = "offsets";
+    testOffsets("offsets", 0);
+  }
+
+  @Test
+  public void testOffsetsWithPrefetch() throws Exception {
+    // Small prefetch buffer, so that the prefetch threads are blocked by the merge most of the time
+    testOffsets("offsetsPrefetch", 3);
+  }
+
+  private void testOffsets(String streamName, int prefetchSize) throws Exception {
     StreamId streamId = NamespaceId.DEFAULT.stream(streamName);
     Location location = getLocationFactory().create(streamName);
     location.mkdirs();
@@ -210,7 +219,7 @@ public abstract class MultiLiveStreamFileReaderTestBase {
       Location eventFile = StreamUtils.createStreamLocation(partitionLocation, "bucket" + i, 0, StreamFileType.EVENT);
       sources.add(new StreamFileOffset(eventFile, 0L, 0));
     }
-    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(config, sources);
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(config, sources, prefetchSize);
 
     // Reads some events
     List<StreamEvent> events = Lists.newArrayList();
@@ -245,7 +254,7 @@ public abstract class MultiLiveStreamFileReaderTestBase {
     }
 
     // Read 750 events, in batch size of 10.
-    reader = new MultiLiveStreamFileReader(config, sources);
+    reader = new MultiLiveStreamFileReader(config, sources, prefetchSize);
     for (int i = 0; i < 75; i++) {
       Assert.assertEquals(10, reader.read(events, 10, 0, TimeUnit.SECONDS));
       Assert.assertEquals(10, events.size());
@@ -360,6 +360,66 @@ public abstract class StreamDataFileTestBase {
     }
   }
 
+  @Test
+  public void testCompressedBlocks() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    // Write 100 blocks of 10 events each, plus one block with a single event that doesn't compress
+    StreamDataFileWriter writer = new StreamDataFileWriter(
+      Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+      ImmutableMap.of(StreamDataFileConstants.Property.Key.BLOCK_CODEC,
+                      StreamDataFileConstants.Property.Value.CODEC_DEFLATE));
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(i / 10, "Testing " + i));
+    }
+    writer.append(StreamFileTestUtils.createEvent(100, "x"));
+    writer.close();
+
+    // Read all events and verify that their positions are increasing
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<PositionStreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(1001, reader.read(events, 2000, 0, TimeUnit.SECONDS));
+    reader.close();
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals(i / 10, events.get(i).getTimestamp());
+      Assert.assertEquals("Testing " + i, Charsets.UTF_8.decode(events.get(i).getBody()).toString());
+      Assert.assertTrue(events.get(i).getStart() < events.get(i + 1).getStart());
+    }
+
+    // Read each event by its position
+    for (PositionStreamEvent event : ImmutableList.copyOf(events)) {
+      reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                     Locations.newInputSupplier(indexFile), event.getStart());
+      List<PositionStreamEvent> readEvents = Lists.newArrayList();
+      Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(event.getStart(), readEvents.get(0).getStart());
+    }
+
+    // Continue reading from the position after reading some events
+    reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    events.clear();
+    Assert.assertEquals(15, reader.read(events, 15, 0, TimeUnit.SECONDS));
+    long position = reader.getPosition();
+    reader.close();
+    reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                   Locations.newInputSupplier(indexFile), position);
+    events.clear();
+    Assert.assertEquals(986, reader.read(events, 2000, 0, TimeUnit.SECONDS));
+    reader.close();
+    Assert.assertEquals("Testing 15", Charsets.UTF_8.decode(events.get(0).getBody()).toString());
+
+    // Read by time using the index
+    reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                    Locations.newInputSupplier(indexFile), 55L);
+    events.clear();
+    Assert.assertEquals(1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+    reader.close();
+    Assert.assertEquals("Testing 550", Charsets.UTF_8.decode(events.get(0).getBody()).toString());
+  }
+
   @Test
   public void testOffset() throws Exception {
     Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
@@ -208,6 +208,87 @@ public class StreamInputFormatTest {
     Assert.assertEquals(1, output.get("1").intValue());
   }
 
+  @Test
+  public void testTimeRangeSplitPruning() throws Exception {
+    // Write 1000 events in one bucket, with an index entry every 100ms
+    File inputDir = tmpFolder.newFolder();
+    generateEvents(inputDir);
+    File eventFile = new File(new File(inputDir, "1.1000"), "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+
+    Configuration conf = new Configuration();
+    AbstractStreamInputFormat.setStreamId(conf, DUMMY_ID);
+    AbstractStreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    AbstractStreamInputFormat.setTimeRange(conf, 1550, 1650);
+    AbstractStreamInputFormat.setMinSplitSize(conf, 1);
+    AbstractStreamInputFormat.setMaxSplitSize(conf, 512);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+    TestStreamInputFormat format = new TestStreamInputFormat();
+    List<InputSplit> splits = format.getSplits(context);
+
+    // Splits should only cover the part of the file between the index entries around the time range
+    long splitLength = 0;
+    for (InputSplit split : splits) {
+      Assert.assertNotEquals(Long.MAX_VALUE, split.getLength());
+      splitLength += split.getLength();
+    }
+    Assert.assertTrue(splitLength < eventFile.length() / 2);
+
+    // Reading the splits should still give all events in the time range
+    int count = 0;
+    for (InputSplit split : splits) {
+      RecordReader<LongWritable, Text> recordReader = format.createRecordReader(split, context);
+      recordReader.initialize(split, context);
+      while (recordReader.nextKeyValue()) {
+        count++;
+      }
+      recordReader.close();
+    }
+    Assert.assertEquals(100, count);
+  }
+
+  @Test
+  public void testTimeRangeUploadedFile() throws Exception {
+    // Write 1000 events like an uploaded file, which are all read with the close timestamp of the file,
+    // while the index has the earlier append times
+    File inputDir = tmpFolder.newFolder();
+    File partition = new File(inputDir, "1.1000");
+    File eventFile = new File(partition, "bucket.1.0." + StreamFileType.EVENT.getSuffix());
+    File indexFile = new File(partition, "bucket.1.0." + StreamFileType.INDEX.getSuffix());
+    partition.mkdirs();
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(
+      Files.newOutputStreamSupplier(eventFile), Files.newOutputStreamSupplier(indexFile), 100L,
+      ImmutableMap.of(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP,
+                      StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP));
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(1000 + i, "Testing " + i));
+    }
+    writer.close();
+
+    Configuration conf = new Configuration();
+    AbstractStreamInputFormat.setStreamId(conf, DUMMY_ID);
+    AbstractStreamInputFormat.setStreamPath(conf, inputDir.toURI());
+    AbstractStreamInputFormat.setTimeRange(conf, 1550, Long.MAX_VALUE);
+    AbstractStreamInputFormat.setMinSplitSize(conf, 1);
+    AbstractStreamInputFormat.setMaxSplitSize(conf, 512);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+    // All events have the close timestamp, hence all of them are in the time range
+    TestStreamInputFormat format = new TestStreamInputFormat();
+    int count = 0;
+    for (InputSplit split : format.getSplits(context)) {
+      RecordReader<LongWritable, Text> recordReader = format.createRecordReader(split, context);
+      recordReader.initialize(split, context);
+      while (recordReader.nextKeyValue()) {
+        Assert.assertEquals(writer.getCloseTimestamp(), recordReader.getCurrentKey().get());
+        count++;
+      }
+      recordReader.close();
+    }
+    Assert.assertEquals(1000, count);
+  }
+
   @Test
   public void testLiveStream() throws Exception {
     File inputDir = tmpFolder.newFolder();
@@ -137,6 +137,56 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testGroupCommitWrite() throws Exception {
+    NamespaceId namespace = new NamespaceId("namespace");
+    List<StreamId> streamIds = Lists.newArrayList(namespace.stream("testGroupCommit1"),
+                                                  namespace.stream("testGroupCommit2"));
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    int threads = Runtime.getRuntime().availableProcessors() * 4;
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    for (StreamId streamId : streamIds) {
+      streamAdmin.getConfig(streamId).getLocation().mkdirs();
+    }
+    ConcurrentStreamWriter streamWriter = new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
+                                                                     fileWriterFactory, threads,
+                                                                     new TestMetricsCollectorFactory(),
+                                                                     impersonator, 2L, null);
+
+    // Starts n threads to write events to each stream, with a group commit window of 2ms
+    final int msgPerThread = 100;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch completion = new CountDownLatch(threads * streamIds.size());
+    ExecutorService executor = Executors.newFixedThreadPool(threads * streamIds.size());
+    for (StreamId streamId : streamIds) {
+      for (int i = 0; i < threads / 2; i++) {
+        executor.execute(createWriterTask(streamId, streamWriter, i, msgPerThread, 1, startLatch, completion));
+      }
+      for (int i = threads / 2; i < threads; i++) {
+        executor.execute(createWriterTask(streamId, streamWriter, i, msgPerThread, 10, startLatch, completion));
+      }
+    }
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+
+    // Verify all events are written and committed before the writes returned, without closing the writer
+    for (StreamId streamId : streamIds) {
+      Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+      Location streamLocation = StreamUtils.createStreamLocation(partitionLocation,
+                                                                 fileWriterFactory.getFileNamePrefix(),
+                                                                 0, StreamFileType.EVENT);
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(streamLocation));
+      List<StreamEvent> events = Lists.newArrayListWithCapacity(threads * msgPerThread);
+      Assert.assertEquals(threads * msgPerThread, reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+      Assert.assertTrue(verifyEvents(threads, msgPerThread, events));
+      reader.close();
+    }
+
+    executor.shutdownNow();
+    streamWriter.close();
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
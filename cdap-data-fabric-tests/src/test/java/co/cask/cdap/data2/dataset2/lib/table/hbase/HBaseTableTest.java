@@ -362,6 +362,101 @@ public class HBaseTableTest extends BufferingTableTest<BufferingTable> {
     Assert.assertEquals("t", hcd.getNameAsString());
   }
 
+  @Test
+  public void testPipelinedWrites() throws Exception {
+    DatasetProperties props = DatasetProperties.builder().add(HBaseTable.PROPERTY_WRITE_BATCH_SIZE, "7").build();
+    String tableName = "pipelined";
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    BufferingTable table = getTable(CONTEXT1, tableName, props);
+
+    // write enough rows for several batches
+    TransactionSystemClient txClient = new DetachedTxSystemClient();
+    Transaction tx1 = txClient.startShort();
+    table.startTx(tx1);
+    for (int i = 0; i < 100; i++) {
+      table.put(new Put("row" + i).add("c1", "v" + i).add("c2", i));
+    }
+    txClient.canCommitOrThrow(tx1, table.getTxChanges());
+    Assert.assertTrue(table.commitTx());
+    txClient.commitOrThrow(tx1);
+    table.postTxCommit();
+
+    // overwrite all rows and roll back, which must undo the writes of all batches
+    Transaction tx2 = txClient.startShort();
+    table.startTx(tx2);
+    for (int i = 0; i < 100; i++) {
+      table.put(new Put("row" + i).add("c1", "x"));
+    }
+    Assert.assertTrue(table.commitTx());
+    Assert.assertTrue(table.rollbackTx());
+    txClient.abort(tx2);
+
+    Transaction tx3 = txClient.startShort();
+    table.startTx(tx3);
+    for (int i = 0; i < 100; i++) {
+      co.cask.cdap.api.dataset.table.Row row = table.get(new Get("row" + i));
+      Assert.assertEquals("v" + i, row.getString("c1"));
+      Assert.assertEquals(i, (int) row.getInt("c2"));
+    }
+    txClient.commitOrThrow(tx3);
+    table.postTxCommit();
+
+    table.close();
+    admin.drop();
+  }
+
+  @Test
+  public void testPipelinedWritesInterrupted() throws Exception {
+    DatasetProperties props = DatasetProperties.builder().add(HBaseTable.PROPERTY_WRITE_BATCH_SIZE, "7").build();
+    String tableName = "pipelinedInterrupted";
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, tableName, props);
+    admin.create();
+    BufferingTable table = getTable(CONTEXT1, tableName, props);
+
+    TransactionSystemClient txClient = new DetachedTxSystemClient();
+    Transaction tx1 = txClient.startShort();
+    table.startTx(tx1);
+    for (int i = 0; i < 100; i++) {
+      table.put(new Put("row" + i).add("c1", "v" + i));
+    }
+    txClient.canCommitOrThrow(tx1, table.getTxChanges());
+    Assert.assertTrue(table.commitTx());
+    txClient.commitOrThrow(tx1);
+    table.postTxCommit();
+
+    // interrupt the persist while batches are being written, then roll back
+    Transaction tx2 = txClient.startShort();
+    table.startTx(tx2);
+    for (int i = 0; i < 100; i++) {
+      table.put(new Put("row" + i).add("c1", "x"));
+    }
+    Thread.currentThread().interrupt();
+    try {
+      table.commitTx();
+      Assert.fail("Expected the commit to be interrupted");
+    } catch (InterruptedException e) {
+      // expected
+    } finally {
+      Thread.interrupted();
+    }
+    Assert.assertTrue(table.rollbackTx());
+    txClient.abort(tx2);
+
+    // no batch may be written after the rollback undid the writes
+    TimeUnit.MILLISECONDS.sleep(200);
+    Transaction tx3 = txClient.startShort();
+    table.startTx(tx3);
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals("v" + i, table.get(new Get("row" + i)).getString("c1"));
+    }
+    txClient.commitOrThrow(tx3);
+    table.postTxCommit();
+
+    table.close();
+    admin.drop();
+  }
+
   @Test
   public void testTableWithPermissions() throws IOException {
     DatasetAdmin admin = getTableAdmin(CONTEXT1, "validPerms", TableProperties.builder()
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.StreamDataFileConstants;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data.stream.TimePartitionedStreamFileWriter;
@@ -27,10 +28,12 @@ import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.security.impersonation.Impersonator;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.twill.filesystem.Location;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 /**
@@ -41,11 +44,20 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
 
   private final String filePrefix;
   private final Impersonator impersonator;
+  private final Map<String, String> fileProperties;
 
   @Inject
   public LocationStreamFileWriterFactory(CConfiguration cConf, Impersonator impersonator) {
     this.filePrefix = cConf.get(Constants.Stream.INSTANCE_FILE_PREFIX);
     this.impersonator = impersonator;
+
+    String codec = cConf.get(Constants.Stream.FILE_COMPRESSION, StreamDataFileConstants.Property.Value.CODEC_NONE);
+    Preconditions.checkArgument(StreamDataFileConstants.Property.Value.CODEC_NONE.equals(codec)
+                                  || StreamDataFileConstants.Property.Value.CODEC_DEFLATE.equals(codec),
+                                "Unsupported value '%s' for %s", codec, Constants.Stream.FILE_COMPRESSION);
+    this.fileProperties = StreamDataFileConstants.Property.Value.CODEC_NONE.equals(codec)
+      ? ImmutableMap.<String, String>of()
+      : ImmutableMap.of(StreamDataFileConstants.Property.Key.BLOCK_CODEC, codec);
   }
 
   @Override
@@ -70,7 +82,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
                                                  filePrefix, config.getIndexInterval(),
-                                                 config.getStreamId(), impersonator);
+                                                 config.getStreamId(), impersonator, fileProperties);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
       throw new IOException(e);
@@ -28,6 +28,9 @@ import com.google.common.collect.Sets;
 import com.google.common.primitives.Longs;
 import it.unimi.dsi.fastutil.PriorityQueue;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -35,25 +38,54 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * A {@link FileReader} that combines multiple event stream into single event stream.
+ *
+ * When created with a positive prefetch size, each source file is read and decoded by its own thread into a bounded
+ * buffer, and the merge only operates on events that are decoded already. In this mode the {@link ReadFilter} given
+ * to the read methods is applied to the decoded events, hence events rejected by the filter are still decoded.
  */
 @NotThreadSafe
 public final class MultiLiveStreamFileReader implements FileReader<StreamEventOffset, Iterable<StreamFileOffset>> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MultiLiveStreamFileReader.class);
+
   private final PriorityQueue<StreamEventSource> eventSources;
   private final Set<StreamEventSource> emptySources;
   private final Set<StreamEventSource> allSources;
   private final Iterable<StreamFileOffset> offsetsView;
+  private final ExecutorService prefetchExecutor;
 
   public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets) {
+    this(streamConfig, offsets, 0);
+  }
+
+  /**
+   * Creates a reader that prefetches events from each source.
+   *
+   * @param streamConfig configuration of the stream to read from
+   * @param offsets offsets to start reading from, one for each source
+   * @param prefetchSize maximum number of events buffered for each source; if it is {@code 0}, events are read
+   *                     by the calling thread without prefetching
+   */
+  public MultiLiveStreamFileReader(StreamConfig streamConfig, Iterable<? extends StreamFileOffset> offsets,
+                                   int prefetchSize) {
     this.allSources = Sets.newTreeSet();
+    this.prefetchExecutor = prefetchSize > 0
+      ? Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("stream-prefetch-%d")) : null;
 
     for (StreamFileOffset source : offsets) {
-      StreamEventSource eventSource = new StreamEventSource(streamConfig, source);
+      StreamEventSource eventSource = new StreamEventSource(streamConfig, source, prefetchExecutor, prefetchSize);
       allSources.add(eventSource);
     }
 
@@ -71,6 +103,7 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
   public void initialize() throws IOException {
     for (StreamEventSource source : allSources) {
       source.initialize();
+      source.startPrefetch();
     }
   }
 
@@ -152,6 +185,9 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
     for (StreamEventSource source : allSources) {
       source.close();
     }
+    if (prefetchExecutor != null) {
+      prefetchExecutor.shutdownNow();
+    }
 
     emptySources.clear();
     eventSources.clear();
@@ -162,12 +198,18 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
 
     private final FileReader<PositionStreamEvent, StreamFileOffset> reader;
     private final List<PositionStreamEvent> events;
+    private final ExecutorService prefetchExecutor;
+    private final Prefetcher prefetcher;
+    private boolean prefetchStarted;
     private StreamFileOffset currentOffset;
     private StreamFileOffset nextOffset;
 
-    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset) {
+    private StreamEventSource(StreamConfig streamConfig, StreamFileOffset beginOffset,
+                              @Nullable ExecutorService prefetchExecutor, int prefetchSize) {
       this.reader = new LiveStreamFileReader(streamConfig, beginOffset);
       this.events = Lists.newArrayListWithCapacity(1);
+      this.prefetchExecutor = prefetchExecutor;
+      this.prefetcher = prefetchExecutor == null ? null : new Prefetcher(reader, prefetchSize);
       this.currentOffset = new StreamFileOffset(beginOffset);
       this.nextOffset = beginOffset;
     }
@@ -177,6 +219,16 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
       currentOffset = reader.getPosition();
     }
 
+    /**
+     * Starts prefetching events if this source prefetches and it is not started yet.
+     */
+    void startPrefetch() {
+      if (prefetcher != null && !prefetchStarted) {
+        prefetchExecutor.execute(prefetcher);
+        prefetchStarted = true;
+      }
+    }
+
     void read(Collection<? super StreamEventOffset> result) throws IOException, InterruptedException {
       // Pop the cached event and use the event start position as the event offset being returned.
       PositionStreamEvent streamEvent = events.get(0);
@@ -203,12 +255,32 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
      * @throws InterruptedException
      */
     int prepare(ReadFilter readFilter) throws IOException, InterruptedException {
-      if (events.isEmpty()) {
+      if (!events.isEmpty()) {
+        return 1;
+      }
+      if (prefetcher == null) {
         int res = reader.read(events, 1, 0L, TimeUnit.MILLISECONDS, readFilter);
         nextOffset = reader.getPosition();
         return res;
       }
-      return 1;
+
+      // Take prefetched events until one is accepted by the filter
+      startPrefetch();
+      PrefetchedEvent prefetched = prefetcher.poll();
+      while (prefetched != null) {
+        if (prefetched.event == null) {
+          return -1;
+        }
+        nextOffset = prefetched.nextOffset;
+        readFilter.reset();
+        if (readFilter.acceptTimestamp(prefetched.event.getTimestamp())
+          && readFilter.acceptOffset(prefetched.event.getStart())) {
+          events.add(prefetched.event);
+          return 1;
+        }
+        prefetched = prefetcher.poll();
+      }
+      return 0;
     }
 
     @Override
@@ -234,6 +306,9 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
 
     @Override
     public void close() throws IOException {
+      if (prefetchStarted) {
+        prefetcher.stop();
+      }
       reader.close();
     }
 
@@ -242,4 +317,130 @@ public final class MultiLiveStreamFileReader implements FileReader<StreamEventOf
       return currentOffset;
     }
   }
+
+  /**
+   * Reads events from a {@link FileReader} into a bounded buffer, until the end of the source is reached or
+   * it is stopped. The end of the source is marked by a {@link PrefetchedEvent} without event.
+   */
+  private static final class Prefetcher implements Runnable {
+
+    // Delay before trying again when there is no new event in the source. It is doubled up to the maximum while the
+    // source stays empty, unless the merge asks for events.
+    private static final long EMPTY_DELAY_MILLIS = 10L;
+    private static final long MAX_EMPTY_DELAY_MILLIS = 1000L;
+    private static final PrefetchedEvent END_OF_SOURCE = new PrefetchedEvent(null, null);
+
+    private final FileReader<PositionStreamEvent, StreamFileOffset> reader;
+    private final BlockingQueue<PrefetchedEvent> buffer;
+    private final CountDownLatch stopped;
+    // Released to wake up the prefetch thread while it waits for new events
+    private final Semaphore readRequested;
+    private volatile boolean running;
+    private volatile boolean caughtUp;
+    private volatile Throwable failure;
+    private boolean ended;
+
+    Prefetcher(FileReader<PositionStreamEvent, StreamFileOffset> reader, int size) {
+      this.reader = reader;
+      this.buffer = new ArrayBlockingQueue<>(size);
+      this.stopped = new CountDownLatch(1);
+      this.readRequested = new Semaphore(0);
+      this.running = true;
+    }
+
+    @Override
+    public void run() {
+      List<PositionStreamEvent> events = Lists.newArrayListWithCapacity(1);
+      long emptyDelay = EMPTY_DELAY_MILLIS;
+      try {
+        while (running) {
+          // Read one event at a time, since each event needs the reader position after it
+          int res = reader.read(events, 1, 0L, TimeUnit.MILLISECONDS);
+          if (res < 0) {
+            put(END_OF_SOURCE);
+            return;
+          }
+          if (res == 0) {
+            caughtUp = true;
+            if (readRequested.tryAcquire(emptyDelay, TimeUnit.MILLISECONDS)) {
+              readRequested.drainPermits();
+            } else {
+              emptyDelay = Math.min(emptyDelay * 2, MAX_EMPTY_DELAY_MILLIS);
+            }
+            continue;
+          }
+          caughtUp = false;
+          emptyDelay = EMPTY_DELAY_MILLIS;
+          put(new PrefetchedEvent(events.get(0), reader.getPosition()));
+          events.clear();
+        }
+      } catch (Throwable t) {
+        if (running) {
+          LOG.warn("Failed to prefetch stream events", t);
+          failure = t;
+        }
+      } finally {
+        stopped.countDown();
+      }
+    }
+
+    /**
+     * Returns the next prefetched event, or {@code null} if the source has no event available. If the prefetch
+     * thread hasn't reached the last available event in the source yet, this method waits for it, so that events
+     * are merged in the same order as without prefetching. If no event is available, the prefetch thread is woken up
+     * to look for new events right away.
+     *
+     * @throws IOException if prefetching failed
+     */
+    @Nullable
+    PrefetchedEvent poll() throws IOException, InterruptedException {
+      if (ended) {
+        return END_OF_SOURCE;
+      }
+      PrefetchedEvent event = buffer.poll();
+      while (event == null && !caughtUp && failure == null) {
+        event = buffer.poll(EMPTY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      if (event == null && readRequested.availablePermits() == 0) {
+        readRequested.release();
+      }
+      if (event == null && failure != null) {
+        throw new IOException("Failed to prefetch stream events", failure);
+      }
+      ended = event == END_OF_SOURCE;
+      return event;
+    }
+
+    /**
+     * Stops prefetching and waits for the prefetch thread to stop using the reader.
+     */
+    void stop() {
+      running = false;
+      readRequested.release();
+      try {
+        stopped.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void put(PrefetchedEvent event) throws InterruptedException {
+      while (running && !buffer.offer(event, EMPTY_DELAY_MILLIS, TimeUnit.MILLISECONDS)) {
+        // Wait for the buffer to have space
+      }
+    }
+  }
+
+  /**
+   * A prefetched event together with the source position after it.
+   */
+  private static final class PrefetchedEvent {
+    private final PositionStreamEvent event;
+    private final StreamFileOffset nextOffset;
+
+    private PrefetchedEvent(@Nullable PositionStreamEvent event, @Nullable StreamFileOffset nextOffset) {
+      this.event = event;
+      this.nextOffset = nextOffset;
+    }
+  }
 }
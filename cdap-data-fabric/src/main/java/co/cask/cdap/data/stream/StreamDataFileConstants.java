@@ -25,6 +25,8 @@ public final class StreamDataFileConstants {
   static final int MAGIC_HEADER_SIZE = 2;
   static final byte[] MAGIC_HEADER_V1 = {'E', '1'};
   static final byte[] MAGIC_HEADER_V2 = {'E', '2'};
+  // Version 3 files can have compressed data blocks
+  static final byte[] MAGIC_HEADER_V3 = {'E', '3'};
 
   static final byte[] INDEX_MAGIC_HEADER_V1 = {'I', '1'};
 
@@ -45,6 +47,9 @@ public final class StreamDataFileConstants {
 
       // Key prefix for properties that will be defaulted to all events' header
       public static final String EVENT_HEADER_PREFIX = "event.";
+
+      // Key for the codec used to compress data blocks
+      public static final String BLOCK_CODEC = "stream.block.codec";
     }
 
     /**
@@ -53,6 +58,12 @@ public final class StreamDataFileConstants {
     public static final class Value {
       // Special value for Key.UNI_TIMESTAMP to indicate using the file close time timestamp for all events
       public static final String CLOSE_TIMESTAMP = "close.timestamp";
+
+      // Value for Key.BLOCK_CODEC for data blocks that are not compressed
+      public static final String CODEC_NONE = "none";
+
+      // Value for Key.BLOCK_CODEC for data blocks compressed with deflate
+      public static final String CODEC_DEFLATE = "deflate";
     }
   }
 
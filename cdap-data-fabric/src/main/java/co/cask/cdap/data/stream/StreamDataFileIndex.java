@@ -96,6 +96,22 @@ final class StreamDataFileIndex {
     return idx == -1 ? -1 : positions.getLong(-idx - 2);
   }
 
+  /**
+   * Finds the smallest event file position recorded in the index that has timestamp larger than or equal to the given
+   * timestamp.
+   *
+   * @param timestamp Stream event timestamp to search for.
+   * @return The file position or {@code -1} if every timestamp in the index is smaller than the given one.
+   */
+  long ceilingPositionByTime(long timestamp) {
+    int idx = binarySearch(timestamps, timestamp);
+    if (idx >= 0) {
+      return positions.getLong(idx);
+    }
+    idx = -idx - 1;
+    return idx < timestamps.size() ? positions.getLong(idx) : -1;
+  }
+
   /**
    * Finds the largest event file position recorded in the index that is smaller than or equal to a given offset.
    *
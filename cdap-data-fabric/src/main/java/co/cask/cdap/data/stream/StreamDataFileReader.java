@@ -299,6 +299,9 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     Map<String, String> properties = StreamUtils.decodeMap(new BinaryDecoder(eventInput));
 
     verifySchema(properties);
+    if (fileVersion >= 3) {
+      verifyCodec(properties);
+    }
 
     // Create event template
     if (fileVersion >= 2) {
@@ -323,10 +326,14 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
@@ -410,7 +417,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
           break;
         }
 
-        int len = readLength();
+        int len = Math.abs(readLength());
         position = positionBound;
 
         // Jump to next timestamp
@@ -464,11 +471,22 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     }
   }
 
+  private void verifyCodec(Map<String, String> properties) throws IOException {
+    String codec = properties.get(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    if (codec != null && !StreamDataFileConstants.Property.Value.CODEC_DEFLATE.equals(codec)
+      && !StreamDataFileConstants.Property.Value.CODEC_NONE.equals(codec)) {
+      throw new IOException("Unsupported stream block codec " + codec);
+    }
+  }
+
   private long readTimestamp() throws IOException {
     ByteStreams.readFully(eventInput, timestampBuffer);
     return Bytes.toLong(timestampBuffer);
   }
 
+  /**
+   * Reads the length of a data block, which is negative for compressed data blocks.
+   */
   private int readLength() throws IOException {
     return decoder.readInt();
   }
@@ -485,7 +503,12 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      int length = readLength();
+      if (length < 0) {
+        streamEventBuffer.fillCompressedBuffer(eventInput, -length);
+      } else {
+        streamEventBuffer.fillBuffer(eventInput, length);
+      }
       this.timestamp = timestamp;
       return;
     }
@@ -503,7 +526,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       return;
     }
 
-    int length = readLength();
+    int length = Math.abs(readLength());
     long bytesSkipped = eventInput.skip(length);
     if (bytesSkipped != length) {
       throw new EOFException("Expected to skip " + length + " but only " + bytesSkipped + " was skipped.");
@@ -15,7 +15,11 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Locations;
+import com.google.common.io.ByteStreams;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -24,6 +28,7 @@ import org.apache.hadoop.mapreduce.InputSplit;
 import java.io.IOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Helper class for computing {@link InputSplit} for a stream data file.
@@ -35,7 +40,9 @@ import java.util.List;
  * <br/><br/>
  *
  * Each split produced will also carries {@code startTime} and {@code endTime} so that only stream events within
- * the given time range will get processed.
+ * the given time range will get processed. If the event file has an index, splits only cover the part of the file
+ * that can contain events of the time range, according to the index. Files whose events all carry the timestamp
+ * set in the file header, such as uploaded files, are not pruned.
  */
 final class StreamDataFileSplitter {
 
@@ -57,8 +64,24 @@ final class StreamDataFileSplitter {
 
     BlockLocation[] blockLocations = fs.getFileBlockLocations(eventFile, 0, eventFileStatus.getLen());
 
+    // Only split the range of the file that can contain events of the time range
     long length = eventFileStatus.getLen();
     long offset = 0;
+    boolean hasTail = true;
+    if ((startTime > 0 || endTime < Long.MAX_VALUE) && fs.exists(indexFile) && !hasUniTimestamp(fs, eventFile)) {
+      StreamDataFileIndex index = new StreamDataFileIndex(Locations.newInputSupplier(fs, indexFile));
+      if (startTime > 0) {
+        // All data blocks before an index entry with a smaller timestamp only contain earlier events
+        offset = Math.min(Math.max(0L, index.floorPositionByTime(startTime - 1)), length);
+      }
+      long endPosition = endTime < Long.MAX_VALUE ? index.ceilingPositionByTime(endTime) : -1L;
+      if (endPosition >= 0) {
+        // All data blocks after an index entry with a timestamp not smaller than the end time only contain later
+        // events, which also holds for events appended after the file status was fetched
+        length = Math.min(endPosition, length);
+        hasTail = false;
+      }
+    }
     int blockIndex = 0;
 
     while (offset < length) {
@@ -70,13 +93,27 @@ final class StreamDataFileSplitter {
         blockIndex = 0;
       }
 
-      long splitSize = computeSplitSize(eventFileStatus, offset, minSplitSize, maxSplitSize);
+      long splitSize = computeSplitSize(eventFileStatus, length, offset, minSplitSize, maxSplitSize);
       splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, splitSize, hosts));
       offset += splitSize;
     }
 
     // One extra split for the tail of the file.
-    splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    if (hasTail) {
+      splits.add(splitFactory.createSplit(eventFile, indexFile, startTime, endTime, offset, Long.MAX_VALUE, null));
+    }
+  }
+
+  /**
+   * Returns {@code true} if all events in the given event file are read with the timestamp set in the file header.
+   * The index of such a file holds the timestamps the events were appended with, hence cannot be used for pruning.
+   */
+  private boolean hasUniTimestamp(FileSystem fs, Path eventFile) throws IOException {
+    try (FSDataInputStream input = fs.open(eventFile)) {
+      ByteStreams.skipFully(input, StreamDataFileConstants.MAGIC_HEADER_SIZE);
+      Map<String, String> properties = StreamUtils.decodeMap(new BinaryDecoder(input));
+      return properties.containsKey(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP);
+    }
   }
 
   /**
@@ -108,15 +145,17 @@ final class StreamDataFileSplitter {
    * offset and file length is smaller than min split size.
    *
    * @param fileStatus The FileStatus of the file to split on.
+   * @param length The end offset of the range of the file to split.
    * @param offset Starting offset for the split.
    * @param minSplitSize Minimum size for the split.
    * @param maxSplitSize Maximum size for the split.
    * @return
    */
-  private long computeSplitSize(FileStatus fileStatus, long offset, long minSplitSize, long maxSplitSize) {
+  private long computeSplitSize(FileStatus fileStatus, long length, long offset,
+                                long minSplitSize, long maxSplitSize) {
     long blockSize = fileStatus.getBlockSize();
     long splitSize = Math.max(minSplitSize, Math.min(maxSplitSize, blockSize));
-    return Math.min(splitSize, fileStatus.getLen() - offset);
+    return Math.min(splitSize, length - offset);
   }
 
   private Path getIndexFile(Path eventFile) {
@@ -32,11 +32,14 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -48,7 +51,7 @@ import javax.annotation.concurrent.NotThreadSafe;
  * {@code
  *
  * event_file = <header> <data>* <end_marker>
- * header = "E" "1" <properties>
+ * header = "E" "2" <properties>
  * properties = Avro encoded with the properties schema
  * data = <timestamp> <length> <stream_event>+
  * timestamp = 8 bytes int64 for timestamp in milliseconds
@@ -59,6 +62,32 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * If the {@link StreamDataFileConstants.Property.Key#BLOCK_CODEC} property is set to
+ * {@link StreamDataFileConstants.Property.Value#CODEC_DEFLATE}, the header is "E" "3", and data blocks
+ * may be compressed:
+ *
+ * <pre>
+ * {@code
+ *
+ * data = <timestamp> <length> <stream_event>+ | <timestamp> <compressed_length> <compressed_data>
+ * compressed_length = Avro encoded int32 with value == -(size in bytes of <compressed_data>)
+ * compressed_data = <event_count> <uncompressed_length> <deflated_stream_events>
+ * event_count = Avro encoded int32 for the number of <stream_event>s in the block
+ * uncompressed_length = Avro encoded int32 for size in bytes for all <stream_event>s
+ * deflated_stream_events = all <stream_event>s of the block compressed with deflate
+ *
+ * }
+ * </pre>
+ *
+ * Events in a compressed block don't have a file offset of their own. The {@code i}th of {@code n} events is
+ * assigned the position {@code start + i * size / n}, where {@code start} and {@code size} are the offset and the
+ * size of the {@code <compressed_data>}. A block is only compressed if that reduces its size and if it has no
+ * more events than bytes, so that positions of events are distinct and increasing as in uncompressed blocks.
+ *
+ * Version 3 only changes how data blocks are encoded. Events are still stored whole rather than by column, and
+ * there are no block statistics other than the block timestamp, which the index and readers already use to skip
+ * blocks by time. Hence readers cannot skip blocks or decode only some fields of the events.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,6 +113,13 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final boolean compressBlocks;
+  private final ExposedByteArrayOutputStream blockBuffer;
+  private final ExposedByteArrayOutputStream compressedBuffer;
+  private final Deflater deflater;
+
+  // Number of events in the current block
+  private int blockEvents;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -127,6 +163,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     this.currentTimestamp = -1L;
     this.closeTimestamp = -1L;
 
+    String codec = properties.get(StreamDataFileConstants.Property.Key.BLOCK_CODEC);
+    this.compressBlocks = StreamDataFileConstants.Property.Value.CODEC_DEFLATE.equals(codec);
+    if (!compressBlocks && codec != null && !StreamDataFileConstants.Property.Value.CODEC_NONE.equals(codec)) {
+      Closeables.closeQuietly(eventOutput);
+      Closeables.closeQuietly(indexOutput);
+      throw new IllegalArgumentException("Unsupported stream block codec " + codec);
+    }
+    this.blockBuffer = compressBlocks ? new ExposedByteArrayOutputStream(BUFFER_SIZE) : null;
+    this.compressedBuffer = compressBlocks ? new ExposedByteArrayOutputStream(BUFFER_SIZE) : null;
+    this.deflater = compressBlocks ? new Deflater(Deflater.DEFAULT_COMPRESSION) : null;
+
     Function<OutputStream, Encoder> encoderFactory = createEncoderFactory();
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
@@ -175,6 +222,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       eventOutput.write(Longs.toByteArray(-closeTimestamp));
     } finally {
       closed = true;
+      if (deflater != null) {
+        deflater.end();
+      }
       try {
         eventOutput.close();
       } finally {
@@ -222,6 +272,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -235,7 +286,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+    encoder.writeRaw(compressBlocks ? StreamDataFileConstants.MAGIC_HEADER_V3
+                                    : StreamDataFileConstants.MAGIC_HEADER_V2);
 
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
@@ -278,16 +330,20 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
-
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
+    if (compressBlocks) {
+      writeCompressedBlock();
+    } else {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    }
     if (sync) {
       sync(eventOutput);
     }
@@ -307,9 +363,41 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
     // Reset the current timestamp so that a data block will start.
     currentTimestamp = -1L;
+    blockEvents = 0;
     synced = sync;
   }
 
+  /**
+   * Writes the encoded events in the buffer as a compressed block, or as a regular block if compression
+   * doesn't reduce the size of the block.
+   */
+  private void writeCompressedBlock() throws IOException {
+    int uncompressedSize = encoder.size();
+    blockBuffer.reset();
+    encoder.writeTo(blockBuffer);
+
+    lengthEncoder.writeInt(blockEvents);
+    lengthEncoder.writeInt(uncompressedSize);
+    compressedBuffer.reset();
+    lengthEncoder.writeTo(compressedBuffer);
+
+    deflater.reset();
+    DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(compressedBuffer, deflater, BUFFER_SIZE);
+    deflaterOutput.write(blockBuffer.getBuffer(), 0, blockBuffer.size());
+    deflaterOutput.finish();
+
+    int compressedSize = compressedBuffer.size();
+    boolean compressed = compressedSize < uncompressedSize && compressedSize >= blockEvents;
+    ExposedByteArrayOutputStream block = compressed ? compressedBuffer : blockBuffer;
+
+    lengthEncoder.writeInt(compressed ? -compressedSize : uncompressedSize);
+    position += lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+
+    eventOutput.write(block.getBuffer(), 0, block.size());
+    position += block.size();
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -329,6 +417,20 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     throw ex;
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} that gives access to its buffer without copying.
+   */
+  private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+    ExposedByteArrayOutputStream(int size) {
+      super(size);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
   private static Function<OutputStream, Encoder> createEncoderFactory() {
     return new Function<OutputStream, Encoder>() {
       @Override
@@ -24,10 +24,13 @@ import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.common.io.ByteBufferInputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -40,14 +43,26 @@ final class StreamEventBuffer {
   private final ByteBufferInputStream bufferInput;
   private final Decoder decoder;
 
+  private final Inflater inflater;
+
   private ByteBuffer buffer;
   private long basePosition;
+  private byte[] compressedBuffer;
+
+  // For compressed blocks, the size of the block in the file, the number of events and the index of the next event
+  // in the block. The event count is -1 for uncompressed blocks.
+  private int blockSize;
+  private int eventCount;
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
+    this.inflater = new Inflater();
+    this.compressedBuffer = new byte[0];
     this.basePosition = -1L;
+    this.eventCount = -1;
   }
 
   /**
@@ -61,19 +76,69 @@ final class StreamEventBuffer {
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
     buffer.clear();
     buffer = ensureCapacity(buffer, size);
+    eventCount = -1;
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      readFully(input, buffer.array(), size);
+      buffer.limit(size);
+      bufferInput.reset(buffer);
+    } catch (IOException e) {
+      // Make the buffer has nothing to read
+      buffer.position(buffer.limit());
+      basePosition = -1L;
+      throw e;
+    }
+  }
+
+  /**
+   * Fills the internal buffer by reading a compressed data block from the given input stream and decompressing it.
+   *
+   * @param input input stream to read from
+   * @param size number of bytes of the compressed block
+   * @throws IOException if failed to read from the stream or to decompress the block
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillCompressedBuffer(SeekableInputStream input, int size) throws IOException {
+    buffer.clear();
+    if (compressedBuffer.length < size) {
+      compressedBuffer = new byte[size];
+    }
+
+    try {
+      basePosition = input.getPos();
+      readFully(input, compressedBuffer, size);
+
+      // The block starts with the number of events and the uncompressed size
+      ByteArrayInputStream blockInput = new ByteArrayInputStream(compressedBuffer, 0, size);
+      BinaryDecoder blockDecoder = new BinaryDecoder(blockInput);
+      int count = blockDecoder.readInt();
+      int uncompressedSize = blockDecoder.readInt();
+      int offset = size - blockInput.available();
+
+      buffer = ensureCapacity(buffer, uncompressedSize);
+      inflater.reset();
+      inflater.setInput(compressedBuffer, offset, size - offset);
+      int inflated = 0;
+      while (inflated < uncompressedSize && !inflater.finished()) {
+        int len = inflater.inflate(buffer.array(), inflated, uncompressedSize - inflated);
+        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
         }
-        bytesRead += len;
+        inflated += len;
       }
-      buffer.limit(size);
+      if (inflated != uncompressedSize || count <= 0 || count > size) {
+        throw new IOException("Corrupted compressed stream data block at position " + basePosition);
+      }
+      buffer.limit(uncompressedSize);
       bufferInput.reset(buffer);
+      blockSize = size;
+      eventCount = count;
+      eventIndex = 0;
+    } catch (DataFormatException e) {
+      buffer.position(buffer.limit());
+      basePosition = -1L;
+      throw new IOException("Failed to decompress stream data block", e);
     } catch (IOException e) {
       // Make the buffer has nothing to read
       buffer.position(buffer.limit());
@@ -94,7 +159,14 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (eventCount < 0) {
+      return basePosition + buffer.position();
+    }
+    // Positions of events in a compressed block are spread evenly over the block
+    return basePosition + (long) eventIndex * blockSize / eventCount;
   }
 
   /**
@@ -102,7 +174,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return basePosition + (eventCount < 0 ? buffer.limit() : blockSize);
   }
 
   /**
@@ -120,7 +195,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +204,17 @@ final class StreamEventBuffer {
     return null;
   }
 
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
@@ -16,6 +16,7 @@
 package co.cask.cdap.data.stream.service;
 
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.data.file.FileWriter;
@@ -37,7 +38,6 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
-import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.AbstractScheduledService;
 import com.google.common.util.concurrent.Service;
 import io.netty.buffer.ByteBuf;
@@ -50,6 +50,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
@@ -66,6 +67,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -92,6 +94,10 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * When a group commit window is set, step 5 and 6 are deferred to a single committer thread. At the end of each
+ * window, it flushes every stream file written during the window once and then sets the state of all the
+ * StreamEventData written to them to COMPLETED, so that many concurrent writes share a single sync of the file.
+ * Threads that wrote their StreamEventData wait for the commit instead of spinning.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
@@ -108,10 +114,27 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final List<Cancellable> cancellables;
   private final Lock createLock;
   private final Service eventQueueRefreshService;
+  private final GroupCommitter groupCommitter;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, metricsCollectorFactory, impersonator,
+         0L, null);
+  }
+
+  /**
+   * Creates a writer that commits writes in windows of the given length.
+   *
+   * @param groupCommitWindowMillis length of the group commit window in milliseconds; if it is {@code 0}, every
+   *                                batch of writes is flushed immediately
+   * @param groupCommitMetrics the {@link MetricsContext} for emitting group commit metrics, or {@code null} to not
+   *                           emit them
+   */
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads,
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator,
+                         long groupCommitWindowMillis, @Nullable MetricsContext groupCommitMetrics) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
@@ -122,6 +145,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
     this.eventQueueRefreshService = scheduleWriterRefresh();
+    this.groupCommitter = groupCommitWindowMillis > 0
+      ? new GroupCommitter(groupCommitWindowMillis, groupCommitMetrics) : null;
   }
 
   private Service scheduleWriterRefresh() {
@@ -260,6 +285,10 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
 
     eventQueueRefreshService.stopAndWait();
+
+    if (groupCommitter != null) {
+      groupCommitter.close();
+    }
   }
 
   private EventQueue getEventQueue(StreamId streamId) throws IOException, NotFoundException {
@@ -311,6 +340,9 @@ public final class ConcurrentStreamWriter implements Closeable {
     while (!request.isCompleted()) {
       if (!eventQueue.tryWrite()) {
         Thread.yield();
+      } else if (groupCommitter != null) {
+        // The request has been written, either by this thread or by the previous writer leader
+        groupCommitter.awaitCommit(request);
       }
     }
     if (!request.isSuccess()) {
@@ -451,6 +483,10 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final WriteRequest.Metrics metrics;
     private final MutableStreamEvent streamEvent;
     private final Function<StreamEventData, StreamEvent> eventTransformer;
+    private final AtomicBoolean commitScheduled;
+    // Requests written to the file writer but not yet flushed. Only used with group commit.
+    private final List<WriteRequest> uncommitted;
+    private long uncommittedSince;
     private FileWriter<StreamEventData> fileWriter;
     private boolean closed;
 
@@ -461,6 +497,8 @@ public final class ConcurrentStreamWriter implements Closeable {
       this.writerFlag = new AtomicBoolean(false);
       this.metrics = new WriteRequest.Metrics();
       this.metricsCollector = metricsCollector;
+      this.commitScheduled = new AtomicBoolean(false);
+      this.uncommitted = Lists.newArrayList();
       this.eventTransformer = new Function<StreamEventData, StreamEvent>() {
         @Override
         public StreamEvent apply(StreamEventData data) {
@@ -519,7 +557,13 @@ public final class ConcurrentStreamWriter implements Closeable {
           throw new IOException("Stream writer already closed");
         }
         if (fileWriter != null) {
-          fileWriter.close();
+          try {
+            fileWriter.close();
+            completeUncommitted(null);
+          } catch (IOException e) {
+            completeUncommitted(e);
+            throw e;
+          }
           fileWriter = null;
         }
         timestampCloseable.close();
@@ -555,21 +599,34 @@ public final class ConcurrentStreamWriter implements Closeable {
         try {
           FileWriter<StreamEventData> writer = getFileWriter();
           WriteRequest request = queue.poll();
-          streamEvent.setTimestamp(System.currentTimeMillis());
+          long timestamp = System.currentTimeMillis();
+          streamEvent.setTimestamp(timestamp);
           while (request != null) {
             processQueue.add(request);
             request.write(writer, metrics);
             request = queue.poll();
           }
-          writer.flush();
-          for (WriteRequest processed : processQueue) {
-            processed.completed(null);
+          if (groupCommitter == null) {
+            writer.flush();
+            for (WriteRequest processed : processQueue) {
+              processed.completed(null);
+            }
+          } else if (!processQueue.isEmpty()) {
+            // Leave the flush and completion to the group committer
+            if (uncommitted.isEmpty()) {
+              uncommittedSince = timestamp;
+            }
+            uncommitted.addAll(processQueue);
+            if (commitScheduled.compareAndSet(false, true)) {
+              groupCommitter.schedule(this);
+            }
           }
           bytesWritten = metrics.bytesWritten;
           eventsWritten = metrics.eventsWritten;
         } catch (Throwable t) {
           // On exception, remove this EventQueue from the map and close this event queue
           eventQueues.remove(streamId, this);
+          completeUncommitted(t);
           doClose();
 
           for (WriteRequest processed : processQueue) {
@@ -584,6 +641,36 @@ public final class ConcurrentStreamWriter implements Closeable {
       return true;
     }
 
+    /**
+     * Flushes the events written since the last commit and completes the requests that contain them. This method
+     * blocks until it becomes the writer leader. It is only called by the {@link GroupCommitter}.
+     *
+     * @param window for recording the requests committed in the current window
+     */
+    void commit(GroupCommitter.Window window) {
+      // Reset the flag first, so that writes that happen during the commit will schedule another one
+      commitScheduled.set(false);
+      while (!writerFlag.compareAndSet(false, true)) {
+        Thread.yield();
+      }
+      try {
+        if (uncommitted.isEmpty()) {
+          return;
+        }
+        window.add(uncommitted.size(), uncommittedSince);
+        try {
+          fileWriter.flush();
+          completeUncommitted(null);
+        } catch (Throwable t) {
+          eventQueues.remove(streamId, this);
+          completeUncommitted(t);
+          doClose();
+        }
+      } finally {
+        writerFlag.set(false);
+      }
+    }
+
     /**
      * Attempts to refresh the underlying FileWriter, if it is {@link Refreshable}.
      */
@@ -639,7 +726,14 @@ public final class ConcurrentStreamWriter implements Closeable {
 
     private void doClose() {
       if (fileWriter != null) {
-        Closeables.closeQuietly(fileWriter);
+        // Closing the writer also flushes the events that are not committed yet
+        try {
+          fileWriter.close();
+          completeUncommitted(null);
+        } catch (IOException e) {
+          LOG.warn("Failed to close stream writer for {}", streamId, e);
+          completeUncommitted(e);
+        }
       }
 
       // Drain the queue with failure. This could happen when
@@ -654,6 +748,16 @@ public final class ConcurrentStreamWriter implements Closeable {
       closed = true;
     }
 
+    /**
+     * Completes all requests that are not committed yet. This method should only be called from the writer leader
+     * thread.
+     */
+    private void completeUncommitted(@Nullable Throwable failure) {
+      for (WriteRequest request : uncommitted) {
+        request.completed(failure);
+      }
+      uncommitted.clear();
+    }
 
     /**
      * Creates a {@link FileWriter} that writes to the given {@link FileWriter} with each event transformed by the
@@ -708,6 +812,125 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
   }
 
+  /**
+   * Commits the events written to all streams in fixed time windows, with one flush per stream file and window.
+   */
+  private static final class GroupCommitter implements Closeable {
+
+    private final long windowMillis;
+    private final MetricsContext metricsContext;
+    private final Queue<EventQueue> pending;
+    private final Object commitLock;
+    private final Thread commitThread;
+    private volatile boolean running;
+
+    GroupCommitter(long windowMillis, @Nullable MetricsContext metricsContext) {
+      this.windowMillis = windowMillis;
+      this.metricsContext = metricsContext;
+      this.pending = new ConcurrentLinkedQueue<>();
+      this.commitLock = new Object();
+      this.running = true;
+      this.commitThread = Threads.createDaemonThreadFactory("stream-group-commit").newThread(new Runnable() {
+        @Override
+        public void run() {
+          runCommits();
+        }
+      });
+      this.commitThread.start();
+    }
+
+    /**
+     * Schedules the given {@link EventQueue} to be committed at the end of the current window.
+     */
+    void schedule(EventQueue eventQueue) {
+      pending.add(eventQueue);
+    }
+
+    /**
+     * Waits for the given request to be completed, for at most one window.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    void awaitCommit(WriteRequest request) throws InterruptedIOException {
+      synchronized (commitLock) {
+        if (!request.isCompleted()) {
+          try {
+            commitLock.wait(windowMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for stream events to be committed");
+          }
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      running = false;
+      commitThread.interrupt();
+      try {
+        commitThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void runCommits() {
+      long windowEnd = System.currentTimeMillis() + windowMillis;
+      while (running) {
+        try {
+          TimeUnit.MILLISECONDS.sleep(Math.max(0L, windowEnd - System.currentTimeMillis()));
+        } catch (InterruptedException e) {
+          // Interrupted by close
+          break;
+        }
+        windowEnd += windowMillis;
+        commitPending();
+      }
+      commitPending();
+    }
+
+    private void commitPending() {
+      Window window = new Window();
+      EventQueue eventQueue = pending.poll();
+      while (eventQueue != null) {
+        try {
+          eventQueue.commit(window);
+        } catch (Throwable t) {
+          LOG.error("Failed to commit stream events.", t);
+        }
+        eventQueue = pending.poll();
+      }
+
+      // Wake up all threads waiting for their requests to complete
+      synchronized (commitLock) {
+        commitLock.notifyAll();
+      }
+
+      // Metrics system doesn't support histograms yet, hence emitting the window latency and size as gauges
+      if (metricsContext != null && window.requests > 0) {
+        metricsContext.gauge("collect.commit.latency.ms", System.currentTimeMillis() - window.oldestWriteTime);
+        metricsContext.gauge("collect.commit.requests", window.requests);
+        metricsContext.increment("collect.commit.flushes", window.flushes);
+      }
+    }
+
+    /**
+     * A simple POJO for carrying information about the requests committed in a window.
+     */
+    static final class Window {
+      int flushes;
+      int requests;
+      long oldestWriteTime = Long.MAX_VALUE;
+
+      void add(int requests, long writeTime) {
+        flushes++;
+        this.requests += requests;
+        oldestWriteTime = Math.min(oldestWriteTime, writeTime);
+      }
+    }
+  }
+
   /**
    * Represents an active write request.
    */
@@ -32,8 +32,10 @@ import co.cask.cdap.common.security.AuditPolicy;
 import co.cask.cdap.common.security.AuthEnforce;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
+import co.cask.cdap.data.stream.service.upload.BufferedContentWriterFactory;
 import co.cask.cdap.data.stream.service.upload.ContentWriterFactory;
 import co.cask.cdap.data.stream.service.upload.LengthBasedContentWriterFactory;
+import co.cask.cdap.data.stream.service.upload.LengthPrefixedStreamBodyConsumer;
 import co.cask.cdap.data.stream.service.upload.StreamBodyConsumerFactory;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -145,7 +147,9 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
-                                                   metricsCollectorFactory, impersonator);
+                                                   metricsCollectorFactory, impersonator,
+                                                   cConf.getLong(Constants.Stream.GROUP_COMMIT_WINDOW_MS, 0L),
+                                                   streamHandlerMetricsContext);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
   }
@@ -285,6 +289,18 @@ public final class StreamHandler extends AbstractHttpHandler {
     }
   }
 
+  @POST
+  @Path("/{stream}/ingest")
+  @AuthEnforce(entities = {"namespace-id", "stream"}, enforceOn = StreamId.class, actions = Action.WRITE)
+  public BodyConsumer ingest(HttpRequest request, HttpResponder responder,
+                             @PathParam("namespace-id") String namespaceId,
+                             @PathParam("stream") String stream) throws Exception {
+    StreamId streamId = validateAndGetStreamId(namespaceId, stream);
+    checkStreamExists(streamId);
+    return new LengthPrefixedStreamBodyConsumer(
+      new BufferedContentWriterFactory(streamId, streamWriter, getHeaders(request, stream)));
+  }
+
   @POST
   @Path("/{stream}/truncate")
   public void truncate(HttpRequest request, HttpResponder responder,
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import co.cask.http.HttpResponder;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link BodyConsumer} for consuming a continuous stream of length prefixed events. Each event in the request body
+ * is a 4 bytes big-endian body length, followed by the event body. The events contained in each chunk of the body
+ * are written with a new {@link ContentWriter}, which is closed before the next chunk is consumed. With a
+ * {@link BufferedContentWriterFactory}, a producer can therefore keep one request open and send events continuously,
+ * instead of sending one request per event or per batch.
+ */
+@NotThreadSafe
+public final class LengthPrefixedStreamBodyConsumer extends BodyConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LengthPrefixedStreamBodyConsumer.class);
+
+  /**
+   * Maximum size of a single event body.
+   */
+  public static final int MAX_EVENT_SIZE = 64 * 1024 * 1024;
+
+  private final StreamId streamId;
+  private final ContentWriterFactory contentWriterFactory;
+  private ByteBuf buffer = Unpooled.EMPTY_BUFFER;
+  private boolean failed;
+
+  public LengthPrefixedStreamBodyConsumer(ContentWriterFactory contentWriterFactory) {
+    this.streamId = contentWriterFactory.getStream();
+    this.contentWriterFactory = contentWriterFactory;
+  }
+
+  @Override
+  public void chunk(ByteBuf chunk, HttpResponder responder) {
+    if (failed) {
+      return;
+    }
+
+    try {
+      if (buffer.isReadable()) {
+        // Complete the event that was started by the previous chunks
+        fillBuffer(chunk);
+        if (buffer.readableBytes() < 4 || buffer.isWritable()) {
+          return;
+        }
+        processChunk(buffer);
+        buffer = Unpooled.EMPTY_BUFFER;
+      }
+      processChunk(chunk);
+      if (chunk.isReadable()) {
+        buffer = Unpooled.buffer(4);
+        fillBuffer(chunk);
+      }
+    } catch (IllegalArgumentException e) {
+      failed = true;
+      LOG.debug("Invalid event in upload to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+      throw e;
+    } catch (Exception e) {
+      failed = true;
+      LOG.error("Failed to write upload content to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to write uploaded content");
+
+      // Propagate the exception so that the netty http service will terminate the handling
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public void finished(HttpResponder responder) {
+    if (buffer.isReadable()) {
+      // All complete events have been written already
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, "Incomplete event at the end of the request body");
+      return;
+    }
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
+
+  @Override
+  public void handleError(Throwable cause) {
+    // Nothing other than log
+    LOG.warn("Failed to handle upload to stream {}", streamId, cause);
+  }
+
+  /**
+   * Writes all complete events in the given buffer to the stream. The buffer reader index is moved to the beginning
+   * of the first incomplete event.
+   *
+   * @throws IllegalArgumentException if an event has an invalid length
+   */
+  private void processChunk(final ByteBuf chunk) throws IOException {
+    // Validate the lengths before writing, so that the writer never sees an invalid event
+    final int events = countEvents(chunk);
+    if (events == 0) {
+      return;
+    }
+    ContentWriter writer = contentWriterFactory.create(ImmutableMap.<String, String>of());
+    try {
+      // The bodies are immutable, since the writer is closed before the chunk is released
+      writer.appendAll(new AbstractIterator<ByteBuffer>() {
+        private int count;
+
+        @Override
+        protected ByteBuffer computeNext() {
+          if (count == events) {
+            return endOfData();
+          }
+          count++;
+          int length = chunk.readInt();
+          return chunk.readSlice(length).nioBuffer();
+        }
+      }, true);
+    } catch (IOException | RuntimeException e) {
+      writer.cancel();
+      throw e;
+    }
+    writer.close();
+  }
+
+  /**
+   * Copies bytes of the given chunk into the buffer of the incomplete event, up to the end of that event. Once the
+   * length prefix is known, the buffer is sized to hold the whole event, so that each byte is copied only once.
+   *
+   * @throws IllegalArgumentException if the event has an invalid length
+   */
+  private void fillBuffer(ByteBuf chunk) {
+    if (buffer.readableBytes() < 4) {
+      chunk.readBytes(buffer, Math.min(4 - buffer.readableBytes(), chunk.readableBytes()));
+      if (buffer.readableBytes() < 4) {
+        return;
+      }
+      ByteBuf eventBuffer = Unpooled.buffer(4 + getLength(buffer, buffer.readerIndex()));
+      eventBuffer.writeBytes(buffer);
+      buffer = eventBuffer;
+    }
+    chunk.readBytes(buffer, Math.min(buffer.writableBytes(), chunk.readableBytes()));
+  }
+
+  /**
+   * Returns the number of complete events in the given buffer, without changing the reader index.
+   */
+  private int countEvents(ByteBuf chunk) {
+    int events = 0;
+    int offset = chunk.readerIndex();
+    while (chunk.writerIndex() - offset >= 4) {
+      int length = getLength(chunk, offset);
+      if (chunk.writerIndex() - offset - 4 < length) {
+        break;
+      }
+      offset += 4 + length;
+      events++;
+    }
+    return events;
+  }
+
+  /**
+   * Returns the event length at the given index of the buffer.
+   *
+   * @throws IllegalArgumentException if the length is invalid
+   */
+  private int getLength(ByteBuf buf, int index) {
+    int length = buf.getInt(index);
+    if (length < 0 || length > MAX_EVENT_SIZE) {
+      throw new IllegalArgumentException("Invalid event length " + length + ". Event length must be between 0 and "
+                                           + MAX_EVENT_SIZE + ".");
+    }
+    return length;
+  }
+}
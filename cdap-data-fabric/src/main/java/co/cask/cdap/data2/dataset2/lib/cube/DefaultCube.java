@@ -44,6 +44,7 @@ import com.google.common.collect.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
@@ -57,7 +58,7 @@ import javax.annotation.Nullable;
 /**
  * Default implementation of {@link co.cask.cdap.api.dataset.lib.cube.Cube}.
  */
-public class DefaultCube implements Cube, MeteredDataset {
+public class DefaultCube implements Cube, MeteredDataset, Flushable {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCube.class);
 
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
@@ -437,6 +438,34 @@ public class DefaultCube implements Cube, MeteredDataset {
     add(cubeFact);
   }
 
+  @Override
+  public void flush() throws IOException {
+    for (FactTable factTable : resolutionToFactTable.values()) {
+      factTable.flush();
+    }
+  }
+
+  /**
+   * Marks all facts added up to now with the given checkpoint. Checkpoints must be increasing.
+   */
+  public void checkpoint(long checkpoint) {
+    for (FactTable factTable : resolutionToFactTable.values()) {
+      factTable.checkpoint(checkpoint);
+    }
+  }
+
+  /**
+   * Returns the latest checkpoint of which all preceding facts were written to all resolution tables,
+   * or {@code -1} if there is none.
+   */
+  public long getFlushedCheckpoint() {
+    long flushedCheckpoint = Long.MAX_VALUE;
+    for (FactTable factTable : resolutionToFactTable.values()) {
+      flushedCheckpoint = Math.min(flushedCheckpoint, factTable.getFlushedCheckpoint());
+    }
+    return flushedCheckpoint;
+  }
+
   @Override
   public void close() throws IOException {
     for (FactTable factTable : resolutionToFactTable.values()) {
@@ -37,6 +37,7 @@ import co.cask.cdap.common.conf.Constants;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
@@ -53,6 +54,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
@@ -86,6 +88,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   protected static final byte[] DELETE_MARKER = new byte[0];
 
+  /**
+   * Property to enable a read cache of persisted data that is shared across transactions, with the value being
+   * the maximum number of cells and rows cached. Reads through the cache are consistent with transaction isolation
+   * for writes from this process, but writes from other processes and non-transactional changes such as truncating
+   * the table are not reflected until the cached rows are written or evicted.
+   */
+  public static final String PROPERTY_READ_CACHE_SIZE = "dataset.table.read.cache.size";
+
+  // Number of cells buffered in a transaction after which puts are appended to the compact buffer
+  private static final int COMPACT_BUFFER_THRESHOLD = 1000;
+
+  // Maximum number of rows read ahead for each range of a parallel scan
+  private static final int PARALLEL_SCAN_PREFETCH = 1000;
+
   // name of the table
   private final String name;
   // conflict detection level
@@ -99,9 +115,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // that the corresponded column was removed.
   private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
 
+  // Append-only buffer for puts of write heavy transactions. Puts in it are always newer than the ones in buff.
+  private final CompactPutBuffer compactBuff = new CompactPutBuffer();
+
+  // Number of cells written to buff in the current transaction
+  private int bufferedCells;
+
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
 
+  // Shared cache for persisted reads, null if not enabled
+  private final TableReadCache readCache;
+  // Snapshot of the current transaction for looking up the read cache
+  private TableReadCache.Snapshot readCacheSnapshot;
+
   // Report data ops metrics to
   private MetricsCollector metricsCollector;
 
@@ -151,6 +178,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
     this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+
+    String readCacheSize = properties.get(PROPERTY_READ_CACHE_SIZE);
+    int cacheSize = readCacheSize == null ? 0 : Integer.parseInt(readCacheSize);
+    Preconditions.checkArgument(cacheSize >= 0, "Invalid value for %s: %s", PROPERTY_READ_CACHE_SIZE, cacheSize);
+    this.readCache = cacheSize > 0 ? TableReadCache.get(name, cacheSize) : null;
   }
 
   /**
@@ -261,6 +293,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void close() throws IOException {
     // releasing resources
     buff = null;
+    compactBuff.clear();
     toUndo = null;
   }
 
@@ -272,9 +305,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       throw new IllegalStateException(msg);
     }
     // starting with fresh buffer when tx starts
-    buff.clear();
+    clearBuffer();
     toUndo = null;
     this.tx = tx;
+    this.readCacheSnapshot = readCache == null ? null : TableReadCache.Snapshot.of(tx);
   }
 
   @Override
@@ -308,16 +342,27 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
+    final List<byte[]> changes = new ArrayList<>(buff.size());
     for (byte[] changedRow : buff.keySet()) {
       changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
     }
+    compactBuff.forEachCell(new CompactPutBuffer.CellConsumer() {
+      private byte[] lastRow;
+
+      @Override
+      public void accept(byte[] row, byte[] column, @Nullable byte[] value) {
+        if (row != lastRow) {
+          lastRow = row;
+          changes.add(Bytes.add(getNameAsTxChangePrefix(), row));
+        }
+      }
+    });
     return changes;
   }
 
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
+    final List<byte[]> changes = new ArrayList<>(buff.size());
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
       if (rowChange.getValue() == null) {
         // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
@@ -333,21 +378,45 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         changes.add(Bytes.add(getNameAsTxChangePrefix(), rowTxChange, column));
       }
     }
+    compactBuff.forEachCell(new CompactPutBuffer.CellConsumer() {
+      private byte[] lastRow;
+      private byte[] rowTxChange;
+
+      @Override
+      public void accept(byte[] row, byte[] column, @Nullable byte[] value) {
+        if (row != lastRow) {
+          lastRow = row;
+          rowTxChange = Bytes.add(Bytes.toBytes(row.length), row);
+        }
+        changes.add(Bytes.add(getNameAsTxChangePrefix(), rowTxChange, column));
+      }
+    });
     return changes;
   }
 
   @Override
   public boolean commitTx() throws Exception {
-    if (!buff.isEmpty()) {
+    if (!buff.isEmpty() || !compactBuff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
       toUndo = buff;
+      if (!compactBuff.isEmpty()) {
+        // Merge the compact buffer into a sorted map that is only used for persisting. It is cheaper to build
+        // than draining the compact buffer into the skip list buffer.
+        toUndo = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        toUndo.putAll(buff);
+        compactBuff.drainTo(toUndo);
+      }
       // clearing up in-memory buffer by initializing new map.
       // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
       // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
       buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      bufferedCells = 0;
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
+      if (readCache != null) {
+        readCache.startWrite(toUndo);
+      }
       persist(toUndo);
     }
     return true;
@@ -355,23 +424,50 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   @Override
   public void postTxCommit() {
+    if (readCache != null && toUndo != null) {
+      readCache.commitWrite(tx.getWritePointer(), toUndo);
+    }
     // don't need buffer anymore: tx has been committed
-    buff.clear();
+    clearBuffer();
     toUndo = null;
     tx = null;
   }
 
   @Override
   public boolean rollbackTx() throws Exception {
-    buff.clear();
+    clearBuffer();
     if (toUndo != null) {
-      undo(toUndo);
+      try {
+        undo(toUndo);
+      } finally {
+        if (readCache != null) {
+          readCache.rollbackWrite(toUndo);
+        }
+      }
       toUndo = null;
     }
     tx = null;
     return true;
   }
 
+  /**
+   * Returns the in-memory buffer after moving all puts in the compact buffer to it, so that it contains all the
+   * writes of the current transaction.
+   */
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> getBuffer() {
+    if (!compactBuff.isEmpty()) {
+      bufferedCells += compactBuff.size();
+      compactBuff.drainTo(buff);
+    }
+    return buff;
+  }
+
+  private void clearBuffer() {
+    buff.clear();
+    compactBuff.clear();
+    bufferedCells = 0;
+  }
+
   protected void ensureTransactionIsStarted() {
     if (tx == null) {
       throw new DataSetException("Attempt to perform a data operation without a transaction");
@@ -415,7 +511,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     reportRead(1);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffer().get(row);
 
     // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
@@ -448,7 +544,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     try {
       // get persisted, then overwrite with whats buffered
-      List<Map<byte[], byte[]>> persistedRows = getPersisted(gets);
+      List<Map<byte[], byte[]>> persistedRows = getCachedPersisted(gets);
       // gets and rows lists are always of the same size
       Preconditions.checkArgument(gets.size() == persistedRows.size(),
         "Invalid number of rows fetched when performing multi-get. There must be one row for each get.");
@@ -467,7 +563,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        NavigableMap<byte[], Update> buffCols = getBuffer().get(row);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
@@ -494,13 +590,23 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public void put(byte[] row, byte[][] columns, byte[][] values) {
     ensureTransactionIsStarted();
-    putInternal(row, columns, values);
+    if (bufferedCells < COMPACT_BUFFER_THRESHOLD) {
+      putInternal(row, columns, values);
+    } else {
+      // For write heavy transactions, append to the compact buffer, which uses much less memory per cell
+      for (int i = 0; i < columns.length; i++) {
+        if (values[i] != null && values[i].length == 0) {
+          warnAboutEmptyValue(columns[i]);
+        }
+      }
+      compactBuff.add(row, columns, values);
+    }
     // report metrics _after_ write was performed
     reportWrite(1, getSize(row) + getSize(columns) + getSize(values));
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
-    NavigableMap<byte[], Update> colVals = buff.get(row);
+    NavigableMap<byte[], Update> colVals = getBuffer().get(row);
     boolean newRow = false;
     if (colVals == null) {
       colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -514,6 +620,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       }
       colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
     }
+    bufferedCells += columns.length;
     if (newRow) {
       // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
       buff.put(copy(row), colVals);
@@ -620,7 +727,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
-      NavigableMap<byte[], Update> colVals = buff.get(row);
+      NavigableMap<byte[], Update> colVals = getBuffer().get(row);
       if (colVals == null) {
         colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
         buff.put(row, colVals);
@@ -628,6 +735,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       for (int i = 0; i < columns.length; i++) {
         colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
       }
+      bufferedCells += columns.length;
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
       internalIncrementAndGet(row, columns, amounts);
@@ -705,18 +813,147 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
+  @ReadOnly
+  @Override
+  public Scanner parallelScan(Scan scan, int parallelism) {
+    ensureTransactionIsStarted();
+    Preconditions.checkArgument(parallelism > 0, "Parallelism must be positive: %s", parallelism);
+    List<byte[]> boundaries = parallelism == 1 ? Collections.<byte[]>emptyList()
+      : getScanBoundaries(scan.getStartRow(), scan.getStopRow(), parallelism);
+    if (boundaries.isEmpty()) {
+      return scan(scan);
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    List<Scanner> scanners = new ArrayList<>(boundaries.size() + 1);
+    try {
+      byte[] startRow = scan.getStartRow();
+      for (byte[] stopRow : Iterables.concat(boundaries, Collections.singleton(scan.getStopRow()))) {
+        Scan rangeScan = new Scan(startRow, stopRow, scan.getFilter());
+        for (Map.Entry<String, String> property : scan.getProperties().entrySet()) {
+          rangeScan.setProperty(property.getKey(), property.getValue());
+        }
+        scanners.add(scanPersisted(rangeScan));
+        startRow = stopRow;
+      }
+    } catch (Exception e) {
+      for (Scanner scanner : scanners) {
+        scanner.close();
+      }
+      LOG.debug("parallel scan failed for table: " + getTransactionAwareName() +
+          ", scan: " + scan.toString(), e);
+      throw new DataSetException("parallel scan failed", e);
+    }
+    return new BufferingScanner(bufferMap, new ParallelScanner(scanners, PARALLEL_SCAN_PREFETCH));
+  }
+
+  /**
+   * Computes the count, sum, minimum and maximum of the values of a column over a range of rows, including the changes
+   * buffered in the current transaction. Unless the column was changed in the range by the current transaction, the
+   * aggregates are computed from the persistent store, see {@link #aggregatePersisted(Scan, byte[])}.
+   *
+   * This is an in-process helper that is not part of the {@link co.cask.cdap.api.dataset.table.Table} API. The
+   * aggregates are always computed in this process: the values of the column are read from the persistent store
+   * and added up here, so the cost is proportional to the number of rows in the range.
+   *
+   * @param startRow start row inclusive; {@code null} means start from first row of the table
+   * @param stopRow stop row exclusive; {@code null} means up to the last row of the table
+   * @param column the column to aggregate, which must contain encoded longs
+   * @param filter if non-null, only rows matching the filter are aggregated
+   * @return the aggregates of the column
+   */
+  @ReadOnly
+  public ColumnAggregates aggregate(@Nullable byte[] startRow, @Nullable byte[] stopRow, byte[] column,
+                                    @Nullable FuzzyRowFilter filter) {
+    ensureTransactionIsStarted();
+    Scan scan = new Scan(startRow, stopRow, filter);
+    try {
+      if (!containsColumn(scanBuffer(scan), column)) {
+        reportRead(1);
+        return aggregatePersisted(scan, column);
+      }
+      // buffered changes to the column have to be merged with the persisted rows
+      ColumnAggregates aggregates = new ColumnAggregates();
+      try (Scanner scanner = scan(scan)) {
+        addToAggregates(aggregates, scanner, column);
+      }
+      return aggregates;
+    } catch (Exception e) {
+      LOG.debug("aggregate failed for table: " + getTransactionAwareName() +
+          ", scan: " + scan.toString() + ", column: " + Bytes.toStringBinary(column), e);
+      throw new DataSetException("aggregate failed", e);
+    }
+  }
+
+  /**
+   * Computes the aggregates of a column over a range of rows in the persistent store. Subclasses should override
+   * this to avoid reading entire rows. The default implementation scans the persisted rows.
+   *
+   * @param scan the range of rows to aggregate
+   * @param column the column to aggregate
+   * @return the aggregates of the column
+   */
+  protected ColumnAggregates aggregatePersisted(Scan scan, byte[] column) throws Exception {
+    ColumnAggregates aggregates = new ColumnAggregates();
+    try (Scanner scanner = scanPersisted(scan)) {
+      addToAggregates(aggregates, scanner, column);
+    }
+    return aggregates;
+  }
+
+  protected static void addToAggregates(ColumnAggregates aggregates, Scanner scanner, byte[] column) {
+    Row row;
+    while ((row = scanner.next()) != null) {
+      byte[] value = row.get(column);
+      if (value != null) {
+        aggregates.add(value);
+      }
+    }
+  }
+
+  private static boolean containsColumn(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, byte[] column) {
+    for (NavigableMap<byte[], Update> columns : buffer.values()) {
+      if (columns.containsKey(column)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the row keys at which to split the range of a parallel scan. Subclasses should override this to split
+   * along the layout of the persistent store, for example at region boundaries. The default implementation divides
+   * the key space evenly, see {@link SplitsUtil#primitiveGetSplits(int, byte[], byte[])}.
+   *
+   * @param startRow start row of the scan, inclusive, or {@code null} to start from the first row
+   * @param stopRow stop row of the scan, exclusive, or {@code null} to scan to the end of the table
+   * @param numRanges maximum number of ranges to split into
+   * @return the sorted boundaries, which must be strictly between start and stop row. If empty, the range is not split.
+   */
+  protected List<byte[]> getScanBoundaries(@Nullable byte[] startRow, @Nullable byte[] stopRow, int numRanges) {
+    List<KeyRange> ranges = SplitsUtil.primitiveGetSplits(numRanges, startRow, stopRow);
+    List<byte[]> boundaries = new ArrayList<>();
+    // the stop of every range but the last is a boundary, the first range may start before the start row
+    for (KeyRange range : ranges.subList(0, Math.max(0, ranges.size() - 1))) {
+      if (startRow == null || Bytes.compareTo(range.getStop(), startRow) > 0) {
+        boundaries.add(range.getStop());
+      }
+    }
+    return boundaries;
+  }
+
   private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
     if (startRow == null && stopRow == null) {
-      bufferMap = buff;
+      bufferMap = getBuffer();
     } else if (startRow == null) {
-      bufferMap = buff.headMap(stopRow, false);
+      bufferMap = getBuffer().headMap(stopRow, false);
     } else if (stopRow == null) {
-      bufferMap = buff.tailMap(startRow, true);
+      bufferMap = getBuffer().tailMap(startRow, true);
     } else {
-      bufferMap = buff.subMap(startRow, true, stopRow, false);
+      bufferMap = getBuffer().subMap(startRow, true, stopRow, false);
     }
     bufferMap = applyFilter(bufferMap, scan.getFilter());
     return bufferMap;
@@ -746,13 +983,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
-    boolean rowDeleted = buffCols == null && buff.containsKey(row);
+    NavigableMap<byte[], Update> buffCols = getBuffer().get(row);
+    boolean rowDeleted = buffCols == null && getBuffer().containsKey(row);
     if (rowDeleted) {
       return Collections.emptyMap();
     }
 
-    Map<byte[], byte[]> persisted = getPersisted(row, null);
+    Map<byte[], byte[]> persisted = getCachedPersisted(row, null);
 
 
     result.putAll(persisted);
@@ -767,11 +1004,11 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = getBuffer().get(row);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
-      return getPersisted(row, columns);
+      return getCachedPersisted(row, columns);
     }
 
     // otherwise try to fetch data from in-memory buffer. If not all present - fetch leftover from persisted
@@ -793,7 +1030,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // fetching from server those that were not found in in-mem buffer
     if (colsToFetchFromPersisted.size() > 0) {
       Map<byte[], byte[]> persistedCols =
-        getPersisted(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
+        getCachedPersisted(row, colsToFetchFromPersisted.toArray(new byte[colsToFetchFromPersisted.size()][]));
       if (persistedCols != null) {
         result.putAll(persistedCols);
       }
@@ -805,6 +1042,88 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return unwrapDeletes(result);
   }
 
+  /**
+   * Fetches columns of a row from the read cache if enabled, or from the persisted store otherwise.
+   * See {@link #getPersisted(byte[], byte[][])}.
+   */
+  private NavigableMap<byte[], byte[]> getCachedPersisted(byte[] row, @Nullable byte[][] columns) throws Exception {
+    if (readCache == null) {
+      return getPersisted(row, columns);
+    }
+    if (columns == null) {
+      NavigableMap<byte[], byte[]> result = readCache.getRow(readCacheSnapshot, row);
+      if (result == null) {
+        result = getPersisted(row, null);
+        readCache.putRow(readCacheSnapshot, row, result);
+      }
+      return result;
+    }
+
+    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    List<byte[]> missing = readCache.getColumns(readCacheSnapshot, row, columns, result);
+    if (!missing.isEmpty()) {
+      byte[][] missingColumns = missing.toArray(new byte[missing.size()][]);
+      NavigableMap<byte[], byte[]> persisted = getPersisted(row, missingColumns);
+      readCache.putColumns(readCacheSnapshot, row, missingColumns, persisted);
+      result.putAll(persisted);
+    }
+    return result;
+  }
+
+  /**
+   * Fetches a list of rows from the read cache if enabled, with the rows or columns not in the cache fetched with
+   * a single call to {@link #getPersisted(List)}.
+   */
+  private List<Map<byte[], byte[]>> getCachedPersisted(List<Get> gets) throws Exception {
+    if (readCache == null) {
+      return getPersisted(gets);
+    }
+
+    List<Map<byte[], byte[]>> results = Lists.newArrayListWithCapacity(gets.size());
+    List<Get> missingGets = new ArrayList<>();
+    List<Integer> missingIndices = new ArrayList<>();
+    for (Get get : gets) {
+      List<byte[]> getColumns = get.getColumns();
+      if (getColumns == null) {
+        NavigableMap<byte[], byte[]> row = readCache.getRow(readCacheSnapshot, get.getRow());
+        if (row == null) {
+          missingGets.add(get);
+          missingIndices.add(results.size());
+          row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        }
+        results.add(row);
+        continue;
+      }
+
+      NavigableMap<byte[], byte[]> row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      byte[][] columns = getColumns.toArray(new byte[getColumns.size()][]);
+      List<byte[]> missing = readCache.getColumns(readCacheSnapshot, get.getRow(), columns, row);
+      if (!missing.isEmpty()) {
+        missingGets.add(new Get(get.getRow(), missing));
+        missingIndices.add(results.size());
+      }
+      results.add(row);
+    }
+
+    if (missingGets.isEmpty()) {
+      return results;
+    }
+    List<Map<byte[], byte[]>> persistedRows = getPersisted(missingGets);
+    for (int i = 0; i < missingGets.size(); i++) {
+      Get get = missingGets.get(i);
+      Map<byte[], byte[]> persisted = persistedRows.get(i);
+      List<byte[]> getColumns = get.getColumns();
+      if (getColumns == null) {
+        readCache.putRow(readCacheSnapshot, get.getRow(), persisted);
+      } else {
+        readCache.putColumns(readCacheSnapshot, get.getRow(),
+                             getColumns.toArray(new byte[getColumns.size()][]), persisted);
+      }
+      results.get(missingIndices.get(i)).putAll(persisted);
+    }
+    return results;
+  }
+
   /**
    * Applies the buffered updates on top of the map of persisted values.  The persisted map is modified in place
    * with the updated values.
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DataSetException;
+import com.google.common.base.Objects;
+
+/**
+ * Count, sum, minimum and maximum of the values of a column over a range of rows, as computed by
+ * {@link BufferingTable#aggregate(byte[], byte[], byte[], FuzzyRowFilter)} in the process that reads the table.
+ * The values of the column must be encoded longs, as written by increments.
+ */
+public final class ColumnAggregates {
+
+  private long count;
+  private long sum;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  /**
+   * Adds a value to the aggregates.
+   *
+   * @throws DataSetException if the value is not an encoded long
+   */
+  public void add(byte[] value) {
+    if (value.length != Bytes.SIZEOF_LONG) {
+      throw new DataSetException("Cannot aggregate value of length " + value.length + ", it must be a long");
+    }
+    add(Bytes.toLong(value));
+  }
+
+  /**
+   * Adds a value to the aggregates.
+   */
+  public void add(long value) {
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Returns the number of rows that have a value for the column.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the values, or {@code 0} if there are no values.
+   */
+  public long getSum() {
+    return sum;
+  }
+
+  /**
+   * Returns the minimum value, or {@link Long#MAX_VALUE} if there are no values.
+   */
+  public long getMin() {
+    return min;
+  }
+
+  /**
+   * Returns the maximum value, or {@link Long#MIN_VALUE} if there are no values.
+   */
+  public long getMax() {
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("count", count)
+      .add("sum", sum)
+      .add("min", min)
+      .add("max", max)
+      .toString();
+  }
+}
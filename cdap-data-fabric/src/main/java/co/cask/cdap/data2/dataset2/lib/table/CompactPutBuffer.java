@@ -0,0 +1,246 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * An append-only buffer of puts used by {@link BufferingTable} for write heavy transactions. Instead of keeping
+ * a map entry and an {@link Update} object for every cell, the row, column and value of each put are copied into
+ * a few large byte arrays. The puts are only sorted when they are needed in order, which is typically once when
+ * the transaction commits.
+ *
+ * Each cell is stored as {@code [rowLength][columnLength][valueLength][row][column][value]}, with a value length
+ * of {@code -1} representing a {@code null} value, which is a delete.
+ */
+final class CompactPutBuffer {
+
+  private static final int HEADER_SIZE = 3 * Bytes.SIZEOF_INT;
+  private static final int MIN_CHUNK_SIZE = 64 * 1024;
+  private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+  private final List<byte[]> chunks = new ArrayList<>();
+  private byte[] chunk;
+  private int chunkPosition;
+
+  // Location of each cell in append order, as (chunk index << 32 | offset in chunk)
+  private long[] cells = new long[0];
+  // Indices into the cells array in sorted order. Only valid if sorted is true.
+  private int[] order = new int[0];
+  private boolean sorted = true;
+  private int size;
+
+  /**
+   * Consumer of the cells in this buffer.
+   */
+  interface CellConsumer {
+
+    /**
+     * Consumes a cell. Consecutive cells of the same row are given the same row array instance.
+     *
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @param value the value of the cell or {@code null} if it is a delete
+     */
+    void accept(byte[] row, byte[] column, @Nullable byte[] value);
+  }
+
+  /**
+   * Appends a put to this buffer. The given arrays are copied, hence they can be modified after this call.
+   *
+   * @param row the row to put
+   * @param columns the columns to put
+   * @param values the values of the columns, {@code null} values are deletes
+   */
+  void add(byte[] row, byte[][] columns, byte[][] values) {
+    for (int i = 0; i < columns.length; i++) {
+      add(row, columns[i], values[i]);
+    }
+  }
+
+  private void add(byte[] row, byte[] column, @Nullable byte[] value) {
+    int valueLength = value == null ? -1 : value.length;
+    int cellSize = HEADER_SIZE + row.length + column.length + Math.max(0, valueLength);
+    if (chunk == null || chunk.length - chunkPosition < cellSize) {
+      int chunkSize = chunk == null ? MIN_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, chunk.length * 2);
+      chunk = new byte[Math.max(chunkSize, cellSize)];
+      chunkPosition = 0;
+      chunks.add(chunk);
+    }
+    if (size == cells.length) {
+      cells = Arrays.copyOf(cells, Math.max(1024, size * 2));
+    }
+    cells[size++] = ((long) (chunks.size() - 1) << 32) | chunkPosition;
+
+    int offset = Bytes.putInt(chunk, chunkPosition, row.length);
+    offset = Bytes.putInt(chunk, offset, column.length);
+    offset = Bytes.putInt(chunk, offset, valueLength);
+    offset = Bytes.putBytes(chunk, offset, row, 0, row.length);
+    offset = Bytes.putBytes(chunk, offset, column, 0, column.length);
+    if (value != null) {
+      offset = Bytes.putBytes(chunk, offset, value, 0, value.length);
+    }
+    chunkPosition = offset;
+    sorted = false;
+  }
+
+  /**
+   * Returns the number of puts in this buffer. Multiple puts to the same cell are counted individually.
+   */
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all puts from this buffer and releases the memory used.
+   */
+  void clear() {
+    chunks.clear();
+    chunk = null;
+    chunkPosition = 0;
+    cells = new long[0];
+    order = new int[0];
+    sorted = true;
+    size = 0;
+  }
+
+  /**
+   * Calls the given consumer for every cell in this buffer, in row and column order. If a cell was put multiple
+   * times, only the last put is given to the consumer.
+   */
+  void forEachCell(CellConsumer consumer) {
+    sort();
+    byte[] row = null;
+    for (int i = 0; i < size; i++) {
+      long cell = cells[order[i]];
+      // Skip the cell if there is a later put to the same cell
+      if (i + 1 < size && compare(cell, cells[order[i + 1]]) == 0) {
+        continue;
+      }
+      byte[] buffer = chunks.get((int) (cell >>> 32));
+      int offset = (int) cell;
+      int rowLength = Bytes.toInt(buffer, offset);
+      int columnLength = Bytes.toInt(buffer, offset + Bytes.SIZEOF_INT);
+      int valueLength = Bytes.toInt(buffer, offset + 2 * Bytes.SIZEOF_INT);
+      offset += HEADER_SIZE;
+
+      if (row == null || !Bytes.equals(row, 0, row.length, buffer, offset, rowLength)) {
+        row = Arrays.copyOfRange(buffer, offset, offset + rowLength);
+      }
+      offset += rowLength;
+      byte[] column = Arrays.copyOfRange(buffer, offset, offset + columnLength);
+      offset += columnLength;
+      byte[] value = valueLength < 0 ? null : Arrays.copyOfRange(buffer, offset, offset + valueLength);
+      consumer.accept(row, column, value);
+    }
+  }
+
+  /**
+   * Moves all puts in this buffer to the given row to (column to value) map, overwriting existing values of the
+   * same cells. This buffer is cleared after this call.
+   */
+  void drainTo(final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
+    forEachCell(new CellConsumer() {
+      private byte[] lastRow;
+      private NavigableMap<byte[], Update> colVals;
+
+      @Override
+      public void accept(byte[] row, byte[] column, @Nullable byte[] value) {
+        if (row != lastRow) {
+          lastRow = row;
+          colVals = buffer.get(row);
+          if (colVals == null) {
+            colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+            buffer.put(row, colVals);
+          }
+        }
+        colVals.put(column, new PutValue(value));
+      }
+    });
+    clear();
+  }
+
+  /**
+   * Sorts the cells by row and column. The sort is stable, so that puts to the same cell stay in append order.
+   */
+  private void sort() {
+    if (sorted) {
+      return;
+    }
+    order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    mergeSort(order, Arrays.copyOf(order, size), 0, size);
+    sorted = true;
+  }
+
+  /**
+   * Sorts the range [from, to) of the given array using the given scratch array, which must have the same content.
+   */
+  private void mergeSort(int[] dest, int[] src, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    // Sort both halves in src, using dest as the scratch, then merge them into dest
+    mergeSort(src, dest, from, mid);
+    mergeSort(src, dest, mid, to);
+
+    int left = from;
+    int right = mid;
+    for (int i = from; i < to; i++) {
+      if (right >= to || (left < mid && compare(cells[src[left]], cells[src[right]]) <= 0)) {
+        dest[i] = src[left++];
+      } else {
+        dest[i] = src[right++];
+      }
+    }
+  }
+
+  /**
+   * Compares two cells by row and then by column.
+   */
+  private int compare(long cell1, long cell2) {
+    byte[] buffer1 = chunks.get((int) (cell1 >>> 32));
+    int offset1 = (int) cell1;
+    byte[] buffer2 = chunks.get((int) (cell2 >>> 32));
+    int offset2 = (int) cell2;
+
+    int rowLength1 = Bytes.toInt(buffer1, offset1);
+    int rowLength2 = Bytes.toInt(buffer2, offset2);
+    int cmp = Bytes.compareTo(buffer1, offset1 + HEADER_SIZE, rowLength1, buffer2, offset2 + HEADER_SIZE, rowLength2);
+    if (cmp != 0) {
+      return cmp;
+    }
+    int columnLength1 = Bytes.toInt(buffer1, offset1 + Bytes.SIZEOF_INT);
+    int columnLength2 = Bytes.toInt(buffer2, offset2 + Bytes.SIZEOF_INT);
+    return Bytes.compareTo(buffer1, offset1 + HEADER_SIZE + rowLength1, columnLength1,
+                           buffer2, offset2 + HEADER_SIZE + rowLength2, columnLength2);
+  }
+}
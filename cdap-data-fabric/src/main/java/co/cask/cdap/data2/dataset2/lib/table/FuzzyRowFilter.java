@@ -131,6 +131,30 @@ public final class FuzzyRowFilter implements Filter {
     return nextRowKey;
   }
 
+  /**
+   * Returns the common leading fixed part of all fuzzy keys. Row keys that are greater than all row keys with this
+   * prefix cannot match this filter, hence scans with this filter can stop at the end of the prefix.
+   *
+   * @return the prefix, or an empty array if matching row keys can start with any byte
+   */
+  public byte[] getRowPrefix() {
+    if (fuzzyKeysData.isEmpty()) {
+      return Bytes.EMPTY_BYTE_ARRAY;
+    }
+    byte[] firstKey = fuzzyKeysData.get(0).getFirst();
+    int length = firstKey.length;
+    for (ImmutablePair<byte[], byte[]> fuzzyData : fuzzyKeysData) {
+      byte[] key = fuzzyData.getFirst();
+      byte[] meta = fuzzyData.getSecond();
+      int i = 0;
+      while (i < length && i < key.length && i < meta.length && meta[i] == 0 && key[i] == firstKey[i]) {
+        i++;
+      }
+      length = i;
+    }
+    return Arrays.copyOf(firstKey, length);
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
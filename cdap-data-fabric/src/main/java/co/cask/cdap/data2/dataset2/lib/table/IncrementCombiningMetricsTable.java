@@ -0,0 +1,223 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Scanner;
+import com.google.common.base.Preconditions;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MetricsTable} that combines the increments of consecutive calls to
+ * {@link #increment(NavigableMap)} and {@link #increment(byte[], Map)}, and writes them to the underlying table
+ * with a single batch increment once the number of distinct buffered cells or the age of the oldest buffered
+ * increment reaches a threshold. Repeated increments of the same cells, as sent by the metrics processor for
+ * every batch of metrics, thus result in one write per cell and flush.
+ *
+ * All other operations flush the buffered increments first, so that they observe all preceding increments.
+ * Increments are only written by the calling thread. Callers that need to know which increments are durable, for
+ * example before recording the offsets of the consumed metrics, mark their increments with {@link #checkpoint(long)}
+ * and get the latest checkpoint covered by a flush with {@link #getFlushedCheckpoint()}.
+ */
+public class IncrementCombiningMetricsTable implements MetricsTable, Flushable {
+
+  private final MetricsTable delegate;
+  private final int maxCells;
+  private final long maxDelayMillis;
+
+  // the buffered increments, with one mutable counter per cell to avoid boxing for repeated increments
+  private NavigableMap<byte[], NavigableMap<byte[], long[]>> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private int bufferedCells;
+  private long oldestIncrementTime;
+  // the latest checkpoint, and the latest checkpoint of which all preceding increments were written
+  private long checkpoint = -1L;
+  private long flushedCheckpoint = -1L;
+
+  /**
+   * Creates a table that combines increments for the given table.
+   *
+   * @param delegate the table to write to
+   * @param maxCells the number of distinct buffered cells that triggers a flush
+   * @param maxDelayMillis the age in milliseconds of the oldest buffered increment that triggers a flush
+   *                       on the next increment
+   */
+  public IncrementCombiningMetricsTable(MetricsTable delegate, int maxCells, long maxDelayMillis) {
+    Preconditions.checkArgument(maxCells > 0, "Maximum number of buffered cells must be positive: %s", maxCells);
+    Preconditions.checkArgument(maxDelayMillis > 0, "Maximum delay must be positive: %s", maxDelayMillis);
+    this.delegate = delegate;
+    this.maxCells = maxCells;
+    this.maxDelayMillis = maxDelayMillis;
+  }
+
+  @Nullable
+  @Override
+  public synchronized byte[] get(byte[] row, byte[] column) {
+    flush();
+    return delegate.get(row, column);
+  }
+
+  @Override
+  public synchronized void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
+    flush();
+    delegate.put(updates);
+  }
+
+  @Override
+  public synchronized void putBytes(SortedMap<byte[], ? extends SortedMap<byte[], byte[]>> updates) {
+    flush();
+    delegate.putBytes(updates);
+  }
+
+  @Override
+  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    flush();
+    return delegate.swap(row, column, oldValue, newValue);
+  }
+
+  @Override
+  public synchronized void increment(byte[] row, Map<byte[], Long> increments) {
+    add(row, increments);
+    flushIfNeeded();
+  }
+
+  @Override
+  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+      add(row.getKey(), row.getValue());
+    }
+    flushIfNeeded();
+  }
+
+  @Override
+  public synchronized long incrementAndGet(byte[] row, byte[] column, long delta) {
+    flush();
+    return delegate.incrementAndGet(row, column, delta);
+  }
+
+  @Override
+  public synchronized void delete(byte[] row, byte[][] columns) {
+    flush();
+    delegate.delete(row, columns);
+  }
+
+  @Override
+  public synchronized void delete(NavigableMap<byte[], byte[][]> deletes) {
+    flush();
+    delegate.delete(deletes);
+  }
+
+  @Override
+  public synchronized Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter) {
+    flush();
+    return delegate.scan(start, stop, filter);
+  }
+
+  /**
+   * Writes all buffered increments to the underlying table.
+   */
+  @Override
+  public synchronized void flush() {
+    if (bufferedCells == 0) {
+      flushedCheckpoint = checkpoint;
+      return;
+    }
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], long[]>> row : increments.entrySet()) {
+      NavigableMap<byte[], Long> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], long[]> column : row.getValue().entrySet()) {
+        columns.put(column.getKey(), column.getValue()[0]);
+      }
+      updates.put(row.getKey(), columns);
+    }
+    // only clear the buffer once the increments were written, so that a failed flush can be retried
+    delegate.increment(updates);
+    increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    bufferedCells = 0;
+    flushedCheckpoint = checkpoint;
+  }
+
+  /**
+   * Marks all increments up to now with the given checkpoint, and flushes if the oldest buffered increment is
+   * older than the maximum delay. Checkpoints must be increasing.
+   */
+  public synchronized void checkpoint(long checkpoint) {
+    this.checkpoint = checkpoint;
+    if (bufferedCells == 0) {
+      flushedCheckpoint = checkpoint;
+    } else {
+      flushIfExpired();
+    }
+  }
+
+  /**
+   * Returns the latest checkpoint of which all preceding increments were written to the underlying table,
+   * or {@code -1} if there is none.
+   */
+  public synchronized long getFlushedCheckpoint() {
+    return flushedCheckpoint;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      delegate.close();
+    }
+  }
+
+  private void add(byte[] row, Map<byte[], Long> rowIncrements) {
+    if (bufferedCells == 0) {
+      oldestIncrementTime = System.currentTimeMillis();
+    }
+    NavigableMap<byte[], long[]> columns = increments.get(row);
+    if (columns == null) {
+      columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      increments.put(row, columns);
+    }
+    for (Map.Entry<byte[], Long> increment : rowIncrements.entrySet()) {
+      long[] value = columns.get(increment.getKey());
+      if (value == null) {
+        columns.put(increment.getKey(), new long[] { increment.getValue() });
+        bufferedCells++;
+      } else {
+        value[0] += increment.getValue();
+      }
+    }
+  }
+
+  private void flushIfNeeded() {
+    if (bufferedCells >= maxCells) {
+      flush();
+    } else {
+      flushIfExpired();
+    }
+  }
+
+  private void flushIfExpired() {
+    if (bufferedCells > 0 && System.currentTimeMillis() - oldestIncrementTime >= maxDelayMillis) {
+      flush();
+    }
+  }
+}
@@ -83,6 +83,18 @@ public interface MetricsTable extends Dataset {
    */
   void delete(byte[] row, byte[][] columns);
 
+  /**
+   * Deletes specified columns of multiple rows. Implementations should override this to delete all rows
+   * in one batch.
+   *
+   * @param deletes map from each row to delete from to the names of the columns to delete in that row
+   */
+  default void delete(NavigableMap<byte[], byte[][]> deletes) {
+    for (Map.Entry<byte[], byte[][]> row : deletes.entrySet()) {
+      delete(row.getKey(), row.getValue());
+    }
+  }
+
   /**
    * Get a scanner for a table.
    * @param start the row key of the first row to scan. If null, the scan begins at the first row of the table.
@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DataSetException;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import com.google.common.base.Throwables;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Scanner} that reads consecutive key ranges concurrently, each with its own scanner and thread, and
+ * returns their rows one range after another. Each range reads ahead at most a fixed number of rows, so that the
+ * memory used is bounded even if the ranges are consumed slowly.
+ */
+final class ParallelScanner implements Scanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelScanner.class);
+
+  // Marks the end of a range in a queue
+  private static final Row END_OF_RANGE = new Result(Bytes.EMPTY_BYTE_ARRAY, Collections.<byte[], byte[]>emptyMap());
+
+  // How often a reader waiting for space in its queue checks whether the scanner was closed
+  private static final long CLOSE_CHECK_INTERVAL_MS = 100;
+
+  // Threads are shared by all parallel scans. The pool is not bounded, as a bounded pool could starve the ranges of
+  // a scan while its threads are blocked by the full queues of scans that are consumed slowly.
+  private static final ExecutorService EXECUTOR =
+    Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("table-parallel-scan-%d"));
+
+  private final List<RangeReader> readers;
+  private int currentReader;
+
+  /**
+   * Creates a scanner that returns the rows of the given scanners in order.
+   *
+   * @param scanners scanners of consecutive key ranges, in key order
+   * @param prefetch maximum number of rows to read ahead for each range
+   */
+  ParallelScanner(List<Scanner> scanners, int prefetch) {
+    this.readers = new ArrayList<>(scanners.size());
+    for (Scanner scanner : scanners) {
+      readers.add(new RangeReader(scanner, prefetch));
+    }
+    for (RangeReader reader : readers) {
+      reader.future = EXECUTOR.submit(reader);
+    }
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    while (currentReader < readers.size()) {
+      RangeReader reader = readers.get(currentReader);
+      Row row;
+      try {
+        row = reader.queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DataSetException("Interrupted while scanning", e);
+      }
+      if (row != END_OF_RANGE) {
+        return row;
+      }
+      if (reader.failure != null) {
+        throw Throwables.propagate(reader.failure);
+      }
+      currentReader++;
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    for (RangeReader reader : readers) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the rows of one range into a bounded queue, followed by {@link #END_OF_RANGE}.
+   */
+  private static final class RangeReader implements Runnable {
+    private final Scanner scanner;
+    private final BlockingQueue<Row> queue;
+    // Set by whoever first runs or closes this reader, which then owns the scanner
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean closed;
+    private volatile Throwable failure;
+    private volatile Future<?> future;
+
+    RangeReader(Scanner scanner, int prefetch) {
+      this.scanner = scanner;
+      this.queue = new ArrayBlockingQueue<>(prefetch + 1);
+    }
+
+    @Override
+    public void run() {
+      if (!started.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        Row row = scanner.next();
+        while (row != null) {
+          if (!put(row)) {
+            return;
+          }
+          row = scanner.next();
+        }
+      } catch (InterruptedException e) {
+        // the scanner was closed, nobody is waiting for more rows
+        return;
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        closeScanner();
+      }
+      try {
+        put(END_OF_RANGE);
+      } catch (InterruptedException e) {
+        // the scanner was closed, nobody is waiting for the end of the range
+      }
+    }
+
+    /**
+     * Adds a row to the queue, waiting for space until the reader is closed. The closed flag is checked
+     * periodically, since the scanner may clear the interrupt that close raised.
+     *
+     * @return {@code true} if the row was added, {@code false} if the reader was closed
+     */
+    private boolean put(Row row) throws InterruptedException {
+      while (!closed) {
+        if (queue.offer(row, CLOSE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Stops this reader. A reader that did not start yet closes its scanner here, a running one is interrupted.
+     */
+    void close() {
+      closed = true;
+      if (started.compareAndSet(false, true)) {
+        closeScanner();
+      } else if (future != null) {
+        future.cancel(true);
+      }
+    }
+
+    void closeScanner() {
+      try {
+        scanner.close();
+      } catch (Exception e) {
+        LOG.warn("Error closing scanner", e);
+      }
+    }
+  }
+}
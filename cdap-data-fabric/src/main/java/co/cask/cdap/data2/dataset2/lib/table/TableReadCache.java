@@ -0,0 +1,439 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Maps;
+import org.apache.tephra.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * A read cache of persisted table data that is shared by all {@link BufferingTable} instances of the same table
+ * in the same process, so that data read by one transaction can be reused by later transactions.
+ *
+ * Each cache entry is tagged with the version of its row, which are the write pointers of the transactions of this
+ * process that wrote to the row. An entry is only cached if the reading transaction sees all of these writes, and it
+ * is used by any later transaction that sees them too. Writes are tracked from the time they are persisted until
+ * they are committed or rolled back: the entries of the written cells are invalidated, and the row is not cached
+ * while the write is in progress. Hence a hot row stays cached across transactions until it is written again.
+ *
+ * Writes from other processes are not tracked, hence the cache should only be enabled for tables that are written
+ * from a single process, or if reading a value that another process changed recently is acceptable.
+ *
+ * Entries are evicted in least recently used order when the number of entries reaches the maximum size.
+ */
+final class TableReadCache {
+
+  // Maximum number of write pointers tracked per row. Older writes are only tracked by their maximum.
+  private static final int MAX_ROW_WRITES = 8;
+
+  // Caches are shared by table name and size, and are released when no table instance is using them
+  private static final LoadingCache<CacheId, TableReadCache> CACHES = CacheBuilder.newBuilder()
+    .weakValues()
+    .build(new CacheLoader<CacheId, TableReadCache>() {
+      @Override
+      public TableReadCache load(CacheId cacheId) {
+        return new TableReadCache(cacheId.maxSize);
+      }
+    });
+
+  private final Cache<CellKey, Entry> cache;
+  // The committed writes of recently written rows
+  private final Cache<CellKey, RowVersion> versions;
+  // Number of writes in progress by row
+  private final Map<CellKey, Integer> pendingWrites = new HashMap<>();
+  // Version of the rows without tracked writes, which covers all writes of rows that were evicted from versions
+  private RowVersion evictedVersion = RowVersion.INITIAL;
+
+  /**
+   * Returns the {@link TableReadCache} for the given table.
+   *
+   * @param tableName the fully qualified table name
+   * @param maxSize maximum number of cells and rows in the cache
+   */
+  static TableReadCache get(String tableName, int maxSize) {
+    return CACHES.getUnchecked(new CacheId(tableName, maxSize));
+  }
+
+  private TableReadCache(int maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    this.versions = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .removalListener(new RemovalListener<CellKey, RowVersion>() {
+        @Override
+        public void onRemoval(RemovalNotification<CellKey, RowVersion> notification) {
+          if (notification.wasEvicted()) {
+            evicted(notification.getValue());
+          }
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Returns a copy of the cached columns of the given row, or {@code null} if the row is not cached for the
+   * given snapshot.
+   */
+  @Nullable
+  NavigableMap<byte[], byte[]> getRow(Snapshot snapshot, byte[] row) {
+    Entry entry = getEntry(snapshot, row, null);
+    return entry == null ? null : copy(entry.columns);
+  }
+
+  /**
+   * Caches all columns of the given row as read by a transaction with the given snapshot.
+   */
+  synchronized void putRow(Snapshot snapshot, byte[] row, Map<byte[], byte[]> columns) {
+    RowVersion version = getVersionToCache(snapshot, row);
+    if (version != null) {
+      cache.put(new CellKey(row.clone(), null), new Entry(version, null, copy(columns)));
+    }
+  }
+
+  /**
+   * Looks up the given columns of a row. Values of the columns that are cached for the given snapshot are added to
+   * the result map, unless the column was not present in the row.
+   *
+   * @return the list of columns that are not cached
+   */
+  List<byte[]> getColumns(Snapshot snapshot, byte[] row, byte[][] columns, Map<byte[], byte[]> result) {
+    List<byte[]> missing = new ArrayList<>();
+    for (byte[] column : columns) {
+      Entry entry = getEntry(snapshot, row, column);
+      if (entry == null) {
+        missing.add(column);
+      } else if (entry.value != null) {
+        result.put(column, entry.value.clone());
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Caches the given columns of a row as read by a transaction with the given snapshot. Columns that are not
+   * in the values map are cached as not present.
+   */
+  synchronized void putColumns(Snapshot snapshot, byte[] row, byte[][] columns, Map<byte[], byte[]> values) {
+    RowVersion version = getVersionToCache(snapshot, row);
+    if (version == null) {
+      return;
+    }
+    for (byte[] column : columns) {
+      byte[] value = values.get(column);
+      cache.put(new CellKey(row.clone(), column.clone()),
+                new Entry(version, value == null ? null : value.clone(), null));
+    }
+  }
+
+  /**
+   * Marks the start of persisting a write to the given rows. Cached entries of the rows are invalidated, and the
+   * rows are not cached until the write is committed or rolled back.
+   */
+  synchronized void startWrite(NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
+      CellKey rowKey = new CellKey(change.getKey(), null);
+      Integer pending = pendingWrites.get(rowKey);
+      pendingWrites.put(rowKey, pending == null ? 1 : pending + 1);
+      invalidate(change.getKey(), change.getValue());
+    }
+  }
+
+  /**
+   * Marks a write started with {@link #startWrite(NavigableMap)} as committed with the given write pointer.
+   */
+  synchronized void commitWrite(long writePointer, NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
+      CellKey rowKey = new CellKey(change.getKey(), null);
+      endWrite(rowKey);
+      versions.put(rowKey, getVersion(rowKey).add(writePointer));
+      invalidate(change.getKey(), change.getValue());
+    }
+  }
+
+  /**
+   * Marks a write started with {@link #startWrite(NavigableMap)} as rolled back.
+   */
+  synchronized void rollbackWrite(NavigableMap<byte[], NavigableMap<byte[], Update>> changes) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
+      CellKey rowKey = new CellKey(change.getKey(), null);
+      endWrite(rowKey);
+      invalidate(change.getKey(), change.getValue());
+    }
+  }
+
+  /**
+   * Returns the entry for the given row or cell if it is valid for the given snapshot, or {@code null} otherwise.
+   */
+  @Nullable
+  private Entry getEntry(Snapshot snapshot, byte[] row, @Nullable byte[] column) {
+    // Entries are invalidated when the row is written, hence only the visibility of the version needs to be checked
+    Entry entry = cache.getIfPresent(new CellKey(row, column));
+    return entry == null || !entry.version.isVisible(snapshot) ? null : entry;
+  }
+
+  /**
+   * Returns the version of the given row to tag an entry read with the given snapshot, or {@code null} if the
+   * row must not be cached because the snapshot does not see all writes of the row.
+   */
+  @Nullable
+  private RowVersion getVersionToCache(Snapshot snapshot, byte[] row) {
+    CellKey rowKey = new CellKey(row, null);
+    if (pendingWrites.containsKey(rowKey)) {
+      return null;
+    }
+    RowVersion version = getVersion(rowKey);
+    return version.isVisible(snapshot) ? version : null;
+  }
+
+  private RowVersion getVersion(CellKey rowKey) {
+    RowVersion version = versions.getIfPresent(rowKey);
+    return version == null ? evictedVersion : version;
+  }
+
+  private void endWrite(CellKey rowKey) {
+    Integer pending = pendingWrites.remove(rowKey);
+    if (pending != null && pending > 1) {
+      pendingWrites.put(rowKey, pending - 1);
+    }
+  }
+
+  private synchronized void evicted(RowVersion version) {
+    evictedVersion = evictedVersion.merge(version);
+  }
+
+  private void invalidate(byte[] row, Map<byte[], Update> columns) {
+    cache.invalidate(new CellKey(row, null));
+    for (byte[] column : columns.keySet()) {
+      cache.invalidate(new CellKey(row, column));
+    }
+  }
+
+  private static NavigableMap<byte[], byte[]> copy(Map<byte[], byte[]> columns) {
+    NavigableMap<byte[], byte[]> copy = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], byte[]> entry : columns.entrySet()) {
+      copy.put(entry.getKey().clone(), entry.getValue() == null ? null : entry.getValue().clone());
+    }
+    return copy;
+  }
+
+  /**
+   * The visibility of write pointers to a transaction.
+   */
+  static final class Snapshot {
+
+    private final long readPointer;
+    private final long[] excluded;
+    private final long firstInProgress;
+
+    static Snapshot of(Transaction tx) {
+      long readPointer = tx.getReadPointer();
+      long[] invalids = tx.getInvalids();
+      long[] inProgress = tx.getInProgress();
+
+      // Merge the sorted invalid and in progress lists, which are excluded the same way
+      long[] excluded = new long[invalids.length + inProgress.length];
+      int size = 0;
+      int i = 0;
+      int j = 0;
+      while (i < invalids.length || j < inProgress.length) {
+        long pointer;
+        if (j >= inProgress.length || (i < invalids.length && invalids[i] <= inProgress[j])) {
+          pointer = invalids[i++];
+        } else {
+          pointer = inProgress[j++];
+        }
+        if (pointer > readPointer) {
+          continue;
+        }
+        if (size == 0 || excluded[size - 1] != pointer) {
+          excluded[size++] = pointer;
+        }
+      }
+      long firstInProgress = inProgress.length == 0 ? Long.MAX_VALUE : inProgress[0];
+      return new Snapshot(readPointer, Arrays.copyOf(excluded, size), firstInProgress);
+    }
+
+    private Snapshot(long readPointer, long[] excluded, long firstInProgress) {
+      this.readPointer = readPointer;
+      this.excluded = excluded;
+      this.firstInProgress = firstInProgress;
+    }
+
+    /**
+     * Returns whether the given write pointer is visible.
+     */
+    boolean isVisible(long writePointer) {
+      return writePointer <= readPointer && Arrays.binarySearch(excluded, writePointer) < 0;
+    }
+
+    /**
+     * Returns whether all committed write pointers up to the given one are visible.
+     */
+    boolean isCommittedVisible(long writePointer) {
+      return writePointer <= readPointer && writePointer < firstInProgress;
+    }
+  }
+
+  /**
+   * Key of a cache entry, which is either a cell or a whole row if the column is {@code null}.
+   */
+  private static final class CellKey {
+    private final byte[] row;
+    private final byte[] column;
+    private final int hashCode;
+
+    CellKey(byte[] row, @Nullable byte[] column) {
+      this.row = row;
+      this.column = column;
+      this.hashCode = 31 * Bytes.hashCode(row) + (column == null ? 0 : Bytes.hashCode(column));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CellKey other = (CellKey) o;
+      return Bytes.equals(row, other.row) && Arrays.equals(column, other.column);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The version of a row, which are the write pointers of the committed local writes to the row.
+   */
+  private static final class RowVersion {
+
+    static final RowVersion INITIAL = new RowVersion(new long[0], -1L);
+
+    // Write pointers of the most recent writes
+    private final long[] writePointers;
+    // Maximum write pointer of older writes that are no longer tracked individually, or -1 if none
+    private final long olderWritePointer;
+
+    private RowVersion(long[] writePointers, long olderWritePointer) {
+      this.writePointers = writePointers;
+      this.olderWritePointer = olderWritePointer;
+    }
+
+    /**
+     * Returns whether all writes of this version are visible to the given snapshot.
+     */
+    boolean isVisible(Snapshot snapshot) {
+      for (long writePointer : writePointers) {
+        if (!snapshot.isVisible(writePointer)) {
+          return false;
+        }
+      }
+      return olderWritePointer < 0 || snapshot.isCommittedVisible(olderWritePointer);
+    }
+
+    /**
+     * Returns a new version with the given write added.
+     */
+    RowVersion add(long writePointer) {
+      if (writePointers.length < MAX_ROW_WRITES) {
+        long[] newWritePointers = Arrays.copyOf(writePointers, writePointers.length + 1);
+        newWritePointers[writePointers.length] = writePointer;
+        return new RowVersion(newWritePointers, olderWritePointer);
+      }
+      long[] newWritePointers = Arrays.copyOfRange(writePointers, 1, writePointers.length + 1);
+      newWritePointers[writePointers.length - 1] = writePointer;
+      return new RowVersion(newWritePointers, Math.max(olderWritePointer, writePointers[0]));
+    }
+
+    /**
+     * Returns a new version that only tracks the maximum write pointer of the writes of this and the given version.
+     */
+    RowVersion merge(RowVersion other) {
+      long max = Math.max(olderWritePointer, other.olderWritePointer);
+      for (long writePointer : writePointers) {
+        max = Math.max(max, writePointer);
+      }
+      for (long writePointer : other.writePointers) {
+        max = Math.max(max, writePointer);
+      }
+      return new RowVersion(new long[0], max);
+    }
+  }
+
+  /**
+   * A cached cell value or row, together with the version of the row it was read from.
+   */
+  private static final class Entry {
+    private final RowVersion version;
+    private final byte[] value;
+    private final NavigableMap<byte[], byte[]> columns;
+
+    Entry(RowVersion version, @Nullable byte[] value, @Nullable NavigableMap<byte[], byte[]> columns) {
+      this.version = version;
+      this.value = value;
+      this.columns = columns;
+    }
+  }
+
+  /**
+   * Identifies a shared {@link TableReadCache}.
+   */
+  private static final class CacheId {
+    private final String tableName;
+    private final int maxSize;
+
+    CacheId(String tableName, int maxSize) {
+      this.tableName = tableName;
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheId other = (CacheId) o;
+      return maxSize == other.maxSize && tableName.equals(other.tableName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(tableName, maxSize);
+    }
+  }
+}
@@ -304,6 +304,23 @@ public class HBaseMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public void delete(NavigableMap<byte[], byte[][]> deletes) {
+    List<Delete> batch = Lists.newArrayListWithCapacity(deletes.size());
+    for (Map.Entry<byte[], byte[][]> row : deletes.entrySet()) {
+      DeleteBuilder delete = tableUtil.buildDelete(createDistributedRowKey(row.getKey()));
+      for (byte[] column : row.getValue()) {
+        delete.deleteColumns(columnFamily, column);
+      }
+      batch.add(delete.build());
+    }
+    try {
+      hTable.delete(batch);
+    } catch (IOException e) {
+      throw new DataSetException("Delete failed on table " + tableId, e);
+    }
+  }
+
   @Override
   public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
                       @Nullable FuzzyRowFilter filter) {
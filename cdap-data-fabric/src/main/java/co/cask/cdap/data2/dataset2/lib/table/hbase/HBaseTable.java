@@ -28,6 +28,7 @@ import co.cask.cdap.api.dataset.table.TableProperties;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
+import co.cask.cdap.data2.dataset2.lib.table.ColumnAggregates;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
@@ -49,6 +50,7 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.client.Delete;
@@ -63,23 +65,31 @@ import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
 import org.apache.tephra.TxConstants;
 import org.apache.tephra.util.TxUtils;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 
 /**
  * Dataset client for HBase tables.
  */
-// todo: do periodic flush when certain threshold is reached
 // todo: extract separate "no delete inside tx" table?
 // todo: consider writing & reading using HTable to do in multi-threaded way
 public class HBaseTable extends BufferingTable {
@@ -95,6 +105,16 @@ public class HBaseTable extends BufferingTable {
 
   public static final String SAFE_INCREMENTS = "dataset.table.safe.readless.increments";
 
+  /**
+   * Property to enable pipelined writes, with the value being the maximum number of mutations per batch. If enabled,
+   * the mutations of a transaction are sent to HBase in batches from a background thread while the remaining
+   * mutations are being built. By default, all mutations are sent in a single batch.
+   */
+  public static final String PROPERTY_WRITE_BATCH_SIZE = "dataset.table.hbase.write.batch.size";
+
+  // Maximum number of batches that are built but not yet written to HBase
+  private static final int MAX_PENDING_BATCHES = 2;
+
   private final HBaseTableUtil tableUtil;
   private final HTable hTable;
   private final String hTableName;
@@ -110,8 +130,11 @@ public class HBaseTable extends BufferingTable {
 
   private final Map<String, String> arguments;
   private final Map<String, String> properties;
+  private final int writeBatchSize;
 
   private byte[] encodedTx;
+  // Executor for pipelined writes, created on first use
+  private ExecutorService writeExecutor;
 
   public HBaseTable(DatasetContext datasetContext, DatasetSpecification spec, Map<String, String> args,
                     CConfiguration cConf, Configuration hConf, HBaseTableUtil tableUtil) throws IOException {
@@ -142,6 +165,9 @@ public class HBaseTable extends BufferingTable {
       cConf.getInt(TxConstants.Manager.CFG_TX_MAX_LIFETIME, TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME)));
     this.arguments = args;
     this.properties = spec.getProperties();
+    this.writeBatchSize = spec.getIntProperty(PROPERTY_WRITE_BATCH_SIZE, 0);
+    Preconditions.checkArgument(writeBatchSize >= 0, "Invalid value for %s: %s",
+                                PROPERTY_WRITE_BATCH_SIZE, writeBatchSize);
   }
 
   @Override
@@ -235,6 +261,32 @@ public class HBaseTable extends BufferingTable {
     }
   }
 
+  @Override
+  protected List<byte[]> getScanBoundaries(@Nullable byte[] startRow, @Nullable byte[] stopRow, int numRanges) {
+    // split at the start keys of the regions within the range
+    List<byte[]> regionStarts = new ArrayList<>();
+    try {
+      for (byte[] regionStart : hTable.getStartKeys()) {
+        if (regionStart.length > 0
+          && (startRow == null || Bytes.compareTo(regionStart, startRow) > 0)
+          && (stopRow == null || Bytes.compareTo(regionStart, stopRow) < 0)) {
+          regionStarts.add(regionStart);
+        }
+      }
+    } catch (IOException e) {
+      throw new DataSetException("Failed to get region boundaries of table " + hTableName, e);
+    }
+    if (regionStarts.size() < numRanges) {
+      return regionStarts;
+    }
+    // more regions than ranges, pick evenly spaced region boundaries
+    List<byte[]> boundaries = new ArrayList<>(numRanges - 1);
+    for (int i = 1; i < numRanges; i++) {
+      boundaries.add(regionStarts.get(i * (regionStarts.size() + 1) / numRanges - 1));
+    }
+    return boundaries;
+  }
+
   @Override
   public byte[] getNameAsTxChangePrefix() {
     return nameAsTxChangePrefix;
@@ -245,6 +297,9 @@ public class HBaseTable extends BufferingTable {
     try {
       super.close();
     } finally {
+      if (writeExecutor != null) {
+        writeExecutor.shutdownNow();
+      }
       hTable.close();
     }
   }
@@ -258,56 +313,131 @@ public class HBaseTable extends BufferingTable {
     byte [] txId = tx == null ? null : Bytes.toBytes(tx.getTransactionId());
     byte [] txWritePointer = tx == null ? null : Bytes.toBytes(tx.getWritePointer());
     List<Mutation> mutations = new ArrayList<>();
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : updates.entrySet()) {
-      // create these only when they are needed
-      PutBuilder put = null;
-      PutBuilder incrementPut = null;
-      IncrementBuilder increment = null;
-
-      for (Map.Entry<byte[], Update> column : row.getValue().entrySet()) {
-        // we want support tx and non-tx modes
-        if (tx != null) {
-          // TODO: hijacking timestamp... bad
-          Update val = column.getValue();
-          if (val instanceof IncrementValue) {
-            if (safeReadlessIncrements) {
-              increment = getIncrement(increment, row.getKey(), txId, txWritePointer);
-              increment.add(columnFamily, column.getKey(), tx.getWritePointer(),
-                            ((IncrementValue) val).getValue());
-            } else {
+    Deque<Future<?>> pendingBatches = new ArrayDeque<>();
+    AtomicBoolean aborted = new AtomicBoolean();
+    try {
+      for (Map.Entry<byte[], NavigableMap<byte[], Update>> row : updates.entrySet()) {
+        // create these only when they are needed
+        PutBuilder put = null;
+        PutBuilder incrementPut = null;
+        IncrementBuilder increment = null;
+
+        for (Map.Entry<byte[], Update> column : row.getValue().entrySet()) {
+          // we want support tx and non-tx modes
+          if (tx != null) {
+            // TODO: hijacking timestamp... bad
+            Update val = column.getValue();
+            if (val instanceof IncrementValue) {
+              if (safeReadlessIncrements) {
+                increment = getIncrement(increment, row.getKey(), txId, txWritePointer);
+                increment.add(columnFamily, column.getKey(), tx.getWritePointer(),
+                              ((IncrementValue) val).getValue());
+              } else {
+                incrementPut = getPutForIncrement(incrementPut, row.getKey(), txId);
+                incrementPut.add(columnFamily, column.getKey(), tx.getWritePointer(),
+                                 Bytes.toBytes(((IncrementValue) val).getValue()));
+              }
+            } else if (val instanceof PutValue) {
+              put = getPut(put, row.getKey(), txId);
+              put.add(columnFamily, column.getKey(), tx.getWritePointer(),
+                      wrapDeleteIfNeeded(((PutValue) val).getValue()));
+            }
+          } else {
+            Update val = column.getValue();
+            if (val instanceof IncrementValue) {
               incrementPut = getPutForIncrement(incrementPut, row.getKey(), txId);
-              incrementPut.add(columnFamily, column.getKey(), tx.getWritePointer(),
+              incrementPut.add(columnFamily, column.getKey(),
                                Bytes.toBytes(((IncrementValue) val).getValue()));
+            } else if (val instanceof PutValue) {
+              put = getPut(put, row.getKey(), txId);
+              put.add(columnFamily, column.getKey(), ((PutValue) val).getValue());
             }
-          } else if (val instanceof PutValue) {
-            put = getPut(put, row.getKey(), txId);
-            put.add(columnFamily, column.getKey(), tx.getWritePointer(),
-                    wrapDeleteIfNeeded(((PutValue) val).getValue()));
-          }
-        } else {
-          Update val = column.getValue();
-          if (val instanceof IncrementValue) {
-            incrementPut = getPutForIncrement(incrementPut, row.getKey(), txId);
-            incrementPut.add(columnFamily, column.getKey(),
-                             Bytes.toBytes(((IncrementValue) val).getValue()));
-          } else if (val instanceof PutValue) {
-            put = getPut(put, row.getKey(), txId);
-            put.add(columnFamily, column.getKey(), ((PutValue) val).getValue());
           }
         }
+        if (incrementPut != null) {
+          mutations.add(incrementPut.build());
+        }
+        if (increment != null) {
+          mutations.add(increment.build());
+        }
+        if (put != null) {
+          mutations.add(put.build());
+        }
+        if (writeBatchSize > 0 && mutations.size() >= writeBatchSize) {
+          submitBatch(mutations, pendingBatches, aborted);
+          mutations = new ArrayList<>();
+        }
       }
-      if (incrementPut != null) {
-        mutations.add(incrementPut.build());
+      if (!pendingBatches.isEmpty()) {
+        // send the last batch and wait for all batches to be written
+        if (!mutations.isEmpty()) {
+          submitBatch(mutations, pendingBatches, aborted);
+        }
+        awaitBatches(pendingBatches, 0);
+      } else if (!hbaseFlush(mutations)) {
+        LOG.info("No writes to persist!");
       }
-      if (increment != null) {
-        mutations.add(increment.build());
+    } catch (Throwable t) {
+      // never return while a batch is still being written, otherwise the undo of a rollback could race with it
+      aborted.set(true);
+      drainBatches(pendingBatches, t);
+      Throwables.propagateIfPossible(t, Exception.class);
+      throw Throwables.propagate(t);
+    }
+  }
+
+  /**
+   * Submits a batch of mutations to be written in the background. Batches are written in submission order. If there
+   * are too many pending batches, this waits for the oldest ones to be written first, so that building mutations
+   * does not run too far ahead of writing them. A batch that has not started yet when the persist is aborted is
+   * skipped.
+   */
+  private void submitBatch(final List<Mutation> mutations, Deque<Future<?>> pendingBatches,
+                           final AtomicBoolean aborted) throws Exception {
+    awaitBatches(pendingBatches, MAX_PENDING_BATCHES - 1);
+    if (writeExecutor == null) {
+      writeExecutor = Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("hbase-table-writer-%d"));
+    }
+    pendingBatches.add(writeExecutor.submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return !aborted.get() && hbaseFlush(mutations);
       }
-      if (put != null) {
-        mutations.add(put.build());
+    }));
+  }
+
+  /**
+   * Waits for pending batches to be written until at most the given number of batches are pending. The failure of
+   * a batch is propagated; the caller is responsible for draining the remaining batches.
+   */
+  private void awaitBatches(Deque<Future<?>> pendingBatches, int maxPending) throws Exception {
+    while (pendingBatches.size() > maxPending) {
+      try {
+        pendingBatches.peek().get();
+      } catch (ExecutionException e) {
+        pendingBatches.poll();
+        Throwables.propagateIfPossible(e.getCause(), Exception.class);
+        throw e;
       }
+      pendingBatches.poll();
     }
-    if (!hbaseFlush(mutations)) {
-      LOG.info("No writes to persist!");
+  }
+
+  /**
+   * Waits for all pending batches to complete, even if the current thread is interrupted. Batch futures are not
+   * cancelled, because cancelling a running batch would not stop its write, but only stop waiting for it. Failures
+   * of the batches are added as suppressed exceptions to the given failure.
+   */
+  private void drainBatches(Deque<Future<?>> pendingBatches, Throwable failure) {
+    Future<?> future;
+    while ((future = pendingBatches.poll()) != null) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        if (e.getCause() != failure) {
+          failure.addSuppressed(e.getCause());
+        }
+      }
     }
   }
 
@@ -437,8 +567,32 @@ public class HBaseTable extends BufferingTable {
   @ReadOnly
   @Override
   protected Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan) throws Exception {
+    return scanPersisted(scan, null);
+  }
+
+  @ReadOnly
+  @Override
+  protected ColumnAggregates aggregatePersisted(co.cask.cdap.api.dataset.table.Scan scan,
+                                                byte[] column) throws Exception {
+    // The aggregates are computed in this process, the scan only limits the data sent by the region servers to the
+    // aggregated column. Computing them in the region servers would need a coprocessor endpoint.
+    ColumnAggregates aggregates = new ColumnAggregates();
+    try (Scanner scanner = scanPersisted(scan, column)) {
+      addToAggregates(aggregates, scanner, column);
+    }
+    return aggregates;
+  }
+
+  /**
+   * Scans the persisted rows, either with all columns or only with the given column.
+   */
+  private Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan, @Nullable byte[] column) throws Exception {
     ScanBuilder hScan = tableUtil.buildScan();
-    hScan.addFamily(columnFamily);
+    if (column == null) {
+      hScan.addFamily(columnFamily);
+    } else {
+      hScan.addColumn(columnFamily, column);
+    }
 
     // TODO (CDAP-11954): use common utility method to extract these configs
     if (scan.getProperties().containsKey(CONFIG_HBASE_CLIENT_CACHE_BLOCKS)) {
@@ -97,7 +97,7 @@ public class LevelDBMetricsTable implements MetricsTable {
   }
 
   @Override
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
     try {
       return core.swap(row, column, oldValue, newValue);
     } catch (IOException e) {
@@ -143,6 +143,15 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public void delete(NavigableMap<byte[], byte[][]> deletes) {
+    try {
+      core.deleteColumns(deletes);
+    } catch (IOException e) {
+      throw new DataSetException("Delete failed on table " + tableName, e);
+    }
+  }
+
   @Override
   public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
                       @Nullable FuzzyRowFilter filter) {
@@ -22,11 +22,13 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
+import co.cask.cdap.data2.dataset2.lib.table.ColumnAggregates;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
@@ -35,6 +37,8 @@ import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 import com.google.common.collect.Maps;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -121,6 +125,12 @@ public class LevelDBTable extends BufferingTable {
     return core.getRow(row, columns, null, null, -1, tx);
   }
 
+  @ReadOnly
+  @Override
+  protected List<Map<byte[], byte[]>> getPersisted(List<Get> gets) throws Exception {
+    return new ArrayList<Map<byte[], byte[]>>(core.getRows(gets, tx));
+  }
+
   @ReadOnly
   @Override
   protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
@@ -131,17 +141,7 @@ public class LevelDBTable extends BufferingTable {
   @ReadOnly
   @Override
   protected Scanner scanPersisted(Scan scan) throws Exception {
-
-    FuzzyRowFilter filter = null;
-    if (scan.getFilter() != null) {
-      // todo: currently we support only FuzzyRowFilter as an experimental feature
-      if (scan.getFilter() instanceof FuzzyRowFilter) {
-        filter = (FuzzyRowFilter) scan.getFilter();
-      } else {
-        throw new DataSetException("Unknown filter type: " + scan.getFilter());
-      }
-    }
-    final Scanner scanner = core.scan(scan.getStartRow(), scan.getStopRow(), filter, null, tx);
+    final Scanner scanner = core.scan(scan.getStartRow(), scan.getStopRow(), getFilter(scan), null, tx);
     return new Scanner() {
       @Nullable
       @Override
@@ -156,6 +156,24 @@ public class LevelDBTable extends BufferingTable {
     };
   }
 
+  @ReadOnly
+  @Override
+  protected ColumnAggregates aggregatePersisted(Scan scan, byte[] column) throws Exception {
+    return core.aggregate(scan.getStartRow(), scan.getStopRow(), column, getFilter(scan), tx);
+  }
+
+  @Nullable
+  private FuzzyRowFilter getFilter(Scan scan) {
+    if (scan.getFilter() == null) {
+      return null;
+    }
+    // todo: currently we support only FuzzyRowFilter as an experimental feature
+    if (scan.getFilter() instanceof FuzzyRowFilter) {
+      return (FuzzyRowFilter) scan.getFilter();
+    }
+    throw new DataSetException("Unknown filter type: " + scan.getFilter());
+  }
+
   // Helper methods to help operate on the Scanner with authroization
 
   @ReadOnly
@@ -17,11 +17,14 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.ColumnAggregates;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.messaging.store.leveldb.LevelDBUtils;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
@@ -36,12 +39,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -65,6 +72,9 @@ public class LevelDBTableCore {
   // used for obtaining the next row/column for upper bound
   private static final byte[] ONE_ZERO = { 0x00 };
 
+  // number of deletes written in one batch by range deletes
+  private static final int DELETES_PER_BATCH = 1024;
+
   private static byte[] upperBound(byte[] column) {
     return Bytes.add(column, ONE_ZERO);
   }
@@ -92,48 +102,83 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      unlock(locks);
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    List<Lock> locks = lockRows(Collections.singleton(row));
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      unlock(locks);
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    List<Lock> locks = lockRows(updates.keySet());
+    try {
+      Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
+      for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+        NavigableMap<byte[], Long> increments = row.getValue();
+        Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        Map<byte[], Long> result = getResultMap(row.getKey(), increments);
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+        }
+        resultMap.put(row.getKey(), replacing);
       }
-      resultMap.put(row.getKey(), replacing);
+      persist(resultMap, System.currentTimeMillis());
+    } finally {
+      unlock(locks);
+    }
+  }
+
+  /**
+   * Acquires the locks for read-modify-write operations on the given rows. Only rows hashed to the same lock stripe
+   * are serialized, so that operations on different rows can proceed concurrently.
+   *
+   * @return the list of locks acquired, which should be released by {@link #unlock(List)}
+   */
+  private List<Lock> lockRows(Collection<byte[]> rows) {
+    List<Lock> locks = service.getRowLocks(tableName, rows);
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    return locks;
+  }
+
+  private void unlock(List<Lock> locks) {
+    for (int i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
     }
-    persist(resultMap, System.currentTimeMillis());
   }
 
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
@@ -200,6 +245,14 @@ public class LevelDBTableCore {
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
     }
 
+    if (filter != null) {
+      // no row after the fixed prefix of the filter can match
+      byte[] filterStopRow = Bytes.stopKeyForPrefix(filter.getRowPrefix());
+      if (filterStopRow != null && (stopRow == null || Bytes.compareTo(filterStopRow, stopRow) < 0)) {
+        stopRow = filterStopRow;
+      }
+    }
+
     DBIterator iterator = getDB().iterator();
     seekToStart(iterator, startRow);
     byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
@@ -212,10 +265,53 @@ public class LevelDBTableCore {
   public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
                                              byte[] startCol, byte[] stopCol,
                                              int limit, Transaction tx) throws IOException {
-    if (columns != null) {
-      if (columns.length == 0) {
-        return EMPTY_ROW_MAP;
+    if (columns != null && columns.length == 0) {
+      return EMPTY_ROW_MAP;
+    }
+    try (DBIterator iterator = getDB().iterator()) {
+      return getRow(iterator, row, columns, startCol, stopCol, limit, tx);
+    }
+  }
+
+  /**
+   * Reads multiple rows with a single iterator, hence all rows are read from the same snapshot of the table.
+   * The rows are looked up in sorted order, so that neighbouring rows are read from the same blocks.
+   *
+   * @return the column maps of the rows in the same order as the given gets
+   */
+  public List<NavigableMap<byte[], byte[]>> getRows(List<Get> gets, Transaction tx) throws IOException {
+    Integer[] order = new Integer[gets.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Bytes.compareTo(gets.get(i1).getRow(), gets.get(i2).getRow());
       }
+    });
+
+    List<NavigableMap<byte[], byte[]>> results = new ArrayList<>(Collections.<NavigableMap<byte[], byte[]>>nCopies(
+      gets.size(), null));
+    try (DBIterator iterator = getDB().iterator()) {
+      for (int i : order) {
+        Get get = gets.get(i);
+        List<byte[]> columns = get.getColumns();
+        if (columns != null && columns.isEmpty()) {
+          results.set(i, EMPTY_ROW_MAP);
+        } else {
+          byte[][] cols = columns == null ? null : columns.toArray(new byte[columns.size()][]);
+          results.set(i, getRow(iterator, get.getRow(), cols, null, null, -1, tx));
+        }
+      }
+    }
+    return results;
+  }
+
+  private static NavigableMap<byte[], byte[]> getRow(DBIterator iterator, byte[] row, @Nullable byte[][] columns,
+                                                     byte[] startCol, byte[] stopCol,
+                                                     int limit, Transaction tx) throws IOException {
+    if (columns != null) {
       columns = Arrays.copyOf(columns, columns.length);
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
       limit = columns.length;
@@ -223,10 +319,61 @@ public class LevelDBTableCore {
 
     byte[] startKey = createStartKey(row, columns == null ? startCol : columns[0]);
     byte[] endKey = createEndKey(row, columns == null ? stopCol : upperBound(columns[columns.length - 1]));
+    iterator.seek(startKey);
+    return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
+  }
+
+  /**
+   * Computes the aggregates of a column over a range of rows. Only the latest visible version of the column is read
+   * in each row, all other columns are skipped.
+   */
+  public ColumnAggregates aggregate(@Nullable byte[] startRow, @Nullable byte[] stopRow, byte[] column,
+                                    @Nullable FuzzyRowFilter filter, @Nullable Transaction tx) throws IOException {
+    ColumnAggregates aggregates = new ColumnAggregates();
+    byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
     try (DBIterator iterator = getDB().iterator()) {
-      iterator.seek(startKey);
-      return getRow(iterator, endKey, tx, false, columns, limit).getSecond();
+      if (startRow != null) {
+        iterator.seek(createStartKey(startRow));
+      } else {
+        iterator.seekToFirst();
+      }
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+        if (endKey != null && KeyValue.KEY_COMPARATOR.compare(entry.getKey(), endKey) >= 0) {
+          break;
+        }
+        byte[] row = KeyValue.fromKey(entry.getKey()).getRow();
+        if (filter != null) {
+          FuzzyRowFilter.ReturnCode code = filter.filterRow(row);
+          if (code == FuzzyRowFilter.ReturnCode.DONE) {
+            break;
+          }
+          if (code == FuzzyRowFilter.ReturnCode.SEEK_NEXT_USING_HINT) {
+            iterator.seek(createStartKey(filter.getNextRowHint(row)));
+            continue;
+          }
+        }
+
+        // versions of a cell are sorted latest first, the first visible one is the value of the column
+        iterator.seek(createStartKey(row, column));
+        while (iterator.hasNext()) {
+          KeyValue kv = KeyValue.fromKey(iterator.peekNext().getKey());
+          if (!Bytes.equals(kv.getRow(), row) || !Bytes.equals(kv.getQualifier(), column)) {
+            break;
+          }
+          byte[] value = iterator.next().getValue();
+          if (tx == null || tx.isVisible(kv.getTimestamp())) {
+            if (tx == null || !Bytes.equals(value, DELETE_MARKER)) {
+              aggregates.add(value);
+            }
+            break;
+          }
+        }
+        // skip the rest of the row
+        iterator.seek(createEndKey(row, null));
+      }
     }
+    return aggregates;
   }
 
   private static Scanner createEmptyScanner() {
@@ -387,11 +534,21 @@ public class LevelDBTableCore {
     db.write(batch, getWriteOptions());
   }
 
-  public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns)
-    throws IOException {
+  /**
+   * Deletes all versions of the cells in a range of rows, disregarding transactions. If neither a filter nor
+   * columns are given, the raw entries of the range are deleted in batches without reading the rows, and the
+   * range is compacted afterwards to reclaim its disk space.
+   *
+   * @return the number of cells or entries deleted
+   */
+  public long deleteRange(@Nullable byte[] startRow, @Nullable byte[] stopRow,
+                          @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns) throws IOException {
+    if (filter == null && columns == null) {
+      return deleteRange(startRow, stopRow);
+    }
     if (columns != null) {
       if (columns.length == 0) {
-        return;
+        return 0L;
       }
       columns = Arrays.copyOf(columns, columns.length);
       Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
@@ -404,7 +561,7 @@ public class LevelDBTableCore {
 
     DBIterator deleteIterator = db.iterator();
     seekToStart(deleteIterator, startRow);
-    final int deletesPerRound = 1024; // todo make configurable
+    long deletes = 0L;
     try (Scanner scanner = new LevelDBScanner(iterator, endKey, filter, columns, null)) {
       Row rowValues;
       WriteBatch batch = db.createWriteBatch();
@@ -416,9 +573,10 @@ public class LevelDBTableCore {
         for (byte[] column : rowValues.getColumns().keySet()) {
           addToDeleteBatch(batch, deleteIterator, row, column);
           deletesInBatch++;
+          deletes++;
 
           // perform the deletes when we have built up a batch.
-          if (deletesInBatch >= deletesPerRound) {
+          if (deletesInBatch >= DELETES_PER_BATCH) {
             // delete all the entries that were found
             db.write(batch, getWriteOptions());
             batch = db.createWriteBatch();
@@ -434,6 +592,79 @@ public class LevelDBTableCore {
     } finally {
       deleteIterator.close();
     }
+    return deletes;
+  }
+
+  /**
+   * Deletes all entries of a range of rows in batches, then compacts the range.
+   */
+  private long deleteRange(@Nullable byte[] startRow, @Nullable byte[] stopRow) throws IOException {
+    long startTime = System.currentTimeMillis();
+    byte[] endKey = stopRow == null ? null : createEndKey(stopRow);
+    byte[] firstKey = null;
+    byte[] lastKey = null;
+    long deletes = 0L;
+
+    DB db = getDB();
+    DBIterator iterator = db.iterator();
+    seekToStart(iterator, startRow);
+    try {
+      WriteBatch batch = db.createWriteBatch();
+      int deletesInBatch = 0;
+      while (iterator.hasNext()) {
+        byte[] key = iterator.next().getKey();
+        if (endKey != null && KeyValue.KEY_COMPARATOR.compare(key, endKey) >= 0) {
+          break;
+        }
+        if (firstKey == null) {
+          firstKey = key;
+        }
+        lastKey = key;
+        batch.delete(key);
+        deletes++;
+        if (++deletesInBatch >= DELETES_PER_BATCH) {
+          db.write(batch, getWriteOptions());
+          batch.close();
+          batch = db.createWriteBatch();
+          deletesInBatch = 0;
+        }
+      }
+      if (deletesInBatch > 0) {
+        db.write(batch, getWriteOptions());
+      }
+      batch.close();
+    } finally {
+      iterator.close();
+    }
+
+    if (firstKey != null) {
+      LevelDBUtils.compactRange(db, firstKey, lastKey);
+    }
+    long elapsed = System.currentTimeMillis() - startTime;
+    LOG.debug("Deleted {} entries from table {} in {} ms ({} entries/s)",
+              deletes, tableName, elapsed, elapsed == 0 ? deletes : deletes * 1000 / elapsed);
+    return deletes;
+  }
+
+  /**
+   * Deletes all versions of the given columns of multiple rows in one batch, disregarding transactions.
+   *
+   * @param deletes map from row key to the columns to delete in that row
+   */
+  public void deleteColumns(NavigableMap<byte[], byte[][]> deletes) throws IOException {
+    if (deletes.isEmpty()) {
+      return;
+    }
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    try (DBIterator iterator = db.iterator()) {
+      for (Map.Entry<byte[], byte[][]> row : deletes.entrySet()) {
+        for (byte[] column : row.getValue()) {
+          addToDeleteBatch(batch, iterator, row.getKey(), column);
+        }
+      }
+      db.write(batch, getWriteOptions());
+    }
   }
 
   public void deleteColumn(byte[] row, byte[] column) throws IOException {
@@ -504,11 +735,28 @@ public class LevelDBTableCore {
     public Row next() {
       try {
         while (true) {
+          if (filter != null && iterator.hasNext()) {
+            // apply the row filter to the key of the next entry, so that rows not matching are skipped without
+            // reading their columns
+            byte[] nextKey = iterator.peekNext().getKey();
+            if (endKey != null && KeyValue.KEY_COMPARATOR.compare(nextKey, endKey) >= 0) {
+              return null;
+            }
+            byte[] nextRow = KeyValue.fromKey(nextKey).getRow();
+            FuzzyRowFilter.ReturnCode code = filter.filterRow(nextRow);
+            if (code == FuzzyRowFilter.ReturnCode.DONE) {
+              return null;
+            }
+            if (code == FuzzyRowFilter.ReturnCode.SEEK_NEXT_USING_HINT) {
+              iterator.seek(createStartKey(filter.getNextRowHint(nextRow)));
+              continue;
+            }
+          }
           ImmutablePair<byte[], NavigableMap<byte[], byte[]>> result = getRow(iterator, endKey, tx, true, columns, -1);
           if (result.getFirst() == null) {
             return null;
           }
-          // apply row filter if any
+          // apply row filter if any. the row may differ from the one checked above if that had no visible columns
           if (filter != null) {
             FuzzyRowFilter.ReturnCode code = filter.filterRow(result.getFirst());
             switch (code) {
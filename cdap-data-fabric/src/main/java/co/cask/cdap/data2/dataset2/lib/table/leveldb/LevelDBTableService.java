@@ -16,19 +16,25 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.transaction.stream.leveldb.LevelDBNameConverter;
 import co.cask.cdap.data2.util.TableId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import org.iq80.leveldb.CompressionType;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBComparator;
 import org.iq80.leveldb.Options;
@@ -38,12 +44,20 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -55,6 +69,30 @@ public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  /**
+   * Table property for the approximate size of uncompressed data per block, overriding the configured block size.
+   */
+  public static final String PROPERTY_BLOCK_SIZE = "dataset.table.leveldb.block.size";
+
+  /**
+   * Table property for the size of the in-memory write buffer, which is written to a sorted file when full.
+   */
+  public static final String PROPERTY_WRITE_BUFFER_SIZE = "dataset.table.leveldb.write.buffer.size";
+
+  /**
+   * Table property for the compression of blocks, either {@code none} or {@code snappy}.
+   */
+  public static final String PROPERTY_COMPRESSION = "dataset.table.leveldb.compression";
+
+  private static final List<String> TABLE_OPTION_PROPERTIES =
+    ImmutableList.of(PROPERTY_BLOCK_SIZE, PROPERTY_WRITE_BUFFER_SIZE, PROPERTY_COMPRESSION);
+
+  // file in the table directory that keeps the table options, so that they are used whenever the table is opened
+  private static final String TABLE_OPTIONS_FILE = "cdap-table-options.properties";
+
+  // number of lock stripes shared by all tables for read-modify-write operations on rows
+  private static final int ROW_LOCK_STRIPES = 1024;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
@@ -62,6 +100,7 @@ public class LevelDBTableService implements AutoCloseable {
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -187,14 +226,48 @@ public class LevelDBTableService implements AutoCloseable {
     return db;
   }
 
+  /**
+   * Returns the locks for performing read-modify-write operations on the given rows of a table. The locks are
+   * striped by row, hence are shared by all {@link LevelDBTableCore} instances of the same table. The returned
+   * locks are distinct and are always in the same order, so that acquiring them in order cannot deadlock.
+   *
+   * @param tableName name of the table
+   * @param rows the rows to lock
+   * @return a list of locks to acquire in order
+   */
+  List<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    SortedSet<Integer> stripes = new TreeSet<>();
+    int tableHash = tableName.hashCode();
+    for (byte[] row : rows) {
+      stripes.add(((31 * tableHash + Bytes.hashCode(row)) & Integer.MAX_VALUE) % ROW_LOCK_STRIPES);
+    }
+    List<Lock> locks = new ArrayList<>(stripes.size());
+    for (int stripe : stripes) {
+      locks.add(rowLocks.getAt(stripe));
+    }
+    return locks;
+  }
+
   public void ensureTableExists(String tableName) throws IOException {
+    ensureTableExists(tableName, ImmutableMap.<String, String>of());
+  }
+
+  /**
+   * Creates a table if it does not exist yet. The LevelDB options of the table can be set with the
+   * {@link #PROPERTY_BLOCK_SIZE}, {@link #PROPERTY_WRITE_BUFFER_SIZE} and {@link #PROPERTY_COMPRESSION} properties,
+   * which are kept with the table. Properties of a table that already exists are not changed.
+   *
+   * @param tableName name of the table
+   * @param properties properties of the table
+   */
+  public void ensureTableExists(String tableName, Map<String, String> properties) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
     if (db == null) {
       synchronized (tables) {
         db = tables.get(tableName);
         if (db == null) {
-          createTable(tableName);
+          createTable(tableName, properties);
         }
       }
     }
@@ -203,12 +276,9 @@ public class LevelDBTableService implements AutoCloseable {
   private DB openTable(String tableName) throws IOException {
     String dbPath = getDBPath(basePath, tableName);
 
-    Options options = new Options();
+    Options options = createOptions(readTableOptions(new File(dbPath)));
     options.createIfMissing(false);
     options.errorIfExists(false);
-    options.comparator(new KeyValueDBComparator());
-    options.blockSize(blockSize);
-    options.cacheSize(cacheSize);
 
     // unfortunately, with the java version of leveldb, with createIfMissing set to false, factory.open will
     // see that there is no table and throw an exception, but it wont clean up after itself and will leave a
@@ -223,18 +293,81 @@ public class LevelDBTableService implements AutoCloseable {
     return db;
   }
 
-  private void createTable(String name) throws IOException {
+  private void createTable(String name, Map<String, String> properties) throws IOException {
     String dbPath = getDBPath(basePath, name);
+    File dbDir = new File(dbPath);
 
-    Options options = new Options();
+    // options of an existing table take precedence
+    Map<String, String> tableOptions = readTableOptions(dbDir);
+    if (!dbDir.exists()) {
+      tableOptions = Maps.filterKeys(properties, Predicates.in(TABLE_OPTION_PROPERTIES));
+    }
+    Options options = createOptions(tableOptions);
     options.createIfMissing(true);
     options.errorIfExists(false);
+
+    DB db = factory.open(dbDir, options);
+    if (!tableOptions.isEmpty()) {
+      writeTableOptions(dbDir, tableOptions);
+    }
+    tables.put(name, db);
+  }
+
+  /**
+   * Creates the options for opening a table with the given table options.
+   */
+  private Options createOptions(Map<String, String> tableOptions) {
+    Options options = new Options();
     options.comparator(new KeyValueDBComparator());
-    options.blockSize(blockSize);
     options.cacheSize(cacheSize);
+    options.blockSize(getPositiveInt(tableOptions, PROPERTY_BLOCK_SIZE, blockSize));
+    if (tableOptions.containsKey(PROPERTY_WRITE_BUFFER_SIZE)) {
+      options.writeBufferSize(getPositiveInt(tableOptions, PROPERTY_WRITE_BUFFER_SIZE, 0));
+    }
+    String compression = tableOptions.get(PROPERTY_COMPRESSION);
+    if (compression != null) {
+      try {
+        options.compressionType(CompressionType.valueOf(compression.trim().toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid value for " + PROPERTY_COMPRESSION + ": " + compression, e);
+      }
+    }
+    return options;
+  }
 
-    DB db = factory.open(new File(dbPath), options);
-    tables.put(name, db);
+  private static int getPositiveInt(Map<String, String> tableOptions, String key, int defaultValue) {
+    String value = tableOptions.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    int result;
+    try {
+      result = Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+    }
+    Preconditions.checkArgument(result > 0, "Invalid value for %s: %s", key, value);
+    return result;
+  }
+
+  private static Map<String, String> readTableOptions(File dbDir) throws IOException {
+    File file = new File(dbDir, TABLE_OPTIONS_FILE);
+    if (!file.isFile()) {
+      return ImmutableMap.of();
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newReader(file, Charsets.UTF_8)) {
+      properties.load(reader);
+    }
+    return Maps.fromProperties(properties);
+  }
+
+  private static void writeTableOptions(File dbDir, Map<String, String> tableOptions) throws IOException {
+    Properties properties = new Properties();
+    properties.putAll(tableOptions);
+    try (Writer writer = Files.newWriter(new File(dbDir, TABLE_OPTIONS_FILE), Charsets.UTF_8)) {
+      properties.store(writer, null);
+    }
   }
 
   public void dropTable(String name) throws IOException {
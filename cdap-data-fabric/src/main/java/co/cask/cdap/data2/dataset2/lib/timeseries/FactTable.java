@@ -24,6 +24,7 @@ import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.IncrementCombiningMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -35,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -53,13 +55,15 @@ import javax.annotation.Nullable;
  *
  * Thread safe as long as the passed into the constructor datasets are thread safe (usually is not the case).
  */
-public final class FactTable implements Closeable {
+public final class FactTable implements Closeable, Flushable {
   private static final Logger LOG = LoggerFactory.getLogger(FactTable.class);
   private static final int MAX_ROLL_TIME = 0xfffe;
 
   // hard limits on some ops to stay on safe side
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
+  // number of rows deleted from the underlying table in one batch
+  private static final int MAX_ROWS_PER_DELETE = 1000;
 
   private static final Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>
     TRANSFORM_MAP_BYTE_ARRAY_TO_LONG = new Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>() {
@@ -78,6 +82,10 @@ public final class FactTable implements Closeable {
 
   private final String putCountMetric;
   private final String incrementCountMetric;
+  private final String deleteCountMetric;
+
+  // the latest checkpoint, used if the time series table writes all increments immediately
+  private long checkpoint = -1L;
 
   @Nullable
   private MetricsCollector metrics;
@@ -105,6 +113,7 @@ public final class FactTable implements Closeable {
     this.rollTime = rollTime;
     this.putCountMetric = "factTable." + resolution + ".put.count";
     this.incrementCountMetric = "factTable." + resolution + ".increment.count";
+    this.deleteCountMetric = "factTable." + resolution + ".delete.count";
   }
 
   public void setMetricsCollector(MetricsCollector metrics) {
@@ -213,6 +222,9 @@ public final class FactTable implements Closeable {
    * @param scan specifies deletion criteria
    */
   public void delete(FactScan scan) {
+    long startTime = System.currentTimeMillis();
+    long deletedCells = 0;
+    NavigableMap<byte[], byte[][]> deletes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     try (Scanner scanner = getScanner(scan)) {
       Row row;
       while ((row = scanner.next()) != null) {
@@ -233,14 +245,34 @@ public final class FactTable implements Closeable {
           columns.add(column);
         }
 
-        // todo: do deletes efficiently, in batches, not one-by-one
-        timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
+        if (!columns.isEmpty()) {
+          deletes.put(row.getRow(), columns.toArray(new byte[columns.size()][]));
+          deletedCells += columns.size();
+        }
+        if (deletes.size() >= MAX_ROWS_PER_DELETE) {
+          deleteBatch(deletes);
+        }
 
         if (exhausted) {
           break;
         }
       }
     }
+    deleteBatch(deletes);
+
+    long elapsed = System.currentTimeMillis() - startTime;
+    LOG.debug("Deleted {} cells from the fact table of resolution {} in {} ms ({} cells/s)",
+              deletedCells, resolution, elapsed, elapsed == 0 ? deletedCells : deletedCells * 1000 / elapsed);
+    if (metrics != null) {
+      metrics.increment(deleteCountMetric, deletedCells);
+    }
+  }
+
+  private void deleteBatch(NavigableMap<byte[], byte[][]> deletes) {
+    if (!deletes.isEmpty()) {
+      timeSeriesTable.delete(deletes);
+      deletes.clear();
+    }
   }
 
   /**
@@ -407,6 +439,41 @@ public final class FactTable implements Closeable {
     return measureNames;
   }
 
+  /**
+   * Writes any increments that are buffered by the underlying time series table, such as an
+   * {@link IncrementCombiningMetricsTable}.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (timeSeriesTable instanceof Flushable) {
+      ((Flushable) timeSeriesTable).flush();
+    }
+  }
+
+  /**
+   * Marks all facts added up to now with the given checkpoint. Checkpoints must be increasing.
+   *
+   * @see IncrementCombiningMetricsTable#checkpoint(long)
+   */
+  public void checkpoint(long checkpoint) {
+    if (timeSeriesTable instanceof IncrementCombiningMetricsTable) {
+      ((IncrementCombiningMetricsTable) timeSeriesTable).checkpoint(checkpoint);
+    } else {
+      this.checkpoint = checkpoint;
+    }
+  }
+
+  /**
+   * Returns the latest checkpoint of which all preceding facts were written to the time series table,
+   * or {@code -1} if there is none.
+   */
+  public long getFlushedCheckpoint() {
+    if (timeSeriesTable instanceof IncrementCombiningMetricsTable) {
+      return ((IncrementCombiningMetricsTable) timeSeriesTable).getFlushedCheckpoint();
+    }
+    return checkpoint;
+  }
+
   @Override
   public void close() throws IOException {
     timeSeriesTable.close();
@@ -173,7 +173,8 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
       if (useStoredStates) {
         LOG.info("Create file reader with consumer state: {}", consumerState);
         // Has existing offsets, just resume from there.
-        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState());
+        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState(),
+                                                                         getPrefetchEvents());
         reader.initialize();
         return reader;
       }
@@ -212,8 +213,12 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
     LOG.info("Empty consumer state. Create file reader with file offsets: groupId={}, instanceId={} states={}",
              consumerState.getGroupId(), consumerState.getInstanceId(), fileOffsets);
 
-    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
+    MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets, getPrefetchEvents());
     reader.initialize();
     return reader;
   }
+
+  private int getPrefetchEvents() {
+    return cConf.getInt(Constants.Stream.CONSUMER_PREFETCH_EVENTS, 0);
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.io.InputSupplier;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit test for {@link LengthPrefixedStreamBodyConsumer}.
+ */
+public class LengthPrefixedStreamBodyConsumerTest extends StreamBodyConsumerTestBase {
+
+  @Override
+  protected ContentInfo generateFile(final int recordCount) throws IOException {
+    return new FileContentInfo(generateFile(TMP_FOLDER.newFile(), recordCount)) {
+
+      @Override
+      public boolean verify(Map<String, String> headers,
+                            InputSupplier<? extends InputStream> contentSupplier) throws IOException {
+        try (InputStream input = contentSupplier.getInput()) {
+          for (int i = 0; i < recordCount; i++) {
+            byte[] expected = ("Message number " + i).getBytes(Charsets.UTF_8);
+            byte[] buf = new byte[expected.length];
+            ByteStreams.readFully(input, buf);
+            if (Bytes.compareTo(expected, buf) != 0) {
+              return false;
+            }
+          }
+          return input.read() < 0;
+        }
+      }
+    };
+  }
+
+  @Test(timeout = 60000)
+  public void testLargeEventInSmallChunks() throws Exception {
+    // Write a large event followed by a small one
+    byte[] largeBody = new byte[4 * 1024 * 1024];
+    new Random().nextBytes(largeBody);
+    byte[] smallBody = "Small message".getBytes(Charsets.UTF_8);
+    File file = TMP_FOLDER.newFile();
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      output.writeInt(largeBody.length);
+      output.write(largeBody);
+      output.writeInt(smallBody.length);
+      output.write(smallBody);
+    }
+
+    final TestContentWriter contentWriter = new TestContentWriter();
+    BodyConsumer bodyConsumer = createBodyConsumer(new ContentWriterFactory() {
+      @Override
+      public StreamId getStream() {
+        return new StreamId("test_namespace", "test-stream");
+      }
+
+      @Override
+      public ContentWriter create(Map<String, String> headers) throws IOException {
+        return contentWriter;
+      }
+    });
+    TestHttpResponder responder = new TestHttpResponder();
+
+    // Feed the content in chunks that are much smaller than the large event
+    sendChunks(Files.newInputStreamSupplier(file), 64, bodyConsumer, responder);
+
+    Assert.assertEquals(HttpResponseStatus.OK, responder.getResponseStatus());
+    Assert.assertEquals(2, contentWriter.getEvents());
+    ByteBuffer content = contentWriter.getContent();
+    byte[] expected = Bytes.concat(largeBody, smallBody);
+    Assert.assertEquals(expected.length, content.remaining());
+    Assert.assertArrayEquals(expected, Bytes.toBytes(content));
+  }
+
+  @Override
+  protected BodyConsumer createBodyConsumer(ContentWriterFactory contentWriterFactory) {
+    return new LengthPrefixedStreamBodyConsumer(contentWriterFactory);
+  }
+
+  private File generateFile(File file, int recordCount) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      for (int i = 0; i < recordCount; i++) {
+        byte[] body = ("Message number " + i).getBytes(Charsets.UTF_8);
+        output.writeInt(body.length);
+        output.write(body);
+      }
+    }
+    return file;
+  }
+}
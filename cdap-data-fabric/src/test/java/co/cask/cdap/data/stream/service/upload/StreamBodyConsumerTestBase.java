@@ -100,8 +100,8 @@ public abstract class StreamBodyConsumerTestBase {
    * Sends content as provided by the given {@link InputSupplier} as small chunks to the given
    * {@link BodyConsumer}.
    */
-  private void sendChunks(InputSupplier<? extends InputStream> inputSupplier, int chunkSize,
-                          BodyConsumer bodyConsumer, HttpResponder responder) throws IOException {
+  protected void sendChunks(InputSupplier<? extends InputStream> inputSupplier, int chunkSize,
+                            BodyConsumer bodyConsumer, HttpResponder responder) throws IOException {
     try (InputStream input = inputSupplier.getInput()) {
       byte[] bytes = new byte[chunkSize];
       int len = input.read(bytes);
@@ -152,7 +152,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link ContentWriter} for testing. It keeps all content written in memory.
    */
-  private static class TestContentWriter implements ContentWriter {
+  protected static class TestContentWriter implements ContentWriter {
     private final List<ByteBuf> contents;
     private final CountDownLatch completion;
     private int events;
@@ -202,7 +202,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link HttpResponder} for testing. It only saved the first response status event sent.
    */
-  private static class TestHttpResponder extends AbstractHttpResponder {
+  protected static class TestHttpResponder extends AbstractHttpResponder {
     private final AtomicReference<HttpResponseStatus> responseStatus = new AtomicReference<>();
 
     @Override
@@ -17,19 +17,24 @@
 package co.cask.cdap.data2.dataset2.lib.table;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetAdmin;
 import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.dataset.table.TableProperties;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.TableAssert;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
+import org.apache.tephra.TransactionConflictException;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -502,6 +507,304 @@ public abstract class BufferingTableTest<T extends BufferingTable> extends Table
     }
   }
 
+  @Test
+  public void testWriteHeavyTransaction() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      BufferingTable table = getTable(CONTEXT1, MY_TABLE);
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+
+      // Write enough cells such that later puts go to the compact buffer
+      int rows = 2000;
+      for (int i = 0; i < rows; i++) {
+        table.put(Bytes.toBytes(String.format("r%05d", i)), a(C1, C2), lb(i, i));
+      }
+      // Overwrite cells, both the ones written earlier in the transaction and the ones in the same batch
+      for (int i = 0; i < rows; i += 2) {
+        table.put(Bytes.toBytes(String.format("r%05d", i)), C1, Bytes.toBytes(-1L));
+        table.put(Bytes.toBytes(String.format("r%05d", i)), C1, Bytes.toBytes((long) -i));
+      }
+      table.put(Bytes.toBytes("r99999"), C3, L1);
+
+      // A concurrent transaction that writes to a row only in the compact buffer should conflict
+      BufferingTable table2 = getTable(CONTEXT1, MY_TABLE);
+      Transaction tx2 = txClient.startShort();
+      table2.startTx(tx2);
+      table2.put(Bytes.toBytes("r99999"), C4, L2);
+      txClient.canCommitOrThrow(tx2, table2.getTxChanges());
+      Assert.assertTrue(table2.commitTx());
+      txClient.commitOrThrow(tx2);
+      table2.postTxCommit();
+      try {
+        txClient.canCommitOrThrow(tx1, table.getTxChanges());
+        Assert.fail("Conflict not detected!");
+      } catch (TransactionConflictException e) {
+        // expected
+      }
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx1);
+
+      // Redo the writes, with reads in between
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      for (int i = 0; i < rows; i++) {
+        table.put(Bytes.toBytes(String.format("r%05d", i)), a(C1, C2), lb(i, i));
+      }
+      for (int i = 0; i < rows; i += 2) {
+        table.put(Bytes.toBytes(String.format("r%05d", i)), C1, Bytes.toBytes((long) -i));
+      }
+      // The buffered writes should be visible to reads
+      Assert.assertArrayEquals(Bytes.toBytes(-10L), table.get(Bytes.toBytes("r00010"), C1));
+      table.delete(Bytes.toBytes("r00010"), a(C2));
+      table.put(Bytes.toBytes("r00012"), C2, Bytes.toBytes(-12L));
+      TableAssert.assertRow(table.get(Bytes.toBytes("r00012")), Bytes.toBytes("r00012"), a(C1, C2), lb(-12, -12));
+      table.put(Bytes.toBytes("r00014"), C2, null);
+
+      txClient.canCommitOrThrow(tx3, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx3);
+      table.postTxCommit();
+
+      // Verify all writes are persisted
+      Transaction tx4 = txClient.startShort();
+      table.startTx(tx4);
+      try (Scanner scanner = table.scan(Bytes.toBytes("r"), Bytes.toBytes("r99999"))) {
+        for (int i = 0; i < rows; i++) {
+          Row row = scanner.next();
+          Assert.assertNotNull(row);
+          Assert.assertArrayEquals(Bytes.toBytes(String.format("r%05d", i)), row.getRow());
+          long c1 = i % 2 == 0 ? -i : i;
+          if (i == 10 || i == 14) {
+            TableAssert.assertRow(row, row.getRow(), a(C1), lb(c1));
+          } else if (i == 12) {
+            TableAssert.assertRow(row, row.getRow(), a(C1, C2), lb(-12, -12));
+          } else {
+            TableAssert.assertRow(row, row.getRow(), a(C1, C2), lb(c1, i));
+          }
+        }
+        Assert.assertNull(scanner.next());
+      }
+      TableAssert.assertRow(table.get(Bytes.toBytes("r99999")), Bytes.toBytes("r99999"), a(C4), lb(2));
+      txClient.commitOrThrow(tx4);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testReadCache() throws Exception {
+    DatasetProperties props = TableProperties.builder()
+      .setConflictDetection(ConflictDetection.ROW)
+      .add(BufferingTable.PROPERTY_READ_CACHE_SIZE, "100")
+      .build();
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE, props);
+    admin.create();
+    try {
+      BufferingTable table1 = getTable(CONTEXT1, MY_TABLE, props);
+      Transaction tx1 = txClient.startShort();
+      table1.startTx(tx1);
+      table1.put(R1, a(C1, C2), a(V1, V2));
+      txClient.canCommitOrThrow(tx1, table1.getTxChanges());
+      Assert.assertTrue(table1.commitTx());
+      txClient.commitOrThrow(tx1);
+      table1.postTxCommit();
+
+      // Two transactions that see the same committed data share the cache
+      BufferingTable table2 = getTable(CONTEXT1, MY_TABLE, props);
+      BufferingTable table3 = getTable(CONTEXT1, MY_TABLE, props);
+      Transaction tx2 = txClient.startShort();
+      Transaction tx3 = txClient.startShort();
+      table2.startTx(tx2);
+      table3.startTx(tx3);
+      Assert.assertArrayEquals(V1, table2.get(R1, C1));
+      TableAssert.assertRow(table2.get(R1), R1, a(C1, C2), a(V1, V2));
+      Assert.assertArrayEquals(V1, table3.get(R1, C1));
+      TableAssert.assertRow(table3.get(R1), R1, a(C1, C2), a(V1, V2));
+      Assert.assertNull(table3.get(R2, C1));
+
+      // Changes to the returned values should not affect the cache
+      table3.get(R1, a(C1)).get(C1)[0]++;
+      table3.get(R1).get(C2)[0]++;
+      Assert.assertArrayEquals(V1, table3.get(R1, C1));
+      Assert.assertArrayEquals(V2, table3.get(R1, C2));
+
+      // Commit a change to the row
+      BufferingTable table4 = getTable(CONTEXT1, MY_TABLE, props);
+      Transaction tx4 = txClient.startShort();
+      table4.startTx(tx4);
+      table4.put(R1, C1, V3);
+      table4.put(R2, C1, V4);
+      txClient.canCommitOrThrow(tx4, table4.getTxChanges());
+      Assert.assertTrue(table4.commitTx());
+      txClient.commitOrThrow(tx4);
+      table4.postTxCommit();
+
+      // A new transaction should see the change
+      Transaction tx5 = txClient.startShort();
+      table4.startTx(tx5);
+      Assert.assertArrayEquals(V3, table4.get(R1, C1));
+      TableAssert.assertRow(table4.get(R1), R1, a(C1, C2), a(V3, V2));
+      List<Row> rows = table4.get(Lists.newArrayList(new Get(R1, C1), new Get(R2), new Get(R3, C1)));
+      TableAssert.assertRow(rows.get(0), R1, a(C1), a(V3));
+      TableAssert.assertRow(rows.get(1), R2, a(C1), a(V4));
+      Assert.assertTrue(rows.get(2).isEmpty());
+
+      // Existing transactions should still not see the change, even after the cache was updated by the new one
+      Assert.assertArrayEquals(V1, table2.get(R1, C1));
+      TableAssert.assertRow(table3.get(R1), R1, a(C1, C2), a(V1, V2));
+      Assert.assertNull(table3.get(R2, C1));
+      rows = table2.get(Lists.newArrayList(new Get(R1, C1), new Get(R2)));
+      TableAssert.assertRow(rows.get(0), R1, a(C1), a(V1));
+      Assert.assertTrue(rows.get(1).isEmpty());
+
+      // Buffered writes are applied on top of cached reads
+      table2.put(R1, C2, V5);
+      TableAssert.assertRow(table2.get(R1), R1, a(C1, C2), a(V1, V5));
+
+      Assert.assertTrue(table2.rollbackTx());
+      txClient.abort(tx2);
+      txClient.commitOrThrow(tx3);
+      txClient.commitOrThrow(tx5);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testParallelScan() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      // rows spread over the key space, more than a range reads ahead
+      BufferingTable table = getTable(CONTEXT1, MY_TABLE);
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      for (int i = 0; i < 3000; i++) {
+        table.put(new byte[] { (byte) (i % 256), (byte) (i / 256) }, C1, Bytes.toBytes(i));
+      }
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+
+      // buffered changes must be merged with the persisted rows
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      for (int i = 0; i < 256; i += 3) {
+        table.put(new byte[] { (byte) i, 100 }, C2, V1);
+        table.delete(new byte[] { (byte) i, 0 });
+      }
+
+      for (Scan scan : Lists.newArrayList(new Scan(null, null), new Scan(new byte[] { 10 }, new byte[] { (byte) 200 }),
+                                          new Scan(new byte[] { 10, 5 }, new byte[] { 10, 9 }))) {
+        List<Row> expected = readAll(table.scan(scan));
+        Assert.assertFalse(expected.isEmpty());
+        for (int parallelism : new int[] { 1, 3, 8 }) {
+          List<Row> actual = readAll(table.parallelScan(scan, parallelism));
+          Assert.assertEquals(expected.size(), actual.size());
+          for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.get(i).getRow(), actual.get(i).getRow());
+            Assert.assertEquals(expected.get(i).getColumns().size(), actual.get(i).getColumns().size());
+            for (Map.Entry<byte[], byte[]> column : expected.get(i).getColumns().entrySet()) {
+              Assert.assertArrayEquals(column.getValue(), actual.get(i).get(column.getKey()));
+            }
+          }
+        }
+      }
+
+      // closing a partially consumed scanner stops the readers
+      Scanner scanner = table.parallelScan(new Scan(null, null), 4);
+      Assert.assertNotNull(scanner.next());
+      scanner.close();
+
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  @Test
+  public void testAggregate() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      BufferingTable table = getTable(CONTEXT1, MY_TABLE);
+      Transaction tx1 = txClient.startShort();
+      table.startTx(tx1);
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < 10; j++) {
+          table.put(new byte[] { (byte) i, (byte) j }, C1, Bytes.toBytes((long) (i * 10 + j)));
+        }
+        table.put(new byte[] { (byte) i, 0 }, C2, Bytes.toBytes(5L));
+      }
+      table.put(new byte[] { 0, 0 }, C3, V1);
+      txClient.canCommitOrThrow(tx1, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx1);
+      table.postTxCommit();
+
+      // overwrite and delete, so that there are multiple versions of the cells
+      Transaction tx2 = txClient.startShort();
+      table.startTx(tx2);
+      table.put(new byte[] { 1, 1 }, C1, Bytes.toBytes(111L));
+      table.delete(new byte[] { 2, 2 }, C1);
+      txClient.canCommitOrThrow(tx2, table.getTxChanges());
+      Assert.assertTrue(table.commitTx());
+      txClient.commitOrThrow(tx2);
+      table.postTxCommit();
+
+      Transaction tx3 = txClient.startShort();
+      table.startTx(tx3);
+      assertAggregates(table.aggregate(null, null, C1, null), 99, 5028, 0, 111);
+      assertAggregates(table.aggregate(new byte[] { 2 }, new byte[] { 5 }, C1, null), 29, 1013, 20, 49);
+      assertAggregates(table.aggregate(null, null, C2, null), 10, 50, 5, 5);
+      FuzzyRowFilter filter = new FuzzyRowFilter(
+        ImmutableList.of(ImmutablePair.of(new byte[] { 0, 3 }, new byte[] { 0x01, 0x00 })));
+      assertAggregates(table.aggregate(null, null, C1, filter), 10, 480, 3, 93);
+      try {
+        table.aggregate(null, null, C3, null);
+        Assert.fail("Expected aggregating a column that does not contain longs to fail");
+      } catch (DataSetException e) {
+        // expected
+      }
+
+      // buffered changes are included
+      table.put(new byte[] { 9, 9 }, C1, Bytes.toBytes(1000L));
+      table.delete(new byte[] { 0, 3 }, C1);
+      assertAggregates(table.aggregate(null, null, C1, null), 98, 5926, 0, 1000);
+      assertAggregates(table.aggregate(null, null, C1, filter), 9, 477, 13, 93);
+      assertAggregates(table.aggregate(new byte[] { 2 }, new byte[] { 5 }, C1, null), 29, 1013, 20, 49);
+
+      Assert.assertTrue(table.rollbackTx());
+      txClient.abort(tx3);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private static void assertAggregates(ColumnAggregates aggregates, long count, long sum, long min, long max) {
+    Assert.assertEquals(count, aggregates.getCount());
+    Assert.assertEquals(sum, aggregates.getSum());
+    Assert.assertEquals(min, aggregates.getMin());
+    Assert.assertEquals(max, aggregates.getMax());
+  }
+
+  private static List<Row> readAll(Scanner scanner) {
+    List<Row> rows = new ArrayList<>();
+    try {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        rows.add(row);
+      }
+    } finally {
+      scanner.close();
+    }
+    return rows;
+  }
+
   private void verify123(BufferingTable table) throws Exception {
     byte[] row = new byte[] {1};
     byte[] col = new byte[] {2};
@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link CompactPutBuffer}.
+ */
+public class CompactPutBufferTest {
+
+  @Test
+  public void testDrain() {
+    CompactPutBuffer buffer = new CompactPutBuffer();
+    Random random = new Random();
+
+    // Randomly put to a set of cells, the latest put to each cell should be drained
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> expected = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 10000; i++) {
+      byte[] row = Bytes.toBytes("row" + random.nextInt(100));
+      byte[] column = Bytes.toBytes("col" + random.nextInt(10));
+      byte[] value = random.nextInt(10) == 0 ? null : Bytes.toBytes(i);
+      buffer.add(row, new byte[][] { column }, new byte[][] { value });
+
+      NavigableMap<byte[], byte[]> columns = expected.get(row);
+      if (columns == null) {
+        columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        expected.put(row, columns);
+      }
+      columns.put(column, value);
+    }
+    // A cell larger than the chunk size
+    byte[] largeValue = new byte[2 * 1024 * 1024];
+    random.nextBytes(largeValue);
+    buffer.add(Bytes.toBytes("row50"), new byte[][] { Bytes.toBytes("large") }, new byte[][] { largeValue });
+    expected.get(Bytes.toBytes("row50")).put(Bytes.toBytes("large"), largeValue);
+
+    Assert.assertEquals(10001, buffer.size());
+
+    // Drain into a map with existing values, which should be overwritten
+    NavigableMap<byte[], NavigableMap<byte[], Update>> target = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], Update> existing = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    existing.put(Bytes.toBytes("col0"), new PutValue(Bytes.toBytes("existing")));
+    existing.put(Bytes.toBytes("other"), new PutValue(Bytes.toBytes("existing")));
+    target.put(Bytes.toBytes("row0"), existing);
+    expected.get(Bytes.toBytes("row0")).put(Bytes.toBytes("other"), Bytes.toBytes("existing"));
+
+    buffer.drainTo(target);
+    Assert.assertTrue(buffer.isEmpty());
+
+    Assert.assertEquals(expected.keySet(), target.keySet());
+    for (byte[] row : expected.keySet()) {
+      NavigableMap<byte[], byte[]> expectedColumns = expected.get(row);
+      NavigableMap<byte[], Update> columns = target.get(row);
+      Assert.assertEquals(expectedColumns.keySet(), columns.keySet());
+      for (byte[] column : expectedColumns.keySet()) {
+        Assert.assertArrayEquals(expectedColumns.get(column), (byte[]) columns.get(column).getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testForEachCell() {
+    CompactPutBuffer buffer = new CompactPutBuffer();
+    buffer.add(Bytes.toBytes("r2"), new byte[][] { Bytes.toBytes("c1"), Bytes.toBytes("c2") },
+               new byte[][] { Bytes.toBytes("v1"), Bytes.toBytes("v2") });
+    buffer.add(Bytes.toBytes("r1"), new byte[][] { Bytes.toBytes("c2") }, new byte[][] { Bytes.toBytes("v3") });
+    buffer.add(Bytes.toBytes("r2"), new byte[][] { Bytes.toBytes("c1") }, new byte[][] { Bytes.toBytes("v4") });
+
+    final StringBuilder cells = new StringBuilder();
+    buffer.forEachCell(new CompactPutBuffer.CellConsumer() {
+      private byte[] lastRow;
+
+      @Override
+      public void accept(byte[] row, byte[] column, byte[] value) {
+        // Cells of the same row should share the same row array
+        if (lastRow != null && Bytes.equals(lastRow, row)) {
+          Assert.assertSame(lastRow, row);
+        }
+        lastRow = row;
+        cells.append(Bytes.toString(row)).append(Bytes.toString(column)).append(Bytes.toString(value)).append(',');
+      }
+    });
+    Assert.assertEquals("r1c2v3,r2c1v4,r2c2v2,", cells.toString());
+
+    // The buffer is not modified
+    Assert.assertEquals(4, buffer.size());
+    buffer.clear();
+    Assert.assertTrue(buffer.isEmpty());
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link IncrementCombiningMetricsTable}, both through the common metrics table tests and for combining.
+ */
+public class IncrementCombiningMetricsTableTest extends MetricsTableTest {
+
+  @Override
+  protected MetricsTable getTable(String name) throws Exception {
+    InMemoryTableService.create(name);
+    return new IncrementCombiningMetricsTable(new InMemoryMetricsTable(name), 1000, TimeUnit.HOURS.toMillis(1));
+  }
+
+  @Test
+  public void testCombining() throws Exception {
+    String name = "testCombining";
+    InMemoryTableService.create(name);
+    MetricsTable delegate = new InMemoryMetricsTable(name);
+    IncrementCombiningMetricsTable table = new IncrementCombiningMetricsTable(delegate, 3,
+                                                                              TimeUnit.HOURS.toMillis(1));
+
+    // repeated increments of the same two cells are buffered and combined
+    for (int i = 0; i < 10; i++) {
+      table.increment(A, ImmutableMap.of(P, 1L));
+      table.increment(rowsOf(B, Q, 2L));
+    }
+    Assert.assertNull(delegate.get(A, P));
+    Assert.assertNull(delegate.get(B, Q));
+
+    // a third cell reaches the threshold and flushes all increments
+    table.increment(rowsOf(C, R, 5L));
+    Assert.assertEquals(10L, Bytes.toLong(delegate.get(A, P)));
+    Assert.assertEquals(20L, Bytes.toLong(delegate.get(B, Q)));
+    Assert.assertEquals(5L, Bytes.toLong(delegate.get(C, R)));
+
+    // reads through the table see buffered increments
+    table.increment(A, ImmutableMap.of(P, 1L));
+    Assert.assertEquals(10L, Bytes.toLong(delegate.get(A, P)));
+    Assert.assertEquals(11L, Bytes.toLong(table.get(A, P)));
+
+    // buffered increments are flushed on close
+    table.increment(A, ImmutableMap.of(P, 1L));
+    table.close();
+    Assert.assertEquals(12L, Bytes.toLong(delegate.get(A, P)));
+  }
+
+  @Test
+  public void testFlushOnDelay() throws Exception {
+    String name = "testFlushOnDelay";
+    InMemoryTableService.create(name);
+    MetricsTable delegate = new InMemoryMetricsTable(name);
+    IncrementCombiningMetricsTable table = new IncrementCombiningMetricsTable(delegate, 1000, 50);
+    try {
+      table.increment(A, ImmutableMap.of(P, 3L));
+      TimeUnit.MILLISECONDS.sleep(100);
+      // nothing is written without a call to the table
+      Assert.assertNull(delegate.get(A, P));
+
+      // the next increment flushes all increments once the oldest is older than the delay
+      table.increment(B, ImmutableMap.of(Q, 1L));
+      Assert.assertEquals(3L, Bytes.toLong(delegate.get(A, P)));
+      Assert.assertEquals(1L, Bytes.toLong(delegate.get(B, Q)));
+    } finally {
+      table.close();
+    }
+  }
+
+  @Test
+  public void testExplicitFlush() throws Exception {
+    String name = "testExplicitFlush";
+    InMemoryTableService.create(name);
+    MetricsTable delegate = new InMemoryMetricsTable(name);
+    IncrementCombiningMetricsTable table = new IncrementCombiningMetricsTable(delegate, 1000,
+                                                                              TimeUnit.HOURS.toMillis(1));
+    try {
+      table.increment(A, ImmutableMap.of(P, 2L));
+      Assert.assertNull(delegate.get(A, P));
+      table.flush();
+      Assert.assertEquals(2L, Bytes.toLong(delegate.get(A, P)));
+    } finally {
+      table.close();
+    }
+  }
+
+  @Test
+  public void testCheckpoint() throws Exception {
+    String name = "testCheckpoint";
+    InMemoryTableService.create(name);
+    MetricsTable delegate = new InMemoryMetricsTable(name);
+    IncrementCombiningMetricsTable table = new IncrementCombiningMetricsTable(delegate, 2, 50);
+    try {
+      Assert.assertEquals(-1L, table.getFlushedCheckpoint());
+
+      // a checkpoint without buffered increments is flushed right away
+      table.checkpoint(1L);
+      Assert.assertEquals(1L, table.getFlushedCheckpoint());
+
+      // buffered increments hold back the checkpoint until they are written
+      table.increment(A, ImmutableMap.of(P, 1L));
+      table.checkpoint(2L);
+      table.increment(A, ImmutableMap.of(P, 1L));
+      table.checkpoint(3L);
+      Assert.assertEquals(1L, table.getFlushedCheckpoint());
+
+      // reaching the cell threshold flushes all increments before the latest checkpoint
+      table.increment(B, ImmutableMap.of(Q, 1L));
+      Assert.assertEquals(3L, table.getFlushedCheckpoint());
+      Assert.assertEquals(2L, Bytes.toLong(delegate.get(A, P)));
+
+      // a checkpoint flushes expired increments
+      table.increment(A, ImmutableMap.of(P, 1L));
+      table.checkpoint(4L);
+      Assert.assertEquals(3L, table.getFlushedCheckpoint());
+      TimeUnit.MILLISECONDS.sleep(100);
+      table.checkpoint(5L);
+      Assert.assertEquals(5L, table.getFlushedCheckpoint());
+      Assert.assertEquals(3L, Bytes.toLong(delegate.get(A, P)));
+    } finally {
+      table.close();
+    }
+  }
+
+  private static NavigableMap<byte[], NavigableMap<byte[], Long>> rowsOf(byte[] row, byte[] column, long value) {
+    NavigableMap<byte[], Long> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    columns.put(column, value);
+    NavigableMap<byte[], NavigableMap<byte[], Long>> rows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    rows.put(row, columns);
+    return rows;
+  }
+}
@@ -261,6 +261,33 @@ public abstract class MetricsTableTest {
     Assert.assertEquals(1021, countRange(table, null, null));
   }
 
+  @Test
+  public void testBatchDelete() throws Exception {
+    MetricsTable table = getTable("testBatchDelete");
+    NavigableMap<byte[], SortedMap<byte[], Long>> writes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 100; i++) {
+      writes.put(Bytes.toBytes(i), mapOf(A, Bytes.toLong(X), B, Bytes.toLong(Y)));
+    }
+    table.put(writes);
+
+    // delete one column of the even rows and both columns of the odd rows
+    NavigableMap<byte[], byte[][]> deletes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < 100; i++) {
+      deletes.put(Bytes.toBytes(i), i % 2 == 0 ? new byte[][] { A } : new byte[][] { A, B });
+    }
+    table.delete(deletes);
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertNull(table.get(Bytes.toBytes(i), A));
+      if (i % 2 == 0) {
+        Assert.assertArrayEquals(Y, table.get(Bytes.toBytes(i), B));
+      } else {
+        Assert.assertNull(table.get(Bytes.toBytes(i), B));
+      }
+    }
+    Assert.assertEquals(50, countRange(table, null, null));
+  }
+
   @Test
   public void testDeleteIncrements() throws Exception {
     // note: this is pretty important test case for tables with counters, e.g. metrics
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Unit test for {@link ParallelScanner}.
+ */
+public class ParallelScannerTest {
+
+  @Test
+  public void testCloseWithFullQueue() throws InterruptedException {
+    // A range that is never consumed fills its queue, and its scanner swallows the interrupt of close
+    InfiniteScanner scanner1 = new InfiniteScanner();
+    InfiniteScanner scanner2 = new InfiniteScanner();
+    ParallelScanner scanner = new ParallelScanner(ImmutableList.<Scanner>of(scanner1, scanner2), 1);
+    Assert.assertNotNull(scanner.next());
+    Assert.assertTrue(scanner2.produced.await(10, TimeUnit.SECONDS));
+
+    // closing must stop both readers
+    scanner.close();
+    Assert.assertTrue(scanner1.closed.await(10, TimeUnit.SECONDS));
+    Assert.assertTrue(scanner2.closed.await(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * A {@link Scanner} that returns rows forever and clears the interrupt flag, like some storage clients do.
+   */
+  private static final class InfiniteScanner implements Scanner {
+    private final CountDownLatch produced = new CountDownLatch(2);
+    private final CountDownLatch closed = new CountDownLatch(1);
+
+    @Nullable
+    @Override
+    public Row next() {
+      Thread.interrupted();
+      produced.countDown();
+      return new Result(Bytes.toBytes("r"), Collections.<byte[], byte[]>emptyMap());
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+}
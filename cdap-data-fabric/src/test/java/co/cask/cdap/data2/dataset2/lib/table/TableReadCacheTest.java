@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.ImmutableMap;
+import org.apache.tephra.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Unit test for {@link TableReadCache}.
+ */
+public class TableReadCacheTest {
+
+  private static final byte[] ROW = Bytes.toBytes("r");
+  private static final byte[] COL1 = Bytes.toBytes("c1");
+  private static final byte[] COL2 = Bytes.toBytes("c2");
+  private static final byte[] VALUE = Bytes.toBytes("v");
+
+  @Test
+  public void testSnapshot() {
+    TableReadCache.Snapshot snapshot = TableReadCache.Snapshot.of(createTx(10L, 20L, new long[] { 3L },
+                                                                           new long[] { 5L, 15L }));
+    Assert.assertTrue(snapshot.isVisible(1L));
+    Assert.assertTrue(snapshot.isVisible(10L));
+    Assert.assertFalse(snapshot.isVisible(3L));
+    Assert.assertFalse(snapshot.isVisible(5L));
+    Assert.assertFalse(snapshot.isVisible(11L));
+
+    // Invalid transactions are never committed, hence only in progress transactions hide committed ones
+    Assert.assertTrue(snapshot.isCommittedVisible(4L));
+    Assert.assertFalse(snapshot.isCommittedVisible(5L));
+    Assert.assertFalse(snapshot.isCommittedVisible(11L));
+  }
+
+  @Test
+  public void testCache() {
+    TableReadCache cache = TableReadCache.get("testCache", 10);
+    Assert.assertSame(cache, TableReadCache.get("testCache", 10));
+
+    TableReadCache.Snapshot snapshot1 = TableReadCache.Snapshot.of(createTx(10L, 20L, new long[0], new long[0]));
+    TableReadCache.Snapshot snapshot2 = TableReadCache.Snapshot.of(createTx(11L, 21L, new long[0], new long[0]));
+
+    // Nothing is cached initially
+    Assert.assertNull(cache.getRow(snapshot1, ROW));
+    Map<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Assert.assertEquals(2, cache.getColumns(snapshot1, ROW, new byte[][] { COL1, COL2 }, result).size());
+
+    // Cache a column and a column that doesn't exist
+    cache.putColumns(snapshot1, ROW, new byte[][] { COL1, COL2 }, ImmutableMap.of(COL1, VALUE));
+    List<byte[]> missing = cache.getColumns(snapshot1, ROW, new byte[][] { COL1, COL2 }, result);
+    Assert.assertTrue(missing.isEmpty());
+    Assert.assertEquals(1, result.size());
+    Assert.assertArrayEquals(VALUE, result.get(COL1));
+
+    // A later snapshot reuses the cached columns, since the row was not written
+    result.clear();
+    Assert.assertTrue(cache.getColumns(snapshot2, ROW, new byte[][] { COL1, COL2 }, result).isEmpty());
+    Assert.assertArrayEquals(VALUE, result.get(COL1));
+
+    // Cache a row
+    cache.putRow(snapshot2, ROW, Collections.singletonMap(COL1, VALUE));
+    NavigableMap<byte[], byte[]> row = cache.getRow(snapshot1, ROW);
+    Assert.assertNotNull(row);
+    Assert.assertEquals(1, row.size());
+    Assert.assertArrayEquals(VALUE, row.get(COL1));
+
+    // Eviction when the cache is full
+    for (int i = 0; i < 100; i++) {
+      cache.putColumns(snapshot2, Bytes.toBytes(i), new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    }
+    Assert.assertNull(cache.getRow(snapshot2, ROW));
+  }
+
+  @Test
+  public void testWrites() {
+    TableReadCache cache = TableReadCache.get("testWrites", 100);
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes = createChanges(ROW, COL1);
+
+    TableReadCache.Snapshot snapshot1 = TableReadCache.Snapshot.of(createTx(10L, 20L, new long[0], new long[0]));
+    cache.putColumns(snapshot1, ROW, new byte[][] { COL1, COL2 }, ImmutableMap.of(COL1, VALUE, COL2, VALUE));
+    cache.putRow(snapshot1, ROW, ImmutableMap.of(COL1, VALUE, COL2, VALUE));
+
+    // Starting a write invalidates the written cells and the row, and the row is not cached while it is written
+    cache.startWrite(changes);
+    Map<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    Assert.assertEquals(Collections.singletonList(COL1),
+                        cache.getColumns(snapshot1, ROW, new byte[][] { COL1, COL2 }, result));
+    Assert.assertNull(cache.getRow(snapshot1, ROW));
+    cache.putColumns(snapshot1, ROW, new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertEquals(1, cache.getColumns(snapshot1, ROW, new byte[][] { COL1 }, result).size());
+
+    // After the commit, a snapshot that doesn't see the write can't cache the row
+    cache.commitWrite(20L, changes);
+    cache.putColumns(snapshot1, ROW, new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertEquals(1, cache.getColumns(snapshot1, ROW, new byte[][] { COL1 }, result).size());
+
+    // A snapshot that sees the write caches the row for all later snapshots that see the write
+    TableReadCache.Snapshot snapshot2 = TableReadCache.Snapshot.of(createTx(20L, 21L, new long[0], new long[0]));
+    TableReadCache.Snapshot snapshot3 = TableReadCache.Snapshot.of(createTx(30L, 31L, new long[0], new long[0]));
+    TableReadCache.Snapshot snapshot4 = TableReadCache.Snapshot.of(createTx(30L, 31L, new long[0],
+                                                                            new long[] { 20L }));
+    cache.putColumns(snapshot2, ROW, new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertTrue(cache.getColumns(snapshot3, ROW, new byte[][] { COL1 }, result).isEmpty());
+    Assert.assertEquals(1, cache.getColumns(snapshot1, ROW, new byte[][] { COL1 }, result).size());
+    Assert.assertEquals(1, cache.getColumns(snapshot4, ROW, new byte[][] { COL1 }, result).size());
+
+    // A rolled back write invalidates the cells, but doesn't change the version of the row
+    cache.startWrite(changes);
+    cache.rollbackWrite(changes);
+    Assert.assertEquals(1, cache.getColumns(snapshot3, ROW, new byte[][] { COL1 }, result).size());
+    cache.putColumns(snapshot3, ROW, new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertTrue(cache.getColumns(snapshot2, ROW, new byte[][] { COL1 }, result).isEmpty());
+  }
+
+  @Test
+  public void testEvictedWrites() {
+    TableReadCache cache = TableReadCache.get("testEvictedWrites", 2);
+
+    // Write more rows than the cache tracks, so that the writes of the first row are evicted
+    for (int i = 0; i < 10; i++) {
+      NavigableMap<byte[], NavigableMap<byte[], Update>> changes = createChanges(Bytes.toBytes(i), COL1);
+      cache.startWrite(changes);
+      cache.commitWrite(20L + i, changes);
+    }
+
+    // A snapshot that doesn't see the evicted write can't cache the row
+    Map<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    TableReadCache.Snapshot snapshot1 = TableReadCache.Snapshot.of(createTx(20L, 40L, new long[0], new long[0]));
+    cache.putColumns(snapshot1, Bytes.toBytes(0), new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertEquals(1, cache.getColumns(snapshot1, Bytes.toBytes(0), new byte[][] { COL1 }, result).size());
+
+    TableReadCache.Snapshot snapshot2 = TableReadCache.Snapshot.of(createTx(40L, 41L, new long[0], new long[0]));
+    cache.putColumns(snapshot2, Bytes.toBytes(0), new byte[][] { COL1 }, ImmutableMap.of(COL1, VALUE));
+    Assert.assertTrue(cache.getColumns(snapshot2, Bytes.toBytes(0), new byte[][] { COL1 }, result).isEmpty());
+  }
+
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> createChanges(byte[] row, byte[] column) {
+    NavigableMap<byte[], Update> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(column, new PutValue(VALUE));
+    NavigableMap<byte[], NavigableMap<byte[], Update>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    changes.put(row, columns);
+    return changes;
+  }
+
+  private Transaction createTx(long readPointer, long writePointer, long[] invalids, long[] inProgress) {
+    return new Transaction(readPointer, writePointer, invalids, inProgress, Transaction.NO_TX_IN_PROGRESS);
+  }
+}
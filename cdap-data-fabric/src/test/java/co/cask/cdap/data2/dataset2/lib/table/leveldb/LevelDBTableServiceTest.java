@@ -17,18 +17,25 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.NonCustomLocationUnitTestModule;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data.runtime.DataFabricLevelDBModule;
 import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.runtime.TransactionMetricsModule;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -38,7 +45,14 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -112,6 +126,174 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    String tableName = "cdap_default.increments";
+    service.ensureTableExists(tableName);
+
+    byte[] col = Bytes.toBytes("c");
+    int threads = 8;
+    int rows = 16;
+    int iterations = 512;
+
+    // Each thread uses its own table core, operations on the same row should still be atomic
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+          for (int j = 0; j < iterations; j++) {
+            byte[] row = Bytes.toBytes("r" + (j % rows));
+            table.increment(row, ImmutableMap.of(col, 1L));
+
+            // Multi-row increment on two rows
+            NavigableMap<byte[], NavigableMap<byte[], Long>> updates =
+              ImmutableSortedMap.<byte[], NavigableMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+                .put(Bytes.toBytes("m0"), ImmutableSortedMap.<byte[], Long>orderedBy(Bytes.BYTES_COMPARATOR)
+                  .put(col, 1L).build())
+                .put(Bytes.toBytes("m1"), ImmutableSortedMap.<byte[], Long>orderedBy(Bytes.BYTES_COMPARATOR)
+                  .put(col, 2L).build())
+                .build();
+            table.increment(updates);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    for (int i = 0; i < rows; i++) {
+      byte[] value = table.getRow(Bytes.toBytes("r" + i), new byte[][] { col }, null, null, -1, null).get(col);
+      Assert.assertEquals((long) threads * iterations / rows, Bytes.toLong(value));
+    }
+    Assert.assertEquals((long) threads * iterations,
+                        Bytes.toLong(table.getRow(Bytes.toBytes("m0"), null, null, null, -1, null).get(col)));
+    Assert.assertEquals(2L * threads * iterations,
+                        Bytes.toLong(table.getRow(Bytes.toBytes("m1"), null, null, null, -1, null).get(col)));
+
+    // Swap only succeeds if the existing value matches the expected value
+    Assert.assertTrue(table.swap(Bytes.toBytes("s"), col, null, Bytes.toBytes(1L)));
+    Assert.assertFalse(table.swap(Bytes.toBytes("s"), col, null, Bytes.toBytes(2L)));
+    Assert.assertTrue(table.swap(Bytes.toBytes("s"), col, Bytes.toBytes(1L), Bytes.toBytes(2L)));
+  }
+
+  @Test
+  public void testTableOptions() throws Exception {
+    String tableName = "cdap_default.options";
+    service.ensureTableExists(tableName, ImmutableMap.of(LevelDBTableService.PROPERTY_BLOCK_SIZE, "1024",
+                                                         LevelDBTableService.PROPERTY_WRITE_BUFFER_SIZE, "65536",
+                                                         LevelDBTableService.PROPERTY_COMPRESSION, "none"));
+    writeSome(tableName);
+
+    // the table is opened with the same options after it was closed
+    service.clearTables();
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+    try (Scanner scanner = table.scan(null, null, null, null, null)) {
+      int count = 0;
+      while (scanner.next() != null) {
+        count++;
+      }
+      Assert.assertEquals(8, count);
+    }
+    service.dropTable(tableName);
+
+    try {
+      service.ensureTableExists(tableName, ImmutableMap.of(LevelDBTableService.PROPERTY_COMPRESSION, "unknown"));
+      Assert.fail("Expected table creation with invalid compression to fail");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFuzzyScan() throws Exception {
+    String tableName = "cdap_default.fuzzy";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+
+    // rows {a, i, j} with several columns, and rows with other prefixes before and after
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (byte prefix : new byte[] { 'a' - 1, 'a', 'a' + 1 }) {
+      for (int i = 0; i < 10; i++) {
+        for (int j = 0; j < 10; j++) {
+          NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          for (int c = 0; c < 5; c++) {
+            columns.put(Bytes.toBytes("c" + c), Bytes.toBytes(i * 10 + j));
+          }
+          changes.put(new byte[] { prefix, (byte) i, (byte) j }, columns);
+        }
+      }
+    }
+    table.persist(changes, 1L);
+
+    // all rows {a, ?, 7}
+    FuzzyRowFilter filter = new FuzzyRowFilter(
+      ImmutableList.of(ImmutablePair.of(new byte[] { 'a', 0, 7 }, new byte[] { 0, 1, 0 })));
+    Assert.assertArrayEquals(new byte[] { 'a' }, filter.getRowPrefix());
+    for (byte[] startRow : new byte[][] { null, new byte[] { 'a', 3 } }) {
+      int i = startRow == null ? 0 : 3;
+      try (Scanner scanner = table.scan(startRow, null, filter, null, null)) {
+        Row row;
+        while ((row = scanner.next()) != null) {
+          Assert.assertArrayEquals(new byte[] { 'a', (byte) i, 7 }, row.getRow());
+          Assert.assertEquals(5, row.getColumns().size());
+          i++;
+        }
+      }
+      Assert.assertEquals(10, i);
+    }
+    service.dropTable(tableName);
+  }
+
+  @Test
+  public void testDeleteRange() throws Exception {
+    String tableName = "cdap_default.deleteRange";
+    service.ensureTableExists(tableName);
+    LevelDBTableCore table = new LevelDBTableCore(tableName, service);
+
+    // 3000 rows with two columns, each column with two versions
+    for (long version = 1L; version <= 2L; version++) {
+      NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < 3000; i++) {
+        NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        columns.put(Bytes.toBytes("a"), Bytes.toBytes(i));
+        columns.put(Bytes.toBytes("b"), Bytes.toBytes(i));
+        changes.put(Bytes.toBytes(i), columns);
+      }
+      table.persist(changes, version);
+    }
+
+    // delete a range of rows, without filter and columns, in multiple batches
+    Assert.assertEquals(2000 * 4, table.deleteRange(Bytes.toBytes(500), Bytes.toBytes(2500), null, null));
+    Assert.assertEquals(1000, countRows(table.scan(null, null, null, null, null)));
+    Assert.assertEquals(0, countRows(table.scan(Bytes.toBytes(500), Bytes.toBytes(2500), null, null, null)));
+
+    // delete one column of a range, and then all remaining rows
+    Assert.assertEquals(500, table.deleteRange(null, Bytes.toBytes(500), null, new byte[][] { Bytes.toBytes("a") }));
+    Assert.assertEquals(1, table.getRow(Bytes.toBytes(10), null, null, null, -1, null).size());
+    Assert.assertEquals(1000 * 4 - 500 * 2, table.deleteRange(null, null, null, null));
+    Assert.assertEquals(0, countRows(table.scan(null, null, null, null, null)));
+    service.dropTable(tableName);
+  }
+
+  private static int countRows(Scanner scanner) {
+    try {
+      int count = 0;
+      while (scanner.next() != null) {
+        count++;
+      }
+      return count;
+    } finally {
+      scanner.close();
+    }
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
@@ -22,6 +22,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -35,6 +36,9 @@ public abstract class MessageFetcher {
   private boolean includeStart = true;
   private Long startTime;
   private Transaction transaction;
+  private long waitTimeoutMillis;
+  private Integer partition;
+  private byte[] payloadPrefix;
 
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
@@ -96,6 +100,54 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum amount of time to wait for new messages if there is no message available when fetching.
+   * The fetch returns as soon as there are messages available or when the timeout elapsed, whichever comes first.
+   * By default, this is set to {@code 0}, meaning the fetch returns immediately.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return this instance
+   */
+  public MessageFetcher setWaitTimeout(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Invalid message fetching wait timeout. Timeout must be >= 0");
+    }
+    this.waitTimeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * Sets the partition to fetch from if the topic is partitioned. By default, messages from all partitions
+   * are fetched and merged by publish time. Since message ids are only ordered within a partition, fetching from
+   * all partitions cannot start from a message id. Consumers that resume from a message id must fetch from
+   * individual partitions and keep the last message id of each partition.
+   *
+   * @param partition the partition to fetch from
+   * @return this instance
+   */
+  public MessageFetcher setPartition(int partition) {
+    if (partition < 0) {
+      throw new IllegalArgumentException("Invalid message fetching partition. Partition must be >= 0");
+    }
+    this.partition = partition;
+    return this;
+  }
+
+  /**
+   * Sets a prefix that the payload of fetched messages must start with. Messages with payload not matching the
+   * prefix are filtered out while scanning, hence are neither returned nor counted toward the fetch limit.
+   * Consumers can use it to select messages based on a header written at the beginning of the payload.
+   * By default, all messages are returned.
+   *
+   * @param payloadPrefix the payload prefix to match or {@code null} to clear the filter
+   * @return this instance
+   */
+  public MessageFetcher setPayloadPrefix(@Nullable byte[] payloadPrefix) {
+    this.payloadPrefix = payloadPrefix;
+    return this;
+  }
+
   @Nullable
   protected byte[] getStartOffset() {
     return startOffset;
@@ -119,6 +171,20 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getWaitTimeoutMillis() {
+    return waitTimeoutMillis;
+  }
+
+  @Nullable
+  protected Integer getPartition() {
+    return partition;
+  }
+
+  @Nullable
+  protected byte[] getPayloadPrefix() {
+    return payloadPrefix;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
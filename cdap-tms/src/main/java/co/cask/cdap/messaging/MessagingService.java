@@ -23,7 +23,9 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -108,6 +110,22 @@ public interface MessagingService {
   @Nullable
   RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException;
 
+  /**
+   * Publishes messages of multiple {@link StoreRequest} to the messaging system in one call. The requests can be
+   * for different topics. All requests are validated before anything is published. Requests for different topics
+   * are published concurrently, while requests for the same topic are published in order. Publishing is not atomic
+   * across requests. The outcome of each request is reported in the returned list, hence a request that failed
+   * can be retried without publishing the successful ones again. No rollback is performed by this method. It is up
+   * to the caller to rollback transactional requests that were published, using the rollback detail in the result.
+   *
+   * @param requests the list of {@link StoreRequest} containing messages to be published
+   * @return a {@link List} of {@link PublishResult} with one entry for each of the given requests in the same order.
+   * @throws TopicNotFoundException if any of the topics doesn't exist. In this case no message is published.
+   * @throws IOException if failed to validate or send the requests. In this case no message is published.
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  List<PublishResult> batchPublish(List<? extends StoreRequest> requests) throws TopicNotFoundException, IOException;
+
   /**
    * Stores a list of messages to the messaging system. It is for long / distributed transactional publishing use case.
    *
@@ -130,4 +148,29 @@ public interface MessagingService {
    * @throws ServiceUnavailableException if the messaging service is not available
    */
   void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException;
+
+  /**
+   * Commits the offsets of a consumer group for a set of topics. The offsets are stored by the messaging system
+   * non-transactionally, with the last commit for a topic wins. It is intended for consumers that can tolerate
+   * reprocessing of messages after failure, without the cost of a transactional write for each batch of messages.
+   *
+   * @param consumerGroup name of the consumer group
+   * @param offsets a {@link Map} from topic to the message id to commit as the offset
+   * @throws TopicNotFoundException if any of the topics doesn't exist. In this case no offset is committed.
+   * @throws IOException if failed to commit the offsets
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  void commitOffsets(String consumerGroup, Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException;
+
+  /**
+   * Returns the offsets committed by a consumer group for a set of topics.
+   *
+   * @param consumerGroup name of the consumer group
+   * @param topicIds the topics to get offsets for
+   * @return a {@link Map} from topic to the last message id committed as the offset. Topics that don't exist or
+   *         have no offset committed are not included in the result.
+   * @throws IOException if failed to retrieve the offsets
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException;
 }
@@ -47,9 +47,24 @@ public final class MessagingServiceUtils {
    *                                  configured
    */
   public static Set<TopicId> getSystemTopics(CConfiguration cConf, boolean ignoreInvalidTopic) {
+    return getSystemTopics(cConf, Constants.MessagingSystem.SYSTEM_TOPICS, ignoreInvalidTopic);
+  }
+
+  /**
+   * Returns a set of system {@link TopicId} as configured by the given property. The property value has the same
+   * format as the {@link Constants.MessagingSystem#SYSTEM_TOPICS} property.
+   *
+   * @param cConf the configuration to get the system topics
+   * @param key the name of the property
+   * @param ignoreInvalidTopic if {@code true}, invalid topics will be ignored; otherwise exception will be raised
+   * @return a set of valid system {@link TopicId}.
+   * @throws IllegalArgumentException if {@code ignoreInvalidTopic} is {@code true} and there is invalid topic being
+   *                                  configured
+   */
+  public static Set<TopicId> getSystemTopics(CConfiguration cConf, String key, boolean ignoreInvalidTopic) {
     Set<TopicId> systemTopics = new LinkedHashSet<>();
 
-    for (String topic : cConf.getTrimmedStringCollection(Constants.MessagingSystem.SYSTEM_TOPICS)) {
+    for (String topic : cConf.getTrimmedStringCollection(key)) {
       int idx = topic.lastIndexOf(':');
       if (idx < 0) {
         try {
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging;
+
+import javax.annotation.Nullable;
+
+/**
+ * The result of publishing one {@link StoreRequest} through {@link MessagingService#batchPublish}.
+ */
+public final class PublishResult {
+
+  private final boolean success;
+  private final RollbackDetail rollbackDetail;
+  private final String failureMessage;
+
+  /**
+   * Creates a result for a request that was published successfully.
+   *
+   * @param rollbackDetail the {@link RollbackDetail} for transactional request; {@code null} for
+   *                       non-transactional request
+   */
+  public static PublishResult success(@Nullable RollbackDetail rollbackDetail) {
+    return new PublishResult(true, rollbackDetail, null);
+  }
+
+  /**
+   * Creates a result for a request that failed to publish.
+   *
+   * @param failureMessage message describing the failure
+   */
+  public static PublishResult failure(String failureMessage) {
+    return new PublishResult(false, null, failureMessage);
+  }
+
+  private PublishResult(boolean success, @Nullable RollbackDetail rollbackDetail, @Nullable String failureMessage) {
+    this.success = success;
+    this.rollbackDetail = rollbackDetail;
+    this.failureMessage = failureMessage;
+  }
+
+  /**
+   * Returns {@code true} if the messages in the request were published.
+   */
+  public boolean isSuccess() {
+    return success;
+  }
+
+  /**
+   * Returns the {@link RollbackDetail} if the request is transactional and was published successfully;
+   * otherwise returns {@code null}.
+   */
+  @Nullable
+  public RollbackDetail getRollbackDetail() {
+    return rollbackDetail;
+  }
+
+  /**
+   * Returns the failure message if the request failed to publish; otherwise returns {@code null}.
+   */
+  @Nullable
+  public String getFailureMessage() {
+    return failureMessage;
+  }
+
+  @Override
+  public String toString() {
+    return "PublishResult{" +
+      "success=" + success +
+      ", rollbackDetail=" + rollbackDetail +
+      ", failureMessage='" + failureMessage + '\'' +
+      '}';
+  }
+}
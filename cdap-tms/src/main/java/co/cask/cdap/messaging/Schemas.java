@@ -51,6 +51,20 @@ public final class Schemas {
       public static final Schema SCHEMA = loadSchema(PublishResponse.class);
     }
 
+    /**
+     * Contains schema for batch publish request.
+     */
+    public static final class BatchPublishRequest {
+      public static final Schema SCHEMA = loadSchema(BatchPublishRequest.class);
+    }
+
+    /**
+     * Contains schema for batch publish response.
+     */
+    public static final class BatchPublishResponse {
+      public static final Schema SCHEMA = loadSchema(BatchPublishResponse.class);
+    }
+
     /**
      * Contains schema for consume request.
      */
@@ -19,6 +19,7 @@ package co.cask.cdap.messaging;
 import co.cask.cdap.proto.id.TopicId;
 
 import java.util.Iterator;
+import javax.annotation.Nullable;
 
 /**
  * This class represents messages to be store to the messaging system.
@@ -29,11 +30,18 @@ public abstract class StoreRequest implements Iterable<byte[]> {
   private final TopicId topicId;
   private final boolean transactional;
   private final long transactionWritePointer;
+  private final byte[] partitionKey;
 
   protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer) {
+    this(topicId, transactional, transactionWritePointer, null);
+  }
+
+  protected StoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
+                         @Nullable byte[] partitionKey) {
     this.topicId = topicId;
     this.transactional = transactional;
     this.transactionWritePointer = transactionWritePointer;
+    this.partitionKey = partitionKey;
   }
 
   public TopicId getTopicId() {
@@ -55,6 +63,18 @@ public abstract class StoreRequest implements Iterable<byte[]> {
     return transactionWritePointer;
   }
 
+  /**
+   * Returns the key for selecting the partition to publish to if the topic is partitioned. Requests with the same
+   * key are published to the same partition. It is ignored for transactional request, which always goes to the
+   * partition determined by the transaction write pointer.
+   *
+   * @return the partition key or {@code null} to publish to any partition
+   */
+  @Nullable
+  public byte[] getPartitionKey() {
+    return partitionKey;
+  }
+
   /**
    * Returns {@code true} if there is payload in this request.
    */
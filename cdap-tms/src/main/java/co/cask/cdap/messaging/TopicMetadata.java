@@ -22,6 +22,9 @@ import com.google.common.collect.ImmutableMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * Represents metadata about a messaging topic.
@@ -30,6 +33,13 @@ public class TopicMetadata {
 
   public static final String GENERATION_KEY = MessagingUtils.Constants.GENERATION_KEY;
   public static final String TTL_KEY = MessagingUtils.Constants.TTL_KEY;
+  public static final String PARTITIONS_KEY = "partitions";
+  public static final int MAX_PARTITIONS = 256;
+
+  // Each partition of a partitioned topic is stored as an internal topic named as <topic>__p<partition>
+  private static final String PARTITION_TOPIC_SEPARATOR = "__p";
+  private static final Pattern PARTITION_TOPIC_PATTERN =
+    Pattern.compile("(.+)" + PARTITION_TOPIC_SEPARATOR + "[0-9]+");
 
   private final TopicId topicId;
   private final Map<String, String> properties;
@@ -99,6 +109,56 @@ public class TopicMetadata {
     return getGeneration() > 0;
   }
 
+  /**
+   * Returns the number of partitions of the topic. Topics without the partitions property have one partition.
+   */
+  public int getPartitions() {
+    if (!validated) {
+      validatePartitions();
+    }
+    String partitions = properties.get(PARTITIONS_KEY);
+    return partitions == null ? 1 : Integer.parseInt(partitions);
+  }
+
+  /**
+   * Returns the {@link TopicId} of the internal topic that stores messages of the given partition.
+   *
+   * @param partition the partition, which must be in the range of {@code [0, getPartitions())}
+   * @throws IllegalArgumentException if the partition is out of range
+   */
+  public TopicId getPartitionTopicId(int partition) {
+    int partitions = getPartitions();
+    if (partition < 0 || partition >= partitions) {
+      throw new IllegalArgumentException("Invalid partition " + partition + " for topic " + topicId
+                                           + " with " + partitions + " partitions");
+    }
+    return getPartitionTopicId(topicId, partition);
+  }
+
+  /**
+   * Returns the {@link TopicId} of the internal topic that stores messages of the given partition of a topic.
+   */
+  public static TopicId getPartitionTopicId(TopicId topicId, int partition) {
+    return topicId.getParent().topic(topicId.getTopic() + PARTITION_TOPIC_SEPARATOR + partition);
+  }
+
+  /**
+   * Returns {@code true} if the given {@link TopicId} is named as an internal topic of a partition.
+   */
+  public static boolean isPartitionTopic(TopicId topicId) {
+    return PARTITION_TOPIC_PATTERN.matcher(topicId.getTopic()).matches();
+  }
+
+  /**
+   * Returns the {@link TopicId} of the partitioned topic if the given {@link TopicId} is named as an internal topic
+   * of a partition, otherwise returns {@code null}.
+   */
+  @Nullable
+  public static TopicId getPartitionedTopicId(TopicId topicId) {
+    Matcher matcher = PARTITION_TOPIC_PATTERN.matcher(topicId.getTopic());
+    return matcher.matches() ? topicId.getParent().topic(matcher.group(1)) : null;
+  }
+
   /**
    * Returns the time-to-live in seconds property of the topic.
    */
@@ -142,6 +202,7 @@ public class TopicMetadata {
   private void validateProperties() {
     validateTTL();
     validateGeneration();
+    validatePartitions();
   }
 
   /**
@@ -183,6 +244,28 @@ public class TopicMetadata {
     }
   }
 
+  /**
+   * Validates the "partitions" property of the given topic if it is present.
+   *
+   * @throws IllegalArgumentException if the partitions value is not a number or not in the range of [1, 256].
+   */
+  private void validatePartitions() {
+    String partitions = properties.get(PARTITIONS_KEY);
+    if (partitions == null) {
+      return;
+    }
+    try {
+      int value = Integer.parseInt(partitions);
+      if (value <= 0 || value > MAX_PARTITIONS) {
+        throw new IllegalArgumentException("The partitions property must be between 1 and " + MAX_PARTITIONS
+                                             + " for topic " + topicId);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The partitions property must be a number between 1 and " + MAX_PARTITIONS
+                                           + " for topic " + topicId, e);
+    }
+  }
+
   /**
    * Turns a list of {@link Object} into a {@link Map} by using even index objects as keys and the following odd index
    * objects as values. The {@link Object#toString()} method will be used to convert {@link Object} to {@link String}.
@@ -61,6 +61,10 @@ import javax.annotation.Nullable;
  *     it if needed. This essentially is to amortize the cost of the blocking weight reduction operations among all
  *     fetchers (which typically has multiple of them), without blocking the single publish as much as possible.
  *
+ * An optional {@link EntryStore} can be provided to control how entries are kept inside the cache, for example to
+ * move the entry content out of the Java heap. Entries handed out by {@link #scan} are always the ones returned by
+ * {@link EntryStore#load(Object)}.
+ *
  * @param <T> type of entry stored in the cache
  */
 public class MessageCache<T> {
@@ -81,6 +85,7 @@ public class MessageCache<T> {
   private final AtomicBoolean needReduceWeight;
   private final AtomicBoolean adding;
   private final Weigher<T> weigher;
+  private final EntryStore<T> entryStore;
   private final ReadWriteLock cacheLock;
 
   /**
@@ -92,6 +97,20 @@ public class MessageCache<T> {
    * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
    */
   public MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits, MetricsContext metricsContext) {
+    this(comparator, weigher, new HeapEntryStore<T>(), limits, metricsContext);
+  }
+
+  /**
+   * Creates a new instance of the cache that uses the given {@link EntryStore} for keeping entries.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param entryStore an {@link EntryStore} for controlling how entries are kept inside the cache
+   * @param limits the limits for maintaining cache weight; see class description for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public MessageCache(Comparator<T> comparator, Weigher<T> weigher, EntryStore<T> entryStore,
+                      Limits limits, MetricsContext metricsContext) {
     this.cache = new ConcurrentSkipListSet<>(new CacheEntryComparator<>(comparator));
     this.comparator = comparator;
     this.limits = new AtomicReference<>(limits);
@@ -100,6 +119,7 @@ public class MessageCache<T> {
     this.needReduceWeight = new AtomicBoolean();
     this.adding = new AtomicBoolean();
     this.weigher = weigher;
+    this.entryStore = entryStore;
     this.cacheLock = new ReentrantReadWriteLock();
   }
 
@@ -133,7 +153,7 @@ public class MessageCache<T> {
       int entriesAdded = 0;
       while (entries.hasNext()) {
         T entry = entries.next();
-        CacheEntry<T> cacheEntry = new CacheEntry<>(entry, weigher.weight(entry));
+        CacheEntry<T> cacheEntry = new CacheEntry<>(entryStore.store(entry), weigher.weight(entry));
         newWeight = currentWeight.addAndGet(cacheEntry.getWeight());
         if (newWeight > limits.get().getHardLimit()) {
           reduceWeight();
@@ -151,6 +171,7 @@ public class MessageCache<T> {
           // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
           // unless there is bug in the TMS system (from the caller side).
           currentWeight.addAndGet(-1 * cacheEntry.getWeight());
+          entryStore.release(cacheEntry.getEntry());
           clear();
           throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
                                                "Entry " + entry + " is smaller than or equal to " +
@@ -205,7 +226,7 @@ public class MessageCache<T> {
 
         MessageFilter.Result result = filter.apply(cacheEntry.getEntry());
         if (result == MessageFilter.Result.ACCEPT) {
-          entries.add(cacheEntry.getEntry());
+          entries.add(entryStore.load(cacheEntry.getEntry()));
         } else if (result == MessageFilter.Result.HOLD) {
           // Hold means not to scan more, so just break
           break;
@@ -333,6 +354,7 @@ public class MessageCache<T> {
           break;
         }
         iterator.remove();
+        entryStore.release(cacheEntry.getEntry());
         entriesRemoved++;
         newWeight = currentWeight.addAndGet(-1 * cacheEntry.getWeight());
       }
@@ -383,6 +405,33 @@ public class MessageCache<T> {
     int weight(T entry);
   }
 
+  /**
+   * This interface is for controlling how entries are kept inside the cache.
+   * The {@link #store(Object)} method is only called by the single cache writer, while the {@link #load(Object)}
+   * and the {@link #release(Object)} methods are always called with the cache lock held, hence an entry
+   * will never be loaded and released at the same time.
+   *
+   * @param <T> type of the entry
+   */
+  public interface EntryStore<T> {
+
+    /**
+     * Returns the entry to be kept in the cache for the given entry being added. The returned entry must have the
+     * same ordering as the given one.
+     */
+    T store(T entry);
+
+    /**
+     * Returns an entry that is safe to be used after the given cached entry is removed from the cache.
+     */
+    T load(T entry);
+
+    /**
+     * Releases resources held by an entry returned by {@link #store(Object)} that is no longer in the cache.
+     */
+    void release(T entry);
+  }
+
   /**
    * This interface is for accessing cached entries.
    *
@@ -460,6 +509,29 @@ public class MessageCache<T> {
     abstract void doClose();
   }
 
+  /**
+   * The default {@link EntryStore} that keeps entries on the heap as is.
+   *
+   * @param <T> type of the entry
+   */
+  private static final class HeapEntryStore<T> implements EntryStore<T> {
+
+    @Override
+    public T store(T entry) {
+      return entry;
+    }
+
+    @Override
+    public T load(T entry) {
+      return entry;
+    }
+
+    @Override
+    public void release(T entry) {
+      // no-op
+    }
+  }
+
   /**
    * A private class that wraps a user provided entry of type {@code T} with an associated weight.
    *
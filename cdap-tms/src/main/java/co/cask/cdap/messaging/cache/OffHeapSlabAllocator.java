@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.annotation.Nullable;
+
+/**
+ * Allocates memory for cached data from direct {@link ByteBuffer} slabs, so that the data is kept outside of the
+ * Java heap. It is designed to be used together with {@link MessageCache}, which leverages the following properties:
+ *
+ * - Allocations are made by a single writer, in the same order as entries are added to the cache
+ * - Allocations are released roughly in the same order as they were made, since the cache removes the oldest
+ *   entries first
+ *
+ * Memory is allocated sequentially from the current slab. Once all allocations of a slab are released, the slab is
+ * reused for new allocations. At most {@code maxSlabs} slabs will be created. Slabs are never returned to the system;
+ * the direct memory is reclaimed when the allocator itself is garbage collected.
+ */
+public final class OffHeapSlabAllocator {
+
+  private final int slabSize;
+  private final int maxSlabs;
+  private final Deque<Slab> freeSlabs;
+  private int createdSlabs;
+  private Slab currentSlab;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param slabSize size in bytes of each slab
+   * @param maxSlabs maximum number of slabs to create
+   */
+  public OffHeapSlabAllocator(int slabSize, int maxSlabs) {
+    Preconditions.checkArgument(slabSize > 0, "Slab size must be positive");
+    Preconditions.checkArgument(maxSlabs > 0, "Maximum number of slabs must be positive");
+    this.slabSize = slabSize;
+    this.maxSlabs = maxSlabs;
+    this.freeSlabs = new ArrayDeque<>();
+  }
+
+  /**
+   * Copies the given data into off-heap memory.
+   *
+   * @param data the data to copy
+   * @return an {@link Allocation} to access the data, or {@code null} if there is no memory available for the data
+   */
+  @Nullable
+  public Allocation allocate(byte[] data) {
+    Allocation allocation = reserve(data.length);
+    if (allocation != null) {
+      // The slab region is exclusively owned by the allocation, hence it is safe to write without locking.
+      ByteBuffer buffer = allocation.slab.buffer.duplicate();
+      buffer.position(allocation.offset);
+      buffer.put(data);
+    }
+    return allocation;
+  }
+
+  /**
+   * Returns the number of slabs created so far.
+   */
+  @VisibleForTesting
+  synchronized int getCreatedSlabs() {
+    return createdSlabs;
+  }
+
+  /**
+   * Reserves a region of the given size from the current slab, switching to a new slab if needed.
+   */
+  @Nullable
+  private synchronized Allocation reserve(int size) {
+    if (size > slabSize) {
+      return null;
+    }
+
+    if (currentSlab == null || currentSlab.writePosition + size > slabSize) {
+      Slab slab = freeSlabs.poll();
+      if (slab == null && createdSlabs < maxSlabs) {
+        slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+        createdSlabs++;
+      }
+      if (slab == null) {
+        return null;
+      }
+
+      // The previous slab can be reused right away if all allocations on it were already released
+      if (currentSlab != null && currentSlab.liveAllocations == 0) {
+        currentSlab.writePosition = 0;
+        freeSlabs.add(currentSlab);
+      }
+      currentSlab = slab;
+    }
+
+    Allocation allocation = new Allocation(currentSlab, currentSlab.writePosition, size);
+    currentSlab.writePosition += size;
+    currentSlab.liveAllocations++;
+    return allocation;
+  }
+
+  /**
+   * Releases a region previously reserved by {@link #reserve(int)}.
+   */
+  private synchronized void release(Slab slab) {
+    slab.liveAllocations--;
+    if (slab.liveAllocations > 0) {
+      return;
+    }
+    slab.writePosition = 0;
+    // The current slab is kept as current and just get rewound
+    if (slab != currentSlab) {
+      freeSlabs.add(slab);
+    }
+  }
+
+  /**
+   * A region of off-heap memory that holds a copy of the data given to {@link #allocate(byte[])}.
+   * The data can be read until the allocation is released.
+   */
+  public final class Allocation {
+
+    private final Slab slab;
+    private final int offset;
+    private final int length;
+    private boolean released;
+
+    private Allocation(Slab slab, int offset, int length) {
+      this.slab = slab;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /**
+     * Returns the size in bytes of this allocation.
+     */
+    public int getLength() {
+      return length;
+    }
+
+    /**
+     * Returns a copy of the data of this allocation as a byte array on the heap.
+     *
+     * @throws IllegalStateException if this allocation was already released
+     */
+    public byte[] read() {
+      Preconditions.checkState(!released, "Allocation was already released");
+      byte[] data = new byte[length];
+      ByteBuffer buffer = slab.buffer.duplicate();
+      buffer.position(offset);
+      buffer.get(data);
+      return data;
+    }
+
+    /**
+     * Releases this allocation. The memory can be reused for new allocations afterwards.
+     * Calling this method more than once has no effect.
+     */
+    public void release() {
+      if (!released) {
+        released = true;
+        OffHeapSlabAllocator.this.release(slab);
+      }
+    }
+  }
+
+  /**
+   * A slab of direct memory.
+   */
+  private static final class Slab {
+    private final ByteBuffer buffer;
+    private int writePosition;
+    private int liveAllocations;
+
+    private Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+}
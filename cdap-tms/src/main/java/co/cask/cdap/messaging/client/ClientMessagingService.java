@@ -27,6 +27,7 @@ import co.cask.cdap.common.http.DefaultHttpRequestConfig;
 import co.cask.cdap.common.internal.remote.RemoteClient;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.StoreRequest;
@@ -39,6 +40,7 @@ import co.cask.common.http.HttpRequest;
 import co.cask.common.http.HttpRequestConfig;
 import co.cask.common.http.HttpResponse;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.io.ByteStreams;
@@ -72,6 +74,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -95,12 +98,15 @@ public final class ClientMessagingService implements MessagingService {
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
 
   private final RemoteClient remoteClient;
+  private final RemoteClient batchRemoteClient;
 
   @VisibleForTesting
   @Inject
   public ClientMessagingService(final DiscoveryServiceClient discoveryServiceClient) {
     this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
                                          HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+    this.batchRemoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
+                                              HTTP_REQUEST_CONFIG, "/v1/");
   }
 
   @Override
@@ -193,6 +199,69 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientRollbackDetail(body);
   }
 
+  @Override
+  public List<PublishResult> batchPublish(List<? extends StoreRequest> requests)
+    throws TopicNotFoundException, IOException {
+    Schema requestSchema = Schemas.V1.BatchPublishRequest.SCHEMA;
+    Schema elementSchema = requestSchema.getField("requests").schema().getElementType();
+
+    List<GenericRecord> records = new ArrayList<>(requests.size());
+    for (StoreRequest request : requests) {
+      GenericRecord record = new GenericData.Record(elementSchema);
+      record.put("namespace", request.getTopicId().getNamespace());
+      record.put("topic", request.getTopicId().getTopic());
+      if (request.isTransactional()) {
+        record.put("transactionWritePointer", request.getTransactionWritePointer());
+      }
+      if (request.getPartitionKey() != null) {
+        record.put("partitionKey", ByteBuffer.wrap(request.getPartitionKey()));
+      }
+      record.put("messages", convertPayloads(request));
+      records.add(record);
+    }
+    GenericRecord batchRecord = new GenericData.Record(requestSchema);
+    batchRecord.put("requests", records);
+
+    // Encode the request as avro
+    ExposedByteArrayOutputStream os = new ExposedByteArrayOutputStream();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(requestSchema).write(batchRecord, encoder);
+
+    HttpRequest httpRequest = batchRemoteClient.requestBuilder(HttpMethod.POST, "publish")
+      .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+      .withBody(os.toByteBuffer())
+      .build();
+
+    HttpResponse response = batchRemoteClient.execute(httpRequest);
+
+    if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+      // The response body contains the namespace and topic that is missing
+      Map<String, String> topic = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_PROPERTY_TYPE);
+      throw new TopicNotFoundException(topic.get("namespace"), topic.get("topic"));
+    }
+    handleError(response, "Failed to publish messages to " + requests.size() + " topics");
+    verifyContentType(response.getHeaders().asMap(), "avro/binary");
+
+    // Decode the response. Each rollback detail is kept in the encoded form as in the publish call
+    Decoder decoder = DecoderFactory.get().binaryDecoder(response.getResponseBody(), null);
+    GenericRecord responseRecord = new GenericDatumReader<GenericRecord>(Schemas.V1.BatchPublishResponse.SCHEMA)
+      .read(null, decoder);
+
+    @SuppressWarnings("unchecked")
+    List<GenericRecord> resultRecords = (List<GenericRecord>) responseRecord.get("results");
+    List<PublishResult> results = new ArrayList<>(resultRecords.size());
+    for (GenericRecord resultRecord : resultRecords) {
+      Object failure = resultRecord.get("failure");
+      if (failure != null) {
+        results.add(PublishResult.failure(failure.toString()));
+        continue;
+      }
+      ByteBuffer encoded = (ByteBuffer) resultRecord.get("rollbackDetail");
+      results.add(PublishResult.success(encoded == null ? null : new ClientRollbackDetail(Bytes.toBytes(encoded))));
+    }
+    return results;
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     performWriteRequest(request, false);
@@ -245,7 +314,11 @@ public final class ClientMessagingService implements MessagingService {
     // Make the publish request
     String writeType = publish ? "publish" : "store";
     TopicId topicId = request.getTopicId();
-    HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, createTopicPath(topicId) + "/" + writeType)
+    String path = createTopicPath(topicId) + "/" + writeType;
+    if (publish && request.getPartitionKey() != null) {
+      path += "?partitionKey=" + Bytes.toHexString(request.getPartitionKey());
+    }
+    HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, path)
       .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
       .withBody(os.toByteBuffer())
       .build();
@@ -259,6 +332,73 @@ public final class ClientMessagingService implements MessagingService {
     return response;
   }
 
+  @Override
+  public void commitOffsets(String consumerGroup,
+                            Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException {
+    // Offsets are committed per namespace
+    for (Map.Entry<NamespaceId, Map<String, String>> entry : groupByNamespace(offsets).entrySet()) {
+      HttpRequest request = remoteClient.requestBuilder(HttpMethod.PUT,
+                                                        createOffsetsPath(entry.getKey(), consumerGroup))
+        .withBody(GSON.toJson(entry.getValue(), TOPIC_PROPERTY_TYPE))
+        .build();
+      HttpResponse response = remoteClient.execute(request);
+
+      if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+        // The response body contains the namespace and topic that is missing
+        Map<String, String> topic = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_PROPERTY_TYPE);
+        throw new TopicNotFoundException(topic.get("namespace"), topic.get("topic"));
+      }
+      handleError(response, "Failed to commit offsets for consumer group " + consumerGroup);
+    }
+  }
+
+  @Override
+  public Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException {
+    Map<NamespaceId, List<String>> namespaceTopics = new HashMap<>();
+    for (TopicId topicId : topicIds) {
+      namespaceTopics.computeIfAbsent(topicId.getNamespaceId(), k -> new ArrayList<>()).add(topicId.getTopic());
+    }
+
+    Map<TopicId, byte[]> offsets = new HashMap<>();
+    for (Map.Entry<NamespaceId, List<String>> entry : namespaceTopics.entrySet()) {
+      NamespaceId namespaceId = entry.getKey();
+      String query = entry.getValue().stream()
+        .map(topic -> "topic=" + topic)
+        .collect(Collectors.joining("&"));
+      HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET,
+                                                        createOffsetsPath(namespaceId, consumerGroup) + "?" + query)
+        .build();
+      HttpResponse response = remoteClient.execute(request);
+      handleError(response, "Failed to get offsets for consumer group " + consumerGroup);
+
+      Map<String, String> encoded = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_PROPERTY_TYPE);
+      for (Map.Entry<String, String> offset : encoded.entrySet()) {
+        offsets.put(namespaceId.topic(offset.getKey()), Bytes.fromHexString(offset.getValue()));
+      }
+    }
+    return offsets;
+  }
+
+  /**
+   * Groups the given offsets by namespace, with the offsets hex encoded.
+   */
+  private Map<NamespaceId, Map<String, String>> groupByNamespace(Map<TopicId, byte[]> offsets) {
+    Map<NamespaceId, Map<String, String>> result = new HashMap<>();
+    for (Map.Entry<TopicId, byte[]> entry : offsets.entrySet()) {
+      TopicId topicId = entry.getKey();
+      result.computeIfAbsent(topicId.getNamespaceId(), k -> new HashMap<>())
+        .put(topicId.getTopic(), Bytes.toHexString(entry.getValue()));
+    }
+    return result;
+  }
+
+  /**
+   * Creates the URL path for making HTTP requests for offsets of the given consumer group.
+   */
+  private String createOffsetsPath(NamespaceId namespaceId, String consumerGroup) {
+    return namespaceId.getNamespace() + "/consumers/" + consumerGroup + "/offsets";
+  }
+
   /**
    * Creates the URL path for making HTTP requests for the given topic.
    */
@@ -398,10 +538,30 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
+      // If wait timeout is set, the server may hold the response for that long, hence extend the read timeout.
+      long waitTimeoutMillis = getWaitTimeoutMillis();
+      List<String> queries = new ArrayList<>();
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      if (waitTimeoutMillis > 0) {
+        queries.add("timeout=" + waitTimeoutMillis);
+        if (readTimeout > 0) {
+          readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout + waitTimeoutMillis);
+        }
+      }
+      if (getPartition() != null) {
+        queries.add("partition=" + getPartition());
+      }
+      if (getPayloadPrefix() != null) {
+        queries.add("payloadPrefix=" + Bytes.toHexString(getPayloadPrefix()));
+      }
+      String path = createTopicPath(topicId) + "/poll";
+      if (!queries.isEmpty()) {
+        path += "?" + Joiner.on('&').join(queries);
+      }
+      URL url = remoteClient.resolve(path);
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      urlConn.setReadTimeout(readTimeout);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       urlConn.setDoInput(true);
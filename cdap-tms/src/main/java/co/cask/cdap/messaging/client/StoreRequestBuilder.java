@@ -39,6 +39,7 @@ public final class StoreRequestBuilder {
   private final TopicId topicId;
   private List<byte[]> payloads;
   private Long txWritePointer;
+  private byte[] partitionKey;
 
   /**
    * Creates a new {@link StoreRequestBuilder} instance.
@@ -98,6 +99,27 @@ public final class StoreRequestBuilder {
     return this;
   }
 
+  /**
+   * Sets the key for selecting the partition to publish to if the topic is partitioned. The string will be
+   * converted to byte arrays using UTF-8 encoding.
+   *
+   * @param partitionKey the partition key, or {@code null} to let the server pick a partition.
+   */
+  public StoreRequestBuilder setPartitionKey(@Nullable String partitionKey) {
+    return setPartitionKey(partitionKey == null ? null : STRING_TO_BYTES.apply(partitionKey));
+  }
+
+  /**
+   * Sets the key for selecting the partition to publish to if the topic is partitioned. Requests with the same
+   * key are always published to the same partition.
+   *
+   * @param partitionKey the partition key, or {@code null} to let the server pick a partition.
+   */
+  public StoreRequestBuilder setPartitionKey(@Nullable byte[] partitionKey) {
+    this.partitionKey = partitionKey;
+    return this;
+  }
+
   /**
    * Returns {@code true} if there is some payload in this builder.
    */
@@ -113,7 +135,7 @@ public final class StoreRequestBuilder {
       throw new IllegalArgumentException("Payload cannot be empty for non-transactional publish");
     }
     return new SimpleStoreRequest(topicId, txWritePointer != null, txWritePointer == null ? -1L : txWritePointer,
-                                  payloads);
+                                  partitionKey, payloads);
   }
 
   /**
@@ -135,8 +157,8 @@ public final class StoreRequestBuilder {
     private final List<byte[]> payloads;
 
     SimpleStoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer,
-                       @Nullable List<byte[]> payloads) {
-      super(topicId, transactional, transactionWritePointer);
+                       @Nullable byte[] partitionKey, @Nullable List<byte[]> payloads) {
+      super(topicId, transactional, transactionWritePointer, partitionKey);
       this.payloads = payloads == null ? Collections.emptyList() : payloads;
     }
 
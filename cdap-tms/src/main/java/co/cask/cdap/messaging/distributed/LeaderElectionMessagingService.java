@@ -23,6 +23,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -45,7 +46,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -165,6 +168,12 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     return getMessagingService().publish(request);
   }
 
+  @Override
+  public List<PublishResult> batchPublish(List<? extends StoreRequest> requests)
+    throws TopicNotFoundException, IOException {
+    return getMessagingService().batchPublish(requests);
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     getMessagingService().storePayload(request);
@@ -175,6 +184,17 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     getMessagingService().rollback(topicId, rollbackDetail);
   }
 
+  @Override
+  public void commitOffsets(String consumerGroup,
+                            Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException {
+    getMessagingService().commitOffsets(consumerGroup, offsets);
+  }
+
+  @Override
+  public Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException {
+    return getMessagingService().getOffsets(consumerGroup, topicIds);
+  }
+
   private void upgradeTable() {
     HBaseTableFactory tableFactory = getHBaseTableFactory(injector.getInstance(TableFactory.class));
 
@@ -29,16 +29,19 @@ import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.service.PublishNotifier;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyProducer;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
@@ -48,6 +51,7 @@ import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryData;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
@@ -55,6 +59,8 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +71,18 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -86,21 +100,51 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
-  private int messageChunkSize;
+  private final PublishNotifier publishNotifier;
+  private final int messageChunkSize;
+  private final boolean zeroCopy;
+  private final long maxWaitMillis;
+  private final int waitThreads;
+  private ScheduledExecutorService waitExecutor;
 
   @Inject
-  FetchHandler(CConfiguration cConf, MessagingService messagingService) {
+  FetchHandler(CConfiguration cConf, MessagingService messagingService, PublishNotifier publishNotifier) {
     this.messagingService = messagingService;
+    this.publishNotifier = publishNotifier;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.zeroCopy = cConf.getBoolean(Constants.MessagingSystem.HTTP_SERVER_CONSUME_ZERO_COPY);
+    this.maxWaitMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_MAX_WAIT_MS);
+    this.waitThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_WAIT_THREADS);
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    waitExecutor = Executors.newScheduledThreadPool(waitThreads,
+                                                    Threads.createDaemonThreadFactory("messaging-fetch-wait-%d"));
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    if (waitExecutor != null) {
+      waitExecutor.shutdownNow();
+    }
   }
 
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeout,
+                   @QueryParam("partition") @DefaultValue("-1") int partition,
+                   @QueryParam("payloadPrefix") @Nullable String payloadPrefix) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
+    // The payload prefix is a query parameter instead of a field in the request, so that the request schema
+    // stays compatible with existing clients
+    byte[] prefix = decodePayloadPrefix(payloadPrefix);
 
     // Currently only support avro
     if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
@@ -111,10 +155,29 @@ public final class FetchHandler extends AbstractHttpHandler {
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    long waitMillis = Math.min(timeout, maxWaitMillis);
+    if (waitMillis > 0) {
+      // The request body is fully decoded, so that the wait can complete the response from another thread
+      new WaitingFetch(fetchRequest, topicId, partition, prefix, responder, waitMillis).start();
+      return;
+    }
+
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    sendMessages(responder, fetchMessages(fetchRequest, topicId, partition, prefix));
+  }
+
+  /**
+   * Sends the messages in the given iterator as the response. The iterator will be closed when the response is
+   * completed.
+   */
+  private void sendMessages(HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+      BodyProducer bodyProducer = zeroCopy
+        ? new ZeroCopyMessagesBodyProducer(iterator, messageChunkSize)
+        : new MessagesBodyProducer(iterator, messageChunkSize);
+      responder.sendContent(HttpResponseStatus.OK, bodyProducer,
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
     } catch (Throwable t) {
       iterator.close();
@@ -123,11 +186,17 @@ public final class FetchHandler extends AbstractHttpHandler {
   }
 
   /**
-   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
+   * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request. Messages are
+   * fetched from all partitions of the topic if the given partition is negative. If the payload prefix is not
+   * {@code null}, only messages with payload starting with the prefix are fetched.
    */
-  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
-                                                      TopicId topicId) throws IOException, TopicNotFoundException {
+  private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest, TopicId topicId,
+                                                      int partition, @Nullable byte[] payloadPrefix)
+    throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
+    if (partition >= 0) {
+      fetcher.setPartition(partition);
+    }
 
     Object startFrom = fetchRequest.get("startFrom");
     if (startFrom != null) {
@@ -153,47 +222,197 @@ public final class FetchHandler extends AbstractHttpHandler {
       fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
     }
 
+    fetcher.setPayloadPrefix(payloadPrefix);
     return fetcher.fetch();
   }
 
   /**
-   * A {@link BodyProducer} to encode and send back messages.
+   * Decodes the hex encoded payload prefix from the query parameter.
+   */
+  @Nullable
+  private byte[] decodePayloadPrefix(@Nullable String payloadPrefix) throws BadRequestException {
+    if (payloadPrefix == null) {
+      return null;
+    }
+    try {
+      return Bytes.fromHexString(payloadPrefix);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid payload prefix. It must be hex encoded: " + payloadPrefix);
+    }
+  }
+
+  /**
+   * Handles a fetch request that waits for new messages if there is no message available. Instead of holding up
+   * the http executor thread, it listens on the {@link PublishNotifier} and refetches in the wait executor when
+   * new messages are published to the topic. If no message is available after the wait timeout, an empty response
+   * is sent.
+   */
+  private final class WaitingFetch {
+
+    private final GenericRecord fetchRequest;
+    private final TopicId topicId;
+    private final int partition;
+    private final byte[] payloadPrefix;
+    private final HttpResponder responder;
+    private final long waitMillis;
+    private final AtomicBoolean completed;
+    private final AtomicBoolean refetchPending;
+    private volatile Cancellable cancelListener;
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+    WaitingFetch(GenericRecord fetchRequest, TopicId topicId, int partition, @Nullable byte[] payloadPrefix,
+                 HttpResponder responder, long waitMillis) {
+      this.fetchRequest = fetchRequest;
+      this.topicId = topicId;
+      this.partition = partition;
+      this.payloadPrefix = payloadPrefix;
+      this.responder = responder;
+      this.waitMillis = waitMillis;
+      this.completed = new AtomicBoolean();
+      this.refetchPending = new AtomicBoolean();
+    }
+
+    /**
+     * Performs the first fetch and starts waiting if there is no message available. This method is called from
+     * the http handler thread, hence exceptions are propagated to the http exception handler.
+     */
+    void start() throws Exception {
+      // Listen for publish before fetching, so that messages published right after the fetch won't be missed
+      cancelListener = publishNotifier.addListener(topicId, this::published);
+      CloseableIterator<RawMessage> iterator;
+      try {
+        iterator = fetchMessages(fetchRequest, topicId, partition, payloadPrefix);
+      } catch (Throwable t) {
+        completed.set(true);
+        cancelListener.cancel();
+        throw t;
+      }
+
+      if (iterator.hasNext()) {
+        if (complete()) {
+          sendMessages(responder, iterator);
+        } else {
+          // Response was already sent by a concurrent refetch
+          iterator.close();
+        }
+        return;
+      }
+      iterator.close();
+
+      try {
+        timeoutFuture = waitExecutor.schedule(() -> fetch(true), waitMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // Happens when the handler is being destroyed. Just complete with the empty response
+        fetch(true);
+        return;
+      }
+      // Cancel the timeout if a refetch completed the response before the timeout was scheduled
+      if (completed.get()) {
+        timeoutFuture.cancel(false);
+      }
+    }
+
+    /**
+     * Called by the {@link PublishNotifier} from the message writer thread. Refetch is performed in the wait
+     * executor, with multiple notifications coalesced into one refetch.
+     */
+    private void published() {
+      if (completed.get() || !refetchPending.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        waitExecutor.execute(() -> {
+          refetchPending.set(false);
+          fetch(false);
+        });
+      } catch (RejectedExecutionException e) {
+        // Happens when the handler is being destroyed
+        refetchPending.set(false);
+      }
+    }
+
+    /**
+     * Fetches messages and sends the response if there are messages available or if it is the last fetch.
+     */
+    private void fetch(boolean last) {
+      if (completed.get()) {
+        return;
+      }
+      CloseableIterator<RawMessage> iterator;
+      try {
+        iterator = fetchMessages(fetchRequest, topicId, partition, payloadPrefix);
+      } catch (Throwable t) {
+        if (complete()) {
+          sendError(t);
+        }
+        return;
+      }
+
+      if ((last || iterator.hasNext()) && complete()) {
+        try {
+          sendMessages(responder, iterator);
+        } catch (Throwable t) {
+          LOG.warn("Failed to send fetch response for topic {}", topicId, t);
+        }
+      } else {
+        iterator.close();
+      }
+    }
+
+    /**
+     * Marks this fetch as completed and stops waiting.
+     *
+     * @return {@code true} if the caller should send the response; {@code false} if it was already completed
+     */
+    private boolean complete() {
+      if (!completed.compareAndSet(false, true)) {
+        return false;
+      }
+      cancelListener.cancel();
+      ScheduledFuture<?> future = timeoutFuture;
+      if (future != null) {
+        future.cancel(false);
+      }
+      return true;
+    }
+
+    private void sendError(Throwable t) {
+      if (t instanceof TopicNotFoundException) {
+        responder.sendString(HttpResponseStatus.NOT_FOUND, t.getMessage());
+        return;
+      }
+      LOG.error("Failed to fetch messages from topic {}", topicId, t);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, String.valueOf(t.getMessage()));
+    }
+  }
+
+  /**
+   * Base {@link BodyProducer} for sending back messages. It handles the batching of messages into chunks
+   * and the Avro array framing, leaving the encoding of each chunk to the subclass.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
    */
-  private static class MessagesBodyProducer extends BodyProducer {
+  private abstract static class AbstractMessagesBodyProducer extends BodyProducer {
 
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
     private boolean arrayEnded;
 
-    MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+    AbstractMessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
     }
 
+    /**
+     * Encodes the given list of messages into a {@link ByteBuf} to be sent as one chunk.
+     *
+     * @param messages the messages to encode; it can be empty
+     * @param arrayEnd {@code true} if this is the last chunk and the end of the array needs to be written
+     */
+    protected abstract ByteBuf encode(List<RawMessage> messages, boolean arrayEnd) throws IOException;
+
     @Override
     public ByteBuf nextChunk() throws Exception {
       // Already sent all messages, return empty to signal the end of response
@@ -201,13 +420,6 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
       // Try to buffer up to buffer size
       int size = 0;
       messages.clear();
@@ -221,6 +433,66 @@ public final class FetchHandler extends AbstractHttpHandler {
         size += message.getId().length + message.getPayload().length + 8;
       }
 
+      arrayEnded = !iterator.hasNext();
+      return encode(messages, arrayEnded);
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+      if (cause instanceof SocketException
+        || cause instanceof ClosedChannelException
+        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+        // This can easily caused by client close connection prematurely. Don't want to flood the log.
+        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+      } else {
+        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+        // Also log a trace to provide a way to see every error if needed
+        LOG.trace("Exception raised when sending messages back to client", cause);
+      }
+    }
+  }
+
+  /**
+   * A {@link BodyProducer} to encode and send back messages by writing each message with a {@link DatumWriter}.
+   */
+  private static final class MessagesBodyProducer extends AbstractMessagesBodyProducer {
+
+    private final ByteBuf chunk;
+    private final Encoder encoder;
+    private final GenericRecord messageRecord;
+    private final DatumWriter<GenericRecord> messageWriter;
+
+    MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      super(iterator, messageChunkSize);
+      this.chunk = Unpooled.buffer(messageChunkSize);
+      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
+
+      // These are for writing individual message (response is an array of messages)
+      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
+      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
+        @Override
+        protected void writeBytes(Object datum, Encoder out) throws IOException {
+          if (datum instanceof byte[]) {
+            out.writeBytes((byte[]) datum);
+          } else {
+            super.writeBytes(datum, out);
+          }
+        }
+      };
+    }
+
+    @Override
+    protected ByteBuf encode(List<RawMessage> messages, boolean arrayEnd) throws IOException {
+      chunk.clear();
+
       encoder.setItemCount(messages.size());
       for (RawMessage message : messages) {
         encoder.startItem();
@@ -233,8 +505,7 @@ public final class FetchHandler extends AbstractHttpHandler {
         messageWriter.write(messageRecord, encoder);
       }
 
-      if (!iterator.hasNext()) {
-        arrayEnded = true;
+      if (arrayEnd) {
         encoder.writeArrayEnd();
       }
 
@@ -243,25 +514,78 @@ public final class FetchHandler extends AbstractHttpHandler {
 
     @Override
     public void finished() throws Exception {
-      iterator.close();
+      super.finished();
       chunk.release();
     }
+  }
+
+  /**
+   * A {@link BodyProducer} that sends back messages without copying the message payloads.
+   * Each chunk is a {@link CompositeByteBuf}, with the Avro framing (block count, lengths and message ids)
+   * written to a small header buffer and the payload byte arrays as returned by the message store wrapped as is.
+   * The encoding is the same as the one produced by {@link MessagesBodyProducer}.
+   */
+  private static final class ZeroCopyMessagesBodyProducer extends AbstractMessagesBodyProducer {
+
+    // Maximum size of an Avro encoded long
+    private static final int MAX_VARLONG_SIZE = 10;
+
+    private final byte[] varLongBuffer;
+
+    ZeroCopyMessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      super(iterator, messageChunkSize);
+      this.varLongBuffer = new byte[MAX_VARLONG_SIZE];
+    }
 
     @Override
-    public void handleError(@Nullable Throwable cause) {
-      iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException
-        || cause instanceof ClosedChannelException
-        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
-      } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
-        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
-        LOG.trace("Exception raised when sending messages back to client", cause);
+    protected ByteBuf encode(List<RawMessage> messages, boolean arrayEnd) {
+      // Compute the header size, which contains the block count, the end of array marker,
+      // the message ids and the length of the message ids and payloads.
+      int headerSize = MAX_VARLONG_SIZE * 2;
+      for (RawMessage message : messages) {
+        headerSize += message.getId().length + MAX_VARLONG_SIZE * 2;
       }
+
+      ByteBuf header = Unpooled.buffer(headerSize);
+      CompositeByteBuf chunk = Unpooled.compositeBuffer(messages.size() * 2 + 1);
+      try {
+        // Avro array block starts with the number of items in the block. Empty block is not written
+        if (!messages.isEmpty()) {
+          writeLong(header, messages.size());
+        }
+
+        int headerStart = 0;
+        for (RawMessage message : messages) {
+          // Each message is encoded as a record of (id bytes, payload bytes)
+          writeLong(header, message.getId().length);
+          header.writeBytes(message.getId());
+          writeLong(header, message.getPayload().length);
+
+          chunk.addComponent(true, header.retainedSlice(headerStart, header.writerIndex() - headerStart));
+          chunk.addComponent(true, Unpooled.wrappedBuffer(message.getPayload()));
+          headerStart = header.writerIndex();
+        }
+
+        if (arrayEnd) {
+          writeLong(header, 0L);
+        }
+        if (header.writerIndex() > headerStart) {
+          chunk.addComponent(true, header.retainedSlice(headerStart, header.writerIndex() - headerStart));
+        }
+        return chunk;
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
+      } finally {
+        header.release();
+      }
+    }
+
+    /**
+     * Writes a long value to the given {@link ByteBuf} using the Avro zig-zag variable length encoding.
+     */
+    private void writeLong(ByteBuf buf, long value) {
+      buf.writeBytes(varLongBuffer, 0, BinaryData.encodeLong(value, varLongBuffer, 0));
     }
   }
 }
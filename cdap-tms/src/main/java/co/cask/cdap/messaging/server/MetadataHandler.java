@@ -16,6 +16,8 @@
 
 package co.cask.cdap.messaging.server;
 
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -24,6 +26,7 @@ import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -37,7 +40,9 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.ws.rs.DELETE;
@@ -45,6 +50,7 @@ import javax.ws.rs.GET;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for metadata REST API for the messaging system.
@@ -119,6 +125,74 @@ public final class MetadataHandler extends AbstractHttpHandler {
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
+  @PUT
+  @Path("/consumers/{consumer}/offsets")
+  public void commitOffsets(FullHttpRequest request, HttpResponder responder,
+                            @PathParam("namespace") String namespace,
+                            @PathParam("consumer") String consumerGroup) throws Exception {
+    NamespaceId namespaceId = new NamespaceId(namespace);
+    Map<TopicId, byte[]> offsets = new HashMap<>();
+    for (Map.Entry<String, String> entry : decodeOffsets(request.content()).entrySet()) {
+      offsets.put(namespaceId.topic(entry.getKey()), decodeOffset(entry.getValue()));
+    }
+
+    try {
+      messagingService.commitOffsets(consumerGroup, offsets);
+    } catch (TopicNotFoundException e) {
+      // Respond with the topic so that the client knows which topic is missing
+      responder.sendJson(HttpResponseStatus.NOT_FOUND,
+                         GSON.toJson(ImmutableMap.of("namespace", e.getNamespace(), "topic", e.getTopic())));
+      return;
+    }
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
+
+  @GET
+  @Path("/consumers/{consumer}/offsets")
+  public void getOffsets(HttpRequest request, HttpResponder responder,
+                         @PathParam("namespace") String namespace,
+                         @PathParam("consumer") String consumerGroup,
+                         @QueryParam("topic") List<String> topics) throws Exception {
+    NamespaceId namespaceId = new NamespaceId(namespace);
+    List<TopicId> topicIds = new ArrayList<>(topics.size());
+    for (String topic : topics) {
+      topicIds.add(namespaceId.topic(topic));
+    }
+
+    Map<String, String> offsets = new HashMap<>();
+    for (Map.Entry<TopicId, byte[]> entry : messagingService.getOffsets(consumerGroup, topicIds).entrySet()) {
+      offsets.put(entry.getKey().getTopic(), Bytes.toHexString(entry.getValue()));
+    }
+    responder.sendJson(HttpResponseStatus.OK, GSON.toJson(offsets, TOPIC_PROPERTY_TYPE));
+  }
+
+  /**
+   * Decodes the map from topic name to hex encoded offset from the given request body.
+   */
+  private Map<String, String> decodeOffsets(ByteBuf channelBuffer) throws BadRequestException {
+    if (!channelBuffer.isReadable()) {
+      return Collections.emptyMap();
+    }
+
+    try {
+      return GSON.fromJson(new InputStreamReader(new ByteBufInputStream(channelBuffer), StandardCharsets.UTF_8),
+                           TOPIC_PROPERTY_TYPE);
+    } catch (Exception e) {
+      throw new BadRequestException("Invalid offsets. It must be JSON object from topic name to offset.");
+    }
+  }
+
+  /**
+   * Decodes a hex encoded offset.
+   */
+  private byte[] decodeOffset(String offset) throws BadRequestException {
+    try {
+      return Bytes.fromHexString(offset);
+    } catch (Exception e) {
+      throw new BadRequestException("Invalid offset '" + offset + "'. It must be a hex encoded message id.");
+    }
+  }
+
   /**
    * Decodes the topic property map from the given request body.
    */
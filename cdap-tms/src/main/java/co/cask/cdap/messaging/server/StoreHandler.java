@@ -16,9 +16,12 @@
 
 package co.cask.cdap.messaging.server;
 
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.StoreRequest;
@@ -26,6 +29,8 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
 import com.google.inject.Inject;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
@@ -50,18 +55,23 @@ import org.apache.avro.io.EncoderFactory;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import javax.annotation.Nullable;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message storage REST API for the messaging system.
  */
-@Path("/v1/namespaces/{namespace}/topics/{topic}")
+@Path("/v1")
 public final class StoreHandler extends AbstractHttpHandler {
 
+  private static final Gson GSON = new Gson();
+
   private final MessagingService messagingService;
 
   @Inject
@@ -70,13 +80,14 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/publish")
+  @Path("/namespaces/{namespace}/topics/{topic}/publish")
   public void publish(FullHttpRequest request, HttpResponder responder,
                       @PathParam("namespace") String namespace,
-                      @PathParam("topic") String topic) throws Exception {
+                      @PathParam("topic") String topic,
+                      @Nullable @QueryParam("partitionKey") String partitionKey) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
-    StoreRequest storeRequest = createStoreRequest(topicId, request);
+    StoreRequest storeRequest = createStoreRequest(topicId, request, decodePartitionKey(partitionKey));
 
     // Empty payload is only allowed for transactional publish
     if (!storeRequest.isTransactional() && !storeRequest.hasPayload()) {
@@ -97,13 +108,72 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/store")
+  @Path("/publish")
+  public void batchPublish(FullHttpRequest request, HttpResponder responder) throws Exception {
+    checkContentType(request);
+
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.BatchPublishRequest.SCHEMA);
+    GenericRecord batchRecord = datumReader.read(null, decoder);
+
+    @SuppressWarnings("unchecked")
+    List<GenericRecord> records = (List<GenericRecord>) batchRecord.get("requests");
+    List<StoreRequest> storeRequests = new ArrayList<>(records.size());
+    for (GenericRecord record : records) {
+      TopicId topicId = new NamespaceId(record.get("namespace").toString()).topic(record.get("topic").toString());
+      ByteBuffer partitionKey = (ByteBuffer) record.get("partitionKey");
+      StoreRequest storeRequest = new GenericRecordStoreRequest(
+        topicId, record, partitionKey == null ? null : ByteBuffers.getByteArray(partitionKey));
+
+      // Empty payload is only allowed for transactional publish
+      if (!storeRequest.isTransactional() && !storeRequest.hasPayload()) {
+        throw new BadRequestException("Empty payload is only allowed for publishing transactional message. Topic: "
+                                        + topicId);
+      }
+      storeRequests.add(storeRequest);
+    }
+
+    List<PublishResult> results;
+    try {
+      results = messagingService.batchPublish(storeRequests);
+    } catch (TopicNotFoundException e) {
+      // Respond with the topic so that the client knows which topic is missing
+      responder.sendJson(HttpResponseStatus.NOT_FOUND,
+                         GSON.toJson(ImmutableMap.of("namespace", e.getNamespace(), "topic", e.getTopic())));
+      return;
+    }
+
+    // Response with the result of each request, with the rollback detail encoded the same as the publish call
+    Schema schema = Schemas.V1.BatchPublishResponse.SCHEMA;
+    Schema resultSchema = schema.getField("results").schema().getElementType();
+    List<GenericRecord> resultRecords = new ArrayList<>(results.size());
+    for (PublishResult result : results) {
+      GenericRecord resultRecord = new GenericData.Record(resultSchema);
+      RollbackDetail rollbackDetail = result.getRollbackDetail();
+      if (rollbackDetail != null) {
+        resultRecord.put("rollbackDetail", encodeRollbackDetail(rollbackDetail).nioBuffer());
+      }
+      resultRecord.put("failure", result.getFailureMessage());
+      resultRecords.add(resultRecord);
+    }
+    GenericRecord response = new GenericData.Record(schema);
+    response.put("results", resultRecords);
+
+    ByteBuf buffer = Unpooled.buffer();
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(buffer), null);
+    new GenericDatumWriter<GenericRecord>(schema).write(response, encoder);
+    responder.sendContent(HttpResponseStatus.OK, buffer,
+                          new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+  }
+
+  @POST
+  @Path("/namespaces/{namespace}/topics/{topic}/store")
   public void store(FullHttpRequest request, HttpResponder responder,
                     @PathParam("namespace") String namespace,
                     @PathParam("topic") String topic) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
-    StoreRequest storeRequest = createStoreRequest(topicId, request);
+    StoreRequest storeRequest = createStoreRequest(topicId, request, null);
 
     // It must be transactional with payload for store request
     if (!storeRequest.isTransactional() || !storeRequest.hasPayload()) {
@@ -115,7 +185,7 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   @POST
-  @Path("/rollback")
+  @Path("/namespaces/{namespace}/topics/{topic}/rollback")
   public void rollback(FullHttpRequest request, HttpResponder responder,
                        @PathParam("namespace") String namespace,
                        @PathParam("topic") String topic) throws Exception {
@@ -130,15 +200,38 @@ public final class StoreHandler extends AbstractHttpHandler {
   /**
    * Creates a {@link StoreRequest} instance based on the given {@link HttpRequest}.
    */
-  private StoreRequest createStoreRequest(TopicId topicId, FullHttpRequest request) throws Exception {
+  private StoreRequest createStoreRequest(TopicId topicId, FullHttpRequest request,
+                                          @Nullable byte[] partitionKey) throws Exception {
+    checkContentType(request);
+
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.PublishRequest.SCHEMA);
+    return new GenericRecordStoreRequest(topicId, datumReader.read(null, decoder), partitionKey);
+  }
+
+  /**
+   * Decodes the hex encoded partition key from the query parameter.
+   */
+  @Nullable
+  private byte[] decodePartitionKey(@Nullable String partitionKey) throws BadRequestException {
+    if (partitionKey == null) {
+      return null;
+    }
+    try {
+      return Bytes.fromHexString(partitionKey);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid partition key. It must be hex encoded: " + partitionKey);
+    }
+  }
+
+  /**
+   * Checks the request has avro content type.
+   */
+  private void checkContentType(FullHttpRequest request) throws BadRequestException {
     // Currently only support avro
     if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
       throw new BadRequestException("Only avro/binary content type is supported.");
     }
-
-    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.PublishRequest.SCHEMA);
-    return new GenericRecordStoreRequest(topicId, datumReader.read(null, decoder));
   }
 
   /**
@@ -170,19 +263,21 @@ public final class StoreHandler extends AbstractHttpHandler {
   }
 
   /**
-   * A {@link StoreRequest} that gets the request information from {@link GenericRecord}.
+   * A {@link StoreRequest} that gets the request information from {@link GenericRecord}. The record can either be
+   * a {@link Schemas.V1.PublishRequest} or an element of a {@link Schemas.V1.BatchPublishRequest}.
    */
   private static final class GenericRecordStoreRequest extends StoreRequest {
 
     private final List<ByteBuffer> payloads;
 
     @SuppressWarnings("unchecked")
-    GenericRecordStoreRequest(TopicId topicId, GenericRecord record) {
+    GenericRecordStoreRequest(TopicId topicId, GenericRecord record, @Nullable byte[] partitionKey) {
       super(topicId,
             record.get("transactionWritePointer") != null,
             record.get("transactionWritePointer") == null
               ? -1L
-              : Long.parseLong(record.get("transactionWritePointer").toString()));
+              : Long.parseLong(record.get("transactionWritePointer").toString()),
+            partitionKey);
 
       this.payloads = ((List<ByteBuffer>) record.get("messages"));
     }
@@ -18,11 +18,14 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -62,6 +65,8 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMessageWriter.class);
+
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
   private final PendingStoreQueue pendingStoreQueue;
@@ -83,9 +88,22 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, () -> { });
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param commitListener a {@link Runnable} to be called after each successful batch write. It is called from the
+   *                       writer thread, hence it must not block.
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          Runnable commitListener) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, commitListener);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
   }
@@ -110,27 +128,78 @@ final class ConcurrentMessageWriter implements Closeable {
     pendingStoreQueue.enqueue(pendingStoreRequest);
 
     metricsCollector.increment("persist.requested", 1L);
+    awaitCompletion(pendingStoreRequest);
+
+    if (pendingStoreRequest.isSuccess()) {
+      return getRollbackDetail(pendingStoreRequest);
+    }
+    Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
+    throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
+                          pendingStoreRequest.getFailureCause());
+  }
+
+  /**
+   * Persists all the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. All requests are
+   * enqueued before writing, hence they are written in order and usually in the same batch. This method is
+   * safe to be called concurrently from multiple threads.
+   *
+   * @param storeRequests the list of {@link StoreRequest} to persist
+   * @param metadata {@link TopicMetadata} for the topic of all the {@link StoreRequest}
+   * @return a {@link List} of {@link PublishResult} with one entry for each of the given requests in the same order
+   * @throws IOException if this writer is already closed
+   */
+  List<PublishResult> persistAll(List<? extends StoreRequest> storeRequests,
+                                 TopicMetadata metadata) throws IOException {
+    if (closed.get()) {
+      throw new IOException("Message writer is already closed");
+    }
 
+    List<PendingStoreRequest> pendingStoreRequests = new ArrayList<>(storeRequests.size());
+    for (StoreRequest storeRequest : storeRequests) {
+      PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
+      pendingStoreQueue.enqueue(pendingStoreRequest);
+      pendingStoreRequests.add(pendingStoreRequest);
+    }
+    metricsCollector.increment("persist.requested", pendingStoreRequests.size());
+
+    List<PublishResult> results = new ArrayList<>(pendingStoreRequests.size());
+    for (PendingStoreRequest pendingStoreRequest : pendingStoreRequests) {
+      awaitCompletion(pendingStoreRequest);
+      if (pendingStoreRequest.isSuccess()) {
+        results.add(PublishResult.success(getRollbackDetail(pendingStoreRequest)));
+      } else {
+        Throwable cause = pendingStoreRequest.getFailureCause();
+        results.add(PublishResult.failure("Unable to write message to " + metadata.getTopicId() + ": " + cause));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Blocks until the given {@link PendingStoreRequest} is completed, writing pending requests if no other thread
+   * is writing, and updates the metrics.
+   */
+  private void awaitCompletion(PendingStoreRequest pendingStoreRequest) {
     while (!pendingStoreRequest.isCompleted()) {
       if (!tryWrite()) {
         Thread.yield();
       }
     }
+    metricsCollector.increment(pendingStoreRequest.isSuccess() ? "persist.success" : "persist.failure", 1L);
+  }
 
-    if (pendingStoreRequest.isSuccess()) {
-      metricsCollector.increment("persist.success", 1L);
-      if (!pendingStoreRequest.isTransactional()) {
-        return null;
-      }
-      return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
-                                      pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
-                                      pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
-    } else {
-      metricsCollector.increment("persist.failure", 1L);
-      Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
-      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
-                            pendingStoreRequest.getFailureCause());
+  /**
+   * Returns the {@link RollbackDetail} of a successfully persisted {@link PendingStoreRequest}, or {@code null}
+   * if the request is not transactional.
+   */
+  @Nullable
+  private RollbackDetail getRollbackDetail(PendingStoreRequest pendingStoreRequest) {
+    if (!pendingStoreRequest.isTransactional()) {
+      return null;
     }
+    return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
+                                    pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
+                                    pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
   }
 
   /**
@@ -173,11 +242,13 @@ final class ConcurrentMessageWriter implements Closeable {
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
+    private final Runnable commitListener;
     private final Queue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, Runnable commitListener) {
       this.metricsCollector = metricsCollector;
+      this.commitListener = commitListener;
       this.writeQueue = new ConcurrentLinkedQueue<>();
       this.inflightRequests = new ArrayList<>(100);
     }
@@ -208,11 +279,23 @@ final class ConcurrentMessageWriter implements Closeable {
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
 
+      boolean hasRequests = !inflightRequests.isEmpty();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+        return;
+      }
+
+      if (!hasRequests) {
+        return;
+      }
+      try {
+        commitListener.run();
+      } catch (Throwable t) {
+        // Failure in the listener shouldn't affect the writes, which already completed
+        LOG.warn("Exception raised from the commit listener", t);
       }
     }
 
@@ -21,6 +21,7 @@ import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.store.MessageFilter;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.PayloadTable;
 import co.cask.cdap.proto.id.TopicId;
@@ -41,20 +42,38 @@ final class CoreMessageFetcher extends MessageFetcher {
 
   private static final Logger LOG = LoggerFactory.getLogger(CoreMessageFetcher.class);
 
+  // With a payload filter, the number of entries scanned by each table fetch relative to the message limit
+  private static final int FILTERED_SCAN_LIMIT_FACTOR = 10;
+
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    Integer partition = getPartition();
+    if (partition != null && partition != 0) {
+      throw new IllegalArgumentException("Invalid partition " + partition + " for topic "
+                                           + topicMetadata.getTopicId() + ", which is not partitioned");
+    }
+    return publishNotifier.fetchOrWait(topicMetadata.getTopicId(), getWaitTimeoutMillis(), this::doFetch);
+  }
+
+  /**
+   * Fetches messages from the tables without waiting.
+   */
+  private CloseableIterator<RawMessage> doFetch() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -124,12 +143,18 @@ final class CoreMessageFetcher extends MessageFetcher {
    */
   private final class MessageCloseableIterator implements CloseableIterator<RawMessage> {
 
-    private final CloseableIterator<MessageTable.Entry> messageIterator;
     private final TopicId topicId;
     private final MessageTable messageTable;
+    private final MessageFilter<byte[]> payloadFilter;
+    private final int scanLimit;
+    private CloseableIterator<MessageTable.Entry> messageIterator;
     private RawMessage nextMessage;
     private MessageTable.Entry messageEntry;
     private CloseableIterator<PayloadTable.Entry> payloadIterator;
+    private PayloadTable.Entry payloadEntry;
+    // Number of entries returned by the current message and payload iterators
+    private int messageScanned;
+    private int payloadScanned;
     private MessageId startOffset;
     private boolean inclusive;
     private int messageLimit;
@@ -141,6 +166,14 @@ final class CoreMessageFetcher extends MessageFetcher {
       this.inclusive = isIncludeStart();
       this.messageLimit = getLimit();
 
+      byte[] payloadPrefix = getPayloadPrefix();
+      this.payloadFilter = payloadPrefix == null
+        ? MessageFilter.<byte[]>alwaysAccept() : MessageFilter.payloadPrefix(payloadPrefix);
+      // With a payload filter, the limit applies to matching messages only. The tables are scanned in bounded
+      // chunks, and scanning continues after the last entry if a chunk is exhausted without enough matches.
+      this.scanLimit = payloadPrefix == null
+        ? messageLimit : (int) Math.min(Integer.MAX_VALUE, (long) messageLimit * FILTERED_SCAN_LIMIT_FACTOR);
+
       long ttl = topicMetadata.getTTL();
       startOffset = getStartOffset() == null ? null : new MessageId(getStartOffset());
       Long startTime = getStartTime();
@@ -153,16 +186,16 @@ final class CoreMessageFetcher extends MessageFetcher {
       // do the scanning based on time. The smallest start time should be the currentTime - TTL.
       if (startOffset == null || startOffset.getPublishTimestamp() < smallestPublishTime) {
         long fetchStartTime = Math.max(smallestPublishTime, startTime == null ? smallestPublishTime : startTime);
-        messageIterator = messageTable.fetch(topicMetadata, fetchStartTime, messageLimit, getTransaction());
+        messageIterator = messageTable.fetch(topicMetadata, fetchStartTime, scanLimit, getTransaction());
       } else {
         // Start scanning based on the start message id
         if (startOffset.getPayloadWriteTimestamp() != 0L) {
           // This message ID refer to payload table. Scan the message table with the reference message ID inclusively.
           messageIterator = messageTable.fetch(topicMetadata, createMessageTableMessageId(startOffset),
-                                               true, messageLimit, getTransaction());
+                                               true, scanLimit, getTransaction());
         } else {
           messageIterator = messageTable.fetch(topicMetadata, startOffset, isIncludeStart(),
-                                               messageLimit, getTransaction());
+                                               scanLimit, getTransaction());
         }
       }
       this.messageIterator = messageIterator;
@@ -177,16 +210,43 @@ final class CoreMessageFetcher extends MessageFetcher {
       // Find the next message
       while (nextMessage == null) {
         // If there is a payload iterator and is not empty, read the next message from the it
+        if (payloadIterator != null && !payloadIterator.hasNext() && payloadScanned >= scanLimit) {
+          // The payload scan reached its limit, continue after the last payload entry
+          closeQuietly(payloadIterator);
+          try {
+            payloadIterator = fetchPayloads(new MessageId(createMessageId(messageEntry, payloadEntry)), false);
+          } catch (IOException e) {
+            payloadIterator = null;
+            throw Throwables.propagate(e);
+          }
+        }
         if (payloadIterator != null && payloadIterator.hasNext()) {
-          PayloadTable.Entry payloadEntry = payloadIterator.next();
-          // messageEntry is guaranteed to be non-null if payloadIterator is non-null
-          nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry), payloadEntry.getPayload());
-          break;
+          payloadEntry = payloadIterator.next();
+          payloadScanned++;
+          if (payloadFilter.apply(payloadEntry.getPayload()) == MessageFilter.Result.ACCEPT) {
+            // messageEntry is guaranteed to be non-null if payloadIterator is non-null
+            nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry), payloadEntry.getPayload());
+            break;
+          }
+          continue;
         }
 
         // If there is no payload iterator or it has been exhausted, read the next message from the message iterator
+        if (!messageIterator.hasNext() && messageScanned >= scanLimit) {
+          // The message scan reached its limit, continue after the last message entry
+          closeQuietly(messageIterator);
+          try {
+            messageIterator = messageTable.fetch(topicMetadata, new MessageId(createMessageId(messageEntry, null)),
+                                                 false, scanLimit, getTransaction());
+          } catch (IOException e) {
+            messageIterator = null;
+            throw Throwables.propagate(e);
+          }
+          messageScanned = 0;
+        }
         if (messageIterator.hasNext()) {
           messageEntry = messageIterator.next();
+          messageScanned++;
           if (messageEntry.isPayloadReference()) {
             // If the message entry is a reference to payload table, create the payload iterator
             try {
@@ -202,15 +262,14 @@ final class CoreMessageFetcher extends MessageFetcher {
                                                 startOffset.getPayloadSequenceId()));
 
               // If startOffset is not used, always fetch with inclusive.
-              payloadIterator = payloadTable.fetch(topicMetadata, messageEntry.getTransactionWritePointer(),
-                                                   payloadStartOffset, startOffset == null || inclusive, messageLimit);
+              payloadIterator = fetchPayloads(payloadStartOffset, startOffset == null || inclusive);
               // The start offset is only used for the first payloadIterator being constructed.
               startOffset = null;
             } catch (IOException e) {
               throw Throwables.propagate(e);
             }
-          } else {
-            // Otherwise, the message entry is the next message
+          } else if (payloadFilter.apply(messageEntry.getPayload()) == MessageFilter.Result.ACCEPT) {
+            // Otherwise, the message entry is the next message if it passes the payload filter
             nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
           }
         } else {
@@ -223,6 +282,18 @@ final class CoreMessageFetcher extends MessageFetcher {
       return nextMessage != null;
     }
 
+    /**
+     * Fetches up to the scan limit of payload entries of the current message entry.
+     */
+    private CloseableIterator<PayloadTable.Entry> fetchPayloads(MessageId startOffset,
+                                                                boolean inclusive) throws IOException {
+      payloadScanned = 0;
+      // An exclusive fetch counts the skipped start entry towards the limit
+      int limit = inclusive || scanLimit == Integer.MAX_VALUE ? scanLimit : scanLimit + 1;
+      return payloadTable.fetch(topicMetadata, messageEntry.getTransactionWritePointer(),
+                                startOffset, inclusive, limit);
+    }
+
     @Override
     public RawMessage next() {
       if (!hasNext()) {
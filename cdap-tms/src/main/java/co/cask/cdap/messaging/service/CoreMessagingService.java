@@ -27,6 +27,7 @@ import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.MessagingServiceUtils;
 import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -34,6 +35,7 @@ import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.MetadataTable;
 import co.cask.cdap.messaging.store.PayloadTable;
 import co.cask.cdap.messaging.store.TableFactory;
+import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.annotations.VisibleForTesting;
@@ -46,6 +48,7 @@ import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import org.apache.tephra.TxConstants;
 import org.apache.tephra.util.TxUtils;
@@ -54,16 +57,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -85,18 +96,34 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final PublishNotifier publishNotifier;
+  private final ExecutorService batchPublishExecutor;
 
   @Inject
+  CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
+                       MetricsCollectionService metricsCollectionService, PublishNotifier publishNotifier) {
+    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService, publishNotifier);
+  }
+
+  @VisibleForTesting
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
                        MetricsCollectionService metricsCollectionService) {
-    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService);
+    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService, new PublishNotifier());
   }
 
   @VisibleForTesting
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
                        TimeProvider timeProvider, MetricsCollectionService metricsCollectionService) {
+    this(cConf, tableFactory, timeProvider, metricsCollectionService, new PublishNotifier());
+  }
+
+  private CoreMessagingService(CConfiguration cConf, TableFactory tableFactory, TimeProvider timeProvider,
+                               MetricsCollectionService metricsCollectionService, PublishNotifier publishNotifier) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
+    this.publishNotifier = publishNotifier;
+    this.batchPublishExecutor = Executors.newCachedThreadPool(
+      Threads.createDaemonThreadFactory("messaging-batch-publish-%d"));
     this.topicCache = createTopicCache();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
@@ -118,30 +145,77 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    if (TopicMetadata.isPartitionTopic(topicId)) {
+      throw new IllegalArgumentException("Topic name " + topicId.getTopic() + " is reserved for topic partitions");
+    }
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.createTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+      metadataTable.createTopic(metadata);
+      try {
+        createPartitionTopics(metadataTable, metadata);
+      } catch (Exception e) {
+        try {
+          metadataTable.deleteTopic(topicId);
+        } catch (Exception deleteFailure) {
+          e.addSuppressed(deleteFailure);
+        }
+        Throwables.propagateIfPossible(e, TopicAlreadyExistsException.class, IOException.class);
+        throw Throwables.propagate(e);
+      }
     }
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    if (TopicMetadata.isPartitionTopic(topicId)) {
+      throw new IllegalArgumentException("Topic partition " + topicId + " cannot be updated");
+    }
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
-      topicCache.invalidate(topicMetadata.getTopicId());
+
+      // The number of partitions cannot be changed as messages are already distributed across partitions
+      TopicMetadata existing = metadataTable.getMetadata(topicId);
+      String partitions = existing.getProperties().get(TopicMetadata.PARTITIONS_KEY);
+      if (!properties.containsKey(TopicMetadata.PARTITIONS_KEY) && partitions != null) {
+        properties.put(TopicMetadata.PARTITIONS_KEY, partitions);
+      }
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+      if (metadata.getPartitions() != existing.getPartitions()) {
+        throw new IllegalArgumentException("Number of partitions of topic " + topicId + " cannot be changed");
+      }
+
+      metadataTable.updateTopic(metadata);
+      topicCache.invalidate(topicId);
+      for (TopicId partitionTopicId : getPartitionTopicIds(metadata)) {
+        metadataTable.updateTopic(createPartitionTopicMetadata(partitionTopicId, properties));
+        topicCache.invalidate(partitionTopicId);
+      }
     }
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
+    if (TopicMetadata.isPartitionTopic(topicId)) {
+      throw new IllegalArgumentException("Topic partition " + topicId + " cannot be deleted");
+    }
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata metadata = metadataTable.getMetadata(topicId);
       metadataTable.deleteTopic(topicId);
-      topicCache.invalidate(topicId);
-      messageTableWriterCache.invalidate(topicId);
-      payloadTableWriterCache.invalidate(topicId);
+      invalidateTopic(topicId);
+      for (TopicId partitionTopicId : getPartitionTopicIds(metadata)) {
+        try {
+          metadataTable.deleteTopic(partitionTopicId);
+        } catch (TopicNotFoundException e) {
+          // It can happen if the partition topics were partially created. Just ignore it.
+          LOG.debug("Topic partition {} not found when deleting topic {}", partitionTopicId, topicId);
+        }
+        invalidateTopic(partitionTopicId);
+      }
     }
   }
 
@@ -159,35 +233,36 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
-      return metadataTable.listTopics(namespaceId);
+      // Topic partitions are internal topics, hence not returned.
+      List<TopicId> topics = new ArrayList<>();
+      for (TopicId topicId : metadataTable.listTopics(namespaceId)) {
+        if (!TopicMetadata.isPartitionTopic(topicId)) {
+          topics.add(topicId);
+        }
+      }
+      return topics;
     }
   }
 
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
-    final TopicMetadata metadata = getTopic(topicId);
-    return new CoreMessageFetcher(metadata, new TableProvider<MessageTable>() {
-      @Override
-      public MessageTable get() throws IOException {
-        return createMessageTable(metadata);
-      }
-    }, new TableProvider<PayloadTable>() {
-      @Override
-      public PayloadTable get() throws IOException {
-        return createPayloadTable(metadata);
-      }
-    });
+    TopicMetadata metadata = getTopic(topicId);
+    if (metadata.getPartitions() > 1) {
+      return new PartitionedMessageFetcher(metadata, partition -> createMessageFetcher(
+        getTopic(metadata.getPartitionTopicId(partition))), publishNotifier);
+    }
+    return createMessageFetcher(metadata);
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -195,11 +270,82 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     }
   }
 
+  @Override
+  public List<PublishResult> batchPublish(List<? extends StoreRequest> requests)
+    throws TopicNotFoundException, IOException {
+    // Validates all requests and groups them by the topic (or topic partition) they are written to,
+    // before publishing anything
+    Map<TopicId, TopicStoreRequests> topicRequests = new LinkedHashMap<>();
+    try {
+      for (int i = 0; i < requests.size(); i++) {
+        StoreRequest request = requests.get(i);
+        if (request.isTransactional()) {
+          ensureValidTxLifetime(request.getTransactionWritePointer());
+        }
+        TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
+        topicRequests.computeIfAbsent(metadata.getTopicId(), topicId -> new TopicStoreRequests(metadata))
+          .add(i, request);
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = Objects.firstNonNull(e.getCause(), e);
+      Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
+      throw Throwables.propagate(e);
+    }
+
+    // Publishes to all topics concurrently, with the first topic published from the calling thread.
+    // Requests for the same topic go through the topic ConcurrentMessageWriter together, hence they are written in
+    // order and get batched with concurrent publishes to the same topic.
+    List<TopicStoreRequests> topics = new ArrayList<>(topicRequests.values());
+    List<Future<List<PublishResult>>> futures = new ArrayList<>(topics.size());
+    for (TopicStoreRequests topicStoreRequests : topics.subList(1, topics.size())) {
+      futures.add(batchPublishExecutor.submit(() -> publishAll(topicStoreRequests)));
+    }
+
+    PublishResult[] results = new PublishResult[requests.size()];
+    for (int i = 0; i < topics.size(); i++) {
+      TopicStoreRequests topicStoreRequests = topics.get(i);
+      List<PublishResult> topicResults;
+      if (i == 0) {
+        topicResults = publishAll(topicStoreRequests);
+      } else {
+        try {
+          topicResults = Uninterruptibles.getUninterruptibly(futures.get(i - 1));
+        } catch (ExecutionException e) {
+          topicResults = Collections.nCopies(topicStoreRequests.requests.size(),
+                                             PublishResult.failure("Unable to write message to "
+                                                                     + topicStoreRequests.metadata.getTopicId()
+                                                                     + ": " + e.getCause()));
+        }
+      }
+      for (int j = 0; j < topicResults.size(); j++) {
+        results[topicStoreRequests.indices.get(j)] = topicResults.get(j);
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Publishes all requests in the given {@link TopicStoreRequests} with the topic {@link ConcurrentMessageWriter}.
+   * Failures are reported in the returned results instead of being thrown.
+   */
+  private List<PublishResult> publishAll(TopicStoreRequests topicStoreRequests) {
+    TopicMetadata metadata = topicStoreRequests.metadata;
+    try {
+      return messageTableWriterCache.get(metadata.getTopicId()).persistAll(topicStoreRequests.requests, metadata);
+    } catch (Exception e) {
+      Throwable cause = e instanceof ExecutionException ? Objects.firstNonNull(e.getCause(), e) : e;
+      LOG.debug("Failed to publish to topic {}", metadata.getTopicId(), cause);
+      return Collections.nCopies(topicStoreRequests.requests.size(),
+                                 PublishResult.failure("Unable to write message to " + metadata.getTopicId()
+                                                         + ": " + cause));
+    }
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
-      TopicMetadata metadata = topicCache.get(request.getTopicId());
-      payloadTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      TopicMetadata metadata = getPartitionMetadata(topicCache.get(request.getTopicId()), request);
+      payloadTableWriterCache.get(metadata.getTopicId()).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -210,6 +356,11 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
     TopicMetadata metadata = getTopic(topicId);
+    if (metadata.getPartitions() > 1) {
+      // Transactional publish always goes to the partition determined by the transaction write pointer
+      metadata = getTopic(metadata.getPartitionTopicId(
+        getPartition(metadata.getPartitions(), rollbackDetail.getTransactionWritePointer())));
+    }
     Exception failure = null;
     try (MessageTable messageTable = createMessageTable(metadata)) {
       messageTable.rollback(metadata, rollbackDetail);
@@ -224,6 +375,29 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     }
   }
 
+  @Override
+  public void commitOffsets(String consumerGroup,
+                            Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException {
+    validateConsumerGroup(consumerGroup);
+    if (offsets.isEmpty()) {
+      return;
+    }
+    try (MetadataTable metadataTable = createMetadataTable()) {
+      metadataTable.commitOffsets(consumerGroup, offsets);
+    }
+  }
+
+  @Override
+  public Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException {
+    validateConsumerGroup(consumerGroup);
+    if (topicIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    try (MetadataTable metadataTable = createMetadataTable()) {
+      return metadataTable.getOffsets(consumerGroup, topicIds);
+    }
+  }
+
   @Override
   protected void startUp() throws Exception {
     Queue<TopicId> asyncCreationTopics = new LinkedList<>();
@@ -260,9 +434,116 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     messageTableWriterCache.invalidateAll();
     messageTableWriterCache.invalidateAll();
     payloadTableWriterCache.invalidateAll();
+    batchPublishExecutor.shutdownNow();
     LOG.info("Core Messaging Service stopped");
   }
 
+  /**
+   * Creates the internal topics for the partitions of the given topic if it is partitioned.
+   */
+  private void createPartitionTopics(MetadataTable metadataTable,
+                                     TopicMetadata metadata) throws TopicAlreadyExistsException, IOException {
+    List<TopicId> created = new ArrayList<>();
+    try {
+      for (TopicId partitionTopicId : getPartitionTopicIds(metadata)) {
+        metadataTable.createTopic(createPartitionTopicMetadata(partitionTopicId, metadata.getProperties()));
+        created.add(partitionTopicId);
+      }
+    } catch (Exception e) {
+      for (TopicId partitionTopicId : created) {
+        try {
+          metadataTable.deleteTopic(partitionTopicId);
+        } catch (Exception deleteFailure) {
+          e.addSuppressed(deleteFailure);
+        }
+      }
+      Throwables.propagateIfPossible(e, TopicAlreadyExistsException.class, IOException.class);
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Returns the ids of the internal topics for the partitions of the given topic. An empty list is returned if
+   * the topic is not partitioned.
+   */
+  private List<TopicId> getPartitionTopicIds(TopicMetadata metadata) {
+    int partitions = metadata.getPartitions();
+    if (partitions <= 1) {
+      return Collections.emptyList();
+    }
+    List<TopicId> topicIds = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      topicIds.add(metadata.getPartitionTopicId(i));
+    }
+    return topicIds;
+  }
+
+  /**
+   * Creates the {@link TopicMetadata} of a topic partition, which has the same properties as the partitioned topic
+   * except the partitions property.
+   */
+  private TopicMetadata createPartitionTopicMetadata(TopicId partitionTopicId, Map<String, String> properties) {
+    Map<String, String> partitionProperties = new HashMap<>(properties);
+    partitionProperties.remove(TopicMetadata.PARTITIONS_KEY);
+    return new TopicMetadata(partitionTopicId, partitionProperties, true);
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} of the partition that the given {@link StoreRequest} should be written to.
+   * If the topic is not partitioned, the given metadata is returned.
+   */
+  private TopicMetadata getPartitionMetadata(TopicMetadata metadata,
+                                             StoreRequest request) throws ExecutionException {
+    int partitions = metadata.getPartitions();
+    if (partitions <= 1) {
+      return metadata;
+    }
+
+    int partition;
+    if (request.isTransactional()) {
+      // Store payload, publish and rollback of the same transaction need to go to the same partition
+      partition = getPartition(partitions, request.getTransactionWritePointer());
+    } else if (request.getPartitionKey() != null) {
+      partition = Math.floorMod(Arrays.hashCode(request.getPartitionKey()), partitions);
+    } else {
+      partition = ThreadLocalRandom.current().nextInt(partitions);
+    }
+    return topicCache.get(metadata.getPartitionTopicId(partition));
+  }
+
+  /**
+   * Returns the partition for the given transaction write pointer.
+   */
+  private int getPartition(int partitions, long transactionWritePointer) {
+    return Math.floorMod(Long.hashCode(transactionWritePointer), partitions);
+  }
+
+  /**
+   * Invalidates all cached information about the given topic.
+   */
+  private void invalidateTopic(TopicId topicId) {
+    topicCache.invalidate(topicId);
+    messageTableWriterCache.invalidate(topicId);
+    payloadTableWriterCache.invalidate(topicId);
+  }
+
+  /**
+   * Creates a {@link CoreMessageFetcher} for fetching messages from the given non-partitioned topic.
+   */
+  private CoreMessageFetcher createMessageFetcher(TopicMetadata metadata) {
+    return new CoreMessageFetcher(metadata, new TableProvider<MessageTable>() {
+      @Override
+      public MessageTable get() throws IOException {
+        return createMessageTable(metadata);
+      }
+    }, new TableProvider<PayloadTable>() {
+      @Override
+      public PayloadTable get() throws IOException {
+        return createPayloadTable(metadata);
+      }
+    }, publishNotifier);
+  }
+
   private void ensureValidTxLifetime(long transactionWritePointer) throws IOException {
     long txTimestamp = TxUtils.getTimestamp(transactionWritePointer);
     boolean validLifetime = (txTimestamp + txMaxLifeTimeInMillis) > System.currentTimeMillis();
@@ -373,11 +654,34 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          if (!messageTable) {
+            return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          }
+          // Wake up fetches waiting on the topic once messages are written to the message table.
+          // For topic partition, also wake up fetches waiting on the partitioned topic.
+          TopicId partitionedTopicId = TopicMetadata.getPartitionedTopicId(topicId);
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext, () -> {
+            publishNotifier.notifyPublished(topicId);
+            if (partitionedTopicId != null) {
+              publishNotifier.notifyPublished(partitionedTopicId);
+            }
+          });
         }
       });
   }
 
+  /**
+   * Validates the name of a consumer group.
+   *
+   * @throws IllegalArgumentException if the name is invalid
+   */
+  private void validateConsumerGroup(String consumerGroup) {
+    if (!EntityId.isValidId(consumerGroup)) {
+      throw new IllegalArgumentException("Invalid consumer group name '" + consumerGroup
+                                           + "'. It should only contain alphanumeric characters and _ or -.");
+    }
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
@@ -408,4 +712,24 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     properties.put(TopicMetadata.GENERATION_KEY, MessagingUtils.Constants.DEFAULT_GENERATION);
     return properties;
   }
+
+  /**
+   * The {@link StoreRequest}s in a batch publish that are written to the same topic, together with their
+   * positions in the batch.
+   */
+  private static final class TopicStoreRequests {
+
+    private final TopicMetadata metadata;
+    private final List<StoreRequest> requests = new ArrayList<>();
+    private final List<Integer> indices = new ArrayList<>();
+
+    TopicStoreRequests(TopicMetadata metadata) {
+      this.metadata = metadata;
+    }
+
+    void add(int index, StoreRequest request) {
+      indices.add(index);
+      requests.add(request);
+    }
+  }
 }
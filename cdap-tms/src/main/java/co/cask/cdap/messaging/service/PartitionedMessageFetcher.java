@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.data.RawMessage;
+import com.google.common.collect.Iterators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MessageFetcher} for fetching messages from a partitioned topic. If a partition is set, messages are
+ * fetched from that partition only. Otherwise, messages from all partitions are fetched and merged in the order of
+ * message id, which is ordered by publish time.
+ *
+ * Message ordering is only guaranteed within a partition. A message can be persisted to one partition with a publish
+ * time smaller than the latest message in another partition, and message ids are only unique within a partition.
+ * Therefore a single message id cannot be used to resume fetching from all partitions without missing messages,
+ * and fetching from all partitions with a start message id is rejected. Consumers that resume by message id must
+ * fetch from individual partitions, keeping one message id per partition.
+ */
+final class PartitionedMessageFetcher extends MessageFetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedMessageFetcher.class);
+  private static final Comparator<RawMessage> MESSAGE_ID_COMPARATOR =
+    (m1, m2) -> Bytes.compareTo(m1.getId(), m2.getId());
+
+  private final TopicMetadata topicMetadata;
+  private final PartitionFetcherFactory fetcherFactory;
+  private final PublishNotifier publishNotifier;
+
+  PartitionedMessageFetcher(TopicMetadata topicMetadata, PartitionFetcherFactory fetcherFactory,
+                            PublishNotifier publishNotifier) {
+    this.topicMetadata = topicMetadata;
+    this.fetcherFactory = fetcherFactory;
+    this.publishNotifier = publishNotifier;
+  }
+
+  @Override
+  public CloseableIterator<RawMessage> fetch() throws TopicNotFoundException, IOException {
+    Integer partition = getPartition();
+    if (partition != null) {
+      // Validates the partition and delegates to the fetcher of the partition
+      topicMetadata.getPartitionTopicId(partition);
+      return configure(fetcherFactory.create(partition))
+        .setWaitTimeout(getWaitTimeoutMillis(), TimeUnit.MILLISECONDS)
+        .fetch();
+    }
+
+    if (getStartOffset() != null) {
+      throw new IllegalArgumentException(
+        "Fetching from all partitions of topic " + topicMetadata.getTopicId() + " starting from a message id is "
+          + "not supported, since message ids are only ordered within a partition. Set the partition to fetch from.");
+    }
+
+    List<CoreMessageFetcher> fetchers = new ArrayList<>();
+    for (int i = 0; i < topicMetadata.getPartitions(); i++) {
+      // Each partition returns at most the limit, which is enough to fill the limit after merging
+      fetchers.add(configure(fetcherFactory.create(i)));
+    }
+    // Messages published to any partition will notify the partitioned topic as well
+    return publishNotifier.fetchOrWait(topicMetadata.getTopicId(), getWaitTimeoutMillis(),
+                                       () -> fetchAll(fetchers));
+  }
+
+  /**
+   * Fetches from all partitions without waiting and merges the results.
+   */
+  private CloseableIterator<RawMessage> fetchAll(List<CoreMessageFetcher> fetchers) throws IOException {
+    List<CloseableIterator<RawMessage>> iterators = new ArrayList<>(fetchers.size());
+    try {
+      for (CoreMessageFetcher fetcher : fetchers) {
+        iterators.add(fetcher.fetch());
+      }
+    } catch (Throwable t) {
+      for (CloseableIterator<RawMessage> iterator : iterators) {
+        closeQuietly(iterator);
+      }
+      throw t;
+    }
+    return new MergedMessageIterator(iterators, getLimit());
+  }
+
+  /**
+   * Copies the fetch settings of this fetcher to the given {@link MessageFetcher}, except the wait timeout.
+   */
+  private CoreMessageFetcher configure(CoreMessageFetcher fetcher) {
+    if (getStartOffset() != null) {
+      fetcher.setStartMessage(getStartOffset(), isIncludeStart());
+    } else if (getStartTime() != null) {
+      fetcher.setStartTime(getStartTime());
+    }
+    if (getTransaction() != null) {
+      fetcher.setTransaction(getTransaction());
+    }
+    fetcher.setLimit(getLimit());
+    fetcher.setPayloadPrefix(getPayloadPrefix());
+    return fetcher;
+  }
+
+  private void closeQuietly(CloseableIterator<RawMessage> iterator) {
+    try {
+      iterator.close();
+    } catch (Throwable t) {
+      LOG.warn("Exception raised when closing iterator of topic {}", topicMetadata.getTopicId(), t);
+    }
+  }
+
+  /**
+   * Creates {@link CoreMessageFetcher} for fetching messages from individual partition.
+   */
+  interface PartitionFetcherFactory {
+
+    /**
+     * Creates a {@link CoreMessageFetcher} for fetching messages from the given partition.
+     */
+    CoreMessageFetcher create(int partition) throws TopicNotFoundException, IOException;
+  }
+
+  /**
+   * A {@link CloseableIterator} that merges messages from multiple sorted iterators, up to a limit.
+   */
+  private final class MergedMessageIterator implements CloseableIterator<RawMessage> {
+
+    private final List<CloseableIterator<RawMessage>> iterators;
+    private final Iterator<RawMessage> mergedIterator;
+
+    MergedMessageIterator(List<CloseableIterator<RawMessage>> iterators, int limit) {
+      this.iterators = iterators;
+      this.mergedIterator = Iterators.limit(Iterators.mergeSorted(iterators, MESSAGE_ID_COMPARATOR), limit);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return mergedIterator.hasNext();
+    }
+
+    @Override
+    public RawMessage next() {
+      return mergedIterator.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Remove is not supported");
+    }
+
+    @Override
+    public void close() {
+      for (CloseableIterator<RawMessage> iterator : iterators) {
+        closeQuietly(iterator);
+      }
+    }
+  }
+}
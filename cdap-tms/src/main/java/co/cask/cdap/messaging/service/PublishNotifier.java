@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notifies listeners when new messages are published to a topic. It is used to wake up fetches that are waiting
+ * for new messages, instead of having them polling the message table repeatedly.
+ *
+ * Notifications are only delivered for messages published through the {@link CoreMessagingService} in the same
+ * process. Listeners are called from the thread that writes to the message table, hence they must not block.
+ */
+@Singleton
+public final class PublishNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PublishNotifier.class);
+
+  private final ConcurrentMap<TopicId, Set<Runnable>> listeners = new ConcurrentHashMap<>();
+
+  /**
+   * Adds a listener to be called when new messages are published to the given topic.
+   *
+   * @param topicId the topic to listen on
+   * @param listener the listener to call
+   * @return a {@link Cancellable} to remove the listener
+   */
+  public Cancellable addListener(TopicId topicId, Runnable listener) {
+    listeners.compute(topicId, (id, topicListeners) -> {
+      Set<Runnable> result = topicListeners == null ? ConcurrentHashMap.newKeySet() : topicListeners;
+      result.add(listener);
+      return result;
+    });
+    return () -> listeners.computeIfPresent(topicId, (id, topicListeners) -> {
+      topicListeners.remove(listener);
+      return topicListeners.isEmpty() ? null : topicListeners;
+    });
+  }
+
+  /**
+   * Notifies all listeners of the given topic that new messages were published.
+   *
+   * @param topicId the topic that messages were published to
+   */
+  public void notifyPublished(TopicId topicId) {
+    Set<Runnable> topicListeners = listeners.get(topicId);
+    if (topicListeners == null) {
+      return;
+    }
+    for (Runnable listener : topicListeners) {
+      try {
+        listener.run();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised from publish listener of topic {}", topicId, t);
+      }
+    }
+  }
+
+  /**
+   * Performs the given fetch. If the fetch returns no message, waits for new messages being published to the given
+   * topic and fetches again, until there are messages available or the wait timeout elapsed.
+   *
+   * @param topicId the topic to listen on for new messages
+   * @param waitTimeoutMillis the maximum time in milliseconds to wait for new messages
+   * @param fetch the fetch to perform
+   * @return the {@link CloseableIterator} returned by the last fetch
+   * @throws IOException if the fetch failed
+   */
+  CloseableIterator<RawMessage> fetchOrWait(TopicId topicId, long waitTimeoutMillis,
+                                            Fetch fetch) throws IOException {
+    if (waitTimeoutMillis <= 0) {
+      return fetch.fetch();
+    }
+
+    // Listen for publish before fetching, so that messages published right after the fetch won't be missed
+    Semaphore published = new Semaphore(0);
+    Cancellable cancellable = addListener(topicId, published::release);
+    try {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+      while (true) {
+        published.drainPermits();
+        CloseableIterator<RawMessage> iterator = fetch.fetch();
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+        iterator.close();
+        // Wait for new messages. On timeout, the loop will perform one last fetch.
+        published.tryAcquire(remainingNanos, TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for messages in topic " + topicId);
+    } finally {
+      cancellable.cancel();
+    }
+  }
+
+  /**
+   * A fetch of messages that can be repeated by {@link #fetchOrWait(TopicId, long, Fetch)}.
+   */
+  interface Fetch {
+
+    /**
+     * Fetches messages without waiting.
+     */
+    CloseableIterator<RawMessage> fetch() throws IOException;
+  }
+}
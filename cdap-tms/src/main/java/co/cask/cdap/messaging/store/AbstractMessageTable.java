@@ -28,14 +28,39 @@ import com.google.common.collect.AbstractIterator;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
  * Contains common logic for implementation of {@link MessageTable}.
+ *
+ * If a {@link MessageBlockCodec} is provided, consecutive messages that have the same publish timestamp and
+ * transaction are stored as a block in a single row, keyed by the last message in the block. Since the sequence
+ * ids of messages in a block are consecutive, the message ids of all messages in the block can be derived from
+ * the row key. Rows in block or non-block format can always be read, regardless of the codec setting.
  */
 public abstract class AbstractMessageTable implements MessageTable {
 
+  private final MessageBlockCodec blockCodec;
+
+  protected AbstractMessageTable() {
+    this(null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param blockCodec the {@link MessageBlockCodec} for storing messages in blocks,
+   *                   or {@code null} to store each message in its own row
+   */
+  protected AbstractMessageTable(@Nullable MessageBlockCodec blockCodec) {
+    this.blockCodec = blockCodec;
+  }
+
   /**
    * Store the {@link RawMessageTableEntry}s persistently.
    *
@@ -73,7 +98,7 @@ public abstract class AbstractMessageTable implements MessageTable {
     Bytes.putLong(startRow, topic.length, startTime);
     byte[] stopRow = Bytes.stopKeyForPrefix(topic);
     final CloseableIterator<RawMessageTableEntry> scanner = read(startRow, stopRow);
-    return new FetchIterator(scanner, limit, null, transaction);
+    return new FetchIterator(scanner, limit, null, true, transaction);
   }
 
   @Override
@@ -85,17 +110,22 @@ public abstract class AbstractMessageTable implements MessageTable {
     Bytes.putLong(startRow, topic.length, messageId.getPublishTimestamp());
     Bytes.putShort(startRow, topic.length + Bytes.SIZEOF_LONG, messageId.getSequenceId());
     byte[] stopRow = Bytes.stopKeyForPrefix(topic);
+    // Since a block is keyed by its last message, scanning from the start message also finds the block containing it
     final CloseableIterator<RawMessageTableEntry> scanner = read(startRow, stopRow);
-    return new FetchIterator(scanner, limit, inclusive ? null : startRow, transaction);
+    return new FetchIterator(scanner, limit, startRow, inclusive, transaction);
   }
 
   @Override
   public void store(Iterator<? extends Entry> entries) throws IOException {
-    persist(new StoreIterator(entries));
+    persist(new StoreIterator(entries, blockCodec));
   }
 
   @Override
   public void rollback(TopicMetadata metadata, RollbackDetail rollbackDetail) throws IOException {
+    // A block only contains messages of the same transaction and is keyed by its last message. If messages of
+    // the same transaction from multiple publish calls were grouped into one block, rolling back any of them
+    // that covers the block key rolls back the whole block, which is fine as a transaction is always rolled back
+    // as a whole.
     //long startTimestamp, short startSequenceId,
     //long endTimestamp, short endSequenceId
     byte[] topic = MessagingUtils.toDataKeyPrefix(metadata.getTopicId(), metadata.getGeneration());
@@ -119,15 +149,32 @@ public abstract class AbstractMessageTable implements MessageTable {
   private static class FetchIterator extends AbstractCloseableIterator<Entry> {
     private final CloseableIterator<RawMessageTableEntry> scanner;
     private final TransactionMessageFilter filter;
-    private byte[] skipStartRow;
+    private final boolean inclusive;
+    private byte[] startRow;
     private boolean closed = false;
     private int maxLimit;
 
-    FetchIterator(CloseableIterator<RawMessageTableEntry> scanner, int limit, @Nullable byte[] skipStartRow,
-                  @Nullable Transaction transaction) {
+    // States for iterating messages in a block
+    private MessageBlockCodec.Block block;
+    private byte[] blockKey;
+    private byte[] blockTxPtr;
+    private int blockIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param scanner the scanner for scanning the table
+     * @param limit maximum number of messages to return
+     * @param startRow the key of the first message to return, or {@code null} to start from the first message
+     * @param inclusive whether to return the message of the start row or not
+     * @param transaction an optional transaction for filtering messages
+     */
+    FetchIterator(CloseableIterator<RawMessageTableEntry> scanner, int limit, @Nullable byte[] startRow,
+                  boolean inclusive, @Nullable Transaction transaction) {
       this.scanner = scanner;
       this.filter =  transaction == null ? null : new TransactionMessageFilter(transaction);
-      this.skipStartRow = skipStartRow;
+      this.startRow = startRow;
+      this.inclusive = inclusive;
       this.maxLimit = limit;
     }
 
@@ -137,20 +184,55 @@ public abstract class AbstractMessageTable implements MessageTable {
         return endOfData();
       }
 
-      while (scanner.hasNext()) {
+      while (true) {
+        // Return the next message in the current block if there is any
+        while (block != null && blockIndex < block.size()) {
+          int index = blockIndex++;
+          byte[] key = getBlockMessageKey(index);
+          // Only the first row of the scan can contain messages before the start row
+          if (startRow != null) {
+            int cmp = Bytes.compareTo(key, startRow);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+              continue;
+            }
+          }
+          maxLimit--;
+          return new ImmutableMessageTableEntry(key, block.getPayload(index), blockTxPtr);
+        }
+        if (block != null) {
+          // After the first block, we don't need to match anymore
+          block = null;
+          startRow = null;
+        }
+
+        if (!scanner.hasNext()) {
+          break;
+        }
         RawMessageTableEntry tableEntry = scanner.next();
 
         // See if we need to skip the first row returned by the scanner
-        if (skipStartRow != null) {
-          byte[] row = skipStartRow;
+        if (startRow != null && !tableEntry.isBlock()) {
+          byte[] row = startRow;
           // After first row, we don't need to match anymore
-          skipStartRow = null;
-           if (Bytes.equals(row, tableEntry.getKey())) {
-             continue;
-           }
+          startRow = null;
+          if (!inclusive && Bytes.equals(row, tableEntry.getKey())) {
+            continue;
+          }
         }
         MessageFilter.Result status = accept(tableEntry.getTxPtr());
         if (status == MessageFilter.Result.ACCEPT) {
+          if (tableEntry.isBlock()) {
+            // Decode the block and return messages from it in the next iteration
+            try {
+              block = MessageBlockCodec.decode(tableEntry.getPayload());
+            } catch (IOException e) {
+              throw new UncheckedIOException("Failed to decode message block", e);
+            }
+            blockKey = tableEntry.getKey();
+            blockTxPtr = tableEntry.getTxPtr();
+            blockIndex = 0;
+            continue;
+          }
           maxLimit--;
           return new ImmutableMessageTableEntry(tableEntry.getKey(), tableEntry.getPayload(), tableEntry.getTxPtr());
         }
@@ -158,6 +240,7 @@ public abstract class AbstractMessageTable implements MessageTable {
         if (status == MessageFilter.Result.HOLD) {
           break;
         }
+        startRow = null;
       }
       return endOfData();
     }
@@ -180,33 +263,115 @@ public abstract class AbstractMessageTable implements MessageTable {
 
       return filter.filter(Bytes.toLong(txPtr));
     }
+
+    /**
+     * Returns the row key of the message at the given index of the current block. The block is keyed by the
+     * last message, and messages in the block have consecutive sequence ids.
+     */
+    private byte[] getBlockMessageKey(int index) {
+      byte[] key = Arrays.copyOf(blockKey, blockKey.length);
+      int seqOffset = key.length - Bytes.SIZEOF_SHORT;
+      int lastSequenceId = Bytes.toShort(blockKey, seqOffset) & 0xffff;
+      Bytes.putShort(key, seqOffset, (short) (lastSequenceId - (block.size() - 1 - index)));
+      return key;
+    }
   }
 
   /**
    * A {@link Iterator} for iterating over {@link RawMessageTableEntry} based on a given
-   * iterator of {@link Entry}.
+   * iterator of {@link Entry}. If a {@link MessageBlockCodec} is provided, consecutive entries that can be
+   * stored in the same block are combined into one {@link RawMessageTableEntry}.
    */
   private static class StoreIterator extends AbstractIterator<RawMessageTableEntry> {
 
     private final Iterator<? extends Entry> entries;
+    private final MessageBlockCodec blockCodec;
     private final RawMessageTableEntry tableEntry;
+    private final BufferedEntry currentEntry;
+    private final BufferedEntry nextEntry;
+    private final List<byte[]> blockPayloads;
     private TopicId topicId;
     private int generation;
     private byte[] topic;
     private byte[] rowKey;
 
-    private StoreIterator(Iterator<? extends Entry> entries) {
+    private StoreIterator(Iterator<? extends Entry> entries, @Nullable MessageBlockCodec blockCodec) {
       this.entries = entries;
+      this.blockCodec = blockCodec;
       this.tableEntry = new RawMessageTableEntry();
+      this.currentEntry = new BufferedEntry();
+      this.nextEntry = new BufferedEntry();
+      this.blockPayloads = new ArrayList<>();
     }
 
     @Override
     protected RawMessageTableEntry computeNext() {
-      if (!entries.hasNext()) {
-        return endOfData();
+      if (blockCodec == null) {
+        if (!entries.hasNext()) {
+          return endOfData();
+        }
+        Entry entry = entries.next();
+        return toTableEntry(entry, entry.getSequenceId(), entry.getPayload(), false);
+      }
+
+      // The entries iterator can reuse the Entry object, hence need to copy it when reading ahead
+      if (nextEntry.isEmpty()) {
+        if (!entries.hasNext()) {
+          return endOfData();
+        }
+        nextEntry.set(entries.next());
+      }
+      currentEntry.set(nextEntry);
+      nextEntry.clear();
+
+      byte[] payload = currentEntry.getPayload();
+      if (payload == null) {
+        return toTableEntry(currentEntry, currentEntry.getSequenceId(), null, false);
+      }
+
+      // Read ahead to collect entries for the block
+      blockPayloads.clear();
+      blockPayloads.add(payload);
+      int blockSize = payload.length;
+      short lastSequenceId = currentEntry.getSequenceId();
+      while (entries.hasNext()) {
+        Entry entry = entries.next();
+        if (!canAppendToBlock(entry, lastSequenceId, blockSize)) {
+          nextEntry.set(entry);
+          break;
+        }
+        blockPayloads.add(entry.getPayload());
+        blockSize += entry.getPayload().length;
+        lastSequenceId = entry.getSequenceId();
       }
 
-      Entry entry = entries.next();
+      if (blockPayloads.size() == 1) {
+        return toTableEntry(currentEntry, currentEntry.getSequenceId(), payload, false);
+      }
+      try {
+        return toTableEntry(currentEntry, lastSequenceId, blockCodec.encode(blockPayloads), true);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to encode message block", e);
+      }
+    }
+
+    /**
+     * Returns {@code true} if the given {@link Entry} can be added to the block started by the current entry.
+     */
+    private boolean canAppendToBlock(Entry entry, short lastSequenceId, int blockSize) {
+      byte[] payload = entry.getPayload();
+      return payload != null
+        && blockSize + payload.length <= blockCodec.getMaxBlockSize()
+        && entry.getSequenceId() == (short) (lastSequenceId + 1)
+        && entry.getPublishTimestamp() == currentEntry.getPublishTimestamp()
+        && entry.isTransactional() == currentEntry.isTransactional()
+        && entry.getTransactionWritePointer() == currentEntry.getTransactionWritePointer()
+        && entry.getGeneration() == currentEntry.getGeneration()
+        && entry.getTopicId().equals(currentEntry.getTopicId());
+    }
+
+    private RawMessageTableEntry toTableEntry(Entry entry, short sequenceId,
+                                              @Nullable byte[] payload, boolean block) {
       // Create new byte arrays only when the topicId is different. Else, reuse the byte arrays.
       if (topicId == null || (!topicId.equals(entry.getTopicId())) || (generation != entry.getGeneration())) {
         topicId = entry.getTopicId();
@@ -217,13 +382,87 @@ public abstract class AbstractMessageTable implements MessageTable {
 
       Bytes.putBytes(rowKey, 0, topic, 0, topic.length);
       Bytes.putLong(rowKey, topic.length, entry.getPublishTimestamp());
-      Bytes.putShort(rowKey, topic.length + Bytes.SIZEOF_LONG, entry.getSequenceId());
+      Bytes.putShort(rowKey, topic.length + Bytes.SIZEOF_LONG, sequenceId);
 
       byte[] txPtr = null;
       if (entry.isTransactional()) {
         txPtr = Bytes.toBytes(entry.getTransactionWritePointer());
       }
-      return tableEntry.set(rowKey, txPtr, entry.getPayload());
+      return tableEntry.set(rowKey, txPtr, payload, block);
+    }
+  }
+
+  /**
+   * A mutable {@link Entry} for holding a copy of another {@link Entry}.
+   */
+  private static final class BufferedEntry implements Entry {
+
+    private TopicId topicId;
+    private int generation;
+    private boolean transactional;
+    private long transactionWritePointer;
+    private byte[] payload;
+    private long publishTimestamp;
+    private short sequenceId;
+
+    void set(Entry entry) {
+      topicId = entry.getTopicId();
+      generation = entry.getGeneration();
+      transactional = entry.isTransactional();
+      transactionWritePointer = entry.getTransactionWritePointer();
+      payload = entry.getPayload();
+      publishTimestamp = entry.getPublishTimestamp();
+      sequenceId = entry.getSequenceId();
+    }
+
+    void clear() {
+      topicId = null;
+      payload = null;
+    }
+
+    boolean isEmpty() {
+      return topicId == null;
+    }
+
+    @Override
+    public TopicId getTopicId() {
+      return topicId;
+    }
+
+    @Override
+    public int getGeneration() {
+      return generation;
+    }
+
+    @Override
+    public boolean isPayloadReference() {
+      return payload == null;
+    }
+
+    @Override
+    public boolean isTransactional() {
+      return transactional;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return transactionWritePointer;
+    }
+
+    @Nullable
+    @Override
+    public byte[] getPayload() {
+      return payload;
+    }
+
+    @Override
+    public long getPublishTimestamp() {
+      return publishTimestamp;
+    }
+
+    @Override
+    public short getSequenceId() {
+      return sequenceId;
     }
   }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import org.xerial.snappy.Snappy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes blocks of messages stored in the message table. A block groups multiple messages into
+ * a single row. The encoded block is a one byte {@link Compression} id, followed by the block content
+ * compressed with that compression. The block content has the format of
+ *
+ * <pre>
+ *   [count (int)][end offset of each payload (int) x count][payloads]
+ * </pre>
+ *
+ * The offsets are relative to the start of the payloads, which allows accessing any message in the block
+ * without parsing the messages before it.
+ */
+public final class MessageBlockCodec {
+
+  /**
+   * Compression for the block content.
+   */
+  public enum Compression {
+    NONE(0),
+    SNAPPY(1);
+
+    private final byte id;
+
+    Compression(int id) {
+      this.id = (byte) id;
+    }
+
+    byte getId() {
+      return id;
+    }
+
+    static Compression fromId(byte id) {
+      for (Compression compression : values()) {
+        if (compression.id == id) {
+          return compression;
+        }
+      }
+      throw new IllegalArgumentException("Unknown message block compression id " + id);
+    }
+  }
+
+  private final Compression compression;
+  private final int maxBlockSize;
+
+  /**
+   * Creates a {@link MessageBlockCodec} based on the configuration.
+   *
+   * @return a {@link MessageBlockCodec} or {@code null} if block mode is not enabled
+   */
+  @Nullable
+  public static MessageBlockCodec create(CConfiguration cConf) {
+    if (!cConf.getBoolean(Constants.MessagingSystem.TABLE_BLOCK_ENABLED, false)) {
+      return null;
+    }
+    String compression = cConf.get(Constants.MessagingSystem.TABLE_BLOCK_COMPRESSION, Compression.SNAPPY.name());
+    return new MessageBlockCodec(Compression.valueOf(compression.trim().toUpperCase()),
+                                 cConf.getInt(Constants.MessagingSystem.TABLE_BLOCK_MAX_SIZE_BYTES, 65536));
+  }
+
+  public MessageBlockCodec(Compression compression, int maxBlockSize) {
+    if (maxBlockSize <= 0) {
+      throw new IllegalArgumentException("Maximum block size must be > 0");
+    }
+    this.compression = compression;
+    this.maxBlockSize = maxBlockSize;
+  }
+
+  /**
+   * Returns the maximum total size of payloads in a block.
+   */
+  public int getMaxBlockSize() {
+    return maxBlockSize;
+  }
+
+  /**
+   * Encodes the given list of payloads as a block.
+   *
+   * @param payloads the payloads to encode
+   * @return the encoded block
+   * @throws IOException if failed to compress the block
+   */
+  public byte[] encode(List<byte[]> payloads) throws IOException {
+    int headerSize = Bytes.SIZEOF_INT * (payloads.size() + 1);
+    int size = headerSize;
+    for (byte[] payload : payloads) {
+      size += payload.length;
+    }
+
+    byte[] content = new byte[size];
+    int offset = Bytes.putInt(content, 0, payloads.size());
+    int payloadOffset = headerSize;
+    for (byte[] payload : payloads) {
+      payloadOffset = Bytes.putBytes(content, payloadOffset, payload, 0, payload.length);
+      offset = Bytes.putInt(content, offset, payloadOffset - headerSize);
+    }
+
+    byte[] compressed = compression == Compression.SNAPPY ? Snappy.compress(content) : content;
+    byte[] encoded = new byte[compressed.length + 1];
+    encoded[0] = compression.getId();
+    System.arraycopy(compressed, 0, encoded, 1, compressed.length);
+    return encoded;
+  }
+
+  /**
+   * Decodes an encoded block. The compression of the block is determined from the encoded block, hence it
+   * doesn't need to be the same as the one used by this codec.
+   *
+   * @param encoded the encoded block
+   * @return a {@link Block} for accessing messages in the block
+   * @throws IOException if failed to decompress the block
+   */
+  public static Block decode(byte[] encoded) throws IOException {
+    byte[] content;
+    switch (Compression.fromId(encoded[0])) {
+      case SNAPPY:
+        content = Snappy.uncompress(Arrays.copyOfRange(encoded, 1, encoded.length));
+        break;
+      default:
+        content = Arrays.copyOfRange(encoded, 1, encoded.length);
+    }
+    return new Block(content);
+  }
+
+  /**
+   * A decoded block of messages.
+   */
+  public static final class Block {
+
+    private final byte[] content;
+    private final int size;
+    private final int payloadsOffset;
+
+    private Block(byte[] content) {
+      this.content = content;
+      this.size = Bytes.toInt(content, 0);
+      this.payloadsOffset = Bytes.SIZEOF_INT * (size + 1);
+    }
+
+    /**
+     * Returns the number of messages in the block.
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Returns the payload of the message at the given index in the block.
+     */
+    public byte[] getPayload(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index " + index + " is out of range for block of size " + size);
+      }
+      int start = index == 0 ? 0 : Bytes.toInt(content, Bytes.SIZEOF_INT * index);
+      int end = Bytes.toInt(content, Bytes.SIZEOF_INT * (index + 1));
+      return Arrays.copyOfRange(content, payloadsOffset + start, payloadsOffset + end);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.messaging.store;
 
+import co.cask.cdap.api.common.Bytes;
 import com.google.common.base.Function;
 
 import javax.annotation.Nonnull;
@@ -55,4 +56,22 @@ public abstract class MessageFilter<T> implements Function<T, MessageFilter.Resu
       }
     };
   }
+
+  /**
+   * Creates a {@link MessageFilter} that accepts payloads starting with the given prefix and skips the others.
+   *
+   * @param prefix the payload prefix to match
+   * @return a {@link MessageFilter} on message payload
+   */
+  public static MessageFilter<byte[]> payloadPrefix(final byte[] prefix) {
+    return new MessageFilter<byte[]>() {
+      @Override
+      public Result apply(@Nullable byte[] input) {
+        if (input == null || input.length < prefix.length) {
+          return Result.SKIP;
+        }
+        return Bytes.equals(input, 0, prefix.length, prefix, 0, prefix.length) ? Result.ACCEPT : Result.SKIP;
+      }
+    };
+  }
 }
@@ -24,10 +24,13 @@ import co.cask.cdap.proto.id.TopicId;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Table to store information about the topics and their properties.
+ * Table to store information about the topics and their properties, as well as the offsets committed by
+ * consumer groups.
  */
 public interface MetadataTable extends Closeable {
 
@@ -84,4 +87,27 @@ public interface MetadataTable extends Closeable {
    * @throws IOException if failed to retrieve topics
    */
   List<TopicId> listTopics() throws IOException;
+
+  /**
+   * Commits the offsets of a consumer group for a set of topics. The commit is not transactional and the last
+   * commit of a topic wins. Offsets committed are associated with the current generation of the topic, hence
+   * they are no longer returned once the topic is deleted.
+   *
+   * @param consumerGroup name of the consumer group
+   * @param offsets a {@link Map} from topic to the offset to commit
+   * @throws TopicNotFoundException if any of the topics doesn't exist. In this case no offset is committed.
+   * @throws IOException if failed to commit the offsets
+   */
+  void commitOffsets(String consumerGroup, Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException;
+
+  /**
+   * Returns the offsets committed by a consumer group for a set of topics.
+   *
+   * @param consumerGroup name of the consumer group
+   * @param topicIds topics to get the offsets for
+   * @return a {@link Map} from topic to the committed offset. Topics that don't exist or have no offset
+   *         committed are not included in the result.
+   * @throws IOException if failed to retrieve the offsets
+   */
+  Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException;
 }
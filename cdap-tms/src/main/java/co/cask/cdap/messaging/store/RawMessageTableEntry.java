@@ -25,11 +25,26 @@ public class RawMessageTableEntry {
   private byte[] key;
   private byte[] txPtr;
   private byte[] payload;
+  private boolean block;
 
   public RawMessageTableEntry set(byte[] key, @Nullable byte[] txPtr, @Nullable byte[] payload) {
+    return set(key, txPtr, payload, false);
+  }
+
+  /**
+   * Sets the content of this entry.
+   *
+   * @param key the row key
+   * @param txPtr the transaction write pointer or {@code null} for non-transactional entry
+   * @param payload the payload, or the encoded block if {@code block} is {@code true}
+   * @param block {@code true} if the payload is a block of messages encoded by {@link MessageBlockCodec}
+   * @return this entry
+   */
+  public RawMessageTableEntry set(byte[] key, @Nullable byte[] txPtr, @Nullable byte[] payload, boolean block) {
     this.key = key;
     this.txPtr = txPtr;
     this.payload = payload;
+    this.block = block;
     return this;
   }
 
@@ -46,4 +61,12 @@ public class RawMessageTableEntry {
   public byte[] getPayload() {
     return payload;
   }
+
+  /**
+   * Returns {@code true} if the payload is a block of messages encoded by {@link MessageBlockCodec}. The row key
+   * of a block is the key of the last message in the block.
+   */
+  public boolean isBlock() {
+    return block;
+  }
 }
@@ -23,6 +23,7 @@ import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OffHeapSlabAllocator;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.store.MessageFilter;
 import co.cask.cdap.messaging.store.MessageTable;
@@ -332,6 +333,7 @@ final class CachingMessageTable implements MessageTable {
   /**
    * A {@link Entry} implementation used for entries in {@link MessageCache}, which allows
    * altering the transaction write point for rollback purpose of messages that were published transactionally.
+   * The payload can either be kept on the heap or in an off-heap {@link OffHeapSlabAllocator.Allocation}.
    */
   @VisibleForTesting
   static final class CacheMessageTableEntry implements Entry {
@@ -341,6 +343,7 @@ final class CachingMessageTable implements MessageTable {
     private final int generation;
     private final boolean transactional;
     private final byte[] payload;
+    private final OffHeapSlabAllocator.Allocation offHeapPayload;
     private final long publishTimestamp;
     private final short sequenceId;
     private long transactionWritePointer;
@@ -352,6 +355,7 @@ final class CachingMessageTable implements MessageTable {
       this.generation = topicMetadata.getGeneration();
       this.transactional = false;
       this.payload = null;
+      this.offHeapPayload = null;
       this.publishTimestamp = publishTimestamp;
       this.sequenceId = sequenceId;
     }
@@ -363,10 +367,44 @@ final class CachingMessageTable implements MessageTable {
       this.transactional = other.isTransactional();
       this.transactionWritePointer = other.getTransactionWritePointer();
       this.payload = other.getPayload();
+      this.offHeapPayload = null;
       this.publishTimestamp = other.getPublishTimestamp();
       this.sequenceId = other.getSequenceId();
     }
 
+    /**
+     * Creates an entry that is the same as the given one, but with the payload stored in the given allocation.
+     */
+    CacheMessageTableEntry(CacheMessageTableEntry other, OffHeapSlabAllocator.Allocation offHeapPayload) {
+      this.lookupOnly = other.lookupOnly;
+      this.topicId = other.topicId;
+      this.generation = other.generation;
+      this.transactional = other.transactional;
+      this.transactionWritePointer = other.transactionWritePointer;
+      this.payload = null;
+      this.offHeapPayload = offHeapPayload;
+      this.publishTimestamp = other.publishTimestamp;
+      this.sequenceId = other.sequenceId;
+      this.rollback = other.rollback;
+    }
+
+    /**
+     * Returns {@code true} if the payload of this entry is stored off-heap.
+     */
+    boolean isOffHeap() {
+      return offHeapPayload != null;
+    }
+
+    /**
+     * Releases the off-heap payload of this entry if there is one.
+     * The payload can no longer be read after this method returns.
+     */
+    void releasePayload() {
+      if (offHeapPayload != null) {
+        offHeapPayload.release();
+      }
+    }
+
     void rollback() {
       if (isTransactional()) {
         rollback = true;
@@ -389,7 +427,7 @@ final class CachingMessageTable implements MessageTable {
 
     @Override
     public boolean isPayloadReference() {
-      return getPayload() == null;
+      return offHeapPayload == null && getPayload() == null;
     }
 
     @Override
@@ -414,7 +452,7 @@ final class CachingMessageTable implements MessageTable {
       if (lookupOnly) {
         throw new UnsupportedOperationException();
       }
-      return payload;
+      return offHeapPayload == null ? payload : offHeapPayload.read();
     }
 
     @Override
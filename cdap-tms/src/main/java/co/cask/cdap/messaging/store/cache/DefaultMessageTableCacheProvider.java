@@ -22,9 +22,11 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.messaging.MessagingServiceUtils;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OffHeapSlabAllocator;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 
 import java.util.Collection;
@@ -38,6 +40,9 @@ import javax.annotation.Nullable;
  */
 public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
 
+  // Size of each direct buffer allocated for off-heap caches
+  private static final int OFFHEAP_SLAB_SIZE = 4 * 1024 * 1024;
+
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
   private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
@@ -60,9 +65,15 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
         if (!initialized) {
           Map<TopicId, MessageCache<MessageTable.Entry>> caches = new HashMap<>();
 
-          long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024 * 1024;
           Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
-          if (cacheSize > 0 && !systemTopics.isEmpty()) {
+          Set<TopicId> offHeapTopics = Sets.intersection(
+            MessagingServiceUtils.getSystemTopics(cConf, Constants.MessagingSystem.CACHE_OFFHEAP_TOPICS, true),
+            systemTopics);
+          Set<TopicId> heapTopics = Sets.difference(systemTopics, offHeapTopics);
+
+          long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024L * 1024L;
+          long hardLimit = heapTopics.isEmpty() ? 0L : cacheSize / heapTopics.size();
+          if (hardLimit > 0) {
             MessageTableEntryWeigher weigher = new MessageTableEntryWeigher();
             MessageTableEntryComparator comparator = new MessageTableEntryComparator();
 
@@ -70,15 +81,31 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
             // More sophisticated logic can be employed at runtime to monitor the metrics from MessageCache
             // for each topic and adjust the soft/hard limit accordingly to maximize efficiency in
             // memory usage and performance
-            long hardLimit = cacheSize / systemTopics.size();
-            if (hardLimit > 0) {
-              // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
-              // In future, it can be adjusted dynamically based on metrics
-              MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
-              for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
-              }
+            MessageCache.Limits limits = createLimits(hardLimit);
+            for (TopicId topic : heapTopics) {
+              caches.put(topic, new MessageCache<>(comparator, weigher, limits,
+                                                   createMetricsContext(cConf, topic, metricsCollectionService)));
+            }
+          }
+
+          // Off-heap caches have their own memory, which is also evenly distributed among the topics using it
+          long offHeapCacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_OFFHEAP_SIZE_MB) * 1024L * 1024L;
+          long offHeapHardLimit = offHeapTopics.isEmpty() ? 0L : offHeapCacheSize / offHeapTopics.size();
+          if (offHeapHardLimit > 0) {
+            MessageTableEntryWeigher weigher = new MessageTableEntryWeigher();
+            MessageTableEntryComparator comparator = new MessageTableEntryComparator();
+            MessageCache.Limits limits = createLimits(offHeapHardLimit);
+            int slabSize = (int) Math.min(OFFHEAP_SLAB_SIZE, offHeapHardLimit);
+            // One extra slab to absorb the unused space at the end of slabs
+            int maxSlabs = (int) ((offHeapHardLimit + slabSize - 1) / slabSize) + 1;
+
+            for (TopicId topic : offHeapTopics) {
+              // Each topic has its own allocator, since the allocator relies on the single writer and the
+              // ordered removal properties of the cache
+              OffHeapMessageTableEntryStore entryStore =
+                new OffHeapMessageTableEntryStore(new OffHeapSlabAllocator(slabSize, maxSlabs));
+              caches.put(topic, new MessageCache<>(comparator, weigher, entryStore, limits,
+                                                   createMetricsContext(cConf, topic, metricsCollectionService)));
             }
           }
 
@@ -108,6 +135,15 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
   }
 
+  /**
+   * Creates the {@link MessageCache.Limits} for a cache with the given hard limit.
+   */
+  private MessageCache.Limits createLimits(long hardLimit) {
+    // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
+    // In future, it can be adjusted dynamically based on metrics
+    return new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+  }
+
   /**
    * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
    */
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OffHeapSlabAllocator;
+import co.cask.cdap.messaging.store.MessageTable;
+
+/**
+ * A {@link MessageCache.EntryStore} for {@link MessageTable.Entry} that keeps the message payloads in memory
+ * allocated by an {@link OffHeapSlabAllocator}. Entries that cannot be stored off-heap, either because the
+ * payload is too large or there is no off-heap memory available, are kept on the heap.
+ */
+final class OffHeapMessageTableEntryStore implements MessageCache.EntryStore<MessageTable.Entry> {
+
+  private final OffHeapSlabAllocator allocator;
+
+  OffHeapMessageTableEntryStore(OffHeapSlabAllocator allocator) {
+    this.allocator = allocator;
+  }
+
+  @Override
+  public MessageTable.Entry store(MessageTable.Entry entry) {
+    if (!(entry instanceof CachingMessageTable.CacheMessageTableEntry)) {
+      return entry;
+    }
+    byte[] payload = entry.getPayload();
+    if (payload == null) {
+      return entry;
+    }
+    OffHeapSlabAllocator.Allocation allocation = allocator.allocate(payload);
+    if (allocation == null) {
+      return entry;
+    }
+    return new CachingMessageTable.CacheMessageTableEntry((CachingMessageTable.CacheMessageTableEntry) entry,
+                                                          allocation);
+  }
+
+  @Override
+  public MessageTable.Entry load(MessageTable.Entry entry) {
+    if (entry instanceof CachingMessageTable.CacheMessageTableEntry
+      && ((CachingMessageTable.CacheMessageTableEntry) entry).isOffHeap()) {
+      // Copy the payload back to the heap, since the off-heap memory can be reused once the entry is evicted
+      return new CachingMessageTable.CacheMessageTableEntry(entry);
+    }
+    return entry;
+  }
+
+  @Override
+  public void release(MessageTable.Entry entry) {
+    if (entry instanceof CachingMessageTable.CacheMessageTableEntry) {
+      ((CachingMessageTable.CacheMessageTableEntry) entry).releasePayload();
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.messaging.store.hbase;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
@@ -24,6 +25,7 @@ import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
 import co.cask.cdap.hbase.wd.DistributedScanner;
 import co.cask.cdap.messaging.MessagingUtils;
 import co.cask.cdap.messaging.store.AbstractMessageTable;
+import co.cask.cdap.messaging.store.MessageBlockCodec;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.RawMessageTableEntry;
 import org.apache.hadoop.hbase.client.HTable;
@@ -38,6 +40,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
+import javax.annotation.Nullable;
 
 /**
  * HBase implementation of {@link MessageTable}.
@@ -45,6 +48,7 @@ import java.util.concurrent.ExecutorService;
 final class HBaseMessageTable extends AbstractMessageTable {
   private static final byte[] PAYLOAD_COL = MessagingUtils.Constants.PAYLOAD_COL;
   private static final byte[] TX_COL = MessagingUtils.Constants.TX_COL;
+  private static final byte[] BLOCK_COL = Bytes.toBytes('b');
 
   private final HBaseTableUtil tableUtil;
   private final byte[] columnFamily;
@@ -56,7 +60,8 @@ final class HBaseMessageTable extends AbstractMessageTable {
 
   HBaseMessageTable(HBaseTableUtil tableUtil, HTable hTable, byte[] columnFamily,
                     AbstractRowKeyDistributor rowKeyDistributor, ExecutorService scanExecutor, int scanCacheRows,
-                    HBaseExceptionHandler exceptionHandler) {
+                    HBaseExceptionHandler exceptionHandler, @Nullable MessageBlockCodec blockCodec) {
+    super(blockCodec);
     this.tableUtil = tableUtil;
     this.hTable = hTable;
     this.columnFamily = Arrays.copyOf(columnFamily, columnFamily.length);
@@ -96,6 +101,11 @@ final class HBaseMessageTable extends AbstractMessageTable {
             return endOfData();
           }
 
+          byte[] block = result.getValue(columnFamily, BLOCK_COL);
+          if (block != null) {
+            return tableEntry.set(rowKeyDistributor.getOriginalKey(result.getRow()),
+                                  result.getValue(columnFamily, TX_COL), block, true);
+          }
           return tableEntry.set(rowKeyDistributor.getOriginalKey(result.getRow()),
                                 result.getValue(columnFamily, TX_COL),
                                 result.getValue(columnFamily, PAYLOAD_COL));
@@ -127,7 +137,7 @@ final class HBaseMessageTable extends AbstractMessageTable {
       }
 
       if (entry.getPayload() != null) {
-        putBuilder.add(columnFamily, PAYLOAD_COL, entry.getPayload());
+        putBuilder.add(columnFamily, entry.isBlock() ? BLOCK_COL : PAYLOAD_COL, entry.getPayload());
       }
       batchPuts.add(putBuilder.build());
     }
@@ -19,6 +19,7 @@ package co.cask.cdap.messaging.store.hbase;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.data2.util.hbase.GetBuilder;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.PutBuilder;
 import co.cask.cdap.data2.util.hbase.ScanBuilder;
@@ -41,10 +42,13 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import javax.annotation.Nullable;
 
 /**
  * HBase implementation of {@link MetadataTable}.
@@ -52,6 +56,9 @@ import java.util.TreeMap;
 public final class HBaseMetadataTable implements MetadataTable {
 
   public static final byte[] COL = MessagingUtils.Constants.METADATA_COLUMN;
+  // Offsets of consumer groups are stored as extra columns in the topic row. The column prefix sorts after the
+  // metadata column, so that scans with the FirstKeyOnlyFilter still see the metadata column.
+  private static final byte[] OFFSET_COL_PREFIX = Bytes.toBytes("o:");
   private static final Gson GSON = new Gson();
 
   // It has to be a sorted map since we depends on the serialized map for compareAndPut operation for topic update.
@@ -197,6 +204,94 @@ public final class HBaseMetadataTable implements MetadataTable {
     return scanTopics(tableUtil.buildScan());
   }
 
+  @Override
+  public void commitOffsets(String consumerGroup,
+                            Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException {
+    byte[] offsetCol = getOffsetColumn(consumerGroup);
+    List<Put> puts = new ArrayList<>(offsets.size());
+    try {
+      List<TopicId> topicIds = new ArrayList<>(offsets.keySet());
+      Result[] results = hTable.get(createGets(topicIds, null));
+      for (int i = 0; i < results.length; i++) {
+        TopicId topicId = topicIds.get(i);
+        TopicMetadata metadata = toTopicMetadata(topicId, results[i]);
+        if (metadata == null) {
+          throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+        }
+        // Store the offset together with the topic generation
+        puts.add(tableUtil.buildPut(MessagingUtils.toMetadataRowKey(topicId))
+                   .add(columnFamily, offsetCol, Bytes.add(Bytes.toBytes(metadata.getGeneration()),
+                                                           offsets.get(topicId)))
+                   .build());
+      }
+      if (!puts.isEmpty()) {
+        hTable.put(puts);
+        if (!hTable.isAutoFlush()) {
+          hTable.flushCommits();
+        }
+      }
+    } catch (IOException e) {
+      throw exceptionHandler.handle(e);
+    }
+  }
+
+  @Override
+  public Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException {
+    byte[] offsetCol = getOffsetColumn(consumerGroup);
+    List<TopicId> topicIdList = new ArrayList<>(topicIds);
+    Map<TopicId, byte[]> offsets = new HashMap<>();
+    try {
+      Result[] results = hTable.get(createGets(topicIdList, offsetCol));
+      for (int i = 0; i < results.length; i++) {
+        TopicMetadata metadata = toTopicMetadata(topicIdList.get(i), results[i]);
+        byte[] value = results[i].getValue(columnFamily, offsetCol);
+        // Only return offset committed for the current generation of the topic
+        if (metadata != null && value != null && Bytes.toInt(value) == metadata.getGeneration()) {
+          offsets.put(metadata.getTopicId(), Arrays.copyOfRange(value, Bytes.SIZEOF_INT, value.length));
+        }
+      }
+      return offsets;
+    } catch (IOException e) {
+      throw exceptionHandler.handle(e);
+    }
+  }
+
+  /**
+   * Creates a list of {@link Get} for fetching the metadata and optionally an extra column of the given topics.
+   */
+  private List<Get> createGets(List<TopicId> topicIds, @Nullable byte[] extraColumn) {
+    List<Get> gets = new ArrayList<>(topicIds.size());
+    for (TopicId topicId : topicIds) {
+      GetBuilder getBuilder = tableUtil.buildGet(MessagingUtils.toMetadataRowKey(topicId)).addColumn(columnFamily, COL);
+      if (extraColumn != null) {
+        getBuilder.addColumn(columnFamily, extraColumn);
+      }
+      gets.add(getBuilder.build());
+    }
+    return gets;
+  }
+
+  /**
+   * Returns the {@link TopicMetadata} from the given {@link Result}, or {@code null} if the topic doesn't exist.
+   */
+  @Nullable
+  private TopicMetadata toTopicMetadata(TopicId topicId, Result result) {
+    byte[] value = result.getValue(columnFamily, COL);
+    if (value == null) {
+      return null;
+    }
+    Map<String, String> properties = GSON.fromJson(Bytes.toString(value), MAP_TYPE);
+    TopicMetadata metadata = new TopicMetadata(topicId, properties);
+    return metadata.exists() ? metadata : null;
+  }
+
+  /**
+   * Returns the column for storing the offset of the given consumer group.
+   */
+  private byte[] getOffsetColumn(String consumerGroup) {
+    return Bytes.add(OFFSET_COL_PREFIX, Bytes.toBytes(consumerGroup));
+  }
+
   /**
    * Scans the HBase table to get a list of {@link TopicId}.
    */
@@ -35,6 +35,7 @@ import co.cask.cdap.hbase.wd.AbstractRowKeyDistributor;
 import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix;
 import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix.OneByteSimpleHash;
 import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.store.MessageBlockCodec;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.MetadataTable;
 import co.cask.cdap.messaging.store.PayloadTable;
@@ -171,7 +172,7 @@ public final class HBaseTableFactory implements TableFactory {
       tableUtil, tableWithRowKeyDistributor.getHTable(), COLUMN_FAMILY,
       tableWithRowKeyDistributor.getRowKeyDistributor(),
       scanExecutor, cConf.getInt(Constants.MessagingSystem.HBASE_SCAN_CACHE_ROWS),
-      createExceptionHandler(tableId)
+      createExceptionHandler(tableId), MessageBlockCodec.create(cConf)
     );
   }
 
@@ -22,7 +22,7 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.messaging.MessagingUtils;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.store.AbstractMessageTable;
-import co.cask.cdap.messaging.store.ImmutableMessageTableEntry;
+import co.cask.cdap.messaging.store.MessageBlockCodec;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.RawMessageTableEntry;
 import co.cask.cdap.proto.id.TopicId;
@@ -47,11 +47,14 @@ final class LevelDBMessageTable extends AbstractMessageTable {
   private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
   private static final String PAYLOAD_COL = "p";
   private static final String TX_COL = "t";
+  private static final String BLOCK_COL = "b";
 
   private enum EncodeType {
     NON_TRANSACTIONAL(0),
     TRANSACTIONAL(1),
-    PAYLOAD_REFERENCE(2);
+    PAYLOAD_REFERENCE(2),
+    NON_TRANSACTIONAL_BLOCK(3),
+    TRANSACTIONAL_BLOCK(4);
 
     private final byte type;
 
@@ -65,9 +68,12 @@ final class LevelDBMessageTable extends AbstractMessageTable {
   }
 
   private final DB levelDB;
+  private final LevelDBRangeCompactor rangeCompactor;
 
-  LevelDBMessageTable(DB levelDB) {
+  LevelDBMessageTable(DB levelDB, @Nullable MessageBlockCodec blockCodec) {
+    super(blockCodec);
     this.levelDB = levelDB;
+    this.rangeCompactor = new LevelDBRangeCompactor(levelDB);
   }
 
   @Override
@@ -85,6 +91,10 @@ final class LevelDBMessageTable extends AbstractMessageTable {
 
         Map.Entry<byte[], byte[]> row = iterator.next();
         Map<String, byte[]> columns = decodeValue(row.getValue());
+        byte[] block = columns.get(BLOCK_COL);
+        if (block != null) {
+          return tableEntry.set(row.getKey(), columns.get(TX_COL), block, true);
+        }
         return tableEntry.set(row.getKey(), columns.get(TX_COL), columns.get(PAYLOAD_COL));
       }
 
@@ -107,7 +117,8 @@ final class LevelDBMessageTable extends AbstractMessageTable {
         RawMessageTableEntry entry = entries.next();
         byte[] rowKey = entry.getKey();
         // LevelDB doesn't make copies, and since we reuse RawMessageTableEntry object, we need to create copies.
-        writeBatch.put(Arrays.copyOf(rowKey, rowKey.length), encodeValue(entry.getTxPtr(), entry.getPayload()));
+        writeBatch.put(Arrays.copyOf(rowKey, rowKey.length), encodeValue(entry.getTxPtr(), entry.getPayload(),
+                                                                        entry.isBlock()));
       }
       levelDB.write(writeBatch, WRITE_OPTIONS);
     } catch (DBException ex) {
@@ -123,7 +134,12 @@ final class LevelDBMessageTable extends AbstractMessageTable {
         Map.Entry<byte[], byte[]> rowValue = rowIterator.next();
         byte[] value = rowValue.getValue();
         Map<String, byte[]> columns = decodeValue(value);
-        writeBatch.put(rowValue.getKey(), encodeValue(txWritePtr, columns.get(PAYLOAD_COL)));
+        byte[] block = columns.get(BLOCK_COL);
+        if (block != null) {
+          writeBatch.put(rowValue.getKey(), encodeValue(txWritePtr, block, true));
+        } else {
+          writeBatch.put(rowValue.getKey(), encodeValue(txWritePtr, columns.get(PAYLOAD_COL), false));
+        }
       }
     }
 
@@ -140,59 +156,44 @@ final class LevelDBMessageTable extends AbstractMessageTable {
   }
 
   /**
-   * Delete messages of a {@link TopicId} that has exceeded the TTL or if it belongs to an older generation
+   * Delete messages of a {@link TopicId} that has exceeded the TTL or if it belongs to an older generation.
+   * Since rows are sorted by generation and then by publish time, expired messages always form a contiguous
+   * key range at the beginning of the topic, which is deleted and compacted as a whole.
    *
    * @param topicMetadata {@link TopicMetadata}
    * @param currentTime current timestamp
+   * @return approximate number of bytes on disk reclaimed
    * @throws IOException error occurred while trying to delete a row in LevelDB
    */
-  public void pruneMessages(TopicMetadata topicMetadata, long currentTime) throws IOException {
-    WriteBatch writeBatch = levelDB.createWriteBatch();
+  public long pruneMessages(TopicMetadata topicMetadata, long currentTime) throws IOException {
     long ttlInMs = TimeUnit.SECONDS.toMillis(topicMetadata.getTTL());
-    byte[] startRow = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(),
-                                                     Integer.parseInt(MessagingUtils.Constants.DEFAULT_GENERATION));
-    byte[] stopRow = Bytes.stopKeyForPrefix(startRow);
-
-    try (CloseableIterator<Map.Entry<byte[], byte[]>> rowIterator = new DBScanIterator(levelDB, startRow, stopRow)) {
-      while (rowIterator.hasNext()) {
-        Map.Entry<byte[], byte[]> entry = rowIterator.next();
-        MessageTable.Entry messageTableEntry = new ImmutableMessageTableEntry(entry.getKey(), null, null);
-
-        int dataGeneration = messageTableEntry.getGeneration();
-        int currGeneration = topicMetadata.getGeneration();
-        if (MessagingUtils.isOlderGeneration(dataGeneration, currGeneration)) {
-          writeBatch.delete(entry.getKey());
-          continue;
-        }
-
-        if ((dataGeneration == Math.abs(currGeneration)) &&
-          ((currentTime - messageTableEntry.getPublishTimestamp()) > ttlInMs)) {
-          writeBatch.delete(entry.getKey());
-        } else {
-          // terminate scanning table once an entry with publish time after TTL is found, to avoid scanning whole table,
-          // since the entries are sorted by time.
-          break;
-        }
-      }
-    }
-
-    try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
+    int currGeneration = topicMetadata.getGeneration();
+    byte[] startRow = MessagingUtils.toMetadataRowKey(topicMetadata.getTopicId());
+    byte[] currPrefix = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(), Math.abs(currGeneration));
+
+    byte[] stopRow;
+    if (MessagingUtils.isOlderGeneration(Math.abs(currGeneration), currGeneration)) {
+      // The topic is deleted, hence all messages of the current generation can be removed
+      stopRow = Bytes.stopKeyForPrefix(currPrefix);
+    } else {
+      // Messages with publish time smaller than the current time minus TTL are expired
+      stopRow = Bytes.add(currPrefix, Bytes.toBytes(currentTime - ttlInMs));
     }
+    return rangeCompactor.deleteAndCompact(startRow, stopRow);
   }
 
   // Encoding:
   // If the returned byte array starts with 0, then it is a non-tx message and all the subsequent bytes are payload
   // If the returned byte array starts with 1, then next 8 bytes correspond to txWritePtr and rest are payload bytes
-  private byte[] encodeValue(@Nullable byte[] txWritePtr, @Nullable byte[] payload) {
+  // If the returned byte array starts with 2, then next 8 bytes correspond to txWritePtr and there is no payload
+  // Type 3 and 4 are the same as 0 and 1 respectively, except that the payload bytes are an encoded message block
+  private byte[] encodeValue(@Nullable byte[] txWritePtr, @Nullable byte[] payload, boolean block) {
     // Non-transactional
     if (txWritePtr == null) {
       // For non-tx message, payload cannot be null
       Preconditions.checkArgument(payload != null, "Payload cannot be null for non-transactional message");
       byte[] result = new byte[1 + payload.length];
-      result[0] = EncodeType.NON_TRANSACTIONAL.getType();
+      result[0] = block ? EncodeType.NON_TRANSACTIONAL_BLOCK.getType() : EncodeType.NON_TRANSACTIONAL.getType();
       Bytes.putBytes(result, 1, payload, 0, payload.length);
       return result;
     }
@@ -200,7 +201,7 @@ final class LevelDBMessageTable extends AbstractMessageTable {
     // Transactional
     if (payload != null) {
       byte[] result = new byte[1 + Bytes.SIZEOF_LONG + payload.length];
-      result[0] = EncodeType.TRANSACTIONAL.getType();
+      result[0] = block ? EncodeType.TRANSACTIONAL_BLOCK.getType() : EncodeType.TRANSACTIONAL.getType();
       Bytes.putBytes(result, 1, txWritePtr, 0, txWritePtr.length);
       Bytes.putBytes(result, 1 + Bytes.SIZEOF_LONG, payload, 0, payload.length);
       return result;
@@ -218,12 +219,16 @@ final class LevelDBMessageTable extends AbstractMessageTable {
 
     if (value[0] == EncodeType.NON_TRANSACTIONAL.getType()) {
       data.put(PAYLOAD_COL, Arrays.copyOfRange(value, 1, value.length));
+    } else if (value[0] == EncodeType.NON_TRANSACTIONAL_BLOCK.getType()) {
+      data.put(BLOCK_COL, Arrays.copyOfRange(value, 1, value.length));
     } else {
       data.put(TX_COL, Arrays.copyOfRange(value, 1, 1 + Bytes.SIZEOF_LONG));
 
       // Only transactional type has payload, otherwise payload should be null.
       if (value[0] == EncodeType.TRANSACTIONAL.getType()) {
         data.put(PAYLOAD_COL, Arrays.copyOfRange(value, 1 + Bytes.SIZEOF_LONG, value.length));
+      } else if (value[0] == EncodeType.TRANSACTIONAL_BLOCK.getType()) {
+        data.put(BLOCK_COL, Arrays.copyOfRange(value, 1 + Bytes.SIZEOF_LONG, value.length));
       }
     }
     return data;
@@ -30,11 +30,15 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.WriteBatch;
 import org.iq80.leveldb.WriteOptions;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -48,6 +52,9 @@ final class LevelDBMetadataTable implements MetadataTable {
   private static final Gson GSON = new Gson();
   private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
+  // Offsets of consumer groups are stored with key prefixed by a byte that is larger than any byte in topic keys,
+  // such that they are sorted after all the topic metadata.
+  private static final byte[] OFFSET_KEY_PREFIX = new byte[] { (byte) 0xff };
 
   private final DB levelDB;
 
@@ -164,7 +171,47 @@ final class LevelDBMetadataTable implements MetadataTable {
 
   @Override
   public List<TopicId> listTopics() throws IOException {
-    return listTopics(null, null);
+    return listTopics(null, OFFSET_KEY_PREFIX);
+  }
+
+  @Override
+  public void commitOffsets(String consumerGroup,
+                            Map<TopicId, byte[]> offsets) throws TopicNotFoundException, IOException {
+    try (WriteBatch writeBatch = levelDB.createWriteBatch()) {
+      for (Map.Entry<TopicId, byte[]> entry : offsets.entrySet()) {
+        // Store the offset together with the topic generation
+        TopicMetadata metadata = getMetadata(entry.getKey());
+        writeBatch.put(getOffsetKey(consumerGroup, entry.getKey()),
+                       Bytes.add(Bytes.toBytes(metadata.getGeneration()), entry.getValue()));
+      }
+      levelDB.write(writeBatch, WRITE_OPTIONS);
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Map<TopicId, byte[]> getOffsets(String consumerGroup, Collection<TopicId> topicIds) throws IOException {
+    Map<TopicId, byte[]> offsets = new HashMap<>();
+    try {
+      for (TopicId topicId : topicIds) {
+        byte[] value = levelDB.get(getOffsetKey(consumerGroup, topicId));
+        if (value == null) {
+          continue;
+        }
+        try {
+          // Only return offset committed for the current generation of the topic
+          if (Bytes.toInt(value) == getMetadata(topicId).getGeneration()) {
+            offsets.put(topicId, Arrays.copyOfRange(value, Bytes.SIZEOF_INT, value.length));
+          }
+        } catch (TopicNotFoundException e) {
+          // Topic deleted, hence no offset
+        }
+      }
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+    return offsets;
   }
 
   /**
@@ -174,7 +221,15 @@ final class LevelDBMetadataTable implements MetadataTable {
    * @throws IOException if failed to scan topics
    */
   public CloseableIterator<TopicMetadata> scanTopics() throws IOException {
-    return scanTopics(null, null);
+    return scanTopics(null, OFFSET_KEY_PREFIX);
+  }
+
+  /**
+   * Returns the row key for storing the offset of the given consumer group and topic.
+   */
+  private byte[] getOffsetKey(String consumerGroup, TopicId topicId) {
+    return Bytes.concat(OFFSET_KEY_PREFIX, Bytes.toBytes(consumerGroup), new byte[] { 0 },
+                        MessagingUtils.toMetadataRowKey(topicId));
   }
 
   private List<TopicId> listTopics(@Nullable byte[] startKey, @Nullable byte[] stopKey) throws IOException {
@@ -43,9 +43,11 @@ import java.util.concurrent.TimeUnit;
 public class LevelDBPayloadTable extends AbstractPayloadTable {
   private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
   private final DB levelDB;
+  private final LevelDBRangeCompactor rangeCompactor;
 
   public LevelDBPayloadTable(DB levelDB) {
     this.levelDB = levelDB;
+    this.rangeCompactor = new LevelDBRangeCompactor(levelDB);
   }
 
   @Override
@@ -97,19 +99,22 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
   }
 
   /**
-   * Delete messages of a {@link TopicId} that has exceeded the TTL or if it belongs to an older generation
+   * Delete messages of a {@link TopicId} that has exceeded the TTL or if it belongs to an older generation.
+   * Since rows are sorted by generation and then by transaction write pointer, which increases with time,
+   * expired messages form a contiguous key range at the beginning of the topic, which is deleted and
+   * compacted as a whole.
    *
    * @param topicMetadata {@link TopicMetadata}
    * @param currentTime current timestamp
+   * @return approximate number of bytes on disk reclaimed
    * @throws IOException error occurred while trying to delete a row in LevelDB
    */
-  public void pruneMessages(TopicMetadata topicMetadata, long currentTime) throws IOException {
-    WriteBatch writeBatch = levelDB.createWriteBatch();
+  public long pruneMessages(TopicMetadata topicMetadata, long currentTime) throws IOException {
     long ttlInMs = TimeUnit.SECONDS.toMillis(topicMetadata.getTTL());
-    byte[] startRow = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(),
-                                                     Integer.parseInt(MessagingUtils.Constants.DEFAULT_GENERATION));
+    byte[] startRow = MessagingUtils.toMetadataRowKey(topicMetadata.getTopicId());
     byte[] stopRow = Bytes.stopKeyForPrefix(startRow);
 
+    // Find the first row that is not expired, which is the end of the range to delete
     try (CloseableIterator<Map.Entry<byte[], byte[]>> rowIterator = new DBScanIterator(levelDB, startRow, stopRow)) {
       while (rowIterator.hasNext()) {
         Map.Entry<byte[], byte[]> entry = rowIterator.next();
@@ -118,26 +123,17 @@ public class LevelDBPayloadTable extends AbstractPayloadTable {
         int dataGeneration = payloadTableEntry.getGeneration();
         int currGeneration = topicMetadata.getGeneration();
         if (MessagingUtils.isOlderGeneration(dataGeneration, currGeneration)) {
-          writeBatch.delete(entry.getKey());
           continue;
         }
 
-        if ((dataGeneration == Math.abs(currGeneration)) &&
-          ((currentTime - payloadTableEntry.getPayloadWriteTimestamp()) > ttlInMs)) {
-          writeBatch.delete(entry.getKey());
-        } else {
-          // terminate scanning table once an entry with write time after TTL is found, to avoid scanning whole table,
-          // since the entries are sorted by time.
+        if ((dataGeneration != Math.abs(currGeneration)) ||
+          ((currentTime - payloadTableEntry.getPayloadWriteTimestamp()) <= ttlInMs)) {
+          stopRow = entry.getKey();
           break;
         }
       }
     }
-
-    try {
-      levelDB.write(writeBatch, WRITE_OPTIONS);
-    } catch (DBException ex) {
-      throw new IOException(ex);
-    }
+    return rangeCompactor.deleteAndCompact(startRow, stopRow);
   }
 
   @Override
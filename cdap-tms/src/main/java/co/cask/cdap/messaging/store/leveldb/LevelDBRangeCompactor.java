@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Range;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Helper class for deleting a range of keys in a LevelDB and compacting the range to reclaim disk space.
+ */
+final class LevelDBRangeCompactor {
+
+  private static final WriteOptions WRITE_OPTIONS = new WriteOptions().sync(true);
+
+  private final DB levelDB;
+
+  LevelDBRangeCompactor(DB levelDB) {
+    this.levelDB = levelDB;
+  }
+
+  /**
+   * Deletes all keys in the given range and compacts the range.
+   *
+   * @param startKey the start key of the range, inclusive
+   * @param stopKey the stop key of the range, exclusive
+   * @return approximate number of bytes on disk reclaimed by the compaction
+   * @throws IOException if failed to delete or compact
+   */
+  long deleteAndCompact(byte[] startKey, byte[] stopKey) throws IOException {
+    if (Bytes.compareTo(startKey, stopKey) >= 0) {
+      return 0L;
+    }
+
+    boolean deleted = false;
+    try (
+      DBIterator iterator = levelDB.iterator();
+      WriteBatch writeBatch = levelDB.createWriteBatch()
+    ) {
+      // LevelDB has no range delete, hence delete all keys in the range in one batch
+      iterator.seek(startKey);
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (Bytes.compareTo(entry.getKey(), stopKey) >= 0) {
+          break;
+        }
+        writeBatch.delete(entry.getKey());
+        deleted = true;
+      }
+      if (deleted) {
+        levelDB.write(writeBatch, WRITE_OPTIONS);
+      }
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+    return deleted ? compact(startKey, stopKey) : 0L;
+  }
+
+  /**
+   * Compacts the given key range.
+   *
+   * @return approximate number of bytes on disk reclaimed by the compaction
+   */
+  private long compact(byte[] startKey, byte[] stopKey) throws IOException {
+    Range range = new Range(startKey, stopKey);
+    long sizeBefore = levelDB.getApproximateSizes(range)[0];
+
+    try {
+      LevelDBUtils.compactRange(levelDB, startKey, stopKey);
+    } catch (DBException e) {
+      throw new IOException(e);
+    }
+
+    return Math.max(0L, sizeBefore - levelDB.getApproximateSizes(range)[0]);
+  }
+}
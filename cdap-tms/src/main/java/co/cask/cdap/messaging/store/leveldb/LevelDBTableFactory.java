@@ -17,16 +17,22 @@
 package co.cask.cdap.messaging.store.leveldb;
 
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.store.MessageBlockCodec;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.MetadataTable;
 import co.cask.cdap.messaging.store.PayloadTable;
 import co.cask.cdap.messaging.store.TableFactory;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.twill.common.Threads;
 import org.iq80.leveldb.Options;
@@ -47,23 +53,37 @@ public final class LevelDBTableFactory implements TableFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableFactory.class);
   private static final Iq80DBFactory LEVEL_DB_FACTORY = Iq80DBFactory.factory;
+  private static final String METRICS_RECLAIMED_BYTES = "compaction.reclaimed.bytes";
+  private static final String METRICS_COMPACTION_TIME_MS = "compaction.time.ms";
 
   private final File baseDir;
   private final Options dbOptions;
+  private final MessageBlockCodec messageBlockCodec;
+  private final CConfiguration cConf;
+  private final MetricsCollectionService metricsCollectionService;
 
   private LevelDBMetadataTable metadataTable;
   private LevelDBMessageTable messageTable;
   private LevelDBPayloadTable payloadTable;
 
   @VisibleForTesting
-  @Inject
   public LevelDBTableFactory(CConfiguration cConf) {
+    this(cConf, new NoOpMetricsCollectionService());
+  }
+
+  @Inject
+  public LevelDBTableFactory(CConfiguration cConf, MetricsCollectionService metricsCollectionService) {
+    this.cConf = cConf;
+    // Due to circular dependency (see CoreMessagingService), we can't use the MetricsCollectionService in the
+    // constructor. The metrics context is created when the first cleanup runs.
+    this.metricsCollectionService = metricsCollectionService;
     this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR));
     this.dbOptions = new Options()
       .blockSize(cConf.getInt(Constants.CFG_DATA_LEVELDB_BLOCKSIZE, Constants.DEFAULT_DATA_LEVELDB_BLOCKSIZE))
       .cacheSize(cConf.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE))
       .errorIfExists(false)
       .createIfMissing(true);
+    this.messageBlockCodec = MessageBlockCodec.create(cConf);
     ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
       Threads.createDaemonThreadFactory("leveldb-tms-data-cleanup"));
     executor.scheduleAtFixedRate(new DataCleanup(), 0L,
@@ -90,7 +110,7 @@ public final class LevelDBTableFactory implements TableFactory {
     }
 
     File dbPath = ensureDirExists(new File(baseDir, NamespaceId.SYSTEM.getNamespace() + "." + tableName));
-    messageTable = new LevelDBMessageTable(LEVEL_DB_FACTORY.open(dbPath, dbOptions));
+    messageTable = new LevelDBMessageTable(LEVEL_DB_FACTORY.open(dbPath, dbOptions), messageBlockCodec);
     LOG.info("Messaging message table created at {}", dbPath);
     return messageTable;
   }
@@ -114,24 +134,69 @@ public final class LevelDBTableFactory implements TableFactory {
     return dir;
   }
 
+  /**
+   * Removes expired messages from the message and payload tables periodically. Expired messages are deleted
+   * in key ranges and the ranges are compacted to reclaim disk space.
+   */
   private class DataCleanup implements Runnable {
 
+    private MetricsContext messageMetricsContext;
+    private MetricsContext payloadMetricsContext;
+
     @Override
     public void run() {
       if (metadataTable == null || payloadTable == null || messageTable == null) {
         return;
       }
 
+      if (messageMetricsContext == null) {
+        messageMetricsContext = createMetricsContext("message");
+        payloadMetricsContext = createMetricsContext("payload");
+      }
+
       long timeStamp = System.currentTimeMillis();
+      long messageReclaimed = 0L;
+      long payloadReclaimed = 0L;
+      Stopwatch messageStopwatch = new Stopwatch();
+      Stopwatch payloadStopwatch = new Stopwatch();
       try (CloseableIterator<TopicMetadata> metadataIterator = metadataTable.scanTopics()) {
         while (metadataIterator.hasNext()) {
           TopicMetadata metadata = metadataIterator.next();
-          messageTable.pruneMessages(metadata, timeStamp);
-          payloadTable.pruneMessages(metadata, timeStamp);
+
+          messageStopwatch.start();
+          try {
+            messageReclaimed += messageTable.pruneMessages(metadata, timeStamp);
+          } finally {
+            messageStopwatch.stop();
+          }
+
+          payloadStopwatch.start();
+          try {
+            payloadReclaimed += payloadTable.pruneMessages(metadata, timeStamp);
+          } finally {
+            payloadStopwatch.stop();
+          }
         }
       } catch (IOException ex) {
         LOG.debug("Unable to perform data cleanup in TMS LevelDB tables", ex);
+      } finally {
+        emitMetrics(messageMetricsContext, messageReclaimed, messageStopwatch);
+        emitMetrics(payloadMetricsContext, payloadReclaimed, payloadStopwatch);
       }
     }
+
+    private void emitMetrics(MetricsContext metricsContext, long reclaimedBytes, Stopwatch stopwatch) {
+      metricsContext.increment(METRICS_RECLAIMED_BYTES, reclaimedBytes);
+      metricsContext.increment(METRICS_COMPACTION_TIME_MS, stopwatch.elapsedMillis());
+    }
+
+    private MetricsContext createMetricsContext(String table) {
+      return metricsCollectionService.getContext(ImmutableMap.of(
+        Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
+        Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0"),
+        Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+        Constants.Metrics.Tag.TABLE, table
+      ));
+    }
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.leveldb;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.impl.DbConstants;
+import org.iq80.leveldb.impl.DbImpl;
+import org.iq80.leveldb.util.Slices;
+
+/**
+ * Provides utility methods for operating on LevelDB.
+ */
+public final class LevelDBUtils {
+
+  private LevelDBUtils() {
+  }
+
+  /**
+   * Compacts all levels of the given key range, to reclaim the disk space of deleted entries.
+   *
+   * @param db the LevelDB to compact
+   * @param startKey the first key of the range
+   * @param endKey the last key of the range
+   * @throws org.iq80.leveldb.DBException if failed to compact
+   */
+  public static void compactRange(DB db, byte[] startKey, byte[] endKey) {
+    if (db instanceof DbImpl) {
+      // DB.compactRange is not implemented by the Java LevelDB, hence compact each level explicitly
+      DbImpl dbImpl = (DbImpl) db;
+      for (int level = 0; level < DbConstants.NUM_LEVELS - 1; level++) {
+        dbImpl.compactRange(level, Slices.wrappedBuffer(startKey), Slices.wrappedBuffer(endKey));
+      }
+    } else {
+      db.compactRange(startKey, endKey);
+    }
+  }
+}
@@ -22,7 +22,6 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.Message;
-import co.cask.cdap.api.messaging.MessageFetcher;
 import co.cask.cdap.api.messaging.MessagingContext;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.api.metrics.MetricsContext;
@@ -33,7 +32,10 @@ import co.cask.cdap.common.service.AbstractRetryableScheduledService;
 import co.cask.cdap.common.service.RetryStrategy;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.common.utils.TimeBoundIterator;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.AbstractIterator;
 import org.apache.tephra.TransactionNotInProgressException;
@@ -44,6 +46,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -108,6 +111,16 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
    */
   protected abstract MessagingContext getMessagingContext();
 
+  /**
+   * Returns the {@link MessagingService} for waiting on new messages after a fetch returns empty result, instead of
+   * sleeping for the empty fetch delay. The wait returns as soon as new messages are published to the topic. It is
+   * only used when the fetch is not transactional. By default {@code null} is returned, meaning always sleep.
+   */
+  @Nullable
+  protected MessagingService getMessagingService() {
+    return null;
+  }
+
   /**
    * Returns the {@link Transactional} for executing tasks in transaction.
    */
@@ -226,10 +239,14 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
     metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
     metricsContext.increment("tms.fetch.messages", messages.size());
 
-    // Return if stopping or request to sleep for configured number of milliseconds if there are no notifications
-    if (messages.isEmpty() || state() != State.RUNNING) {
+    // Return if stopping
+    if (state() != State.RUNNING) {
       return emptyFetchDelayMillis;
     }
+    // If there are no notifications, wait for new messages or request to sleep for configured number of milliseconds
+    if (messages.isEmpty()) {
+      return waitForMessages(messageId) ? 0L : emptyFetchDelayMillis;
+    }
 
     startTime = System.currentTimeMillis();
 
@@ -300,9 +317,8 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
   private List<Message> doFetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", messageId);
-    MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(topicId.getNamespace(),
-                                                                    topicId.getTopic(), fetchSize, messageId)) {
+    try (CloseableIterator<Message> iterator = getMessagingContext().getMessageFetcher().fetch(
+      topicId.getNamespace(), topicId.getTopic(), fetchSize, messageId)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -310,6 +326,34 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
     return messages;
   }
 
+  /**
+   * Waits up to the empty fetch delay for new messages to be available after the given message id.
+   *
+   * @return {@code true} if the wait was performed; {@code false} if the caller should sleep instead
+   */
+  private boolean waitForMessages(@Nullable String messageId) {
+    MessagingService messagingService = getMessagingService();
+    if (transactionalFetch || messagingService == null || emptyFetchDelayMillis <= 0) {
+      return false;
+    }
+    try {
+      MessageFetcher fetcher = messagingService.prepareFetch(topicId)
+        .setLimit(1)
+        .setWaitTimeout(emptyFetchDelayMillis, TimeUnit.MILLISECONDS);
+      if (messageId != null) {
+        fetcher.setStartMessage(Bytes.fromHexString(messageId), false);
+      }
+      try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+        // The iterator is not consumed. Messages will be fetched and processed in the next run.
+        iterator.hasNext();
+      }
+      return true;
+    } catch (Exception e) {
+      SAMPLING_LOG.debug("Failed to wait for messages from topic {}. Sleep instead.", topicId, e);
+      return false;
+    }
+  }
+
   /**
    * Returns the publish time encoded in the given message id.
    *
@@ -30,7 +30,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -236,6 +238,61 @@ public class MessageCacheTest {
     }
   }
 
+  @Test
+  public void testEntryStore() {
+    // An EntryStore that tracks entries that are stored and not yet released
+    final Set<Integer> storedEntries = new HashSet<>();
+    MessageCache.EntryStore<Integer> entryStore = new MessageCache.EntryStore<Integer>() {
+      @Override
+      public Integer store(Integer entry) {
+        Assert.assertTrue(storedEntries.add(entry));
+        return entry;
+      }
+
+      @Override
+      public Integer load(Integer entry) {
+        Assert.assertTrue(storedEntries.contains(entry));
+        return -entry;
+      }
+
+      @Override
+      public void release(Integer entry) {
+        Assert.assertTrue(storedEntries.remove(entry));
+      }
+    };
+
+    MessageCache<Integer> cache = new MessageCache<>(new IntComparator(), new UnitWeigher<Integer>(), entryStore,
+                                                     new MessageCache.Limits(5, 7, 10), NOOP_METRICS);
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Scanner should return entries loaded from the store
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5).iterator());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4, 5)), storedEntries);
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, filter)) {
+      Assert.assertEquals(Arrays.asList(-1, -2, -3, -4, -5), Lists.newArrayList(scanner));
+    }
+
+    // Adding beyond the hard limit should release the removed entries
+    cache.addAll(Arrays.asList(6, 7, 8, 9, 10, 11).iterator());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(7, 8, 9, 10, 11)), storedEntries);
+    Assert.assertEquals(storedEntries.size(), cache.getCurrentWeight());
+
+    // Adding entry out of order should release everything, including the entry being added
+    try {
+      cache.addAll(Collections.singletonList(1).iterator());
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Assert.assertTrue(storedEntries.isEmpty());
+
+    // Clearing the cache should release everything
+    cache.addAll(Arrays.asList(20, 21, 22).iterator());
+    Assert.assertEquals(3, storedEntries.size());
+    cache.clear();
+    Assert.assertTrue(storedEntries.isEmpty());
+  }
+
   @Test
   public void testCacheResize() {
     // Test resize the cache
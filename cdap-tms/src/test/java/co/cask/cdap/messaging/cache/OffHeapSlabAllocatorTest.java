@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import co.cask.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link OffHeapSlabAllocator}.
+ */
+public class OffHeapSlabAllocatorTest {
+
+  @Test
+  public void testAllocateAndRead() {
+    OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(16, 2);
+
+    List<OffHeapSlabAllocator.Allocation> allocations = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      OffHeapSlabAllocator.Allocation allocation = allocator.allocate(Bytes.toBytes(i));
+      Assert.assertNotNull(allocation);
+      Assert.assertEquals(4, allocation.getLength());
+      allocations.add(allocation);
+    }
+    Assert.assertEquals(2, allocator.getCreatedSlabs());
+
+    for (int i = 0; i < 8; i++) {
+      Assert.assertEquals(i, Bytes.toInt(allocations.get(i).read()));
+    }
+
+    // Data larger than the slab size cannot be allocated
+    Assert.assertNull(allocator.allocate(new byte[17]));
+    // All slabs are full, hence no more allocation is possible
+    Assert.assertNull(allocator.allocate(new byte[1]));
+
+    // Release allocations on the first slab, it should be reused
+    for (int i = 0; i < 4; i++) {
+      allocations.get(i).release();
+    }
+    OffHeapSlabAllocator.Allocation allocation = allocator.allocate(Bytes.toBytes(100));
+    Assert.assertNotNull(allocation);
+    Assert.assertEquals(100, Bytes.toInt(allocation.read()));
+    Assert.assertEquals(2, allocator.getCreatedSlabs());
+
+    // Allocations on the second slab should be unaffected
+    for (int i = 4; i < 8; i++) {
+      Assert.assertEquals(i, Bytes.toInt(allocations.get(i).read()));
+    }
+  }
+
+  @Test
+  public void testRelease() {
+    OffHeapSlabAllocator allocator = new OffHeapSlabAllocator(8, 1);
+
+    OffHeapSlabAllocator.Allocation allocation = allocator.allocate(Bytes.toBytes(1L));
+    Assert.assertNotNull(allocation);
+    Assert.assertNull(allocator.allocate(Bytes.toBytes(2L)));
+
+    // Releasing more than once has no effect
+    allocation.release();
+    allocation.release();
+
+    try {
+      allocation.read();
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // The current slab is rewound once all of its allocations are released
+    OffHeapSlabAllocator.Allocation first = allocator.allocate(Bytes.toBytes(2));
+    OffHeapSlabAllocator.Allocation second = allocator.allocate(Bytes.toBytes(3));
+    Assert.assertNotNull(first);
+    Assert.assertNotNull(second);
+    Assert.assertEquals(2, Bytes.toInt(first.read()));
+    Assert.assertEquals(3, Bytes.toInt(second.read()));
+    Assert.assertEquals(1, allocator.getCreatedSlabs());
+  }
+}
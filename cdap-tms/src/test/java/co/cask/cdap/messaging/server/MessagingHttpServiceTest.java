@@ -26,7 +26,9 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -38,6 +40,7 @@ import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
@@ -57,8 +60,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * Tests for {@link MessagingHttpService}.
@@ -212,6 +219,61 @@ public class MessagingHttpServiceTest {
     Assert.assertTrue(client.listTopics(nsId).isEmpty());
   }
 
+  @Test
+  public void testConsumerOffsets() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("offsets");
+    TopicId topic2 = NamespaceId.SYSTEM.topic("offsets");
+    TopicId topic3 = NamespaceId.SYSTEM.topic("offsetsMissing");
+
+    client.createTopic(new TopicMetadata(topic1));
+    client.createTopic(new TopicMetadata(topic2));
+
+    // Publish some messages and commit the message ids as offsets
+    client.publish(StoreRequestBuilder.of(topic1).addPayload("m1").build());
+    client.publish(StoreRequestBuilder.of(topic2).addPayload("m2").build());
+    byte[] id1;
+    byte[] id2;
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topic1).fetch()) {
+      id1 = iterator.next().getId();
+    }
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topic2).fetch()) {
+      id2 = iterator.next().getId();
+    }
+
+    Assert.assertTrue(client.getOffsets("consumer", Arrays.asList(topic1, topic2)).isEmpty());
+    client.commitOffsets("consumer", ImmutableMap.of(topic1, id1, topic2, id2));
+
+    Map<TopicId, byte[]> offsets = client.getOffsets("consumer", Arrays.asList(topic1, topic2, topic3));
+    Assert.assertEquals(2, offsets.size());
+    Assert.assertArrayEquals(id1, offsets.get(topic1));
+    Assert.assertArrayEquals(id2, offsets.get(topic2));
+
+    // Fetch from the committed offset should return nothing
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topic1)
+                                                        .setStartMessage(offsets.get(topic1), false).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+
+    // Commit to a missing topic should fail
+    try {
+      client.commitOffsets("consumer", ImmutableMap.of(topic3, id2));
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      Assert.assertEquals(topic3.getTopic(), e.getTopic());
+    }
+
+    // Invalid consumer group name should fail
+    try {
+      client.commitOffsets("invalid.group", ImmutableMap.of(topic1, id1));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+
+    client.deleteTopic(topic1);
+    client.deleteTopic(topic2);
+  }
+
   @Test
   public void testGeMetadata() throws Exception {
     TopicId topicId = new NamespaceId("ns2").topic("d");
@@ -225,6 +287,262 @@ public class MessagingHttpServiceTest {
     }
   }
 
+  @Test
+  public void testBatchPublish() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("batch1");
+    TopicId topic2 = new NamespaceId("ns2").topic("batch2");
+    TopicId missingTopic = new NamespaceId("ns1").topic("batchMissing");
+    client.createTopic(new TopicMetadata(topic1));
+    client.createTopic(new TopicMetadata(topic2));
+    try {
+      List<PublishResult> results = client.batchPublish(Arrays.asList(
+        StoreRequestBuilder.of(topic1).addPayload("a1").addPayload("a2").build(),
+        StoreRequestBuilder.of(topic2).addPayload("b1").setTransaction(1L).build(),
+        StoreRequestBuilder.of(topic1).addPayload("a3").build()
+      ));
+      Assert.assertEquals(3, results.size());
+      for (PublishResult result : results) {
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertNull(result.getFailureMessage());
+      }
+      Assert.assertNull(results.get(0).getRollbackDetail());
+      Assert.assertNotNull(results.get(1).getRollbackDetail());
+      Assert.assertEquals(1L, results.get(1).getRollbackDetail().getTransactionWritePointer());
+      Assert.assertNull(results.get(2).getRollbackDetail());
+
+      Assert.assertEquals(Arrays.asList("a1", "a2", "a3"), fetchPayloads(topic1));
+      Assert.assertEquals(Arrays.asList("b1"), fetchPayloads(topic2));
+
+      // Rollback with the detail returned from the batch
+      client.rollback(topic2, results.get(1).getRollbackDetail());
+      Transaction tx = new Transaction(2L, 2L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topic2).setTransaction(tx).fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+
+      // Publishing to a missing topic should fail without publishing anything
+      try {
+        client.batchPublish(Arrays.asList(StoreRequestBuilder.of(topic1).addPayload("a4").build(),
+                                          StoreRequestBuilder.of(missingTopic).addPayload("c1").build()));
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        Assert.assertEquals(missingTopic.getNamespace(), e.getNamespace());
+        Assert.assertEquals(missingTopic.getTopic(), e.getTopic());
+      }
+      Assert.assertEquals(Arrays.asList("a1", "a2", "a3"), fetchPayloads(topic1));
+    } finally {
+      client.deleteTopic(topic1);
+      client.deleteTopic(topic2);
+    }
+  }
+
+  @Test
+  public void testPartitionedTopic() throws Exception {
+    NamespaceId namespaceId = new NamespaceId("partitioned");
+    TopicId topicId = namespaceId.topic("partitioned");
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 4));
+    try {
+      // Partitions are internal topics that are not visible
+      Assert.assertEquals(Arrays.asList(topicId), client.listTopics(namespaceId));
+      Assert.assertEquals(4, client.getTopic(topicId).getPartitions());
+
+      // Messages with the same partition key go to the same partition
+      client.publish(StoreRequestBuilder.of(topicId).setPartitionKey("k1").addPayload("a1").build());
+      client.publish(StoreRequestBuilder.of(topicId).setPartitionKey("k2").addPayload("b1").build());
+      client.batchPublish(Arrays.asList(
+        StoreRequestBuilder.of(topicId).setPartitionKey("k1").addPayload("a2").build(),
+        StoreRequestBuilder.of(topicId).setPartitionKey("k2").addPayload("b2").build()
+      ));
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("c1").build());
+
+      // Fetching without partition returns messages from all partitions
+      Assert.assertEquals(new HashSet<>(Arrays.asList("a1", "a2", "b1", "b2", "c1")),
+                          new HashSet<>(fetchPayloads(topicId)));
+      Assert.assertEquals(2, fetchPayloads(topicId, null, 2).size());
+
+      // Fetching from all partitions cannot resume from a message id, since message ids are per partition
+      byte[] messageId;
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setLimit(1).fetch()) {
+        messageId = iterator.next().getId();
+      }
+      try {
+        fetchPayloads(client.prepareFetch(topicId).setStartMessage(messageId, false));
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+
+      List<String> allPayloads = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        List<String> payloads = fetchPayloads(topicId, i, Integer.MAX_VALUE);
+        if (!payloads.isEmpty()) {
+          // Resuming from a message id within a partition is supported
+          try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setPartition(i).fetch()) {
+            messageId = iterator.next().getId();
+          }
+          Assert.assertEquals(payloads.subList(1, payloads.size()),
+                              fetchPayloads(client.prepareFetch(topicId).setPartition(i)
+                                              .setStartMessage(messageId, false)));
+        }
+        if (payloads.contains("a1")) {
+          Assert.assertTrue(payloads.indexOf("a1") < payloads.indexOf("a2"));
+        }
+        if (payloads.contains("b1")) {
+          Assert.assertTrue(payloads.indexOf("b1") < payloads.indexOf("b2"));
+        }
+        allPayloads.addAll(payloads);
+      }
+      Assert.assertEquals(5, allPayloads.size());
+
+      try {
+        fetchPayloads(topicId, 4, Integer.MAX_VALUE);
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+
+      // Transactional publish and rollback go to the same partition
+      RollbackDetail rollbackDetail = client.publish(StoreRequestBuilder.of(topicId)
+                                                       .addPayload("t1").setTransaction(10L).build());
+      Assert.assertNotNull(rollbackDetail);
+      Transaction tx = new Transaction(11L, 11L, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+      Assert.assertTrue(fetchPayloads(client.prepareFetch(topicId).setTransaction(tx)).contains("t1"));
+      client.rollback(topicId, rollbackDetail);
+      Assert.assertFalse(fetchPayloads(client.prepareFetch(topicId).setTransaction(tx)).contains("t1"));
+
+      // Number of partitions cannot be changed, but other properties can
+      try {
+        client.updateTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 8));
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, 100));
+      TopicMetadata metadata = client.getTopic(topicId);
+      Assert.assertEquals(4, metadata.getPartitions());
+      Assert.assertEquals(100, metadata.getTTL());
+
+      // Topic names of partitions are reserved
+      try {
+        client.createTopic(new TopicMetadata(TopicMetadata.getPartitionTopicId(topicId, 0)));
+        Assert.fail("Expected IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    } finally {
+      client.deleteTopic(topicId);
+    }
+    Assert.assertTrue(client.listTopics(namespaceId).isEmpty());
+
+    // Recreate the topic should start with no message
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 2));
+    try {
+      Assert.assertTrue(fetchPayloads(topicId).isEmpty());
+    } finally {
+      client.deleteTopic(topicId);
+    }
+  }
+
+  private List<String> fetchPayloads(TopicId topicId) throws Exception {
+    return fetchPayloads(client.prepareFetch(topicId));
+  }
+
+  private List<String> fetchPayloads(TopicId topicId, @Nullable Integer partition, int limit) throws Exception {
+    MessageFetcher fetcher = client.prepareFetch(topicId).setLimit(limit);
+    if (partition != null) {
+      fetcher.setPartition(partition);
+    }
+    return fetchPayloads(fetcher);
+  }
+
+  private List<String> fetchPayloads(MessageFetcher fetcher) throws Exception {
+    List<String> payloads = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+      iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+    }
+    return payloads;
+  }
+
+  @Test
+  public void testWaitingFetch() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("waitingFetch");
+    client.createTopic(new TopicMetadata(topicId));
+    try {
+      // Fetch with wait timeout on an empty topic should return empty after the timeout
+      long startTime = System.nanoTime();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                          .setWaitTimeout(200, TimeUnit.MILLISECONDS).fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+      Assert.assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(200));
+
+      // Fetch with a long wait timeout should return as soon as a message is published
+      CompletableFuture<List<String>> future = CompletableFuture.supplyAsync(() -> {
+        List<String> payloads = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                            .setWaitTimeout(60, TimeUnit.SECONDS).fetch()) {
+          iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        return payloads;
+      });
+
+      TimeUnit.MILLISECONDS.sleep(500);
+      Assert.assertFalse(future.isDone());
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("m0").build());
+      Assert.assertEquals(Arrays.asList("m0"), future.get(10, TimeUnit.SECONDS));
+    } finally {
+      client.deleteTopic(topicId);
+    }
+  }
+
+  @Test
+  public void testPayloadPrefixFetch() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("prefixFetch");
+    client.createTopic(new TopicMetadata(topicId));
+    try {
+      StoreRequestBuilder builder = StoreRequestBuilder.of(topicId);
+      for (String payload : Arrays.asList("a:1", "b:1", "b:2", "a:2", "b:3", "a:3")) {
+        builder.addPayload(payload);
+      }
+      client.publish(builder.build());
+
+      // Only messages with matching payload are returned
+      Assert.assertEquals(Arrays.asList("a:1", "a:2", "a:3"),
+                          fetchPayloads(client.prepareFetch(topicId).setPayloadPrefix(Bytes.toBytes("a:"))));
+      Assert.assertTrue(fetchPayloads(client.prepareFetch(topicId).setPayloadPrefix(Bytes.toBytes("c:"))).isEmpty());
+
+      // The limit only applies to matching messages
+      Assert.assertEquals(Arrays.asList("a:1", "a:2"),
+                          fetchPayloads(client.prepareFetch(topicId).setLimit(2)
+                                          .setPayloadPrefix(Bytes.toBytes("a:"))));
+
+      // Clearing the prefix returns all messages
+      Assert.assertEquals(6, fetchPayloads(client.prepareFetch(topicId)
+                                             .setPayloadPrefix(Bytes.toBytes("a:")).setPayloadPrefix(null)).size());
+
+      // Matching messages are found after more non-matching messages than a single table scan covers,
+      // both in the message table and in the payload table
+      builder = StoreRequestBuilder.of(topicId);
+      for (int i = 0; i < 50; i++) {
+        builder.addPayload("c:" + i);
+      }
+      client.publish(builder.addPayload("d:1").build());
+      builder = StoreRequestBuilder.of(topicId).setTransaction(1L);
+      for (int i = 0; i < 50; i++) {
+        builder.addPayload("c:" + i);
+      }
+      client.storePayload(builder.addPayload("d:2").build());
+      client.publish(StoreRequestBuilder.of(topicId).setTransaction(1L).build());
+      Assert.assertEquals(Arrays.asList("d:1", "d:2"),
+                          fetchPayloads(client.prepareFetch(topicId).setLimit(2)
+                                          .setPayloadPrefix(Bytes.toBytes("d:"))));
+    } finally {
+      client.deleteTopic(topicId);
+    }
+  }
+
   @Test
   public void testDeletes() throws Exception {
     TopicId topicId = new NamespaceId("ns1").topic("del");
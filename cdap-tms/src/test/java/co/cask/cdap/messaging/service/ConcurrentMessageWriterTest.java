@@ -19,6 +19,7 @@ package co.cask.cdap.messaging.service;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.TimeProvider;
+import co.cask.cdap.messaging.PublishResult;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.data.MessageId;
@@ -95,6 +96,48 @@ public class ConcurrentMessageWriterTest {
     Assert.assertEquals(Arrays.asList("a", "b", "c"), payloads);
   }
 
+  @Test
+  public void testPersistAll() throws IOException {
+    TopicId topicId = new NamespaceId("ns1").topic("t1");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter);
+    List<PublishResult> results = writer.persistAll(Arrays.asList(
+      new TestStoreRequest(topicId, Arrays.asList("1", "2")),
+      new TestStoreRequest(topicId, true, 10L, Arrays.asList("3")),
+      new TestStoreRequest(topicId, Arrays.asList("4"))
+    ), metadata);
+
+    // There should be one result per request, with rollback detail only for the transactional one
+    Assert.assertEquals(3, results.size());
+    for (PublishResult result : results) {
+      Assert.assertTrue(result.isSuccess());
+    }
+    Assert.assertNull(results.get(0).getRollbackDetail());
+    Assert.assertEquals(10L, results.get(1).getRollbackDetail().getTransactionWritePointer());
+    Assert.assertNull(results.get(2).getRollbackDetail());
+
+    // Messages should be written in the request order
+    List<String> payloads = new ArrayList<>();
+    for (RawMessage message : testWriter.getMessages().get(topicId)) {
+      payloads.add(Bytes.toString(message.getPayload()));
+    }
+    Assert.assertEquals(Arrays.asList("1", "2", "3", "4"), payloads);
+
+    // Failures should be reported in the results instead of being thrown
+    testWriter.setFailWrite(true);
+    results = writer.persistAll(Arrays.asList(new TestStoreRequest(topicId, Arrays.asList("5")),
+                                              new TestStoreRequest(topicId, Arrays.asList("6"))), metadata);
+    Assert.assertEquals(2, results.size());
+    for (PublishResult result : results) {
+      Assert.assertFalse(result.isSuccess());
+      Assert.assertNull(result.getRollbackDetail());
+      Assert.assertNotNull(result.getFailureMessage());
+    }
+    Assert.assertEquals(4, testWriter.getMessages().get(topicId).size());
+  }
+
   @Test
   public void testMaxSequence() throws IOException {
     // This test the case when a single StoreRequest has more than SEQUENCE_ID_LIMIT (65536) payload.
@@ -275,6 +318,7 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private volatile boolean failWrite;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +341,9 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      if (failWrite) {
+        throw new IOException("Simulated write failure");
+      }
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -311,6 +358,10 @@ public class ConcurrentMessageWriterTest {
       }
     }
 
+    void setFailWrite(boolean failWrite) {
+      this.failWrite = failWrite;
+    }
+
     ListMultimap<TopicId, RawMessage> getMessages() {
       return messages;
     }
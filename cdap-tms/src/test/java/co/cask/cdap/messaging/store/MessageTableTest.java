@@ -242,6 +242,67 @@ public abstract class MessageTableTest {
     }
   }
 
+  @Test
+  public void testFetchFromMessage() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("fetchFromMessage");
+    TopicMetadata metadata = new TopicMetadata(topicId, DEFAULT_PROPERTY);
+
+    // Store messages with consecutive sequence ids in one batch, which can be stored as blocks.
+    try (MessageTable table = getMessageTable();
+         MetadataTable metadataTable = getMetadataTable()) {
+      metadataTable.createTopic(metadata);
+      List<MessageTable.Entry> entryList = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        // 10 non-tx messages at time 1, 10 tx messages at time 1 and 10 non-tx messages at time 2
+        long publishTime = i < 20 ? 1L : 2L;
+        Long txWritePtr = i >= 10 && i < 20 ? 100L : null;
+        entryList.add(new TestMessageEntry(topicId, GENERATION, publishTime, i % 20, txWritePtr,
+                                           Bytes.toBytes("message " + i)));
+      }
+      table.store(entryList.iterator());
+
+      // Fetch by time
+      try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, 0L, Integer.MAX_VALUE, null)) {
+        assertMessages(iterator, 0, 30);
+      }
+      try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, 2L, 5, null)) {
+        assertMessages(iterator, 20, 5);
+      }
+
+      // Fetch from each message, inclusive and exclusive
+      for (int i = 0; i < 30; i++) {
+        MessageTable.Entry start = entryList.get(i);
+        byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+        MessageId.putRawId(start.getPublishTimestamp(), start.getSequenceId(), 0L, (short) 0, rawId, 0);
+        MessageId messageId = new MessageId(rawId);
+
+        try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, messageId, true,
+                                                                          Integer.MAX_VALUE, null)) {
+          assertMessages(iterator, i, 30 - i);
+        }
+        try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, messageId, false, 3, null)) {
+          assertMessages(iterator, i + 1, Math.min(3, 29 - i));
+        }
+      }
+
+      // Fetch transactionally with the transaction in progress should stop at the transactional messages
+      Transaction tx = new Transaction(99, 99, new long[0], new long[] { 100L }, -1);
+      try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, 0L, Integer.MAX_VALUE, tx)) {
+        assertMessages(iterator, 0, 10);
+      }
+
+      // Fetch transactionally with the transaction invalid should skip the transactional messages
+      tx = new Transaction(200, 200, new long[] { 100L }, new long[0], -1);
+      List<MessageTable.Entry> entries = new ArrayList<>();
+      try (CloseableIterator<MessageTable.Entry> iterator = table.fetch(metadata, 0L, Integer.MAX_VALUE, tx)) {
+        Iterators.addAll(entries, iterator);
+      }
+      Assert.assertEquals(20, entries.size());
+      Assert.assertEquals("message 9", Bytes.toString(entries.get(9).getPayload()));
+      Assert.assertEquals("message 20", Bytes.toString(entries.get(10).getPayload()));
+    }
+  }
+
   @Test
   public void testConcurrentWrites() throws Exception {
     // Create two threads, each of them writes to a different topic with two events in one store call.
@@ -312,6 +373,19 @@ public abstract class MessageTableTest {
     }
   }
 
+  private void assertMessages(CloseableIterator<MessageTable.Entry> entries, int startIndex, int expectedCount) {
+    int count = 0;
+    while (entries.hasNext()) {
+      MessageTable.Entry entry = entries.next();
+      int index = startIndex + count++;
+      Assert.assertEquals("message " + index, Bytes.toString(entry.getPayload()));
+      Assert.assertEquals(index < 20 ? 1L : 2L, entry.getPublishTimestamp());
+      Assert.assertEquals(index % 20, entry.getSequenceId());
+      Assert.assertEquals(index >= 10 && index < 20, entry.isTransactional());
+    }
+    Assert.assertEquals(expectedCount, count);
+  }
+
   private void checkPointerCount(CloseableIterator<MessageTable.Entry> entries, int payload,
                                  Set<Long> acceptablePtrs, int expectedCount) {
     int count = 0;
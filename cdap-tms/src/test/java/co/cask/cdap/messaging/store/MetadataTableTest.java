@@ -16,14 +16,20 @@
 
 package co.cask.cdap.messaging.store;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Base class for Metadata Table tests.
  */
@@ -80,6 +86,59 @@ public abstract class MetadataTableTest {
     }
   }
 
+  @Test
+  public void testOffsets() throws Exception {
+    try (MetadataTable table = createMetadataTable()) {
+      NamespaceId namespaceId = new NamespaceId("offsets");
+      TopicId topic1 = namespaceId.topic("t1");
+      TopicId topic2 = namespaceId.topic("t2");
+      TopicId topic3 = namespaceId.topic("t3");
+      table.createTopic(new TopicMetadata(topic1, "ttl", 10));
+      table.createTopic(new TopicMetadata(topic2, "ttl", 10));
+
+      // No offset committed yet
+      Assert.assertTrue(table.getOffsets("group", ImmutableList.of(topic1, topic2, topic3)).isEmpty());
+
+      // Commit offsets for non-existing topic should fail without committing anything
+      try {
+        table.commitOffsets("group", ImmutableMap.of(topic1, Bytes.toBytes(1L), topic3, Bytes.toBytes(1L)));
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        // expected
+      }
+      Assert.assertTrue(table.getOffsets("group", ImmutableList.of(topic1)).isEmpty());
+
+      // Commit offsets for two groups
+      table.commitOffsets("group", ImmutableMap.of(topic1, Bytes.toBytes(1L), topic2, Bytes.toBytes(2L)));
+      table.commitOffsets("group2", ImmutableMap.of(topic1, Bytes.toBytes(10L)));
+      table.commitOffsets("group", ImmutableMap.of(topic1, Bytes.toBytes(3L)));
+
+      Map<TopicId, byte[]> offsets = table.getOffsets("group", ImmutableList.of(topic1, topic2, topic3));
+      Assert.assertEquals(2, offsets.size());
+      Assert.assertArrayEquals(Bytes.toBytes(3L), offsets.get(topic1));
+      Assert.assertArrayEquals(Bytes.toBytes(2L), offsets.get(topic2));
+
+      offsets = table.getOffsets("group2", ImmutableList.of(topic1, topic2));
+      Assert.assertEquals(Collections.singleton(topic1), offsets.keySet());
+      Assert.assertArrayEquals(Bytes.toBytes(10L), offsets.get(topic1));
+
+      // Offsets shouldn't affect topic listing
+      Assert.assertEquals(2, table.listTopics(namespaceId).size());
+
+      // Offsets are gone after the topic is deleted, and stay gone when the topic is recreated
+      table.deleteTopic(topic1);
+      Assert.assertEquals(Collections.singleton(topic2),
+                          table.getOffsets("group", ImmutableList.of(topic1, topic2)).keySet());
+      table.createTopic(new TopicMetadata(topic1, "ttl", 10));
+      Assert.assertEquals(Collections.singleton(topic2),
+                          table.getOffsets("group", ImmutableList.of(topic1, topic2)).keySet());
+
+      table.deleteTopic(topic1);
+      table.deleteTopic(topic2);
+      Assert.assertTrue(table.listTopics(namespaceId).isEmpty());
+    }
+  }
+
   @Test
   public void testGenerations() throws Exception {
     try (MetadataTable table = createMetadataTable()) {
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link LevelDBRangeCompactor}.
+ */
+public class LevelDBRangeCompactorTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test(timeout = 60000)
+  public void testDeleteAndCompact() throws Exception {
+    // Use a small write buffer so that data get written to disk
+    Options options = new Options().createIfMissing(true).writeBufferSize(64 * 1024);
+    try (DB db = Iq80DBFactory.factory.open(tmpFolder.newFolder(), options)) {
+      byte[] value = new byte[100];
+      Arrays.fill(value, (byte) 'v');
+      for (int i = 0; i < 100; i++) {
+        try (WriteBatch batch = db.createWriteBatch()) {
+          for (int j = 0; j < 100; j++) {
+            batch.put(Bytes.toBytes(i * 100 + j), value);
+          }
+          db.write(batch);
+        }
+      }
+
+      LevelDBRangeCompactor compactor = new LevelDBRangeCompactor(db);
+
+      // Empty range shouldn't delete anything
+      Assert.assertEquals(0L, compactor.deleteAndCompact(Bytes.toBytes(10), Bytes.toBytes(10)));
+      Assert.assertNotNull(db.get(Bytes.toBytes(10)));
+
+      // Delete the first 8000 keys
+      long reclaimed = compactor.deleteAndCompact(Bytes.toBytes(0), Bytes.toBytes(8000));
+      Assert.assertTrue("Expected bytes reclaimed to be > 0", reclaimed > 0L);
+
+      for (int i = 0; i < 10000; i++) {
+        if (i < 8000) {
+          Assert.assertNull(db.get(Bytes.toBytes(i)));
+        } else {
+          Assert.assertArrayEquals(value, db.get(Bytes.toBytes(i)));
+        }
+      }
+
+      // Delete the same range again, nothing should be reclaimed
+      Assert.assertEquals(0L, compactor.deleteAndCompact(Bytes.toBytes(0), Bytes.toBytes(8000)));
+    }
+  }
+}
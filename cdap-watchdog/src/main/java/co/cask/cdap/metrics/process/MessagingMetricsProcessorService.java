@@ -32,12 +32,14 @@ import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.DatumReader;
 import co.cask.cdap.common.logging.LogSamplers;
 import co.cask.cdap.common.logging.Loggers;
+import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.metrics.store.BufferingMetricStore;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -54,7 +56,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -104,6 +108,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final DatasetFramework datasetFramework;
   private final String metricsPrefixForDelayMetrics;
   private long metricsProcessedCount;
+  // topic process metas of persisted metrics that the metric store may still buffer, by checkpoint
+  private final Deque<ImmutablePair<Long, Map<TopicIdMetaKey, TopicProcessMeta>>> pendingTopicProcessMetas;
+  private long lastCheckpoint;
 
   private MetricsConsumerMetaTable metaTable;
   private ScheduledExecutorService metricsTableDeleterExecutor;
@@ -165,6 +172,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
+    this.pendingTopicProcessMetas = new ArrayDeque<>();
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis;
     this.instanceId = instanceId;
     this.cConfiguration = cConf;
@@ -278,6 +286,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
     persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    flushMetricStore();
   }
 
   @Override
@@ -315,12 +324,62 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       if (!metricValues.isEmpty()) {
         persistMetrics(metricValues, topicProcessMetaMap);
       }
-      persistTopicProcessMeta(topicProcessMetaMap);
+      persistTopicProcessMeta(getFlushedTopicProcessMeta(topicProcessMetaMap));
     } catch (Exception e) {
       LOG.warn("Failed to persist metrics.", e);
     }
   }
 
+  /**
+   * Returns the topic process metas of which all metrics were written by the metric store. If the metric store
+   * buffers metrics, the given topic process metas are kept until the store has written the preceding metrics,
+   * and the latest topic process metas that are covered by a flush of the store are returned.
+   *
+   * @param topicProcessMetaMap the topic process metas of the metrics persisted so far
+   * @return the topic process metas to persist, which can be empty
+   */
+  private Map<TopicIdMetaKey, TopicProcessMeta> getFlushedTopicProcessMeta(
+    Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+    if (!(metricStore instanceof BufferingMetricStore)) {
+      return topicProcessMetaMap;
+    }
+    BufferingMetricStore bufferingMetricStore = (BufferingMetricStore) metricStore;
+    long checkpoint = ++lastCheckpoint;
+    bufferingMetricStore.checkpoint(checkpoint);
+    pendingTopicProcessMetas.addLast(new ImmutablePair<>(checkpoint, topicProcessMetaMap));
+    return pollFlushedTopicProcessMeta(bufferingMetricStore);
+  }
+
+  /**
+   * Removes all pending topic process metas that are covered by the latest flushed checkpoint of the given store,
+   * and returns the latest of them, or an empty map if there is none.
+   */
+  private Map<TopicIdMetaKey, TopicProcessMeta> pollFlushedTopicProcessMeta(BufferingMetricStore metricStore) {
+    long flushedCheckpoint = metricStore.getFlushedCheckpoint();
+    Map<TopicIdMetaKey, TopicProcessMeta> flushed = Collections.emptyMap();
+    while (!pendingTopicProcessMetas.isEmpty() &&
+      pendingTopicProcessMetas.peekFirst().getFirst() <= flushedCheckpoint) {
+      flushed = pendingTopicProcessMetas.removeFirst().getSecond();
+    }
+    return flushed;
+  }
+
+  /**
+   * Writes all metrics buffered by the metric store and persists the topic process metas of the written metrics.
+   */
+  private void flushMetricStore() {
+    if (!(metricStore instanceof BufferingMetricStore)) {
+      return;
+    }
+    BufferingMetricStore bufferingMetricStore = (BufferingMetricStore) metricStore;
+    try {
+      bufferingMetricStore.flush();
+      persistTopicProcessMeta(pollFlushedTopicProcessMeta(bufferingMetricStore));
+    } catch (Exception e) {
+      LOG.warn("Failed to flush metrics.", e);
+    }
+  }
+
   private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
     try {
       // messageIds can be empty if the current thread fetches nothing while other threads keep fetching new metrics
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.metrics.MetricStore;
+
+import java.io.IOException;
+
+/**
+ * A {@link MetricStore} that may buffer added metric values before writing them. Callers mark the metric values
+ * added so far with a checkpoint, and find out which of them are written from the latest flushed checkpoint.
+ */
+public interface BufferingMetricStore extends MetricStore {
+
+  /**
+   * Marks all metric values added up to now with the given checkpoint. Checkpoints must be increasing.
+   *
+   * @param checkpoint the checkpoint
+   */
+  void checkpoint(long checkpoint);
+
+  /**
+   * Returns the latest checkpoint of which all preceding metric values were written, or {@code -1} if there is none.
+   */
+  long getFlushedCheckpoint();
+
+  /**
+   * Writes all buffered metric values.
+   *
+   * @throws IOException if failed to write the buffered values
+   */
+  void flush() throws IOException;
+}
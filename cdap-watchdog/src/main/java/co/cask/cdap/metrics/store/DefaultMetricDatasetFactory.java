@@ -22,6 +22,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.lib.table.IncrementCombiningMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.CombinedHBaseMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTableAdmin;
@@ -89,6 +90,11 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
               cConf.get(Constants.Metrics.METRICS_TABLE_HBASE_SPLIT_POLICY));
 
     MetricsTable table = getOrCreateResolutionMetricsTable(v3TableName, props, resolution);
+    long combineDelay = cConf.getLong(Constants.Metrics.METRICS_TABLE_INCREMENT_COMBINE_MAX_DELAY_MS, 0L);
+    if (combineDelay > 0) {
+      table = new IncrementCombiningMetricsTable(
+        table, cConf.getInt(Constants.Metrics.METRICS_TABLE_INCREMENT_COMBINE_MAX_CELLS), combineDelay);
+    }
     return new FactTable(table, entityTable.get(), resolution, getRollTime(resolution));
   }
 
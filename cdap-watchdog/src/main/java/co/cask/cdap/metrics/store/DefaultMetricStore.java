@@ -16,7 +16,6 @@
 
 package co.cask.cdap.metrics.store;
 
-import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
@@ -61,6 +60,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -74,7 +74,7 @@ import javax.annotation.Nullable;
 /**
  * Default implementation of {@link MetricStore}.
  */
-public class DefaultMetricStore implements MetricStore {
+public class DefaultMetricStore implements BufferingMetricStore {
   static final Map<String, Aggregation> AGGREGATIONS;
 
   private static final int TOTALS_RESOLUTION = Integer.MAX_VALUE;
@@ -96,7 +96,7 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
@@ -246,9 +246,9 @@ public class DefaultMetricStore implements MetricStore {
         return dsFactory.getOrCreateFactTable(resolution);
       }
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
+      public DefaultCube get() {
         DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
         cube.setMetricsCollector(metricsContext);
         return cube;
@@ -295,6 +295,21 @@ public class DefaultMetricStore implements MetricStore {
     cube.get().add(facts);
   }
 
+  @Override
+  public void checkpoint(long checkpoint) {
+    cube.get().checkpoint(checkpoint);
+  }
+
+  @Override
+  public long getFlushedCheckpoint() {
+    return cube.get().getFlushedCheckpoint();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    cube.get().flush();
+  }
+
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
     Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
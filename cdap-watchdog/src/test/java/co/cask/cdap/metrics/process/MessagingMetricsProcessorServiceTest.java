@@ -35,11 +35,14 @@ import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutor;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
+import co.cask.cdap.metrics.store.BufferingMetricStore;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
+import co.cask.cdap.proto.id.NamespaceId;
 import org.apache.tephra.TransactionManager;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -121,6 +124,57 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
     }
   }
 
+  @Test
+  public void testPersistOffsetsAfterFlush() throws Exception {
+    injector.getInstance(TransactionManager.class).startAndWait();
+    injector.getInstance(DatasetOpExecutor.class).startAndWait();
+    injector.getInstance(DatasetService.class).startAndWait();
+
+    int numOfTopics = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
+    Set<Integer> partitions = IntStream.range(0, numOfTopics).boxed().collect(Collectors.toSet());
+    TopicIdMetaKey topicKey = new TopicIdMetaKey(NamespaceId.SYSTEM.topic(TOPIC_PREFIX + 0));
+    byte[] persistedMessageId = getPersistedMessageId(topicKey);
+
+    // Publish metrics to the first topic only
+    long startTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    for (int i = 0; i < 10; i++) {
+      publishMessagingMetrics(i * numOfTopics, startTime, METRICS_CONTEXT, expected, "", MetricType.COUNTER);
+    }
+
+    BufferingMockMetricStore metricStore = new BufferingMockMetricStore();
+    MessagingMetricsProcessorService messagingMetricsProcessorService =
+      new MessagingMetricsProcessorService(cConf, injector.getInstance(DatasetFramework.class),
+                                           injector.getInstance(MetricDatasetFactory.class), messagingService,
+                                           injector.getInstance(SchemaGenerator.class),
+                                           injector.getInstance(DatumReaderFactory.class), metricStore,
+                                           partitions, new NoopMetricsContext(), 50, 0,
+                                           true);
+    messagingMetricsProcessorService.startAndWait();
+    try {
+      Tasks.waitFor(10L, () -> metricStore.getAllMetrics().get(COUNTER_METRIC_NAME),
+                    15, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+      // Wait for a few more persist cycles, none of which should persist the offset of the buffered metrics
+      long checkpoint = metricStore.getLastCheckpoint();
+      Tasks.waitFor(true, () -> metricStore.getLastCheckpoint() > checkpoint + 2,
+                    15, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+      Assert.assertArrayEquals(persistedMessageId, getPersistedMessageId(topicKey));
+
+      // Once the store has written the metrics, the offset is persisted
+      metricStore.flushCheckpoints();
+      Tasks.waitFor(false, () -> Arrays.equals(persistedMessageId, getPersistedMessageId(topicKey)),
+                    15, TimeUnit.SECONDS, 10, TimeUnit.MILLISECONDS);
+    } finally {
+      messagingMetricsProcessorService.stopAndWait();
+      expected.clear();
+    }
+  }
+
+  private byte[] getPersistedMessageId(TopicIdMetaKey topicKey) throws Exception {
+    TopicProcessMeta topicProcessMeta =
+      injector.getInstance(MetricDatasetFactory.class).createConsumerMeta().getTopicProcessMeta(topicKey);
+    return topicProcessMeta == null ? null : topicProcessMeta.getMessageId();
+  }
+
   private void assertMetricsResult(Map<String, Long> expected, Map<String, Long> actual) {
     for (Map.Entry<String, Long> metric : expected.entrySet()) {
       Long actualValue = actual.get(metric.getKey());
@@ -239,4 +293,36 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       return userMetricsMap;
     }
   }
+
+  /**
+   * A {@link BufferingMetricStore} that only writes the metric values when {@link #flushCheckpoints()} is called.
+   */
+  private static final class BufferingMockMetricStore extends MockMetricStore implements BufferingMetricStore {
+
+    private volatile long lastCheckpoint = -1L;
+    private volatile long flushedCheckpoint = -1L;
+
+    @Override
+    public void checkpoint(long checkpoint) {
+      lastCheckpoint = checkpoint;
+    }
+
+    @Override
+    public long getFlushedCheckpoint() {
+      return flushedCheckpoint;
+    }
+
+    @Override
+    public void flush() {
+      flushCheckpoints();
+    }
+
+    void flushCheckpoints() {
+      flushedCheckpoint = lastCheckpoint;
+    }
+
+    long getLastCheckpoint() {
+      return lastCheckpoint;
+    }
+  }
 }